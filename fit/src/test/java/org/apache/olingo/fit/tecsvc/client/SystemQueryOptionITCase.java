@@ -19,6 +19,7 @@
 package org.apache.olingo.fit.tecsvc.client;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -208,7 +209,7 @@ public class SystemQueryOptionITCase extends AbstractParamTecSvcITCase {
 
     // Check initial next link format
     URI nextLink = response.getBody().getNext();
-    assertEquals(SERVICE_URI + "ESServerSidePaging?%24skiptoken=1%2A10", nextLink.toASCIIString());
+    assertTrue(nextLink.toASCIIString().startsWith(SERVICE_URI + "ESServerSidePaging?%24skiptoken="));
 
     // Check subsequent next links.
     request = getClient().getRetrieveRequestFactory().getEntitySetRequest(nextLink);
@@ -216,8 +217,10 @@ public class SystemQueryOptionITCase extends AbstractParamTecSvcITCase {
     response = request.execute();
     saveCookieHeader(response);
 
+    final URI previousLink = nextLink;
     nextLink = response.getBody().getNext();
-    assertEquals(SERVICE_URI + "ESServerSidePaging?%24skiptoken=2%2A10", nextLink.toASCIIString());
+    assertTrue(nextLink.toASCIIString().startsWith(SERVICE_URI + "ESServerSidePaging?%24skiptoken="));
+    assertFalse(previousLink.equals(nextLink));
   }
 
   @Test
@@ -233,12 +236,11 @@ public class SystemQueryOptionITCase extends AbstractParamTecSvcITCase {
 
     // Check initial next link format
     URI nextLink = response.getBody().getNext();
-    assertEquals(SERVICE_URI + "ESServerSidePaging?%24count=true&%24skiptoken=1%2A10",
-        nextLink.toASCIIString());
+    assertTrue(nextLink.toASCIIString().startsWith(SERVICE_URI + "ESServerSidePaging?%24count=true&%24skiptoken="));
 
-    int token = 1;
+    int page = 1;
     while (nextLink != null) {
-      token++;
+      page++;
 
       // Check subsequent next links.
       request = getClient().getRetrieveRequestFactory().getEntitySetRequest(nextLink);
@@ -248,12 +250,12 @@ public class SystemQueryOptionITCase extends AbstractParamTecSvcITCase {
 
       nextLink = response.getBody().getNext();
       if (nextLink != null) {
-        assertEquals(SERVICE_URI + "ESServerSidePaging?%24count=true&%24skiptoken=" + token + "%2A10",
-            nextLink.toASCIIString());
+        assertTrue(nextLink.toASCIIString().startsWith(
+            SERVICE_URI + "ESServerSidePaging?%24count=true&%24skiptoken="));
       }
     }
 
-    assertEquals(50 + 1, token);
+    assertEquals(50 + 1, page);
   }
 
   @Test
@@ -266,8 +268,8 @@ public class SystemQueryOptionITCase extends AbstractParamTecSvcITCase {
     final ODataRetrieveResponse<ClientEntitySet> response = request.execute();
     saveCookieHeader(response);
     assertEquals("odata.maxpagesize=7", response.getHeader(HttpHeader.PREFERENCE_APPLIED).iterator().next());
-    assertEquals(SERVICE_URI + ES_SERVER_SIDE_PAGING + "?%24skiptoken=1%2A" + 7,
-        response.getBody().getNext().toASCIIString());
+    assertTrue(response.getBody().getNext().toASCIIString()
+        .startsWith(SERVICE_URI + ES_SERVER_SIDE_PAGING + "?%24skiptoken="));
   }
 
   @Test
@@ -0,0 +1,258 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.commons.api.data;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.apache.olingo.commons.api.edm.EdmStructuredType;
+
+/**
+ * Entity which keeps its properties in an array indexed by the slots of a {@link PropertyLayout}.
+ * <p/>
+ * Compared to {@link Entity} there is no growing list of properties, and
+ * {@link #getProperty(String)} is a lookup in the per-type slot map instead of a scan.
+ * {@link #getProperties()} is a live view in slot order, i.e., in the order of the type
+ * definition; the position given to {@link List#add(int, Object)} is ignored.
+ * Properties which the layout does not declare (e.g., dynamic properties of open types) and
+ * further properties with an already used name are kept in an overflow list after the slots.
+ * <p/>
+ * Properties must not be renamed once they have been added.
+ */
+public class CompactEntity extends Entity {
+
+  /**
+   * Creates a new entity for the given structured type.
+   * @param type the type of the entity
+   */
+  public CompactEntity(final EdmStructuredType type) {
+    this(PropertyLayout.of(type));
+  }
+
+  /**
+   * Creates a new entity with the given property layout.
+   * @param layout the property layout
+   */
+  public CompactEntity(final PropertyLayout layout) {
+    super(new SlotList(layout));
+  }
+
+  /**
+   * Gets the property layout of this entity.
+   * @return the property layout
+   */
+  public PropertyLayout getLayout() {
+    return slots().layout;
+  }
+
+  @Override
+  public Property getProperty(final String name) {
+    return slots().get(name);
+  }
+
+  private SlotList slots() {
+    return (SlotList) getProperties();
+  }
+
+  private static final class SlotList extends AbstractList<Property> {
+
+    private final PropertyLayout layout;
+    private final Property[] slots;
+    private int filled;
+    private List<Property> overflow;
+
+    private SlotList(final PropertyLayout layout) {
+      this.layout = layout;
+      slots = new Property[layout.size()];
+    }
+
+    private Property get(final String name) {
+      final int slot = layout.getSlot(name);
+      if (slot >= 0 && slots[slot] != null) {
+        return slots[slot];
+      }
+      if (overflow != null) {
+        for (final Property property : overflow) {
+          if (name.equals(property.getName())) {
+            return property;
+          }
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public int size() {
+      return filled + (overflow == null ? 0 : overflow.size());
+    }
+
+    @Override
+    public Property get(final int index) {
+      final int slot = slotOf(index);
+      return slot < slots.length ? slots[slot] : overflow.get(slot - slots.length);
+    }
+
+    @Override
+    public void add(final int index, final Property property) {
+      if (index < 0 || index > size()) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+      }
+      place(property);
+    }
+
+    @Override
+    public Property set(final int index, final Property property) {
+      final int slot = slotOf(index);
+      if (slot < slots.length) {
+        final Property previous = slots[slot];
+        if (property != null && slot == layout.getSlot(property.getName())) {
+          slots[slot] = property;
+        } else {
+          remove(index);
+          place(property);
+        }
+        return previous;
+      }
+      return overflow.set(index - filled, property);
+    }
+
+    @Override
+    public Property remove(final int index) {
+      final int slot = slotOf(index);
+      modCount++;
+      if (slot < slots.length) {
+        final Property previous = slots[slot];
+        slots[slot] = null;
+        filled--;
+        return previous;
+      }
+      final Property previous = overflow.remove(index - filled);
+      if (overflow.isEmpty()) {
+        overflow = null;
+      }
+      return previous;
+    }
+
+    @Override
+    public void clear() {
+      modCount++;
+      for (int slot = 0; slot < slots.length; slot++) {
+        slots[slot] = null;
+      }
+      filled = 0;
+      overflow = null;
+    }
+
+    @Override
+    public Iterator<Property> iterator() {
+      return new SlotIterator();
+    }
+
+    private void place(final Property property) {
+      modCount++;
+      final int slot = property == null ? -1 : layout.getSlot(property.getName());
+      if (slot >= 0 && slots[slot] == null) {
+        slots[slot] = property;
+        filled++;
+      } else {
+        if (overflow == null) {
+          overflow = new ArrayList<Property>(1);
+        }
+        overflow.add(property);
+      }
+    }
+
+    /**
+     * Maps a list index to a slot; indexes beyond the filled slots are mapped to
+     * <code>slots.length</code> plus their position in the overflow list.
+     */
+    private int slotOf(final int index) {
+      if (index < 0 || index >= size()) {
+        throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+      }
+      if (index >= filled) {
+        return slots.length + index - filled;
+      }
+      if (filled == slots.length) {
+        return index;
+      }
+      int remaining = index;
+      for (int slot = 0; slot < slots.length; slot++) {
+        if (slots[slot] != null && remaining-- == 0) {
+          return slot;
+        }
+      }
+      throw new IllegalStateException();
+    }
+
+    /** Walks the slots directly, so that a sparse entity is iterated in linear time. */
+    private final class SlotIterator implements Iterator<Property> {
+      private int next;
+      private int last = -1;
+      private int expectedModCount = modCount;
+
+      @Override
+      public boolean hasNext() {
+        while (next < slots.length && slots[next] == null) {
+          next++;
+        }
+        return next < slots.length + (overflow == null ? 0 : overflow.size());
+      }
+
+      @Override
+      public Property next() {
+        if (modCount != expectedModCount) {
+          throw new ConcurrentModificationException();
+        }
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        last = next++;
+        return last < slots.length ? slots[last] : overflow.get(last - slots.length);
+      }
+
+      @Override
+      public void remove() {
+        if (last < 0) {
+          throw new IllegalStateException();
+        }
+        if (modCount != expectedModCount) {
+          throw new ConcurrentModificationException();
+        }
+        modCount++;
+        if (last < slots.length) {
+          slots[last] = null;
+          filled--;
+        } else {
+          overflow.remove(last - slots.length);
+          next--;
+          if (overflow.isEmpty()) {
+            overflow = null;
+          }
+        }
+        last = -1;
+        expectedModCount = modCount;
+      }
+    }
+  }
+}
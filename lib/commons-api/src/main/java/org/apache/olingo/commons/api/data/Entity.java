@@ -36,12 +36,28 @@ public class Entity extends Linked {
   private final List<Link> mediaEditLinks = new ArrayList<Link>();
   private final List<Operation> operations = new ArrayList<Operation>();
 
-  private final List<Property> properties = new ArrayList<Property>();
+  private final List<Property> properties;
 
   private URI mediaContentSource;
   private String mediaContentType;
   private String mediaETag;
 
+  /**
+   * Creates a new entity.
+   */
+  public Entity() {
+    this(new ArrayList<Property>());
+  }
+
+  /**
+   * Creates a new entity which keeps its properties in the given list.
+   *
+   * @param properties list returned by {@link #getProperties()}
+   */
+  protected Entity(final List<Property> properties) {
+    this.properties = properties;
+  }
+
   /**
    * Gets ETag.
    *
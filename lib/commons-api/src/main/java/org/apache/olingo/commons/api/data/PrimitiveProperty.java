@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.commons.api.data;
+
+/**
+ * Property which holds a boolean, int, long, or double value without boxing it.
+ * <p/>
+ * {@link #getValue()} still returns the boxed value, created on its first call; serializers
+ * can check {@link #getKind()} and read the value through the typed getters instead.
+ * Setting a value with {@link #setValue(ValueType, Object)} stores it boxed as in
+ * {@link Property}.
+ */
+public class PrimitiveProperty extends Property {
+
+  /**
+   * Kind of the unboxed value.
+   */
+  public enum Kind {
+    BOOLEAN, INT, LONG, DOUBLE
+  }
+
+  private Kind kind;
+  private long bits;
+  private Object boxed;
+
+  /**
+   * Creates a new property with a boolean value.
+   * @param type String representation of type (can be null)
+   * @param name Name of the property
+   * @param value the value
+   */
+  public PrimitiveProperty(final String type, final String name, final boolean value) {
+    super(type, name);
+    setBoolean(value);
+  }
+
+  /**
+   * Creates a new property with an int value.
+   * @param type String representation of type (can be null)
+   * @param name Name of the property
+   * @param value the value
+   */
+  public PrimitiveProperty(final String type, final String name, final int value) {
+    super(type, name);
+    setInt(value);
+  }
+
+  /**
+   * Creates a new property with a long value.
+   * @param type String representation of type (can be null)
+   * @param name Name of the property
+   * @param value the value
+   */
+  public PrimitiveProperty(final String type, final String name, final long value) {
+    super(type, name);
+    setLong(value);
+  }
+
+  /**
+   * Creates a new property with a double value.
+   * @param type String representation of type (can be null)
+   * @param name Name of the property
+   * @param value the value
+   */
+  public PrimitiveProperty(final String type, final String name, final double value) {
+    super(type, name);
+    setDouble(value);
+  }
+
+  /**
+   * Gets the kind of the unboxed value.
+   * @return the kind, or <code>null</code> if the value has been set boxed
+   */
+  public Kind getKind() {
+    return kind;
+  }
+
+  /**
+   * Gets the boolean value.
+   * @return the value
+   * @throws IllegalStateException if the property does not hold a boolean value
+   */
+  public boolean getBoolean() {
+    check(Kind.BOOLEAN);
+    return bits != 0;
+  }
+
+  /**
+   * Gets the int value.
+   * @return the value
+   * @throws IllegalStateException if the property does not hold an int value
+   */
+  public int getInt() {
+    check(Kind.INT);
+    return (int) bits;
+  }
+
+  /**
+   * Gets the long value.
+   * @return the value
+   * @throws IllegalStateException if the property does not hold a long value
+   */
+  public long getLong() {
+    check(Kind.LONG);
+    return bits;
+  }
+
+  /**
+   * Gets the double value.
+   * @return the value
+   * @throws IllegalStateException if the property does not hold a double value
+   */
+  public double getDouble() {
+    check(Kind.DOUBLE);
+    return Double.longBitsToDouble(bits);
+  }
+
+  /**
+   * Sets a boolean value.
+   * @param value the value
+   */
+  public void setBoolean(final boolean value) {
+    set(Kind.BOOLEAN, value ? 1 : 0);
+  }
+
+  /**
+   * Sets an int value.
+   * @param value the value
+   */
+  public void setInt(final int value) {
+    set(Kind.INT, value);
+  }
+
+  /**
+   * Sets a long value.
+   * @param value the value
+   */
+  public void setLong(final long value) {
+    set(Kind.LONG, value);
+  }
+
+  /**
+   * Sets a double value.
+   * @param value the value
+   */
+  public void setDouble(final double value) {
+    set(Kind.DOUBLE, Double.doubleToRawLongBits(value));
+  }
+
+  @Override
+  public Object getValue() {
+    if (kind == null) {
+      return super.getValue();
+    }
+    if (boxed == null) {
+      boxed = box();
+    }
+    return boxed;
+  }
+
+  private Object box() {
+    switch (kind) {
+    case BOOLEAN:
+      return bits != 0;
+    case INT:
+      return (int) bits;
+    case LONG:
+      return bits;
+    default:
+      return Double.longBitsToDouble(bits);
+    }
+  }
+
+  @Override
+  public boolean isNull() {
+    return kind == null && super.isNull();
+  }
+
+  @Override
+  public void setValue(final ValueType valueType, final Object value) {
+    kind = null;
+    super.setValue(valueType, value);
+  }
+
+  private void set(final Kind kind, final long bits) {
+    super.setValue(ValueType.PRIMITIVE, null);
+    this.kind = kind;
+    this.bits = bits;
+    boxed = null;
+  }
+
+  private void check(final Kind expected) {
+    if (kind != expected) {
+      throw new IllegalStateException("The property holds no " + expected + " value.");
+    }
+  }
+}
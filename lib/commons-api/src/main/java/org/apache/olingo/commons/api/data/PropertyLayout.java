@@ -0,0 +1,106 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.commons.api.data;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+import org.apache.olingo.commons.api.edm.EdmStructuredType;
+
+/**
+ * Assigns a fixed slot to each declared property of a structured type.
+ * <p/>
+ * The slots follow the order of the type definition. A layout is immutable and is shared
+ * by all {@link CompactEntity compact entities} of its type.
+ */
+public final class PropertyLayout {
+
+  /** Layouts by type; a layout does not refer to its type, so the entry goes away with the type. */
+  private static final Map<EdmStructuredType, PropertyLayout> LAYOUTS =
+      Collections.synchronizedMap(new WeakHashMap<EdmStructuredType, PropertyLayout>());
+
+  private final String[] names;
+  private final Map<String, Integer> slots;
+
+  /**
+   * Creates a layout with one slot for each of the given property names.
+   * @param names the property names in slot order
+   */
+  public PropertyLayout(final List<String> names) {
+    this.names = names.toArray(new String[names.size()]);
+    Map<String, Integer> slots = new HashMap<String, Integer>();
+    for (int slot = 0; slot < this.names.length; slot++) {
+      if (slots.put(this.names[slot], slot) != null) {
+        throw new IllegalArgumentException("Duplicate property name " + this.names[slot]);
+      }
+    }
+    this.slots = Collections.unmodifiableMap(slots);
+  }
+
+  /**
+   * Returns the (possibly cached) layout of the structural properties of the given type,
+   * including the properties inherited from its base types.
+   * @param type the structured type
+   * @return the layout
+   */
+  public static PropertyLayout of(final EdmStructuredType type) {
+    PropertyLayout layout = LAYOUTS.get(type);
+    if (layout == null) {
+      layout = new PropertyLayout(type.getPropertyNames());
+      LAYOUTS.put(type, layout);
+    }
+    return layout;
+  }
+
+  /**
+   * Gets the number of slots.
+   * @return number of slots
+   */
+  public int size() {
+    return names.length;
+  }
+
+  /**
+   * Gets the slot of the property with the given name.
+   * @param name property name
+   * @return the slot, or <code>-1</code> if the type does not declare the property
+   */
+  public int getSlot(final String name) {
+    final Integer slot = name == null ? null : slots.get(name);
+    return slot == null ? -1 : slot;
+  }
+
+  /**
+   * Gets the name of the property in the given slot.
+   * @param slot the slot
+   * @return property name
+   */
+  public String getName(final int slot) {
+    return names[slot];
+  }
+
+  @Override
+  public String toString() {
+    return Arrays.toString(names);
+  }
+}
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.commons.api.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Iterator;
+
+import org.junit.Test;
+
+public class CompactEntityTest {
+
+  private static final PropertyLayout LAYOUT = new PropertyLayout(Arrays.asList("A", "B", "C"));
+
+  @Test
+  public void propertiesInSlotOrder() {
+    final Property c = property("C");
+    final Property a = property("A");
+    final Entity entity = new CompactEntity(LAYOUT).addProperty(c).addProperty(a);
+
+    assertEquals(2, entity.getProperties().size());
+    assertSame(a, entity.getProperties().get(0));
+    assertSame(c, entity.getProperties().get(1));
+    assertSame(a, entity.getProperty("A"));
+    assertNull(entity.getProperty("B"));
+    assertEquals(Arrays.asList(a, c), entity.getProperties());
+  }
+
+  @Test
+  public void undeclaredAndDuplicateProperties() {
+    final Property a = property("A");
+    final Property dynamic = property("Dynamic");
+    final Property duplicate = property("A");
+    final Entity entity = new CompactEntity(LAYOUT);
+    entity.getProperties().add(dynamic);
+    entity.getProperties().add(a);
+    entity.getProperties().add(duplicate);
+
+    assertEquals(Arrays.asList(a, dynamic, duplicate), entity.getProperties());
+    assertSame(a, entity.getProperty("A"));
+    assertSame(dynamic, entity.getProperty("Dynamic"));
+
+    entity.getProperties().remove(a);
+    assertSame(duplicate, entity.getProperty("A"));
+  }
+
+  @Test
+  public void setAndRemove() {
+    final Property a = property("A");
+    final Property b = property("B");
+    final Property otherB = property("B");
+    final Entity entity = new CompactEntity(LAYOUT).addProperty(a).addProperty(b);
+
+    assertSame(b, entity.getProperties().set(1, otherB));
+    assertSame(otherB, entity.getProperty("B"));
+
+    final Iterator<Property> iterator = entity.getProperties().iterator();
+    iterator.next();
+    iterator.remove();
+    assertEquals(1, entity.getProperties().size());
+    assertNull(entity.getProperty("A"));
+
+    entity.getProperties().clear();
+    assertTrue(entity.getProperties().isEmpty());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void duplicateLayoutName() {
+    new PropertyLayout(Arrays.asList("A", "A"));
+  }
+
+  private Property property(final String name) {
+    return new Property(null, name, ValueType.PRIMITIVE, name);
+  }
+}
@@ -20,9 +20,11 @@ package org.apache.olingo.commons.core.edm;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.olingo.commons.api.edm.Edm;
 import org.apache.olingo.commons.api.edm.EdmAction;
@@ -39,46 +41,88 @@ import org.apache.olingo.commons.api.edm.FullQualifiedName;
 
 public abstract class AbstractEdm implements Edm {
 
-  protected Map<String, EdmSchema> schemas;
-  protected List<EdmSchema> schemaList;
+  protected volatile Map<String, EdmSchema> schemas;
+  protected volatile List<EdmSchema> schemaList;
 
-  private final Map<FullQualifiedName, EdmEntityContainer> entityContainers =
-      Collections.synchronizedMap(new HashMap<FullQualifiedName, EdmEntityContainer>());
+  private final ConcurrentMap<FullQualifiedName, EdmEntityContainer> entityContainers =
+      new ConcurrentHashMap<FullQualifiedName, EdmEntityContainer>();
 
-  private final Map<FullQualifiedName, EdmEnumType> enumTypes =
-      Collections.synchronizedMap(new HashMap<FullQualifiedName, EdmEnumType>());
+  private final ConcurrentMap<FullQualifiedName, EdmEnumType> enumTypes =
+      new ConcurrentHashMap<FullQualifiedName, EdmEnumType>();
 
-  private final Map<FullQualifiedName, EdmTypeDefinition> typeDefinitions =
-      Collections.synchronizedMap(new HashMap<FullQualifiedName, EdmTypeDefinition>());
+  private final ConcurrentMap<FullQualifiedName, EdmTypeDefinition> typeDefinitions =
+      new ConcurrentHashMap<FullQualifiedName, EdmTypeDefinition>();
 
-  private final Map<FullQualifiedName, EdmEntityType> entityTypes =
-      Collections.synchronizedMap(new HashMap<FullQualifiedName, EdmEntityType>());
+  private final ConcurrentMap<FullQualifiedName, EdmEntityType> entityTypes =
+      new ConcurrentHashMap<FullQualifiedName, EdmEntityType>();
 
-  private final Map<FullQualifiedName, EdmComplexType> complexTypes =
-      Collections.synchronizedMap(new HashMap<FullQualifiedName, EdmComplexType>());
+  private final ConcurrentMap<FullQualifiedName, EdmComplexType> complexTypes =
+      new ConcurrentHashMap<FullQualifiedName, EdmComplexType>();
 
-  private final Map<FullQualifiedName, EdmAction> unboundActions =
-      Collections.synchronizedMap(new HashMap<FullQualifiedName, EdmAction>());
+  private final ConcurrentMap<FullQualifiedName, EdmAction> unboundActions =
+      new ConcurrentHashMap<FullQualifiedName, EdmAction>();
 
-  private final Map<FullQualifiedName, List<EdmFunction>> unboundFunctionsByName =
-      Collections.synchronizedMap(new HashMap<FullQualifiedName, List<EdmFunction>>());
+  private final ConcurrentMap<FullQualifiedName, List<EdmFunction>> unboundFunctionsByName =
+      new ConcurrentHashMap<FullQualifiedName, List<EdmFunction>>();
 
-  private final Map<FunctionMapKey, EdmFunction> unboundFunctionsByKey =
-      Collections.synchronizedMap(new HashMap<FunctionMapKey, EdmFunction>());
+  private final ConcurrentMap<FunctionMapKey, EdmFunction> unboundFunctionsByKey =
+      new ConcurrentHashMap<FunctionMapKey, EdmFunction>();
 
-  private final Map<ActionMapKey, EdmAction> boundActions =
-      Collections.synchronizedMap(new HashMap<ActionMapKey, EdmAction>());
+  private final ConcurrentMap<ActionMapKey, EdmAction> boundActions =
+      new ConcurrentHashMap<ActionMapKey, EdmAction>();
 
-  private final Map<FunctionMapKey, EdmFunction> boundFunctions =
-      Collections.synchronizedMap(new HashMap<FunctionMapKey, EdmFunction>());
+  private final ConcurrentMap<FunctionMapKey, EdmFunction> boundFunctions =
+      new ConcurrentHashMap<FunctionMapKey, EdmFunction>();
 
-  private final Map<FullQualifiedName, EdmTerm> terms =
-      Collections.synchronizedMap(new HashMap<FullQualifiedName, EdmTerm>());
+  private final ConcurrentMap<FullQualifiedName, EdmTerm> terms =
+      new ConcurrentHashMap<FullQualifiedName, EdmTerm>();
 
-  private final Map<TargetQualifierMapKey, EdmAnnotations> annotationGroups =
-      Collections.synchronizedMap(new HashMap<TargetQualifierMapKey, EdmAnnotations>());
+  private final ConcurrentMap<TargetQualifierMapKey, EdmAnnotations> annotationGroups =
+      new ConcurrentHashMap<TargetQualifierMapKey, EdmAnnotations>();
 
-  private Map<String, String> aliasToNamespaceInfo = null;
+  /** The default entity container is kept separately because concurrent maps do not support null keys. */
+  private volatile EdmEntityContainer defaultEntityContainer;
+
+  private volatile Map<String, String> aliasToNamespaceInfo = null;
+
+  private volatile boolean frozen = false;
+
+  /**
+   * <p>Reads all elements of the entity data model and freezes it.</p>
+   * <p>Afterwards, elements are only looked up in the already read elements,
+   * without asking for further ones; elements not found are treated as not existing.
+   * So all elements have to be delivered together with the schemas.</p>
+   * <p>The lookups do not need any locks, neither before nor after freezing;
+   * freezing avoids reading elements during request processing.</p>
+   */
+  public void freeze() {
+    for (final EdmSchema schema : getSchemas()) {
+      for (final EdmEntityType entityType : schema.getEntityTypes()) {
+        entityType.getBaseType();
+        entityType.getKeyPropertyRefs();
+        entityType.getPropertyNames();
+        entityType.getNavigationPropertyNames();
+      }
+      for (final EdmComplexType complexType : schema.getComplexTypes()) {
+        complexType.getBaseType();
+        complexType.getPropertyNames();
+        complexType.getNavigationPropertyNames();
+      }
+      if (schema.getEntityContainer() instanceof EdmEntityContainerImpl) {
+        ((EdmEntityContainerImpl) schema.getEntityContainer()).freeze();
+      }
+    }
+    getEntityContainer();
+    frozen = true;
+  }
+
+  /**
+   * Whether this entity data model has been frozen.
+   * @see #freeze()
+   */
+  public boolean isFrozen() {
+    return frozen;
+  }
 
   @Override
   public List<EdmSchema> getSchemas() {
@@ -95,7 +139,7 @@ public abstract class AbstractEdm implements Edm {
     }
 
     EdmSchema schema = schemas.get(namespace);
-    if (schema == null) {
+    if (schema == null && namespace != null) {
       schema = schemas.get(aliasToNamespaceInfo.get(namespace));
     }
     return schema;
@@ -104,14 +148,19 @@ public abstract class AbstractEdm implements Edm {
   private void initSchemas() {
     loadAliasToNamespaceInfo();
     Map<String, EdmSchema> localSchemas = createSchemas();
-    schemas = Collections.synchronizedMap(localSchemas);
+    schemas = Collections.unmodifiableMap(localSchemas);
 
     schemaList = Collections.unmodifiableList(new ArrayList<EdmSchema>(schemas.values()));
   }
 
   private void loadAliasToNamespaceInfo() {
-    Map<String, String> localAliasToNamespaceInfo = createAliasToNamespaceInfo();
-    aliasToNamespaceInfo = Collections.synchronizedMap(localAliasToNamespaceInfo);
+    Map<String, String> localAliasToNamespaceInfo = new ConcurrentHashMap<String, String>();
+    for (final Map.Entry<String, String> entry : createAliasToNamespaceInfo().entrySet()) {
+      if (entry.getKey() != null && entry.getValue() != null) {
+        localAliasToNamespaceInfo.put(entry.getKey(), entry.getValue());
+      }
+    }
+    aliasToNamespaceInfo = localAliasToNamespaceInfo;
   }
 
   @Override
@@ -122,13 +171,16 @@ public abstract class AbstractEdm implements Edm {
   @Override
   public EdmEntityContainer getEntityContainer(final FullQualifiedName namespaceOrAliasFQN) {
     final FullQualifiedName fqn = resolvePossibleAlias(namespaceOrAliasFQN);
-    EdmEntityContainer container = entityContainers.get(fqn);
-    if (container == null) {
+    EdmEntityContainer container = fqn == null ? defaultEntityContainer : entityContainers.get(fqn);
+    if (container == null && !frozen) {
       container = createEntityContainer(fqn);
       if (container != null) {
-        entityContainers.put(fqn, container);
         if (fqn == null) {
-          entityContainers.put(new FullQualifiedName(container.getNamespace(), container.getName()), container);
+          defaultEntityContainer = container;
+          entityContainers.putIfAbsent(new FullQualifiedName(container.getNamespace(), container.getName()),
+              container);
+        } else {
+          container = cache(entityContainers, fqn, container);
         }
       }
     }
@@ -138,11 +190,11 @@ public abstract class AbstractEdm implements Edm {
   @Override
   public EdmEnumType getEnumType(final FullQualifiedName namespaceOrAliasFQN) {
     final FullQualifiedName fqn = resolvePossibleAlias(namespaceOrAliasFQN);
-    EdmEnumType enumType = enumTypes.get(fqn);
-    if (enumType == null) {
+    EdmEnumType enumType = fqn == null ? null : enumTypes.get(fqn);
+    if (enumType == null && !frozen) {
       enumType = createEnumType(fqn);
-      if (enumType != null) {
-        enumTypes.put(fqn, enumType);
+      if (enumType != null && fqn != null) {
+        enumType = cache(enumTypes, fqn, enumType);
       }
     }
     return enumType;
@@ -151,11 +203,11 @@ public abstract class AbstractEdm implements Edm {
   @Override
   public EdmTypeDefinition getTypeDefinition(final FullQualifiedName namespaceOrAliasFQN) {
     final FullQualifiedName fqn = resolvePossibleAlias(namespaceOrAliasFQN);
-    EdmTypeDefinition typeDefinition = typeDefinitions.get(fqn);
-    if (typeDefinition == null) {
+    EdmTypeDefinition typeDefinition = fqn == null ? null : typeDefinitions.get(fqn);
+    if (typeDefinition == null && !frozen) {
       typeDefinition = createTypeDefinition(fqn);
-      if (typeDefinition != null) {
-        typeDefinitions.put(fqn, typeDefinition);
+      if (typeDefinition != null && fqn != null) {
+        typeDefinition = cache(typeDefinitions, fqn, typeDefinition);
       }
     }
     return typeDefinition;
@@ -164,11 +216,11 @@ public abstract class AbstractEdm implements Edm {
   @Override
   public EdmEntityType getEntityType(final FullQualifiedName namespaceOrAliasFQN) {
     final FullQualifiedName fqn = resolvePossibleAlias(namespaceOrAliasFQN);
-    EdmEntityType entityType = entityTypes.get(fqn);
-    if (entityType == null) {
+    EdmEntityType entityType = fqn == null ? null : entityTypes.get(fqn);
+    if (entityType == null && !frozen) {
       entityType = createEntityType(fqn);
-      if (entityType != null) {
-        entityTypes.put(fqn, entityType);
+      if (entityType != null && fqn != null) {
+        entityType = cache(entityTypes, fqn, entityType);
       }
     }
     return entityType;
@@ -177,11 +229,11 @@ public abstract class AbstractEdm implements Edm {
   @Override
   public EdmComplexType getComplexType(final FullQualifiedName namespaceOrAliasFQN) {
     final FullQualifiedName fqn = resolvePossibleAlias(namespaceOrAliasFQN);
-    EdmComplexType complexType = complexTypes.get(fqn);
-    if (complexType == null) {
+    EdmComplexType complexType = fqn == null ? null : complexTypes.get(fqn);
+    if (complexType == null && !frozen) {
       complexType = createComplexType(fqn);
-      if (complexType != null) {
-        complexTypes.put(fqn, complexType);
+      if (complexType != null && fqn != null) {
+        complexType = cache(complexTypes, fqn, complexType);
       }
     }
     return complexType;
@@ -190,11 +242,11 @@ public abstract class AbstractEdm implements Edm {
   @Override
   public EdmAction getUnboundAction(final FullQualifiedName actionName) {
     final FullQualifiedName fqn = resolvePossibleAlias(actionName);
-    EdmAction action = unboundActions.get(fqn);
-    if (action == null) {
+    EdmAction action = fqn == null ? null : unboundActions.get(fqn);
+    if (action == null && !frozen) {
       action = createUnboundAction(fqn);
-      if (action != null) {
-        unboundActions.put(actionName, action);
+      if (action != null && fqn != null) {
+        action = cache(unboundActions, fqn, action);
       }
     }
 
@@ -209,10 +261,10 @@ public abstract class AbstractEdm implements Edm {
     final FullQualifiedName bindingParameterTypeFqn = resolvePossibleAlias(bindingParameterTypeName);
     final ActionMapKey key = new ActionMapKey(actionFqn, bindingParameterTypeFqn, isBindingParameterCollection);
     EdmAction action = boundActions.get(key);
-    if (action == null) {
+    if (action == null && !frozen) {
       action = createBoundAction(actionFqn, bindingParameterTypeFqn, isBindingParameterCollection);
       if (action != null) {
-        boundActions.put(key, action);
+        action = cache(boundActions, key, action);
       }
     }
 
@@ -223,11 +275,14 @@ public abstract class AbstractEdm implements Edm {
   public List<EdmFunction> getUnboundFunctions(final FullQualifiedName functionName) {
     final FullQualifiedName functionFqn = resolvePossibleAlias(functionName);
 
-    List<EdmFunction> functions = unboundFunctionsByName.get(functionFqn);
+    List<EdmFunction> functions = functionFqn == null ? null : unboundFunctionsByName.get(functionFqn);
     if (functions == null) {
+      if (frozen) {
+        return Collections.emptyList();
+      }
       functions = createUnboundFunctions(functionFqn);
-      if (functions != null) {
-        unboundFunctionsByName.put(functionFqn, functions);
+      if (functions != null && functionFqn != null) {
+        functions = cache(unboundFunctionsByName, functionFqn, new CopyOnWriteArrayList<EdmFunction>(functions));
 
         for (EdmFunction unbound : functions) {
           final FunctionMapKey key = new FunctionMapKey(
@@ -235,7 +290,7 @@ public abstract class AbstractEdm implements Edm {
               unbound.getBindingParameterTypeFqn(),
               unbound.isBindingParameterTypeCollection(),
               unbound.getParameterNames());
-          unboundFunctionsByKey.put(key, unbound);
+          unboundFunctionsByKey.putIfAbsent(key, unbound);
         }
       }
     }
@@ -248,11 +303,11 @@ public abstract class AbstractEdm implements Edm {
     final FullQualifiedName functionFqn = resolvePossibleAlias(functionName);
 
     final FunctionMapKey key = new FunctionMapKey(functionFqn, null, null, parameterNames);
-    EdmFunction function = unboundFunctionsByKey.get(key);
-    if (function == null) {
+    EdmFunction function = functionFqn == null ? null : unboundFunctionsByKey.get(key);
+    if (function == null && !frozen) {
       function = createUnboundFunction(functionFqn, parameterNames);
-      if (function != null) {
-        unboundFunctionsByKey.put(key, function);
+      if (function != null && functionFqn != null) {
+        function = cache(unboundFunctionsByKey, key, function);
       }
     }
 
@@ -268,12 +323,12 @@ public abstract class AbstractEdm implements Edm {
     final FullQualifiedName bindingParameterTypeFqn = resolvePossibleAlias(bindingParameterTypeName);
     final FunctionMapKey key =
         new FunctionMapKey(functionFqn, bindingParameterTypeFqn, isBindingParameterCollection, parameterNames);
-    EdmFunction function = boundFunctions.get(key);
-    if (function == null) {
+    EdmFunction function = functionFqn == null ? null : boundFunctions.get(key);
+    if (function == null && !frozen) {
       function = createBoundFunction(functionFqn, bindingParameterTypeFqn, isBindingParameterCollection,
           parameterNames);
-      if (function != null) {
-        boundFunctions.put(key, function);
+      if (function != null && functionFqn != null) {
+        function = cache(boundFunctions, key, function);
       }
     }
 
@@ -283,11 +338,11 @@ public abstract class AbstractEdm implements Edm {
   @Override
   public EdmTerm getTerm(final FullQualifiedName termName) {
     final FullQualifiedName fqn = resolvePossibleAlias(termName);
-    EdmTerm term = terms.get(fqn);
-    if (term == null) {
+    EdmTerm term = fqn == null ? null : terms.get(fqn);
+    if (term == null && !frozen) {
       term = createTerm(fqn);
-      if (term != null) {
-        terms.put(fqn, term);
+      if (term != null && fqn != null) {
+        term = cache(terms, fqn, term);
       }
     }
     return term;
@@ -298,22 +353,33 @@ public abstract class AbstractEdm implements Edm {
     final FullQualifiedName fqn = resolvePossibleAlias(targetName);
     TargetQualifierMapKey key = new TargetQualifierMapKey(fqn, qualifier);
     EdmAnnotations _annotations = annotationGroups.get(key);
-    if (_annotations == null) {
+    if (_annotations == null && !frozen) {
       _annotations = createAnnotationGroup(fqn, qualifier);
       if (_annotations != null) {
-        annotationGroups.put(key, _annotations);
+        _annotations = cache(annotationGroups, key, _annotations);
       }
     }
     return _annotations;
   }
 
+  /**
+   * Puts a newly created element into the cache unless another thread has been faster;
+   * so all threads use the same instance.
+   * @return the cached element
+   */
+  private static <K, V> V cache(final ConcurrentMap<K, V> cache, final K key, final V value) {
+    final V previous = cache.putIfAbsent(key, value);
+    return previous == null ? value : previous;
+  }
+
   private FullQualifiedName resolvePossibleAlias(final FullQualifiedName namespaceOrAliasFQN) {
     if (aliasToNamespaceInfo == null) {
       loadAliasToNamespaceInfo();
     }
     FullQualifiedName finalFQN = null;
     if (namespaceOrAliasFQN != null) {
-      final String namespace = aliasToNamespaceInfo.get(namespaceOrAliasFQN.getNamespace());
+      final String namespace = namespaceOrAliasFQN.getNamespace() == null ? null :
+          aliasToNamespaceInfo.get(namespaceOrAliasFQN.getNamespace());
       // If not contained in info it must be a namespace
       if (namespace == null) {
         finalFQN = namespaceOrAliasFQN;
@@ -335,7 +401,11 @@ public abstract class AbstractEdm implements Edm {
   protected abstract EdmEntityContainer createEntityContainer(FullQualifiedName containerName);
 
   public void cacheEntityContainer(final FullQualifiedName containerFQN, final EdmEntityContainer container) {
-    entityContainers.put(containerFQN, container);
+    if (containerFQN == null) {
+      defaultEntityContainer = container;
+    } else {
+      entityContainers.put(containerFQN, container);
+    }
   }
 
   protected abstract EdmEnumType createEnumType(FullQualifiedName enumName);
@@ -377,17 +447,19 @@ public abstract class AbstractEdm implements Edm {
       List<String> parameterNames);
 
   public void cacheFunction(final FullQualifiedName functionName, final EdmFunction function) {
+    // Bound functions are looked up by their non-binding parameters only.
+    final List<String> parameterNames = function.getParameterNames();
     final FunctionMapKey key = new FunctionMapKey(functionName,
         function.getBindingParameterTypeFqn(), function.isBindingParameterTypeCollection(),
-        function.getParameterNames());
+        function.isBound() && !parameterNames.isEmpty() ?
+            parameterNames.subList(1, parameterNames.size()) : parameterNames);
 
     if (function.isBound()) {
       boundFunctions.put(key, function);
     } else {
-      if (!unboundFunctionsByName.containsKey(functionName)) {
-        unboundFunctionsByName.put(functionName, new ArrayList<EdmFunction>());
-      }
-      unboundFunctionsByName.get(functionName).add(function);
+      final List<EdmFunction> functions =
+          cache(unboundFunctionsByName, functionName, new CopyOnWriteArrayList<EdmFunction>());
+      functions.add(function);
 
       unboundFunctionsByKey.put(key, function);
     }
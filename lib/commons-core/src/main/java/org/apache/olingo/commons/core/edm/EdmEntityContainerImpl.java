@@ -20,9 +20,9 @@ package org.apache.olingo.commons.core.edm;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.olingo.commons.api.ex.ODataException;
 import org.apache.olingo.commons.api.edm.Edm;
@@ -46,21 +46,23 @@ public class EdmEntityContainerImpl extends AbstractEdmNamed implements EdmEntit
   private final CsdlEdmProvider provider;
   private CsdlEntityContainer container;
 
+  private volatile boolean frozen = false;
+
   private final FullQualifiedName entityContainerName;
   private final FullQualifiedName parentContainerName;
 
   private List<EdmSingleton> singletons;
-  private final Map<String, EdmSingleton> singletonCache = Collections.synchronizedMap(
-      new LinkedHashMap<String, EdmSingleton>());
+  private final ConcurrentMap<String, EdmSingleton> singletonCache =
+      new ConcurrentHashMap<String, EdmSingleton>();
   private List<EdmEntitySet> entitySets;
-  private final Map<String, EdmEntitySet> entitySetCache = Collections.synchronizedMap(
-      new LinkedHashMap<String, EdmEntitySet>());
+  private final ConcurrentMap<String, EdmEntitySet> entitySetCache =
+      new ConcurrentHashMap<String, EdmEntitySet>();
   private List<EdmActionImport> actionImports;
-  private final Map<String, EdmActionImport> actionImportCache = Collections.synchronizedMap(
-      new LinkedHashMap<String, EdmActionImport>());
+  private final ConcurrentMap<String, EdmActionImport> actionImportCache =
+      new ConcurrentHashMap<String, EdmActionImport>();
   private List<EdmFunctionImport> functionImports;
-  private final Map<String, EdmFunctionImport> functionImportCache = Collections.synchronizedMap(
-      new LinkedHashMap<String, EdmFunctionImport>());
+  private final ConcurrentMap<String, EdmFunctionImport> functionImportCache =
+      new ConcurrentHashMap<String, EdmFunctionImport>();
 
   public EdmEntityContainerImpl(final Edm edm, final CsdlEdmProvider provider,
       final CsdlEntityContainerInfo entityContainerInfo) {
@@ -79,6 +81,18 @@ public class EdmEntityContainerImpl extends AbstractEdmNamed implements EdmEntit
     parentContainerName = entityContainer.getExtendsContainerFQN();
   }
 
+  /**
+   * Reads all elements of the entity container; afterwards, elements are only looked up in them.
+   * @see AbstractEdm#freeze()
+   */
+  public void freeze() {
+    getEntitySets();
+    getSingletons();
+    getActionImports();
+    getFunctionImports();
+    frozen = true;
+  }
+
   @Override
   public String getNamespace() {
     return entityContainerName.getNamespace();
@@ -91,11 +105,12 @@ public class EdmEntityContainerImpl extends AbstractEdmNamed implements EdmEntit
 
   @Override
   public EdmSingleton getSingleton(final String singletonName) {
-    EdmSingleton singleton = singletonCache.get(singletonName);
-    if (singleton == null) {
+    EdmSingleton singleton = singletonName == null ? null : singletonCache.get(singletonName);
+    if (singleton == null && !frozen) {
       singleton = createSingleton(singletonName);
-      if (singleton != null) {
-        singletonCache.put(singletonName, singleton);
+      if (singleton != null && singletonName != null) {
+        final EdmSingleton previous = singletonCache.putIfAbsent(singletonName, singleton);
+        singleton = previous == null ? singleton : previous;
       }
     }
     return singleton;
@@ -103,11 +118,12 @@ public class EdmEntityContainerImpl extends AbstractEdmNamed implements EdmEntit
 
   @Override
   public EdmEntitySet getEntitySet(final String entitySetName) {
-    EdmEntitySet entitySet = entitySetCache.get(entitySetName);
-    if (entitySet == null) {
+    EdmEntitySet entitySet = entitySetName == null ? null : entitySetCache.get(entitySetName);
+    if (entitySet == null && !frozen) {
       entitySet = createEntitySet(entitySetName);
-      if (entitySet != null) {
-        entitySetCache.put(entitySetName, entitySet);
+      if (entitySet != null && entitySetName != null) {
+        final EdmEntitySet previous = entitySetCache.putIfAbsent(entitySetName, entitySet);
+        entitySet = previous == null ? entitySet : previous;
       }
     }
     return entitySet;
@@ -115,11 +131,12 @@ public class EdmEntityContainerImpl extends AbstractEdmNamed implements EdmEntit
 
   @Override
   public EdmActionImport getActionImport(final String actionImportName) {
-    EdmActionImport actionImport = actionImportCache.get(actionImportName);
-    if (actionImport == null) {
+    EdmActionImport actionImport = actionImportName == null ? null : actionImportCache.get(actionImportName);
+    if (actionImport == null && !frozen) {
       actionImport = createActionImport(actionImportName);
-      if (actionImport != null) {
-        actionImportCache.put(actionImportName, actionImport);
+      if (actionImport != null && actionImportName != null) {
+        final EdmActionImport previous = actionImportCache.putIfAbsent(actionImportName, actionImport);
+        actionImport = previous == null ? actionImport : previous;
       }
     }
     return actionImport;
@@ -127,11 +144,12 @@ public class EdmEntityContainerImpl extends AbstractEdmNamed implements EdmEntit
 
   @Override
   public EdmFunctionImport getFunctionImport(final String functionImportName) {
-    EdmFunctionImport functionImport = functionImportCache.get(functionImportName);
-    if (functionImport == null) {
+    EdmFunctionImport functionImport = functionImportName == null ? null : functionImportCache.get(functionImportName);
+    if (functionImport == null && !frozen) {
       functionImport = createFunctionImport(functionImportName);
-      if (functionImport != null) {
-        functionImportCache.put(functionImportName, functionImport);
+      if (functionImport != null && functionImportName != null) {
+        final EdmFunctionImport previous = functionImportCache.putIfAbsent(functionImportName, functionImport);
+        functionImport = previous == null ? functionImport : previous;
       }
     }
     return functionImport;
@@ -20,9 +20,10 @@ package org.apache.olingo.commons.core.edm;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.apache.olingo.commons.api.edm.Edm;
 import org.apache.olingo.commons.api.edm.EdmEntityType;
@@ -40,9 +41,8 @@ public class EdmEntityTypeImpl extends AbstractEdmStructuredType implements EdmE
   private boolean baseTypeChecked = false;
   private final boolean hasStream;
   protected EdmEntityType entityBaseType;
-  private final List<String> keyPredicateNames = Collections.synchronizedList(new ArrayList<String>());
-  private final Map<String, EdmKeyPropertyRef> keyPropertyRefs =
-      Collections.synchronizedMap(new LinkedHashMap<String, EdmKeyPropertyRef>());
+  private final List<String> keyPredicateNames = new CopyOnWriteArrayList<String>();
+  private final Map<String, EdmKeyPropertyRef> keyPropertyRefs = new ConcurrentHashMap<String, EdmKeyPropertyRef>();
   private List<EdmKeyPropertyRef> keyPropertyRefsList;
 
   public EdmEntityTypeImpl(final Edm edm, final FullQualifiedName name, final CsdlEntityType entityType) {
@@ -116,7 +116,11 @@ public class EdmEntityTypeImpl extends AbstractEdmStructuredType implements EdmE
   public List<EdmKeyPropertyRef> getKeyPropertyRefs() {
     checkBaseType();
     if (keyPropertyRefsList == null) {
-      keyPropertyRefsList = new ArrayList<EdmKeyPropertyRef>(keyPropertyRefs.values());
+      final List<EdmKeyPropertyRef> refs = new ArrayList<EdmKeyPropertyRef>(keyPredicateNames.size());
+      for (String keyPredicateName : keyPredicateNames) {
+        refs.add(keyPropertyRefs.get(keyPredicateName));
+      }
+      keyPropertyRefsList = refs;
     }
     if (keyPropertyRefsList.isEmpty() && entityBaseType != null) {
       return entityBaseType.getKeyPropertyRefs();
@@ -23,8 +23,6 @@ import java.sql.Timestamp;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.TimeZone;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.apache.olingo.commons.api.edm.EdmPrimitiveTypeException;
 
@@ -33,10 +31,10 @@ import org.apache.olingo.commons.api.edm.EdmPrimitiveTypeException;
  */
 public final class EdmDateTimeOffset extends SingletonPrimitiveType {
 
-  private static final Pattern PATTERN = Pattern.compile(
-      "(-?\\p{Digit}{4,})-(\\p{Digit}{2})-(\\p{Digit}{2})"
-          + "T(\\p{Digit}{2}):(\\p{Digit}{2})(?::(\\p{Digit}{2})(\\.(\\p{Digit}{0,12}?)0*)?)?"
-          + "(Z|([-+]\\p{Digit}{2}:\\p{Digit}{2}))?");
+  /** Years from here on are the same in the Gregorian calendar and in {@link java.util.GregorianCalendar}. */
+  private static final int FIRST_GREGORIAN_YEAR = 1583;
+
+  private static final long MILLIS_PER_DAY = 24 * 60 * 60 * 1000;
 
   private static final EdmDateTimeOffset INSTANCE = new EdmDateTimeOffset();
 
@@ -54,47 +52,79 @@ public final class EdmDateTimeOffset extends SingletonPrimitiveType {
       final Boolean isNullable, final Integer maxLength, final Integer precision,
       final Integer scale, final Boolean isUnicode, final Class<T> returnType) throws EdmPrimitiveTypeException {
 
-    final Matcher matcher = PATTERN.matcher(value);
-    if (!matcher.matches()) {
+    // The literal is scanned by hand instead of with a regular expression; the grammar is
+    // (-?\d{4,})-(\d{2})-(\d{2})T(\d{2}):(\d{2})(:(\d{2})(\.\d+)?)?(Z|[-+]\d{2}:\d{2})?
+    final int length = value.length();
+    final int yearStart = length > 0 && value.charAt(0) == '-' ? 1 : 0;
+    final int yearEnd = skipDigits(value, yearStart);
+    if (yearEnd - yearStart < 4 || yearEnd + 12 > length
+        || value.charAt(yearEnd) != '-' || value.charAt(yearEnd + 3) != '-'
+        || value.charAt(yearEnd + 6) != 'T' || value.charAt(yearEnd + 9) != ':') {
       throw new EdmPrimitiveTypeException("The literal '" + value + "' has illegal content.");
     }
-
-    final String timeZoneOffset = matcher.group(9) == null || matcher.group(10) == null
-        || matcher.group(10).matches("[-+]0+:0+") ? "" : matcher.group(10);
-    final Calendar dateTimeValue = Calendar.getInstance(TimeZone.getTimeZone("GMT" + timeZoneOffset));
-    if (dateTimeValue.get(Calendar.ZONE_OFFSET) == 0 && !timeZoneOffset.isEmpty()) {
+    final int month = parseTwoDigits(value, yearEnd + 1);
+    final int day = parseTwoDigits(value, yearEnd + 4);
+    final int hour = parseTwoDigits(value, yearEnd + 7);
+    final int minute = parseTwoDigits(value, yearEnd + 10);
+    int second = 0;
+    int fractionStart = -1;
+    int fractionEnd = -1;
+    int index = yearEnd + 12;
+    if (index < length && value.charAt(index) == ':') {
+      second = parseTwoDigits(value, index + 1);
+      index += 3;
+      if (second >= 0 && index < length && value.charAt(index) == '.') {
+        fractionStart = index + 1;
+        fractionEnd = skipDigits(value, fractionStart);
+        index = fractionEnd;
+      }
+    }
+    int offsetStart = -1;
+    int offsetInMinutes = 0;
+    if (index < length && value.charAt(index) == 'Z') {
+      index++;
+    } else if (index < length && (value.charAt(index) == '+' || value.charAt(index) == '-')) {
+      final int offsetHours = parseTwoDigits(value, index + 1);
+      final int offsetMinutes = index + 6 <= length && value.charAt(index + 3) == ':' ?
+          parseTwoDigits(value, index + 4) : -1;
+      if (offsetHours < 0 || offsetMinutes < 0) {
+        throw new EdmPrimitiveTypeException("The literal '" + value + "' has illegal content.");
+      }
+      // The offset must be a valid custom time-zone ID of the form "GMT+hh:mm".
+      if (offsetHours > 23 || offsetMinutes > 59) {
+        throw new EdmPrimitiveTypeException("The literal '" + value + "' has illegal content.");
+      }
+      offsetInMinutes = (value.charAt(index) == '-' ? -1 : 1) * (offsetHours * 60 + offsetMinutes);
+      offsetStart = offsetInMinutes == 0 ? -1 : index;
+      index += 6;
+    }
+    if (month < 0 || day < 0 || hour < 0 || minute < 0 || second < 0 || index != length
+        || fractionStart >= 0 && stripTrailingZeros(value, fractionStart, fractionEnd) - fractionStart > 12) {
       throw new EdmPrimitiveTypeException("The literal '" + value + "' has illegal content.");
     }
-    dateTimeValue.clear();
-
-    dateTimeValue.set(
-        Short.parseShort(matcher.group(1)),
-        Byte.parseByte(matcher.group(2)) - 1, // month is zero-based
-        Byte.parseByte(matcher.group(3)),
-        Byte.parseByte(matcher.group(4)),
-        Byte.parseByte(matcher.group(5)),
-        matcher.group(6) == null ? 0 : Byte.parseByte(matcher.group(6)));
+    final int year = yearStart == 0 && yearEnd == 4 ? parseYear(value) : Short.parseShort(value.substring(0, yearEnd));
 
     int nanoSeconds = 0;
-    if (matcher.group(7) != null) {
-      if (matcher.group(7).length() == 1 || matcher.group(7).length() > 13) {
+    int milliSeconds = 0;
+    if (fractionStart >= 0) {
+      if (fractionEnd == fractionStart || fractionEnd - fractionStart > 12) {
         throw new EdmPrimitiveTypeException("The literal '" + value + "' has illegal content.");
       }
-      final String decimals = matcher.group(8);
-      if (decimals.length() > (precision == null ? 0 : precision)) {
+      final int decimalsEnd = stripTrailingZeros(value, fractionStart, fractionEnd);
+      final int decimals = decimalsEnd - fractionStart;
+      if (decimals > (precision == null ? 0 : precision)) {
         throw new EdmPrimitiveTypeException("The literal '" + value + "' does not match the facets' constraints.");
       }
       if (returnType.isAssignableFrom(Timestamp.class)) {
-        if (decimals.length() <= 9) {
-          nanoSeconds = Integer.parseInt(decimals + "000000000".substring(decimals.length()));
+        if (decimals <= 9) {
+          nanoSeconds = parseFraction(value, fractionStart, decimalsEnd, 9);
         } else {
           throw new EdmPrimitiveTypeException("The literal '" + value
               + "' cannot be converted to value type " + returnType + ".");
         }
       } else {
-        if (decimals.length() <= 3) {
-          final String milliSeconds = decimals + "000".substring(decimals.length());
-          dateTimeValue.set(Calendar.MILLISECOND, Short.parseShort(milliSeconds));
+        if (decimals <= 3) {
+          milliSeconds = parseFraction(value, fractionStart, decimalsEnd, 3);
         } else {
           throw new EdmPrimitiveTypeException("The literal '" + value
               + "' cannot be converted to value type " + returnType + ".");
@@ -102,6 +132,38 @@ public final class EdmDateTimeOffset extends SingletonPrimitiveType {
       }
     }
 
+    // Four-digit years after the introduction of the Gregorian calendar are converted
+    // arithmetically if no Calendar is needed; everything else takes the Calendar route.
+    if (year >= FIRST_GREGORIAN_YEAR && !returnType.isAssignableFrom(Calendar.class)
+        && (returnType.isAssignableFrom(Long.class) || returnType.isAssignableFrom(Date.class)
+        || returnType.isAssignableFrom(Timestamp.class))) {
+      if (month < 1 || month > 12 || day < 1 || day > daysInMonth(year, month)
+          || hour > 23 || minute > 59 || second > 59) {
+        throw new EdmPrimitiveTypeException("The literal '" + value + "' has illegal content.");
+      }
+      final long millis = ((daysFromCivil(year, month, day) * 24 + hour) * 60 + minute - offsetInMinutes)
+          * 60000L + second * 1000L;
+      if (returnType.isAssignableFrom(Long.class)) {
+        return returnType.cast(millis + milliSeconds);
+      } else if (returnType.isAssignableFrom(Date.class)) {
+        return returnType.cast(new Date(millis + milliSeconds));
+      } else {
+        Timestamp timestamp = new Timestamp(millis);
+        timestamp.setNanos(nanoSeconds);
+        return returnType.cast(timestamp);
+      }
+    }
+
+    final Calendar dateTimeValue = Calendar.getInstance(TimeZone.getTimeZone(
+        offsetStart < 0 ? "GMT" : "GMT" + value.substring(offsetStart, offsetStart + 6)));
+    dateTimeValue.clear();
+    dateTimeValue.set(year,
+        month - 1, // month is zero-based
+        day, hour, minute, second);
+    if (milliSeconds > 0) {
+      dateTimeValue.set(Calendar.MILLISECOND, milliSeconds);
+    }
+
     try {
       return convertDateTime(dateTimeValue, nanoSeconds, returnType);
     } catch (final IllegalArgumentException e) {
@@ -170,6 +232,13 @@ public final class EdmDateTimeOffset extends SingletonPrimitiveType {
       final Boolean isNullable, final Integer maxLength, final Integer precision,
       final Integer scale, final Boolean isUnicode) throws EdmPrimitiveTypeException {
 
+    if (value instanceof Date || value instanceof Long) {
+      final String result = formatUtc(value, precision);
+      if (result != null) {
+        return result;
+      }
+    }
+
     final Calendar dateTimeValue = createDateTime(value, false);
 
     StringBuilder result = new StringBuilder();
@@ -206,6 +275,148 @@ public final class EdmDateTimeOffset extends SingletonPrimitiveType {
     return result.toString();
   }
 
+  /**
+   * Formats a {@link Date} or {@link Long} value in UTC without the help of a {@link Calendar}.
+   * @return the formatted value, or <code>null</code> if the year is outside the range
+   *         which is converted arithmetically
+   */
+  private static String formatUtc(final Object value, final Integer precision) throws EdmPrimitiveTypeException {
+    final long millis = value instanceof Long ? (Long) value : ((Date) value).getTime();
+    long days = millis / MILLIS_PER_DAY;
+    int millisOfDay = (int) (millis % MILLIS_PER_DAY);
+    if (millisOfDay < 0) {
+      days--;
+      millisOfDay += MILLIS_PER_DAY;
+    }
+
+    // civil date from day number, see daysFromCivil
+    final long shifted = days + 719468;
+    final long era = (shifted >= 0 ? shifted : shifted - 146096) / 146097;
+    final int dayOfEra = (int) (shifted - era * 146097);
+    final int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+    final int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+    final int shiftedMonth = (5 * dayOfYear + 2) / 153;
+    final int day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+    final int month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+    final long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+    if (year < FIRST_GREGORIAN_YEAR || year > 9999) {
+      return null;
+    }
+
+    StringBuilder result = new StringBuilder(30);
+    appendTwoDigits(result, (int) year / 100);
+    appendTwoDigits(result, (int) year % 100);
+    result.append('-');
+    appendTwoDigits(result, month);
+    result.append('-');
+    appendTwoDigits(result, day);
+    result.append('T');
+    appendTwoDigits(result, millisOfDay / 3600000);
+    result.append(':');
+    appendTwoDigits(result, millisOfDay / 60000 % 60);
+    result.append(':');
+    appendTwoDigits(result, millisOfDay / 1000 % 60);
+
+    final int fractionalSecs = value instanceof Timestamp ?
+        ((Timestamp) value).getNanos() :
+        millisOfDay % 1000;
+    try {
+      appendFractionalSeconds(result, fractionalSecs, value instanceof Timestamp, precision);
+    } catch (final IllegalArgumentException e) {
+      throw new EdmPrimitiveTypeException("The value '" + value + "' does not match the facets' constraints.", e);
+    }
+    result.append('Z');
+    return result.toString();
+  }
+
+  /**
+   * Computes the number of days since 1970-01-01 in the proleptic Gregorian calendar.
+   * @param year the year
+   * @param month the month, starting with 1
+   * @param day the day of month
+   * @return the day number
+   */
+  private static long daysFromCivil(final int year, final int month, final int day) {
+    // The year is shifted to start in March so that the leap day is the last day of the year.
+    final int shiftedYear = month <= 2 ? year - 1 : year;
+    final int era = (shiftedYear >= 0 ? shiftedYear : shiftedYear - 399) / 400;
+    final int yearOfEra = shiftedYear - era * 400;
+    final int dayOfYear = (153 * (month > 2 ? month - 3 : month + 9) + 2) / 5 + day - 1;
+    final int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+    return era * 146097L + dayOfEra - 719468;
+  }
+
+  private static int daysInMonth(final int year, final int month) {
+    return month == 2 ?
+        year % 4 == 0 && (year % 100 != 0 || year % 400 == 0) ? 29 : 28 :
+        month == 4 || month == 6 || month == 9 || month == 11 ? 30 : 31;
+  }
+
+  private static int parseYear(final String value) {
+    return (value.charAt(0) - '0') * 1000 + (value.charAt(1) - '0') * 100
+        + (value.charAt(2) - '0') * 10 + value.charAt(3) - '0';
+  }
+
+  /**
+   * Gets the position after the ASCII digits starting at the given position.
+   * @param value a string
+   * @param start the start position
+   * @return the position of the first character which is not a digit, or the length of the string
+   */
+  protected static int skipDigits(final String value, final int start) {
+    int index = start;
+    while (index < value.length() && value.charAt(index) >= '0' && value.charAt(index) <= '9') {
+      index++;
+    }
+    return index;
+  }
+
+  /**
+   * Parses the two ASCII digits at the given position, performance-optimized.
+   * @param value a string
+   * @param start the position of the first digit
+   * @return the number, or <code>-1</code> if there are no two digits at the position
+   */
+  protected static int parseTwoDigits(final String value, final int start) {
+    if (start < 0 || start + 2 > value.length()) {
+      return -1;
+    }
+    final int high = value.charAt(start) - '0';
+    final int low = value.charAt(start + 1) - '0';
+    return high < 0 || high > 9 || low < 0 || low > 9 ? -1 : high * 10 + low;
+  }
+
+  /**
+   * Gets the end of the digits in the given range without their trailing zeroes.
+   * @param value a string
+   * @param start the start of the digits
+   * @param end the end of the digits
+   * @return the end of the significant digits
+   */
+  protected static int stripTrailingZeros(final String value, final int start, final int end) {
+    int index = end;
+    while (index > start && value.charAt(index - 1) == '0') {
+      index--;
+    }
+    return index;
+  }
+
+  /**
+   * Parses the decimal digits of fractional seconds in the given range.
+   * @param value a string
+   * @param start the start of the digits
+   * @param end the end of the digits; there must be at most <code>scale</code> digits
+   * @param scale the number of digits of the result, e.g., 3 for milliseconds
+   * @return the fractional seconds in units of <code>10^-scale</code> seconds
+   */
+  protected static int parseFraction(final String value, final int start, final int end, final int scale) {
+    int result = 0;
+    for (int index = start; index < start + scale; index++) {
+      result = result * 10 + (index < end ? value.charAt(index) - '0' : 0);
+    }
+    return result;
+  }
+
   /**
    * Creates a date/time value from the given value.
    *
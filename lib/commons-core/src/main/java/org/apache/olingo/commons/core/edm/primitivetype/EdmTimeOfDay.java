@@ -20,16 +20,11 @@ package org.apache.olingo.commons.core.edm.primitivetype;
 
 import java.sql.Timestamp;
 import java.util.Calendar;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import org.apache.olingo.commons.api.edm.EdmPrimitiveTypeException;
 
 public final class EdmTimeOfDay extends SingletonPrimitiveType {
 
-  private static final Pattern PATTERN = Pattern.compile(
-      "(\\p{Digit}{2}):(\\p{Digit}{2})(?::(\\p{Digit}{2})(\\.(\\p{Digit}{0,}?)0*)?)?");
-
   private static final EdmTimeOfDay INSTANCE = new EdmTimeOfDay();
 
   public static EdmTimeOfDay getInstance() {
@@ -46,37 +41,55 @@ public final class EdmTimeOfDay extends SingletonPrimitiveType {
       final Boolean isNullable, final Integer maxLength, final Integer precision,
       final Integer scale, final Boolean isUnicode, final Class<T> returnType) throws EdmPrimitiveTypeException {
 
-    final Matcher matcher = PATTERN.matcher(value);
-    if (!matcher.matches()) {
+    // The literal is scanned by hand instead of with a regular expression;
+    // the grammar is (\d{2}):(\d{2})(:(\d{2})(\.\d+)?)?.
+    final int length = value.length();
+    final int hour = EdmDateTimeOffset.parseTwoDigits(value, 0);
+    final int minute = length >= 5 && value.charAt(2) == ':' ? EdmDateTimeOffset.parseTwoDigits(value, 3) : -1;
+    int second = 0;
+    int fractionStart = -1;
+    int fractionEnd = -1;
+    int index = 5;
+    if (index < length && value.charAt(index) == ':') {
+      second = EdmDateTimeOffset.parseTwoDigits(value, index + 1);
+      index += 3;
+      if (second >= 0 && index < length && value.charAt(index) == '.') {
+        fractionStart = index + 1;
+        fractionEnd = EdmDateTimeOffset.skipDigits(value, fractionStart);
+        index = fractionEnd;
+      }
+    }
+    if (hour < 0 || minute < 0 || second < 0 || index != length) {
       throw new EdmPrimitiveTypeException("The literal '" + value + "' has illegal content.");
     }
 
     final Calendar dateTimeValue = Calendar.getInstance();
     dateTimeValue.clear();
-    dateTimeValue.set(Calendar.HOUR_OF_DAY, Byte.parseByte(matcher.group(1)));
-    dateTimeValue.set(Calendar.MINUTE, Byte.parseByte(matcher.group(2)));
-    dateTimeValue.set(Calendar.SECOND, matcher.group(3) == null ? 0 : Byte.parseByte(matcher.group(3)));
+    dateTimeValue.set(Calendar.HOUR_OF_DAY, hour);
+    dateTimeValue.set(Calendar.MINUTE, minute);
+    dateTimeValue.set(Calendar.SECOND, second);
 
     int nanoSeconds = 0;
-    if (matcher.group(4) != null) {
-      if (matcher.group(4).length() == 1 || matcher.group(4).length() > 13) {
+    if (fractionStart >= 0) {
+      if (fractionEnd == fractionStart || fractionEnd - fractionStart > 12) {
         throw new EdmPrimitiveTypeException("The literal '" + value + "' has illegal content.");
       }
-      final String decimals = matcher.group(5);
-      if (decimals.length() > (precision == null ? 0 : precision)) {
+      final int decimalsEnd = EdmDateTimeOffset.stripTrailingZeros(value, fractionStart, fractionEnd);
+      final int decimals = decimalsEnd - fractionStart;
+      if (decimals > (precision == null ? 0 : precision)) {
         throw new EdmPrimitiveTypeException("The literal '" + value + "' does not match the facets' constraints.");
       }
       if (returnType.isAssignableFrom(Timestamp.class)) {
-        if (decimals.length() <= 9) {
-          nanoSeconds = Integer.parseInt(decimals + "000000000".substring(decimals.length()));
+        if (decimals <= 9) {
+          nanoSeconds = EdmDateTimeOffset.parseFraction(value, fractionStart, decimalsEnd, 9);
         } else {
           throw new EdmPrimitiveTypeException("The literal '" + value
               + "' cannot be converted to value type " + returnType + ".");
         }
       } else {
-        if (decimals.length() <= 3) {
-          final String milliSeconds = decimals + "000".substring(decimals.length());
-          dateTimeValue.set(Calendar.MILLISECOND, Short.parseShort(milliSeconds));
+        if (decimals <= 3) {
+          dateTimeValue.set(Calendar.MILLISECOND,
+              EdmDateTimeOffset.parseFraction(value, fractionStart, decimalsEnd, 3));
         } else {
           throw new EdmPrimitiveTypeException("The literal '" + value
               + "' cannot be converted to value type " + returnType + ".");
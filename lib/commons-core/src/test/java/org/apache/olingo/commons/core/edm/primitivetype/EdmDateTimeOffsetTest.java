@@ -152,4 +152,18 @@ public class EdmDateTimeOffsetTest extends PrimitiveTypeBaseTest {
 
     expectTypeErrorInValueOfString(instance, "2012-02-29T01:02:03Z");
   }
+
+  @Test
+  public void fastPathMatchesCalendar() throws Exception {
+    for (final String value : new String[] {
+        "1500-03-01T00:00:00Z", "1582-10-15T12:00:00Z", "1583-01-01T00:00:00Z", "1900-02-28T23:59:59.999Z",
+        "2000-02-29T00:00:00-05:30", "9999-12-31T23:59:59+14:00", "0001-06-15T10:20:30Z" }) {
+      final Calendar calendar = instance.valueOfString(value, null, null, 3, null, null, Calendar.class);
+      final Long millis = instance.valueOfString(value, null, null, 3, null, null, Long.class);
+      assertEquals(value, calendar.getTimeInMillis(), millis.longValue());
+      assertEquals(value, millis, instance.valueOfString(
+          instance.valueToString(new Date(millis.longValue()), null, null, 3, null, null),
+          null, null, 3, null, null, Long.class));
+    }
+  }
 }
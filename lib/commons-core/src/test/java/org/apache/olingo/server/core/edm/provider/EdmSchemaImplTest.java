@@ -20,11 +20,17 @@ package org.apache.olingo.server.core.edm.provider;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
@@ -57,6 +63,8 @@ import org.apache.olingo.commons.api.edm.provider.CsdlEntityType;
 import org.apache.olingo.commons.api.edm.provider.CsdlEnumType;
 import org.apache.olingo.commons.api.edm.provider.CsdlFunction;
 import org.apache.olingo.commons.api.edm.provider.CsdlFunctionImport;
+import org.apache.olingo.commons.api.edm.provider.CsdlParameter;
+import org.apache.olingo.commons.api.edm.provider.CsdlReturnType;
 import org.apache.olingo.commons.api.edm.provider.CsdlSchema;
 import org.apache.olingo.commons.api.edm.provider.CsdlSingleton;
 import org.apache.olingo.commons.api.edm.provider.CsdlTerm;
@@ -232,6 +240,69 @@ public class EdmSchemaImplTest {
     assertTrue(container == edm.getEntityContainer());
   }
 
+  @Test
+  public void frozenEdmDoesNotCallProvider() throws Exception {
+    final CsdlEdmProvider provider = mock(CsdlEdmProvider.class);
+    final List<CsdlSchema> schemas = new LocalProvider().getSchemas();
+    when(provider.getSchemas()).thenReturn(schemas);
+    when(provider.getAliasInfos()).thenReturn(Collections.<CsdlAliasInfo> emptyList());
+    final EdmProviderImpl frozen = new EdmProviderImpl(provider);
+    frozen.freeze();
+    assertTrue(frozen.isFrozen());
+
+    final EdmEntityType entityType = frozen.getEntityType(new FullQualifiedName(NAMESPACE, "entityType1"));
+    assertNotNull(entityType);
+    assertTrue(entityType == frozen.getEntityType(new FullQualifiedName(ALIAS, "entityType1")));
+    assertTrue(frozen.getEntityContainer() == frozen.getEntityContainer(null));
+
+    assertNull(frozen.getEntityType(new FullQualifiedName(NAMESPACE, "unknown")));
+    assertNull(frozen.getComplexType(new FullQualifiedName(NAMESPACE, "unknown")));
+    assertNull(frozen.getUnboundAction(new FullQualifiedName(NAMESPACE, "unknown")));
+    assertTrue(frozen.getUnboundFunctions(new FullQualifiedName(NAMESPACE, "unknown")).isEmpty());
+    assertNull(frozen.getBoundFunction(new FullQualifiedName(NAMESPACE, "unknown"),
+        new FullQualifiedName(NAMESPACE, "entityType1"), false, null));
+    assertNull(frozen.getEntityContainer().getEntitySet("unknown"));
+    assertNull(frozen.getEntityContainer().getSingleton("unknown"));
+
+    verify(provider, never()).getEntityType(any(FullQualifiedName.class));
+    verify(provider, never()).getComplexType(any(FullQualifiedName.class));
+    verify(provider, never()).getActions(any(FullQualifiedName.class));
+    verify(provider, never()).getFunctions(any(FullQualifiedName.class));
+    verify(provider, never()).getEntityContainer();
+    verify(provider, never()).getEntityContainerInfo(any(FullQualifiedName.class));
+    verify(provider, never()).getEntitySet(any(FullQualifiedName.class), anyString());
+    verify(provider, never()).getSingleton(any(FullQualifiedName.class), anyString());
+  }
+
+  @Test
+  public void frozenEdmResolvesBoundFunction() throws Exception {
+    final CsdlEdmProvider provider = mock(CsdlEdmProvider.class);
+    final List<CsdlSchema> schemas = new LocalProvider().getSchemas();
+    final FullQualifiedName bindingType = new FullQualifiedName(NAMESPACE, "entityType1");
+    final List<CsdlFunction> functions = new ArrayList<CsdlFunction>(schemas.get(0).getFunctions());
+    functions.add(new CsdlFunction().setName("boundFunction").setBound(true)
+        .setParameters(Arrays.asList(
+            new CsdlParameter().setName("BindingParam").setType(bindingType),
+            new CsdlParameter().setName("Parameter").setType(EdmPrimitiveTypeKind.String.getFullQualifiedName())))
+        .setReturnType(new CsdlReturnType().setType(EdmPrimitiveTypeKind.String.getFullQualifiedName())));
+    schemas.get(0).setFunctions(functions);
+    when(provider.getSchemas()).thenReturn(schemas);
+    when(provider.getAliasInfos()).thenReturn(Collections.<CsdlAliasInfo> emptyList());
+    final EdmProviderImpl frozen = new EdmProviderImpl(provider);
+    frozen.freeze();
+
+    final EdmFunction function = frozen.getBoundFunction(new FullQualifiedName(NAMESPACE, "boundFunction"),
+        bindingType, false, Collections.singletonList("Parameter"));
+    assertNotNull(function);
+    assertTrue(function.isBound());
+    assertTrue(function == frozen.getBoundFunction(new FullQualifiedName(ALIAS, "boundFunction"),
+        new FullQualifiedName(ALIAS, "entityType1"), false, Collections.singletonList("Parameter")));
+    assertNull(frozen.getBoundFunction(new FullQualifiedName(NAMESPACE, "boundFunction"),
+        bindingType, true, Collections.singletonList("Parameter")));
+
+    verify(provider, never()).getFunctions(any(FullQualifiedName.class));
+  }
+
   private class LocalProvider implements CsdlEdmProvider {
 
     @Override
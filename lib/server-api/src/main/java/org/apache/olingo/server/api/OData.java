@@ -20,6 +20,8 @@ package org.apache.olingo.server.api;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.olingo.commons.api.edm.EdmPrimitiveType;
 import org.apache.olingo.commons.api.edm.EdmPrimitiveTypeKind;
@@ -27,6 +29,7 @@ import org.apache.olingo.commons.api.edm.provider.CsdlEdmProvider;
 import org.apache.olingo.commons.api.edmx.EdmxReference;
 import org.apache.olingo.commons.api.ex.ODataRuntimeException;
 import org.apache.olingo.commons.api.format.ContentType;
+import org.apache.olingo.server.api.async.AsyncSupport;
 import org.apache.olingo.server.api.debug.DebugResponseHelper;
 import org.apache.olingo.server.api.deserializer.DeserializerException;
 import org.apache.olingo.server.api.deserializer.FixedFormatDeserializer;
@@ -37,7 +40,10 @@ import org.apache.olingo.server.api.prefer.Preferences;
 import org.apache.olingo.server.api.serializer.FixedFormatSerializer;
 import org.apache.olingo.server.api.serializer.ODataSerializer;
 import org.apache.olingo.server.api.serializer.SerializerException;
+import org.apache.olingo.server.api.serializer.SerializerStreamResult;
+import org.apache.olingo.server.api.uri.CursorStore;
 import org.apache.olingo.server.api.uri.UriHelper;
+import org.apache.olingo.server.api.uri.UriInfoCache;
 
 /**
  * Root object for serving factory tasks and support loose coupling of implementation (core) from the API.
@@ -77,6 +83,26 @@ public abstract class OData {
    */
   public abstract ODataSerializer createSerializer(ContentType contentType) throws SerializerException;
 
+  /**
+   * Creates a new serializer object for rendering content in the specified format
+   * which does not render its results eagerly.
+   * Results with deferred content also implement {@link SerializerStreamResult};
+   * their content is written directly into the response output stream when the response is sent
+   * if it is passed to {@link ODataResponse#setODataContent(ODataContent)}.
+   * Errors during writing are reported to the {@link ODataContentWriteErrorCallback}
+   * registered in the serializer options; without a callback, e.g., for the service document
+   * and for errors which have no serializer options, the <code>write</code> methods of the
+   * content throw an {@link org.apache.olingo.commons.api.ex.ODataRuntimeException}.
+   * Formats without write-through support return eagerly rendered results.
+   * <br/>
+   * The default implementation returns the serializer of {@link #createSerializer(ContentType)}.
+   *
+   * @param contentType any format supported by Olingo (XML, JSON ...)
+   */
+  public ODataSerializer createWriteThroughSerializer(final ContentType contentType) throws SerializerException {
+    return createSerializer(contentType);
+  }
+
   /**
    * Creates a new serializer object for rendering content in a fixed format, e.g., for binary output or multipart/mixed
    * outpu.
@@ -92,6 +118,10 @@ public abstract class OData {
 
   /**
    * Creates a new ODataHttpHandler for handling OData requests in an HTTP context.
+   * <p>The handler does not keep state of single requests. It can be created and configured once,
+   * e.g., at servlet initialization, and then be used concurrently by all request threads,
+   * provided that the registered processors are thread-safe.
+   * This keeps the caches of the service metadata alive across requests.</p>
    *
    * @param serviceMetadata - metadata object required to handle an OData request
    */
@@ -124,6 +154,20 @@ public abstract class OData {
   public abstract ServiceMetadata createServiceMetadata(CsdlEdmProvider edmProvider, List<EdmxReference> references,
       ServiceMetadataETagSupport serviceMetadataETagSupport);
 
+  /**
+   * Creates a metadata object for this service with a frozen entity data model.
+   * All elements of the entity data model are read immediately; the provider must deliver
+   * all of them with its schemas. Afterwards the provider is not called anymore,
+   * elements not found are treated as not existing.
+   *
+   * @param edmProvider a custom or default implementation for creating metadata
+   * @param references list of edmx references
+   * @param serviceMetadataETagSupport
+   * @return a service metadata implementation
+   */
+  public abstract ServiceMetadata createFrozenServiceMetadata(CsdlEdmProvider edmProvider,
+      List<EdmxReference> references, ServiceMetadataETagSupport serviceMetadataETagSupport);
+
   /**
    * Creates a new URI helper object for performing URI-related tasks.
    * It can be used in Processor implementations.
@@ -147,6 +191,25 @@ public abstract class OData {
    */
   public abstract ODataDeserializer createDeserializer(ContentType contentType,
       ServiceMetadata metadata) throws DeserializerException;
+
+  /**
+   * Creates a new deserializer object for reading content in the specified format
+   * which reads entities and entity collections directly from the input stream
+   * without building an intermediate representation of the whole payload.
+   * This keeps the memory consumption low for large requests, e.g., deep inserts.
+   * Formats without streaming support return the deserializer of {@link #createDeserializer(ContentType,
+   * ServiceMetadata)}.
+   * <br/>
+   * The default implementation returns the deserializer of {@link #createDeserializer(ContentType,
+   * ServiceMetadata)} for all formats.
+   *
+   * @param contentType any content type supported by Olingo (XML, JSON ...)
+   * @param metadata ServiceMetada of the service
+   */
+  public ODataDeserializer createStreamingDeserializer(final ContentType contentType,
+      final ServiceMetadata metadata) throws DeserializerException {
+    return createDeserializer(contentType, metadata);
+  }
   
   /**
    * Creates a primitive-type instance.
@@ -175,4 +238,33 @@ public abstract class OData {
    * @return a debug-response helper
    */
   public abstract DebugResponseHelper createDebugResponseHelper(String debugFormat);
+
+  /**
+   * Creates a cache for parsed request URIs.
+   * It has to be registered at the handlers of a service to be used.
+   * @param maximumSize the maximum number of cached URIs
+   * @return a new, empty cache
+   * @see UriInfoCache
+   */
+  public abstract UriInfoCache createUriInfoCache(int maximumSize);
+
+  /**
+   * Creates a store for paging cursors.
+   * @param <T> the type of the cursors
+   * @param maximumSize the maximum number of cursors in the store
+   * @param timeToLive how long a cursor is kept
+   * @param unit the unit of the time to live
+   * @return a new, empty store
+   * @see CursorStore
+   */
+  public abstract <T> CursorStore<T> createCursorStore(int maximumSize, long timeToLive, TimeUnit unit);
+
+  /**
+   * Creates support for the asynchronous processing of requests.
+   * It has to be registered at the handlers of a service to be used.
+   * @param executor the executor that processes the requests; its queue bounds the number of waiting requests
+   * @return a new support object without any requests
+   * @see AsyncSupport
+   */
+  public abstract AsyncSupport createAsyncSupport(ExecutorService executor);
 }
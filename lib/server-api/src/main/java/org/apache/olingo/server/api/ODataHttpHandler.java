@@ -21,12 +21,17 @@ package org.apache.olingo.server.api;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
+import org.apache.olingo.server.api.async.AsyncSupport;
+import org.apache.olingo.server.api.batch.ParallelBatchSupport;
 import org.apache.olingo.server.api.debug.DebugSupport;
 import org.apache.olingo.server.api.etag.CustomETagSupport;
 import org.apache.olingo.server.api.serializer.CustomContentTypeSupport;
+import org.apache.olingo.server.api.uri.UriInfoCache;
 
 /**
  * Handles HTTP requests as OData requests.
+ * <p>One instance can be shared by concurrent requests;
+ * processors and extensions should be registered before it is used.</p>
  */
 public interface ODataHttpHandler extends ODataHandler {
 
@@ -65,4 +70,24 @@ public interface ODataHttpHandler extends ODataHandler {
    * @param customETagSupport handler to register
    */
   void register(CustomETagSupport customETagSupport);
+
+  /**
+   * Registers support for the parallel execution of retrieve operations in batch requests.
+   * @param parallelBatchSupport handler to register
+   */
+  void register(ParallelBatchSupport parallelBatchSupport);
+
+  /**
+   * Registers a cache for parsed request URIs.
+   * @param uriInfoCache cache to register
+   * @see OData#createUriInfoCache(int)
+   */
+  void register(UriInfoCache uriInfoCache);
+
+  /**
+   * Registers support for the asynchronous processing of requests.
+   * @param asyncSupport support to register
+   * @see OData#createAsyncSupport(java.util.concurrent.ExecutorService)
+   */
+  void register(AsyncSupport asyncSupport);
 }
@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.api.async;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.olingo.server.api.OlingoExtension;
+
+/**
+ * <p>Enables the asynchronous processing of requests with the preference <code>respond-async</code>.</p>
+ * <p>If registered at the ODataHttpHandler, such a request is queued on the executor of this extension
+ * and answered immediately with status <code>202 Accepted</code> and a <code>Location</code> header
+ * pointing to a status monitor resource below the service root (<code>$async/{id}</code>).
+ * If the executor rejects the request, it is processed synchronously as if the preference were not given.</p>
+ * <p>The status monitor resource answers a GET request with <code>202 Accepted</code> as long as the
+ * request is being processed, and with <code>303 See Other</code> and the location of the result
+ * (<code>$async/{id}/result</code>) afterwards. The result is returned with the content type
+ * <code>application/http</code>. A DELETE request on the status monitor resource cancels the processing
+ * and removes the result.</p>
+ * <p>Request and response bodies larger than the spool threshold are kept in temporary files.
+ * Finished requests are removed after the time to live has passed.
+ * If the maximum number of requests is kept, further requests with the preference are answered
+ * with status <code>503 Service Unavailable</code>.</p>
+ * <p>The same instance should be registered for all requests of a service;
+ * the registered processors must be able to handle requests concurrently.</p>
+ * @see org.apache.olingo.server.api.OData#createAsyncSupport(java.util.concurrent.ExecutorService)
+ */
+public interface AsyncSupport extends OlingoExtension {
+
+  /** The path segment of status monitor resources. */
+  String STATUS_MONITOR_SEGMENT = "$async";
+
+  /** The path segment of the result below a status monitor resource. */
+  String RESULT_SEGMENT = "result";
+
+  /**
+   * Sets the size above which request and response bodies are stored in temporary files
+   * instead of in memory.
+   * @param bytes the threshold in bytes; default is 1 MB
+   * @return this object for method chaining
+   */
+  AsyncSupport setSpoolThreshold(int bytes);
+
+  /**
+   * Sets the directory for the temporary files.
+   * @param directory the directory; <code>null</code> (the default) for the system-dependent
+   *                  default temporary-file directory
+   * @return this object for method chaining
+   */
+  AsyncSupport setSpoolDirectory(File directory);
+
+  /**
+   * Sets how long the result of a finished request is kept.
+   * @param timeToLive the time to live; default is ten minutes
+   * @param unit the unit of the time to live
+   * @return this object for method chaining
+   */
+  AsyncSupport setTimeToLive(long timeToLive, TimeUnit unit);
+
+  /**
+   * Sets how many requests are kept at most, including finished requests whose result is kept.
+   * @param maximumJobCount the maximum number of requests; default is 1000
+   * @return this object for method chaining
+   */
+  AsyncSupport setMaximumJobCount(int maximumJobCount);
+
+  /**
+   * Gets the number of requests that are queued, being processed, or whose result is kept.
+   * @return the number of requests
+   */
+  int getJobCount();
+
+  /**
+   * Cancels all requests and removes all results.
+   * The executor is not shut down.
+   */
+  void clear();
+}
@@ -16,10 +16,11 @@
  * specific language governing permissions and limitations
  * under the License.
  */
-package org.apache.olingo.server.core.deserializer.batch;
-
-public interface BatchPart {
-  Header getHeaders();
+/**
+ * Olingo Server API - Async
+ * <p>
+ * The async package is used to condense all about the asynchronous processing of requests.
+ *
+ */
+package org.apache.olingo.server.api.async;
 
-  boolean isStrict();
-}
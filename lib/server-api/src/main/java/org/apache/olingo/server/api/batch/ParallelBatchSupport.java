@@ -0,0 +1,40 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.api.batch;
+
+import java.util.concurrent.Executor;
+
+import org.apache.olingo.server.api.OlingoExtension;
+
+/**
+ * <p>Enables the parallel execution of independent operations of a batch request.</p>
+ * <p>If implemented this interface can be registered at the ODataHttpHandler.
+ * {@link StreamingBatchFacade#handleBatchRequests(java.util.List, boolean)} will then dispatch consecutive
+ * retrieve operations outside of change sets onto the given executor; the responses are returned
+ * in the order of the requests nevertheless.
+ * The registered processors must be able to handle requests concurrently.</p>
+ */
+public interface ParallelBatchSupport extends OlingoExtension {
+
+  /**
+   * Gets the executor which executes the retrieve operations of a batch request.
+   * @return the executor
+   */
+  Executor getExecutor();
+}
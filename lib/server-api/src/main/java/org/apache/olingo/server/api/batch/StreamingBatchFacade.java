@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.api.batch;
+
+import java.util.List;
+
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.ODataContent;
+import org.apache.olingo.server.api.ODataLibraryException;
+import org.apache.olingo.server.api.deserializer.batch.BatchRequestPart;
+import org.apache.olingo.server.api.deserializer.batch.BatchRequestPartIterator;
+import org.apache.olingo.server.api.deserializer.batch.ODataResponsePart;
+
+/**
+ * <p>Handles several parts of a batch request at once, in parallel where possible,
+ * and while the batch response is written.</p>
+ * <p>The {@link BatchFacade} passed to a {@link org.apache.olingo.server.api.processor.BatchProcessor BatchProcessor}
+ * by the library implements this interface.</p>
+ */
+public interface StreamingBatchFacade extends BatchFacade {
+
+  /**
+   * Handles a list of BatchRequestParts and returns the responses in the same order.
+   * If {@link ParallelBatchSupport} has been registered, consecutive parts consisting of
+   * a single GET request may be executed in parallel.
+   * @param requests Requests to process
+   * @param continueOnError if <code>false</code>, processing stops after the first part with
+   * an error response; that response is the last one in the returned list
+   * @return corresponding list of {@link ODataResponsePart}s
+   * @throws ODataApplicationException
+   * @throws ODataLibraryException
+   */
+  List<ODataResponsePart> handleBatchRequests(List<BatchRequestPart> requests, boolean continueOnError)
+      throws ODataApplicationException, ODataLibraryException;
+
+  /**
+   * Creates the content of a batch response which handles the parts of a batch request
+   * only while it is written.
+   * Each part is read from the request and handled, and its response is written directly
+   * into the output before the next part is read, so request bodies can be read directly
+   * from the batch request and the client receives each response as soon as it is available;
+   * only consecutive parts consisting of a single GET request are collected to be executed
+   * in parallel, see {@link ParallelBatchSupport}.
+   * Since the response has been started already, errors while handling the parts are not
+   * reported as error response but as {@link org.apache.olingo.commons.api.ex.ODataRuntimeException}
+   * when the content is written.
+   * @param requests Requests to process, as returned by
+   * {@link org.apache.olingo.server.api.deserializer.batch.IncrementalBatchDeserializer#parseBatchRequestIncrementally
+   * IncrementalBatchDeserializer.parseBatchRequestIncrementally}
+   * @param continueOnError if <code>false</code>, processing stops after the first part with
+   * an error response; that response is the last one in the batch response
+   * @param boundary the boundary between the parts of the batch response
+   * @return content of the batch response
+   */
+  ODataContent handleBatchRequests(BatchRequestPartIterator requests, boolean continueOnError, String boundary);
+}
@@ -63,7 +63,8 @@ public class BatchDeserializerException extends DeserializerException {
     /** parameter: line */
     FORBIDDEN_HEADER,
     /** parameter: line */
-    INVALID_BASE_URI;
+    INVALID_BASE_URI,
+    IO_EXCEPTION;
 
     @Override
     public String getKey() {
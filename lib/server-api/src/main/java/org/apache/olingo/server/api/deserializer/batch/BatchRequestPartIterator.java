@@ -0,0 +1,45 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.api.deserializer.batch;
+
+/**
+ * Reads the parts of a batch request one after the other.
+ * <p>
+ * Only the current part is held in memory. The request bodies of a part
+ * which is not a change set may be read directly from the underlying stream;
+ * they are valid only until {@link #hasNext()} is called the next time.
+ */
+public interface BatchRequestPartIterator {
+
+  /**
+   * Reads ahead to the next part of the batch request.
+   * Any unread content of the current part is skipped.
+   * @return <code>true</code> if there is another part
+   * @throws BatchDeserializerException if the next part is not valid
+   */
+  boolean hasNext() throws BatchDeserializerException;
+
+  /**
+   * Gets the next part of the batch request.
+   * @return the next part
+   * @throws BatchDeserializerException if the next part is not valid
+   * @throws java.util.NoSuchElementException if there is no further part
+   */
+  BatchRequestPart next() throws BatchDeserializerException;
+}
@@ -0,0 +1,43 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.api.deserializer.batch;
+
+import java.io.InputStream;
+
+/**
+ * Reads batch requests part by part.
+ * <p>
+ * The {@link org.apache.olingo.server.api.deserializer.FixedFormatDeserializer FixedFormatDeserializer}
+ * created by {@link org.apache.olingo.server.api.OData#createFixedFormatDeserializer()} implements this interface.
+ */
+public interface IncrementalBatchDeserializer {
+
+  /**
+   * Reads batch data from an InputStream part by part.
+   * In contrast to {@link org.apache.olingo.server.api.deserializer.FixedFormatDeserializer#parseBatchRequest
+   * FixedFormatDeserializer.parseBatchRequest}, each part is parsed only when it is requested,
+   * so the whole batch request is never held in memory.
+   * @param content the data as multipart input stream
+   * @param boundary the boundary between the parts
+   * @param options options for the deserializer
+   * @return an iterator over the batch-request parts
+   */
+  BatchRequestPartIterator parseBatchRequestIncrementally(InputStream content, String boundary,
+      BatchOptions options) throws BatchDeserializerException;
+}
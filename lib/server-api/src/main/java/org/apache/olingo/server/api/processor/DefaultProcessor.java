@@ -19,8 +19,17 @@
 package org.apache.olingo.server.api.processor;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
 import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.WeakHashMap;
 
+import org.apache.olingo.commons.api.ex.ODataRuntimeException;
 import org.apache.olingo.commons.api.format.ContentType;
 import org.apache.olingo.commons.api.http.HttpHeader;
 import org.apache.olingo.commons.api.http.HttpStatusCode;
@@ -45,6 +54,10 @@ import org.apache.olingo.server.api.uri.UriInfo;
  * The default can be replaced by re-registering a custom implementation.</p>
  */
 public class DefaultProcessor implements MetadataProcessor, ServiceDocumentProcessor, ErrorProcessor {
+  /** Serialized documents per service metadata and key; kept only as long as the service metadata is in use. */
+  private static final Map<ServiceMetadata, Map<String, CachedDocument>> DOCUMENTS =
+      new WeakHashMap<ServiceMetadata, Map<String, CachedDocument>>();
+
   private OData odata;
   private ServiceMetadata serviceMetadata;
 
@@ -57,53 +70,101 @@ public class DefaultProcessor implements MetadataProcessor, ServiceDocumentProce
   @Override
   public void readServiceDocument(final ODataRequest request, final ODataResponse response, final UriInfo uriInfo,
       final ContentType requestedContentType) throws ODataApplicationException, ODataLibraryException {
-    boolean isNotModified = false;
-    ServiceMetadataETagSupport eTagSupport = serviceMetadata.getServiceMetadataETagSupport();
-    if (eTagSupport != null && eTagSupport.getServiceDocumentETag() != null) {
-      // Set application etag at response
-      response.setHeader(HttpHeader.ETAG, eTagSupport.getServiceDocumentETag());
-      // Check if service document has been modified
-      ETagHelper eTagHelper = odata.createETagHelper();
-      isNotModified = eTagHelper.checkReadPreconditions(eTagSupport.getServiceDocumentETag(), request
-          .getHeaders(HttpHeader.IF_MATCH), request.getHeaders(HttpHeader.IF_NONE_MATCH));
-    }
-
-    // Send the correct response
-    if (isNotModified) {
-      response.setStatusCode(HttpStatusCode.NOT_MODIFIED.getStatusCode());
-    } else {
-      ODataSerializer serializer = odata.createSerializer(requestedContentType);
-      response.setContent(serializer.serviceDocument(serviceMetadata, null).getContent());
-      response.setStatusCode(HttpStatusCode.OK.getStatusCode());
-      response.setHeader(HttpHeader.CONTENT_TYPE, requestedContentType.toContentTypeString());
-    }
+    readDocument(request, response, requestedContentType, false);
   }
 
   @Override
   public void readMetadata(final ODataRequest request, final ODataResponse response, final UriInfo uriInfo,
       final ContentType requestedContentType) throws ODataApplicationException, ODataLibraryException {
-    boolean isNotModified = false;
-    ServiceMetadataETagSupport eTagSupport = serviceMetadata.getServiceMetadataETagSupport();
-    if (eTagSupport != null && eTagSupport.getMetadataETag() != null) {
-      // Set application etag at response
-      response.setHeader(HttpHeader.ETAG, eTagSupport.getMetadataETag());
-      // Check if metadata document has been modified
-      ETagHelper eTagHelper = odata.createETagHelper();
-      isNotModified = eTagHelper.checkReadPreconditions(eTagSupport.getMetadataETag(), request
-          .getHeaders(HttpHeader.IF_MATCH), request.getHeaders(HttpHeader.IF_NONE_MATCH));
+    readDocument(request, response, requestedContentType, true);
+  }
+
+  /**
+   * Sends the metadata document or the service document.
+   * The serialized documents are cached per service metadata and content type.
+   * If the application does not provide an ETag, a strong ETag is derived from the content.
+   */
+  private void readDocument(final ODataRequest request, final ODataResponse response,
+      final ContentType requestedContentType, final boolean isMetadata) throws ODataLibraryException {
+    final ServiceMetadataETagSupport eTagSupport = serviceMetadata.getServiceMetadataETagSupport();
+    final String metadataETag = eTagSupport == null ? null : eTagSupport.getMetadataETag();
+    final String applicationETag = isMetadata ? metadataETag :
+        eTagSupport == null ? null : eTagSupport.getServiceDocumentETag();
+    // The service document contains the metadata ETag, so a new metadata ETag invalidates it, too.
+    final String version = isMetadata ? String.valueOf(metadataETag) : applicationETag + " " + metadataETag;
+    final String key = (isMetadata ? "$metadata " : "/ ") + requestedContentType.toContentTypeString();
+
+    CachedDocument document = getCachedDocument(key, version);
+    String eTag = applicationETag;
+    if (eTag == null) {
+      if (document == null) {
+        document = cacheDocument(key, version, requestedContentType, isMetadata);
+      }
+      eTag = document.eTag;
     }
 
+    // Set etag at response
+    response.setHeader(HttpHeader.ETAG, eTag);
+    // Check if the document has been modified
+    ETagHelper eTagHelper = odata.createETagHelper();
+    final boolean isNotModified = eTagHelper.checkReadPreconditions(eTag,
+        request.getHeaders(HttpHeader.IF_MATCH), request.getHeaders(HttpHeader.IF_NONE_MATCH));
+
     // Send the correct response
     if (isNotModified) {
       response.setStatusCode(HttpStatusCode.NOT_MODIFIED.getStatusCode());
     } else {
-      ODataSerializer serializer = odata.createSerializer(requestedContentType);
-      response.setContent(serializer.metadataDocument(serviceMetadata).getContent());
+      if (document == null) {
+        document = cacheDocument(key, version, requestedContentType, isMetadata);
+      }
+      // The cached bytes are never modified, so they can be shared by all responses.
+      response.setContent(new ByteArrayInputStream(document.content));
       response.setStatusCode(HttpStatusCode.OK.getStatusCode());
       response.setHeader(HttpHeader.CONTENT_TYPE, requestedContentType.toContentTypeString());
     }
   }
 
+  private CachedDocument getCachedDocument(final String key, final String version) {
+    synchronized (DOCUMENTS) {
+      final Map<String, CachedDocument> documents = DOCUMENTS.get(serviceMetadata);
+      final CachedDocument document = documents == null ? null : documents.get(key);
+      return document == null || !document.version.equals(version) ? null : document;
+    }
+  }
+
+  private CachedDocument cacheDocument(final String key, final String version,
+      final ContentType requestedContentType, final boolean isMetadata) throws ODataLibraryException {
+    final ODataSerializer serializer = odata.createSerializer(requestedContentType);
+    final CachedDocument document = new CachedDocument(toByteArray(isMetadata ?
+        serializer.metadataDocument(serviceMetadata).getContent() :
+        serializer.serviceDocument(serviceMetadata, null).getContent()),
+        version);
+    synchronized (DOCUMENTS) {
+      Map<String, CachedDocument> documents = DOCUMENTS.get(serviceMetadata);
+      if (documents == null) {
+        documents = new HashMap<String, CachedDocument>();
+        DOCUMENTS.put(serviceMetadata, documents);
+      }
+      documents.put(key, document);
+    }
+    return document;
+  }
+
+  private static byte[] toByteArray(final InputStream content) {
+    ByteArrayOutputStream result = new ByteArrayOutputStream();
+    byte[] buffer = new byte[8192];
+    try {
+      int count;
+      while ((count = content.read(buffer)) >= 0) {
+        result.write(buffer, 0, count);
+      }
+      content.close();
+    } catch (final IOException e) {
+      throw new ODataRuntimeException("Error while reading the serialized document", e);
+    }
+    return result.toByteArray();
+  }
+
   @Override
   public void processError(final ODataRequest request, final ODataResponse response,
       final ODataServerError serverError,
@@ -122,4 +183,31 @@ public class DefaultProcessor implements MetadataProcessor, ServiceDocumentProce
       response.setHeader(HttpHeader.CONTENT_TYPE, ContentType.APPLICATION_JSON.toContentTypeString());
     }
   }
+
+  /** Serialized document together with its ETag. */
+  private static class CachedDocument {
+    private final byte[] content;
+    private final String eTag;
+    /** The ETags of the application the document has been serialized for. */
+    private final String version;
+
+    public CachedDocument(final byte[] content, final String version) {
+      this.content = content;
+      this.version = version;
+      eTag = createETag(content);
+    }
+
+    private static String createETag(final byte[] content) {
+      try {
+        final byte[] digest = MessageDigest.getInstance("MD5").digest(content);
+        StringBuilder result = new StringBuilder(2 * digest.length + 2).append('"');
+        for (final byte b : digest) {
+          result.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+        }
+        return result.append('"').toString();
+      } catch (final NoSuchAlgorithmException e) {
+        throw new ODataRuntimeException("MD5 is not supported", e);
+      }
+    }
+  }
 }
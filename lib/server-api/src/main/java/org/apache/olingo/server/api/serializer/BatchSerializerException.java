@@ -26,7 +26,8 @@ public class BatchSerializerException extends SerializerException {
   private static final long serialVersionUID = 2634433974342796905L;
 
   public enum MessageKeys implements MessageKey {
-    MISSING_CONTENT_ID;
+    MISSING_CONTENT_ID,
+    IO_EXCEPTION;
 
     @Override
     public String getKey() {
@@ -39,6 +40,11 @@ public class BatchSerializerException extends SerializerException {
     super(developmentMessage, messageKey, parameters);
   }
 
+  public BatchSerializerException(final String developmentMessage, final Throwable cause,
+      final MessageKey messageKey, final String... parameters) {
+    super(developmentMessage, cause, messageKey, parameters);
+  }
+
   @Override
   protected String getBundleName() {
     return DEFAULT_SERVER_BUNDLE_NAME;
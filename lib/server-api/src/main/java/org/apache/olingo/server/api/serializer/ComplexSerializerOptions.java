@@ -19,6 +19,7 @@
 package org.apache.olingo.server.api.serializer;
 
 import org.apache.olingo.commons.api.data.ContextURL;
+import org.apache.olingo.server.api.ODataContentWriteErrorCallback;
 import org.apache.olingo.server.api.uri.queryoption.ExpandOption;
 import org.apache.olingo.server.api.uri.queryoption.SelectOption;
 
@@ -29,6 +30,7 @@ public class ComplexSerializerOptions {
   private ExpandOption expand;
   private SelectOption select;
   private String xml10InvalidCharReplacement;
+  private ODataContentWriteErrorCallback odataContentWriteErrorCallback;
 
   /** Gets the {@link ContextURL}. */
   public ContextURL getContextURL() {
@@ -50,6 +52,17 @@ public class ComplexSerializerOptions {
     return xml10InvalidCharReplacement;
   }  
 
+  /**
+   * Gets the callback which is used in case of an exception during
+   * write of the content (in case the content will be written/streamed
+   * in the future)
+   * @return callback which is used in case of an exception during
+   * write of the content
+   */
+  public ODataContentWriteErrorCallback getODataContentWriteErrorCallback() {
+    return odataContentWriteErrorCallback;
+  }
+
   private ComplexSerializerOptions() {}
 
   /** Initializes the options builder. */
@@ -90,6 +103,18 @@ public class ComplexSerializerOptions {
       return this;
     } 
     
+    /**
+     * Set the callback which is used in case of an exception during
+     * write of the content.
+     *
+     * @param odataContentWriteErrorCallback the callback
+     * @return the builder
+     */
+    public Builder writeContentErrorCallback(final ODataContentWriteErrorCallback odataContentWriteErrorCallback) {
+      options.odataContentWriteErrorCallback = odataContentWriteErrorCallback;
+      return this;
+    }
+
     /** Builds the OData serializer options. */
     public ComplexSerializerOptions build() {
       return options;
@@ -19,12 +19,14 @@
 package org.apache.olingo.server.api.serializer;
 
 import org.apache.olingo.commons.api.data.ContextURL;
+import org.apache.olingo.server.api.ODataContentWriteErrorCallback;
 import org.apache.olingo.server.api.uri.queryoption.CountOption;
 
 /** Options to pass as additional information to the reference-collection serializer. */
 public final class ReferenceCollectionSerializerOptions {
   private ContextURL contextURL;
   private CountOption count;
+  private ODataContentWriteErrorCallback odataContentWriteErrorCallback;
 
   /** Gets the {@link ContextURL}. */
   public ContextURL getContextURL() {
@@ -36,6 +38,17 @@ public final class ReferenceCollectionSerializerOptions {
     return count;
   }
 
+  /**
+   * Gets the callback which is used in case of an exception during
+   * write of the content (in case the content will be written/streamed
+   * in the future)
+   * @return callback which is used in case of an exception during
+   * write of the content
+   */
+  public ODataContentWriteErrorCallback getODataContentWriteErrorCallback() {
+    return odataContentWriteErrorCallback;
+  }
+
   private ReferenceCollectionSerializerOptions() {}
 
   /** Initializes the options builder. */
@@ -63,6 +76,18 @@ public final class ReferenceCollectionSerializerOptions {
       return this;
     }
 
+    /**
+     * Set the callback which is used in case of an exception during
+     * write of the content.
+     *
+     * @param odataContentWriteErrorCallback the callback
+     * @return the builder
+     */
+    public Builder writeContentErrorCallback(final ODataContentWriteErrorCallback odataContentWriteErrorCallback) {
+      options.odataContentWriteErrorCallback = odataContentWriteErrorCallback;
+      return this;
+    }
+
     /** Builds the OData serializer options. */
     public ReferenceCollectionSerializerOptions build() {
       return options;
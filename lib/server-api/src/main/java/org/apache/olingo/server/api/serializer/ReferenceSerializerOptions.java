@@ -19,18 +19,31 @@
 package org.apache.olingo.server.api.serializer;
 
 import org.apache.olingo.commons.api.data.ContextURL;
+import org.apache.olingo.server.api.ODataContentWriteErrorCallback;
 
 /**
  * Options to pass as additional information to the reference serializer.
  */
 public final class ReferenceSerializerOptions {
   private ContextURL contextURL;
+  private ODataContentWriteErrorCallback odataContentWriteErrorCallback;
 
   /** Gets the {@link ContextURL}. */
   public ContextURL getContextURL() {
     return contextURL;
   }
 
+  /**
+   * Gets the callback which is used in case of an exception during
+   * write of the content (in case the content will be written/streamed
+   * in the future)
+   * @return callback which is used in case of an exception during
+   * write of the content
+   */
+  public ODataContentWriteErrorCallback getODataContentWriteErrorCallback() {
+    return odataContentWriteErrorCallback;
+  }
+
   private ReferenceSerializerOptions() {}
 
   /** Initializes the options builder. */
@@ -52,6 +65,18 @@ public final class ReferenceSerializerOptions {
       return this;
     }
 
+    /**
+     * Set the callback which is used in case of an exception during
+     * write of the content.
+     *
+     * @param odataContentWriteErrorCallback the callback
+     * @return the builder
+     */
+    public Builder writeContentErrorCallback(final ODataContentWriteErrorCallback odataContentWriteErrorCallback) {
+      options.odataContentWriteErrorCallback = odataContentWriteErrorCallback;
+      return this;
+    }
+
     /** Builds the OData serializer options. */
     public ReferenceSerializerOptions build() {
       return options;
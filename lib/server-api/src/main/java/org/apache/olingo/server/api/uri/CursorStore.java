@@ -0,0 +1,63 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.api.uri;
+
+/**
+ * <p>Bounded store of paging cursors, i.e., of whatever a processor needs to continue
+ * a paged result with its next page, e.g., a snapshot of the remaining keys or the last sort key.</p>
+ * <p>A processor applying server-side paging puts the cursor for the next page into the store
+ * and uses the returned token as value of the <code>$skiptoken</code> system query option in the next link.
+ * The request for the next page gets the cursor back with that token and continues directly
+ * where the previous page ended, instead of evaluating the request again and skipping
+ * all entities of the previous pages.</p>
+ * <p>Tokens are random and opaque to clients. A cursor is removed after its time to live has passed;
+ * if the store is full, the oldest cursor is removed. A cursor can be read with its token
+ * as often as needed until then, so that a page can be requested again.</p>
+ * <p>The same store instance should be used for all requests of a service;
+ * a store instance can be used concurrently.</p>
+ * @param <T> the type of the cursors
+ * @see org.apache.olingo.server.api.OData#createCursorStore(int, long, java.util.concurrent.TimeUnit)
+ */
+public interface CursorStore<T> {
+
+  /**
+   * Puts a cursor into the store.
+   * @param cursor the cursor; must not be <code>null</code>
+   * @return a new token for the cursor
+   */
+  String put(T cursor);
+
+  /**
+   * Gets a cursor from the store.
+   * @param token the token returned when the cursor has been put into the store
+   * @return the cursor or <code>null</code> if the token is unknown or the cursor has been removed
+   */
+  T get(String token);
+
+  /**
+   * Gets the number of stored cursors.
+   * @return the number of cursors
+   */
+  int size();
+
+  /**
+   * Removes all cursors from the store.
+   */
+  void clear();
+}
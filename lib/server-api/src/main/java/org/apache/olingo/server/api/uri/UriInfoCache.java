@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.api.uri;
+
+import org.apache.olingo.server.api.OlingoExtension;
+
+/**
+ * <p>Bounded cache of parsed and validated request URIs.</p>
+ * <p>If registered at the ODataHttpHandler, a request with the same HTTP method, OData path,
+ * and query as an earlier request of the same service reuses the {@link UriInfo} of that request
+ * instead of parsing and validating the URI again. The least recently used entries are evicted
+ * if the cache is full. All entries are discarded if the cache is used with another
+ * {@link org.apache.olingo.commons.api.edm.Edm Edm} instance, i.e., after the service metadata have changed.</p>
+ * <p>The same cache instance should be registered for all requests of a service;
+ * a cache instance can be used concurrently.</p>
+ * @see org.apache.olingo.server.api.OData#createUriInfoCache(int)
+ */
+public interface UriInfoCache extends OlingoExtension {
+
+  /**
+   * Gets the number of requests whose URI has been found in the cache.
+   * @return the number of cache hits
+   */
+  long getHitCount();
+
+  /**
+   * Gets the number of requests whose URI had to be parsed.
+   * @return the number of cache misses
+   */
+  long getMissCount();
+
+  /**
+   * Gets the number of cached URIs.
+   * @return the number of entries
+   */
+  int size();
+
+  /**
+   * Removes all entries from the cache.
+   */
+  void clear();
+}
@@ -0,0 +1,351 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core;
+
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.edm.EdmEntityType;
+import org.apache.olingo.commons.api.edm.EdmKeyPropertyRef;
+import org.apache.olingo.commons.api.edm.EdmPrimitiveType;
+import org.apache.olingo.commons.api.edm.EdmPrimitiveTypeException;
+import org.apache.olingo.commons.api.edm.EdmProperty;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.commons.core.Decoder;
+import org.apache.olingo.commons.core.Encoder;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.uri.UriInfo;
+import org.apache.olingo.server.api.uri.UriResource;
+import org.apache.olingo.server.api.uri.UriResourcePrimitiveProperty;
+import org.apache.olingo.server.api.uri.queryoption.OrderByItem;
+import org.apache.olingo.server.api.uri.queryoption.SystemQueryOptionKind;
+import org.apache.olingo.server.api.uri.queryoption.expression.Member;
+import org.apache.olingo.server.core.requests.DataRequest;
+
+/**
+ * Keyset (seek) pagination of entity collections.
+ * <p>
+ * Instead of skipping the entities of all previous pages, a page starts directly after the last entity of the
+ * previous page, in the sort order of the request. That sort order consists of the items of
+ * <code>$orderby</code>, followed by the key properties not already contained in it as tiebreakers, so that
+ * the position of each entity is unique. The sort values of the last entity of a page are encoded as
+ * <code>$skiptoken</code> into the next link; in the request for the next page, they are available as typed
+ * {@link SeekAfter} predicate that a service handler can push down to its store, e.g., as condition
+ * <code>a &gt; ? OR (a = ? AND b &gt; ?)</code> that can be answered with an index range scan.
+ * <p>
+ * Only primitive properties of the entity type itself are supported in <code>$orderby</code>.
+ * The service handler has to sort the entities itself and to decide on the page size.
+ */
+public class KeysetPagination {
+
+  private static final char SEPARATOR = ',';
+  private static final String NULL = "null";
+  private static final String SKIPTOKEN = SystemQueryOptionKind.SKIPTOKEN.toString();
+  private static final String SKIP = SystemQueryOptionKind.SKIP.toString();
+
+  private final List<SortKey> sortKeys;
+  private final SeekAfter seekAfter;
+  private final String rawRequestUri;
+
+  private KeysetPagination(final List<SortKey> sortKeys, final SeekAfter seekAfter, final String rawRequestUri) {
+    this.sortKeys = sortKeys;
+    this.seekAfter = seekAfter;
+    this.rawRequestUri = rawRequestUri;
+  }
+
+  /**
+   * Creates the keyset pagination for a request to an entity collection.
+   * @param request the request
+   * @return the keyset pagination
+   * @throws ODataApplicationException if the sort order is not supported or the skiptoken is invalid
+   */
+  public static KeysetPagination create(final DataRequest request) throws ODataApplicationException {
+    return create(request.getUriInfo(), request.getEntitySet().getEntityType(),
+        request.getODataRequest().getRawRequestUri());
+  }
+
+  /**
+   * Creates the keyset pagination for a request to an entity collection.
+   * @param uriInfo       the parsed request URI
+   * @param entityType    the type of the entities
+   * @param rawRequestUri the request URI (used to construct the next link)
+   * @return the keyset pagination
+   * @throws ODataApplicationException if the sort order is not supported or the skiptoken is invalid
+   */
+  public static KeysetPagination create(final UriInfo uriInfo, final EdmEntityType entityType,
+      final String rawRequestUri) throws ODataApplicationException {
+    List<SortKey> sortKeys = new ArrayList<SortKey>();
+    if (uriInfo.getOrderByOption() != null) {
+      for (final OrderByItem item : uriInfo.getOrderByOption().getOrders()) {
+        final EdmProperty property = getProperty(item);
+        if (property == null) {
+          throw new ODataApplicationException("Keyset pagination supports only primitive properties in $orderby.",
+              HttpStatusCode.NOT_IMPLEMENTED.getStatusCode(), Locale.ROOT);
+        }
+        if (!contains(sortKeys, property.getName())) {
+          sortKeys.add(new SortKey(property, item.isDescending()));
+        }
+      }
+    }
+    for (final EdmKeyPropertyRef keyPropertyRef : entityType.getKeyPropertyRefs()) {
+      final EdmProperty property = keyPropertyRef.getProperty();
+      if (!contains(sortKeys, property.getName())) {
+        sortKeys.add(new SortKey(property, false));
+      }
+    }
+    sortKeys = Collections.unmodifiableList(sortKeys);
+
+    final SeekAfter seekAfter = uriInfo.getSkipTokenOption() == null ? null :
+        new SeekAfter(sortKeys, parse(sortKeys, uriInfo.getSkipTokenOption().getValue()));
+    return new KeysetPagination(sortKeys, seekAfter, rawRequestUri);
+  }
+
+  /** Returns the sort order, i.e., the items of <code>$orderby</code> followed by the missing key properties. */
+  public List<SortKey> getSortKeys() {
+    return sortKeys;
+  }
+
+  /**
+   * Returns the position after which the requested page starts.
+   * @return the position or <code>null</code> for the first page
+   */
+  public SeekAfter getSeekAfter() {
+    return seekAfter;
+  }
+
+  /**
+   * Creates the next link for a page; it should be set only if there are entities after the page.
+   * The <code>$skip</code> option of the request is not repeated in the next link
+   * since the entities to be skipped are before the last entity of the page.
+   * @param lastEntity the last entity of the page
+   * @return the next link with the sort values of the given entity as skiptoken
+   * @throws ODataApplicationException if a sort value cannot be formatted
+   */
+  public URI createNextLink(final Entity lastEntity) throws ODataApplicationException {
+    final StringBuilder token = new StringBuilder();
+    for (final SortKey sortKey : sortKeys) {
+      if (token.length() > 0) {
+        token.append(SEPARATOR);
+      }
+      final Property property = lastEntity.getProperty(sortKey.getName());
+      token.append(Encoder.encode(format(sortKey, property == null ? null : property.getValue())));
+    }
+
+    final int queryStart = rawRequestUri.indexOf('?');
+    final StringBuilder nextLink = new StringBuilder();
+    nextLink.append(rawRequestUri, 0, queryStart < 0 ? rawRequestUri.length() : queryStart);
+    char separator = '?';
+    if (queryStart >= 0) {
+      for (final String option : rawRequestUri.substring(queryStart + 1).split("&")) {
+        if (!option.isEmpty() && !isOption(option, SKIPTOKEN) && !isOption(option, SKIP)) {
+          nextLink.append(separator).append(option);
+          separator = '&';
+        }
+      }
+    }
+    nextLink.append(separator).append(Encoder.encode(SKIPTOKEN)).append('=')
+        .append(Encoder.encode(token.toString()));
+
+    try {
+      return new URI(nextLink.toString());
+    } catch (final URISyntaxException e) {
+      throw new ODataApplicationException("Exception while constructing next link",
+          HttpStatusCode.INTERNAL_SERVER_ERROR.getStatusCode(), Locale.ROOT, e);
+    }
+  }
+
+  private static EdmProperty getProperty(final OrderByItem item) {
+    if (item.getExpression() instanceof Member) {
+      final List<UriResource> parts = ((Member) item.getExpression()).getResourcePath().getUriResourceParts();
+      if (parts.size() == 1 && parts.get(0) instanceof UriResourcePrimitiveProperty) {
+        final EdmProperty property = ((UriResourcePrimitiveProperty) parts.get(0)).getProperty();
+        return property.isCollection() ? null : property;
+      }
+    }
+    return null;
+  }
+
+  private static boolean contains(final List<SortKey> sortKeys, final String name) {
+    for (final SortKey sortKey : sortKeys) {
+      if (sortKey.getName().equals(name)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static boolean isOption(final String option, final String name) {
+    final int equals = option.indexOf('=');
+    return Decoder.decode(equals < 0 ? option : option.substring(0, equals)).equals(name);
+  }
+
+  private static List<Object> parse(final List<SortKey> sortKeys, final String token)
+      throws ODataApplicationException {
+    List<Object> values = new ArrayList<Object>(sortKeys.size());
+    int start = 0;
+    for (final SortKey sortKey : sortKeys) {
+      if (start > token.length()) {
+        throw invalidSkipToken(null);
+      }
+      int end = token.indexOf(SEPARATOR, start);
+      if (end < 0) {
+        end = token.length();
+      }
+      try {
+        final String literal = Decoder.decode(token.substring(start, end));
+        values.add(NULL.equals(literal) ? null :
+            sortKey.valueOfString(sortKey.getType().fromUriLiteral(literal)));
+      } catch (final EdmPrimitiveTypeException e) {
+        throw invalidSkipToken(e);
+      } catch (final IllegalArgumentException e) {
+        throw invalidSkipToken(e);
+      }
+      start = end + 1;
+    }
+    if (start <= token.length()) {
+      throw invalidSkipToken(null);
+    }
+    return Collections.unmodifiableList(values);
+  }
+
+  private static String format(final SortKey sortKey, final Object value) throws ODataApplicationException {
+    if (value == null) {
+      return NULL;
+    }
+    try {
+      return sortKey.getType().toUriLiteral(sortKey.valueToString(value));
+    } catch (final EdmPrimitiveTypeException e) {
+      throw new ODataApplicationException("Sort value of " + sortKey.getName() + " cannot be formatted.",
+          HttpStatusCode.INTERNAL_SERVER_ERROR.getStatusCode(), Locale.ROOT, e);
+    }
+  }
+
+  private static ODataApplicationException invalidSkipToken(final Exception cause) {
+    return new ODataApplicationException("Invalid skip token", HttpStatusCode.BAD_REQUEST.getStatusCode(),
+        Locale.ROOT, cause);
+  }
+
+  /** A property of the sort order. */
+  public static final class SortKey {
+    private final EdmProperty property;
+    private final boolean descending;
+
+    private SortKey(final EdmProperty property, final boolean descending) {
+      this.property = property;
+      this.descending = descending;
+    }
+
+    public String getName() {
+      return property.getName();
+    }
+
+    public EdmProperty getProperty() {
+      return property;
+    }
+
+    public EdmPrimitiveType getType() {
+      return (EdmPrimitiveType) property.getType();
+    }
+
+    public boolean isDescending() {
+      return descending;
+    }
+
+    private String valueToString(final Object value) throws EdmPrimitiveTypeException {
+      return getType().valueToString(value, property.isNullable(), property.getMaxLength(),
+          property.getPrecision(), property.getScale(), property.isUnicode());
+    }
+
+    private Object valueOfString(final String value) throws EdmPrimitiveTypeException {
+      final EdmPrimitiveType type = getType();
+      return type.valueOfString(value, property.isNullable(), property.getMaxLength(),
+          property.getPrecision(), property.getScale(), property.isUnicode(), type.getDefaultType());
+    }
+  }
+
+  /**
+   * The position after which a page starts, given as sort values of the last entity of the previous page.
+   * An entity belongs to the page if it comes after that position in sort order, i.e., if, for some index
+   * <code>i</code>, its values of the sort keys before <code>i</code> are equal to the sort values
+   * and its value of sort key <code>i</code> is greater (or less, if the sort key is descending).
+   * The values have the default Java types of their primitive types; <code>null</code> is less than all values.
+   */
+  public static final class SeekAfter {
+    private final List<SortKey> sortKeys;
+    private final List<Object> values;
+
+    private SeekAfter(final List<SortKey> sortKeys, final List<Object> values) {
+      this.sortKeys = sortKeys;
+      this.values = values;
+    }
+
+    public List<SortKey> getSortKeys() {
+      return sortKeys;
+    }
+
+    /** Returns the sort values, in the order of the sort keys. */
+    public List<Object> getValues() {
+      return values;
+    }
+
+    /**
+     * Evaluates the predicate on an entity, for stores that cannot evaluate it themselves.
+     * @param entity the entity
+     * @return whether the entity comes after this position
+     * @throws ODataApplicationException if a value of the entity cannot be compared
+     */
+    public boolean matches(final Entity entity) throws ODataApplicationException {
+      for (int index = 0; index < sortKeys.size(); index++) {
+        final SortKey sortKey = sortKeys.get(index);
+        final Property property = entity.getProperty(sortKey.getName());
+        final int result = compare(sortKey, property == null ? null : property.getValue(), values.get(index));
+        if (result != 0) {
+          return sortKey.isDescending() ? result < 0 : result > 0;
+        }
+      }
+      return false;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static int compare(final SortKey sortKey, final Object value, final Object seekValue)
+        throws ODataApplicationException {
+      if (value == null || seekValue == null) {
+        return value == null ? seekValue == null ? 0 : -1 : 1;
+      }
+      Object typedValue = value;
+      if (!sortKey.getType().getDefaultType().isInstance(value)) {
+        try {
+          typedValue = sortKey.valueOfString(sortKey.valueToString(value));
+        } catch (final EdmPrimitiveTypeException e) {
+          throw new ODataApplicationException("Sort value of " + sortKey.getName() + " cannot be compared.",
+              HttpStatusCode.INTERNAL_SERVER_ERROR.getStatusCode(), Locale.ROOT, e);
+        }
+      }
+      return typedValue instanceof Comparable ?
+          ((Comparable<Object>) typedValue).compareTo(seekValue) :
+          format(sortKey, typedValue).compareTo(format(sortKey, seekValue));
+    }
+  }
+}
@@ -18,24 +18,35 @@
  */
 package org.apache.olingo.server.core;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.io.Reader;
 import java.net.MalformedURLException;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
-import javax.xml.namespace.QName;
-import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
-import javax.xml.stream.events.Attribute;
-import javax.xml.stream.events.EndElement;
-import javax.xml.stream.events.StartElement;
-import javax.xml.stream.events.XMLEvent;
+import javax.xml.stream.XMLStreamReader;
 
 import org.apache.olingo.commons.api.edm.EdmException;
 import org.apache.olingo.commons.api.edm.FullQualifiedName;
@@ -95,9 +106,12 @@ import org.apache.olingo.server.api.ServiceMetadata;
  * This class can convert a CSDL document into EDMProvider object
  */
 public class MetadataParser {
+  /** Factories are thread-safe once configured, so all parsers share one. */
+  private static final XMLInputFactory FACTORY = XMLInputFactory.newFactory();
   private boolean parseAnnotations = false;
   private static final String XML_LINK_NS = "http://www.w3.org/1999/xlink";
   private ReferenceResolver referenceResolver = new DefaultReferenceResolver();
+  private ExecutorService referenceExecutor;
   private boolean useLocalCoreVocabularies = true;
   private boolean implicitlyLoadCoreVocabularies = false;
   
@@ -121,6 +135,17 @@ public class MetadataParser {
     return this;
   }
   
+  /**
+   * Parse the referenced documents in parallel on the given executor. The
+   * {@link ReferenceResolver} must be thread-safe when an executor is set.
+   * @param executor executor for the reference parsing; <code>null</code> parses sequentially
+   * @return
+   */
+  public MetadataParser referenceExecutor(ExecutorService executor) {
+    this.referenceExecutor = executor;
+    return this;
+  }
+
   /**
    * Load the core libraries from local classpath
    * @param load true for yes; false otherwise
@@ -147,60 +172,235 @@ public class MetadataParser {
     return new ServiceMetadataImpl(provider, provider.getReferences(), null);
   }
 
+  /**
+   * Build the service metadata from a precompiled snapshot, if it matches the given CSDL document
+   * @param csdl the CSDL document
+   * @param snapshot snapshot written by {@link #writeSnapshot(InputStream, OutputStream)}; may be null
+   * @return
+   * @see #buildEdmProvider(InputStream, InputStream)
+   */
+  public ServiceMetadata buildServiceMetadata(InputStream csdl, InputStream snapshot)
+      throws XMLStreamException {
+    SchemaBasedEdmProvider provider = buildEdmProvider(csdl, snapshot);
+    return new ServiceMetadataImpl(provider, provider.getReferences(), null);
+  }
+
+  /**
+   * Restore the EDM provider from a precompiled snapshot. The CSDL document is only parsed when
+   * the snapshot is missing, unreadable or has been compiled from a different document or with
+   * different parser settings; otherwise it is just read to verify its checksum.
+   * @param csdl the CSDL document
+   * @param snapshot snapshot written by {@link #writeSnapshot(InputStream, OutputStream)}; may be null
+   * @return
+   */
+  public SchemaBasedEdmProvider buildEdmProvider(InputStream csdl, InputStream snapshot)
+      throws XMLStreamException {
+    byte[] content = readAll(csdl);
+    if (snapshot != null) {
+      try {
+        SchemaBasedEdmProvider provider = MetadataSnapshot.read(snapshot, checksum(content));
+        if (provider != null) {
+          return provider;
+        }
+      } catch (IOException e) {
+        // an unusable snapshot is not fatal, the CSDL document is the source of truth
+      }
+    }
+    return buildEdmProvider(new ByteArrayInputStream(content), this.referenceResolver,
+        this.implicitlyLoadCoreVocabularies, this.useLocalCoreVocabularies);
+  }
+
+  /**
+   * Parse the CSDL document and write it as binary snapshot, e.g. at build time
+   * @param csdl the CSDL document
+   * @param snapshot stream the snapshot is written to
+   */
+  public void writeSnapshot(InputStream csdl, OutputStream snapshot) throws XMLStreamException, IOException {
+    byte[] content = readAll(csdl);
+    SchemaBasedEdmProvider provider = buildEdmProvider(new ByteArrayInputStream(content),
+        this.referenceResolver, this.implicitlyLoadCoreVocabularies, this.useLocalCoreVocabularies);
+    MetadataSnapshot.write(provider, checksum(content), snapshot);
+  }
+
+  /**
+   * Checksum of a CSDL document together with the settings of this parser that
+   * influence the resulting EDM provider. The documents which the reference resolver
+   * delivers for its references, and for their references in turn, are part of the checksum.
+   * @param csdl the CSDL document
+   * @return
+   */
+  public String checksum(byte[] csdl) throws XMLStreamException {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("MD5");
+      digest.update(csdl);
+      if (this.referenceResolver != null) {
+        digestReferences(digest, csdl, new HashSet<String>());
+      }
+      digest.update(new byte[] { (byte) (this.parseAnnotations ? 1 : 0),
+          (byte) (this.implicitlyLoadCoreVocabularies ? 1 : 0),
+          (byte) (this.useLocalCoreVocabularies ? 1 : 0) });
+      StringBuilder checksum = new StringBuilder();
+      for (byte b : digest.digest()) {
+        checksum.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+      }
+      return checksum.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new EdmException(e);
+    }
+  }
+
+  /**
+   * Add the URIs and contents of the documents referenced by the given document to the digest.
+   * Only the references in front of the DataServices element are read; references which
+   * include nothing but locally loaded core vocabularies are skipped, as they are never resolved.
+   */
+  private void digestReferences(MessageDigest digest, byte[] document, Set<String> visited)
+      throws XMLStreamException {
+    String xmlBase = null;
+    Map<String, Boolean> references = new LinkedHashMap<String, Boolean>();
+    String uri = null;
+    XMLStreamReader reader = FACTORY.createXMLStreamReader(new ByteArrayInputStream(document));
+    try {
+      while (reader.hasNext()) {
+        if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+          String name = reader.getLocalName();
+          if (name.equals("Edmx")) {
+            xmlBase = attrNS(reader, XML_LINK_NS, "base");
+          } else if (name.equals("Reference")) {
+            uri = attr(reader, "Uri");
+            references.put(uri, Boolean.FALSE);
+          } else if (name.equals("Include") && uri != null
+              && !(isCoreVocabulary(attr(reader, "Namespace")) && this.useLocalCoreVocabularies)) {
+            references.put(uri, Boolean.TRUE);
+          } else if (name.equals("DataServices")) {
+            break;
+          }
+        }
+      }
+    } finally {
+      reader.close();
+    }
+
+    for (Map.Entry<String, Boolean> reference : references.entrySet()) {
+      if (reference.getValue()) {
+        byte[] content = resolve(reference.getKey(), xmlBase == null ? null : fixXmlBase(xmlBase));
+        digest.update(reference.getKey().getBytes(Charset.forName("UTF-8")));
+        digest.update(content);
+        if (content.length > 0 && visited.add(reference.getKey() + ' ' + xmlBase)) {
+          digestReferences(digest, content, visited);
+        }
+      }
+    }
+  }
+
+  private byte[] resolve(String uri, String xmlBase) throws XMLStreamException {
+    InputStream is;
+    try {
+      is = this.referenceResolver.resolveReference(new URI(uri), xmlBase);
+    } catch (URISyntaxException e) {
+      throw new XMLStreamException(e);
+    } catch (EdmException e) {
+      // a missing document makes parsing fail, the snapshot must not be used then either
+      return new byte[0];
+    }
+    if (is == null) {
+      return new byte[0];
+    }
+    try {
+      return readAll(is);
+    } finally {
+      try {
+        is.close();
+      } catch (IOException e) {
+        // ignore
+      }
+    }
+  }
+
+  private static byte[] readAll(InputStream in) throws XMLStreamException {
+    try {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buffer = new byte[8192];
+      int count;
+      while ((count = in.read(buffer)) != -1) {
+        out.write(buffer, 0, count);
+      }
+      return out.toByteArray();
+    } catch (IOException e) {
+      throw new XMLStreamException(e);
+    }
+  }
+
   public SchemaBasedEdmProvider buildEdmProvider(Reader csdl) throws XMLStreamException {
-    XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
-    XMLEventReader reader = xmlInputFactory.createXMLEventReader(csdl);    
-    return buildEdmProvider(reader, this.referenceResolver,
+    return buildEdmProvider(csdl, this.referenceResolver,
         this.implicitlyLoadCoreVocabularies, this.useLocalCoreVocabularies);
   }
   
   protected SchemaBasedEdmProvider buildEdmProvider(Reader csdl,
       ReferenceResolver resolver, boolean loadCore, boolean useLocal)
       throws XMLStreamException {
-    XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
-    XMLEventReader reader = xmlInputFactory.createXMLEventReader(csdl);    
-    return buildEdmProvider(reader, resolver, loadCore, useLocal);
+    XMLStreamReader reader = FACTORY.createXMLStreamReader(csdl);
+    try {
+      return buildEdmProvider(reader, resolver, loadCore, useLocal, this.referenceExecutor);
+    } finally {
+      reader.close();
+    }
   }
     
   protected SchemaBasedEdmProvider buildEdmProvider(InputStream csdl,
       ReferenceResolver resolver, boolean loadCore, boolean useLocal)
       throws XMLStreamException {
-    XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
-    XMLEventReader reader = xmlInputFactory.createXMLEventReader(csdl);
-    return buildEdmProvider(reader, resolver, loadCore, useLocal);
-  } 
-  
-  protected SchemaBasedEdmProvider buildEdmProvider(XMLEventReader reader,
+    return buildEdmProvider(csdl, resolver, loadCore, useLocal, this.referenceExecutor);
+  }
+
+  private SchemaBasedEdmProvider buildEdmProvider(InputStream csdl,
+      ReferenceResolver resolver, boolean loadCore, boolean useLocal, ExecutorService executor)
+      throws XMLStreamException {
+    XMLStreamReader reader = FACTORY.createXMLStreamReader(csdl);
+    try {
+      return buildEdmProvider(reader, resolver, loadCore, useLocal, executor);
+    } finally {
+      reader.close();
+    }
+  }
+
+  protected SchemaBasedEdmProvider buildEdmProvider(XMLStreamReader reader,
       ReferenceResolver resolver, boolean loadCore, boolean useLocal)
       throws XMLStreamException {
+    return buildEdmProvider(reader, resolver, loadCore, useLocal, this.referenceExecutor);
+  }
+
+  private SchemaBasedEdmProvider buildEdmProvider(XMLStreamReader reader,
+      ReferenceResolver resolver, boolean loadCore, boolean useLocal, ExecutorService executor)
+      throws XMLStreamException {
     SchemaBasedEdmProvider provider = new SchemaBasedEdmProvider();
     
     final StringBuilder xmlBase = new StringBuilder();
-    
-    new ElementReader<SchemaBasedEdmProvider>() {
-      @Override
-      void build(XMLEventReader reader, StartElement element, SchemaBasedEdmProvider provider,
-          String name) throws XMLStreamException {
-        if (attrNS(element, XML_LINK_NS, "base") != null) {
-          xmlBase.append(attrNS(element, XML_LINK_NS, "base"));
-        }
-        String version = attr(element, "Version");
-        if ("4.0".equals(version)) {
-          readDataServicesAndReference(reader, element, provider);
-        } else {
-          throw new XMLStreamException("Currently only V4 is supported.");
-        }
-      }
-    }.read(reader, null, provider, "Edmx");
+
+    // move to the root element
+    while (reader.hasNext() && reader.next() != XMLStreamConstants.START_ELEMENT) {
+      // skip prolog
+    }
+    if (!reader.isStartElement() || !reader.getLocalName().equals("Edmx")) {
+      throw new XMLStreamException("Failed to read complete metadata file. Failed at "
+          + (reader.hasName() ? reader.getLocalName() : "document start"));
+    }
+    if (attrNS(reader, XML_LINK_NS, "base") != null) {
+      xmlBase.append(attrNS(reader, XML_LINK_NS, "base"));
+    }
+    String version = attr(reader, "Version");
+    if ("4.0".equals(version)) {
+      readDataServicesAndReference(reader, provider);
+    } else {
+      throw new XMLStreamException("Currently only V4 is supported.");
+    }
     
     // make sure there is nothing left to read, due to parser error
-    if(reader.hasNext()) {
-      XMLEvent event = reader.peek();
-      throw new XMLStreamException(
-          "Failed to read complete metadata file. Failed at "
-              + (event.isStartElement() ? 
-                  event.asStartElement().getName().getLocalPart() : 
-                  event.asEndElement().getName().getLocalPart()));
+    while (reader.hasNext()) {
+      if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+        throw new XMLStreamException("Failed to read complete metadata file. Failed at "
+            + reader.getLocalName());
+      }
     }
     
     //load core vocabularies even though they are not defined in the references
@@ -213,14 +413,26 @@ public class MetadataParser {
     // load all the reference schemas
     if (resolver != null) {
       loadReferencesSchemas(provider, xmlBase.length() == 0 ? null
-          : fixXmlBase(xmlBase.toString()), resolver, loadCore, useLocal);
+          : fixXmlBase(xmlBase.toString()), resolver, loadCore, useLocal, executor);
     }
     return provider;
   }  
   
   private void loadReferencesSchemas(SchemaBasedEdmProvider provider,
       String xmlBase, ReferenceResolver resolver, boolean loadCore,
-      boolean useLocal) {    
+      boolean useLocal, ExecutorService executor) {    
+
+    // start parsing the referenced documents up front, when they may be parsed in parallel
+    Map<EdmxReference, Future<SchemaBasedEdmProvider>> parsed =
+        new IdentityHashMap<EdmxReference, Future<SchemaBasedEdmProvider>>();
+    if (executor != null) {
+      for (EdmxReference reference : provider.getReferences()) {
+        if (!parsed.containsKey(reference) && needsDocument(provider, reference, useLocal)) {
+          parsed.put(reference, executor.submit(
+              new ReferenceTask(reference, xmlBase, resolver, useLocal)));
+        }
+      }
+    }
 
     for (EdmxReference reference:provider.getReferences()) {
       try {
@@ -239,14 +451,10 @@ public class MetadataParser {
           }
                     
           if (refProvider == null) {
-            InputStream is = this.referenceResolver.resolveReference(reference.getUri(), xmlBase);
-            if (is == null) {
-              throw new EdmException("Failed to load Reference "+reference.getUri()+" loading failed");
-            } else {
-              // do not implicitly load core vocabularies any more. But if the
-              // references loading the core vocabularies try to use local if we can 
-              refProvider = buildEdmProvider(is, resolver, false, useLocal);
-            }
+            Future<SchemaBasedEdmProvider> future = parsed.get(reference);
+            refProvider = future == null ?
+                loadReference(reference, xmlBase, resolver, useLocal) :
+                getReference(future);
           }
           
           CsdlSchema refSchema = refProvider.getSchema(include.getNamespace(), false);
@@ -261,6 +469,73 @@ public class MetadataParser {
       }
     }
   }
+
+  private boolean needsDocument(SchemaBasedEdmProvider provider, EdmxReference reference,
+      boolean useLocal) {
+    for (EdmxReferenceInclude include : reference.getIncludes()) {
+      if (provider.getSchema(include.getNamespace()) == null
+          && !(isCoreVocabulary(include.getNamespace()) && useLocal)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private SchemaBasedEdmProvider loadReference(EdmxReference reference, String xmlBase,
+      ReferenceResolver resolver, boolean useLocal) throws XMLStreamException {
+    InputStream is = this.referenceResolver.resolveReference(reference.getUri(), xmlBase);
+    if (is == null) {
+      throw new EdmException("Failed to load Reference "+reference.getUri()+" loading failed");
+    }
+    try {
+      // do not implicitly load core vocabularies any more. But if the
+      // references loading the core vocabularies try to use local if we can
+      // references of references are parsed sequentially, so that nested tasks
+      // never wait for each other on a bounded executor
+      return buildEdmProvider(is, resolver, false, useLocal, null);
+    } finally {
+      close(is);
+    }
+  }
+
+  private SchemaBasedEdmProvider getReference(Future<SchemaBasedEdmProvider> future)
+      throws XMLStreamException {
+    try {
+      return future.get();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new EdmException(e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof XMLStreamException) {
+        throw (XMLStreamException) e.getCause();
+      } else if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      } else if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw new EdmException(e);
+    }
+  }
+
+  private class ReferenceTask implements Callable<SchemaBasedEdmProvider> {
+    private final EdmxReference reference;
+    private final String xmlBase;
+    private final ReferenceResolver resolver;
+    private final boolean useLocal;
+
+    ReferenceTask(EdmxReference reference, String xmlBase, ReferenceResolver resolver,
+        boolean useLocal) {
+      this.reference = reference;
+      this.xmlBase = xmlBase;
+      this.resolver = resolver;
+      this.useLocal = useLocal;
+    }
+
+    @Override
+    public SchemaBasedEdmProvider call() throws XMLStreamException {
+      return loadReference(reference, xmlBase, resolver, useLocal);
+    }
+  }
   
   private void loadCoreVocabulary(SchemaBasedEdmProvider provider,
       String namespace) throws XMLStreamException {
@@ -295,67 +570,80 @@ public class MetadataParser {
     if (schema == null) {
       InputStream is = this.getClass().getClassLoader().getResourceAsStream(resource);
       if (is != null) {
-        SchemaBasedEdmProvider childProvider = buildEdmProvider(is, null, false, false);
-        provider.addVocabularySchema(namespace, childProvider);
+        try {
+          SchemaBasedEdmProvider childProvider = buildEdmProvider(is, null, false, false, null);
+          provider.addVocabularySchema(namespace, childProvider);
+        } finally {
+          close(is);
+        }
       } else {
         throw new XMLStreamException("failed to load "+resource+" core vocabulary");
       }
     }
   }  
+
+  private static void close(InputStream is) {
+    try {
+      is.close();
+    } catch (IOException e) {
+      // ignore
+    }
+  }
   
-  private void readDataServicesAndReference(XMLEventReader reader,
-      StartElement element, SchemaBasedEdmProvider provider)
-      throws XMLStreamException {
+  private void readDataServicesAndReference(XMLStreamReader reader,
+      SchemaBasedEdmProvider provider) throws XMLStreamException {
     new ElementReader<SchemaBasedEdmProvider>() {
       @Override
-      void build(XMLEventReader reader, StartElement element, SchemaBasedEdmProvider provider,
+      void build(XMLStreamReader reader, SchemaBasedEdmProvider provider,
           String name) throws XMLStreamException {
         if (name.equals("DataServices")) {
-          readSchema(reader, element, provider);
+          readSchema(reader, provider);
         } else if (name.equals("Reference")) {
-          readReference(reader, element, provider, "Reference");
+          readReference(reader, provider);
         }
       }
-    }.read(reader, element, provider, "DataServices", "Reference");
+    }.read(reader, provider, "DataServices", "Reference");
   }
 
-  private void readReference(XMLEventReader reader, StartElement element,
-      final SchemaBasedEdmProvider provider, String name) throws XMLStreamException {
+  private void readReference(XMLStreamReader reader, final SchemaBasedEdmProvider provider)
+      throws XMLStreamException {
     EdmxReference reference;
     try {
-      String uri = attr(element, "Uri");
+      String uri = attr(reader, "Uri");
       reference = new EdmxReference(new URI(uri));
     } catch (URISyntaxException e) {
       throw new XMLStreamException(e);
     }
     new ElementReader<EdmxReference>() {
       @Override
-      void build(XMLEventReader reader, StartElement element,
-          EdmxReference reference, String name) throws XMLStreamException {
+      void build(XMLStreamReader reader, EdmxReference reference, String name)
+          throws XMLStreamException {
         if (name.equals("Include")) {
-          EdmxReferenceInclude include = new EdmxReferenceInclude(attr(element, "Namespace"),
-              attr(element, "Alias"));
+          EdmxReferenceInclude include = new EdmxReferenceInclude(attr(reader, "Namespace"),
+              attr(reader, "Alias"));
           reference.addInclude(include);
+          skipElement(reader);
         } else if (name.equals("IncludeAnnotations")) {
           EdmxReferenceIncludeAnnotation annotation = new EdmxReferenceIncludeAnnotation(
-              attr(element, "TermNamespace"));
-          annotation.setTargetNamespace(attr(element, "TargetNamespace"));
-          annotation.setQualifier(attr(element, "Qualifier"));
+              attr(reader, "TermNamespace"));
+          annotation.setTargetNamespace(attr(reader, "TargetNamespace"));
+          annotation.setQualifier(attr(reader, "Qualifier"));
           reference.addIncludeAnnotation(annotation);
+          skipElement(reader);
         } else if (name.equals("Annotation")) {
-          readAnnotations(reader, element, reference);
+          readAnnotation(reader, reference);
         }
       }
-    }.read(reader, element, reference, "Include", "IncludeAnnotations", "Annotation");
+    }.read(reader, reference, "Include", "IncludeAnnotations", "Annotation");
     provider.addReference(reference);
   }
   
-  private void readSchema(XMLEventReader reader, StartElement element,
-      SchemaBasedEdmProvider provider) throws XMLStreamException {
+  private void readSchema(XMLStreamReader reader, SchemaBasedEdmProvider provider)
+      throws XMLStreamException {
 
     new ElementReader<SchemaBasedEdmProvider>() {
       @Override
-      void build(XMLEventReader reader, StartElement element, SchemaBasedEdmProvider provider, String name)
+      void build(XMLStreamReader reader, SchemaBasedEdmProvider provider, String name)
           throws XMLStreamException {
         CsdlSchema schema = new CsdlSchema();
         schema.setComplexTypes(new ArrayList<CsdlComplexType>());
@@ -365,53 +653,53 @@ public class MetadataParser {
         schema.setFunctions(new ArrayList<CsdlFunction>());
         schema.setTerms(new ArrayList<CsdlTerm>());
         schema.setTypeDefinitions(new ArrayList<CsdlTypeDefinition>());        
-        schema.setNamespace(attr(element, "Namespace"));
-        schema.setAlias(attr(element, "Alias"));
+        schema.setNamespace(attr(reader, "Namespace"));
+        schema.setAlias(attr(reader, "Alias"));
         readSchemaContents(reader, schema);
         provider.addSchema(schema);
       }
-    }.read(reader, element, provider, "Schema");
+    }.read(reader, provider, "Schema");
   }
 
-  private void readSchemaContents(XMLEventReader reader, CsdlSchema schema) throws XMLStreamException {
+  private void readSchemaContents(XMLStreamReader reader, CsdlSchema schema) throws XMLStreamException {
     new ElementReader<CsdlSchema>() {
       @Override
-      void build(XMLEventReader reader, StartElement element, CsdlSchema schema, String name)
+      void build(XMLStreamReader reader, CsdlSchema schema, String name)
           throws XMLStreamException {
         if (name.equals("Action")) {
-          readAction(reader, element, schema);
+          readAction(reader, schema);
         } else if (name.equals("Annotations")) {
-          readAnnotationGroup(reader, element, schema);
+          readAnnotationGroup(reader, schema);
         } else if (name.equals("Annotation")) {
-          readAnnotations(reader, element, schema);
+          readAnnotation(reader, schema);
         } else if (name.equals("ComplexType")) {
-          readComplexType(reader, element, schema);
+          readComplexType(reader, schema);
         } else if (name.equals("EntityContainer")) {
-          readEntityContainer(reader, element, schema);
+          readEntityContainer(reader, schema);
         } else if (name.equals("EntityType")) {
-          readEntityType(reader, element, schema);
+          readEntityType(reader, schema);
         } else if (name.equals("EnumType")) {
-          readEnumType(reader, element, schema);
+          readEnumType(reader, schema);
         } else if (name.equals("Function")) {
-          readFunction(reader, element, schema);
+          readFunction(reader, schema);
         } else if (name.equals("Term")) {
-          schema.getTerms().add(readTerm(reader, element));
+          schema.getTerms().add(readTerm(reader));
         } else if (name.equals("TypeDefinition")) {
-          schema.getTypeDefinitions().add(readTypeDefinition(reader, element));
+          schema.getTypeDefinitions().add(readTypeDefinition(reader));
         }
       }
-    }.read(reader, null, schema, "Action", "Annotations", "Annotation", "ComplexType",
+    }.read(reader, schema, "Action", "Annotations", "Annotation", "ComplexType",
         "EntityContainer", "EntityType", "EnumType", "Function", "Term", "TypeDefinition");
   }
 
-  private void readAction(XMLEventReader reader, StartElement element, CsdlSchema schema)
+  private void readAction(XMLStreamReader reader, CsdlSchema schema)
       throws XMLStreamException {
 
     CsdlAction action = new CsdlAction();
     action.setParameters(new ArrayList<CsdlParameter>());
-    action.setName(attr(element, "Name"));
-    action.setBound(Boolean.parseBoolean(attr(element, "IsBound")));
-    String entitySetPath = attr(element, "EntitySetPath");
+    action.setName(attr(reader, "Name"));
+    action.setBound(Boolean.parseBoolean(attr(reader, "IsBound")));
+    String entitySetPath = attr(reader, "EntitySetPath");
     if (entitySetPath != null) {
       // TODO: need to parse into binding and path.
       action.setEntitySetPath(entitySetPath);
@@ -420,199 +708,175 @@ public class MetadataParser {
     schema.getActions().add(action);
   }
 
-  private FullQualifiedName readType(StartElement element) {
-    String type = attr(element, "Type");
+  private FullQualifiedName readType(XMLStreamReader reader) {
+    String type = attr(reader, "Type");
     if (type != null && type.startsWith("Collection(") && type.endsWith(")")) {
       return new FullQualifiedName(type.substring(11, type.length() - 1));
     }
     return new FullQualifiedName(type);
   }
 
-  private boolean isCollectionType(StartElement element) {
-    String type = attr(element, "Type");
+  private boolean isCollectionType(XMLStreamReader reader) {
+    String type = attr(reader, "Type");
     if (type != null && type.startsWith("Collection(") && type.endsWith(")")) {
       return true;
     }
     return false;
   }
 
-  private void readReturnType(XMLEventReader reader, StartElement element,
-      CsdlOperation operation) throws XMLStreamException {
+  private void readReturnType(XMLStreamReader reader, CsdlOperation operation)
+      throws XMLStreamException {
     CsdlReturnType returnType = new CsdlReturnType();
-    returnType.setType(readType(element));
-    returnType.setCollection(isCollectionType(element));
-    returnType.setNullable(Boolean.parseBoolean(attr(element, "Nullable")));
+    returnType.setType(readType(reader));
+    returnType.setCollection(isCollectionType(reader));
+    returnType.setNullable(Boolean.parseBoolean(attr(reader, "Nullable")));
 
-    String maxLength = attr(element, "MaxLength");
+    String maxLength = attr(reader, "MaxLength");
     if (maxLength != null) {
       returnType.setMaxLength(Integer.parseInt(maxLength));
     }
-    String precision = attr(element, "Precision");
+    String precision = attr(reader, "Precision");
     if (precision != null) {
       returnType.setPrecision(Integer.parseInt(precision));
     }
-    String scale = attr(element, "Scale");
+    String scale = attr(reader, "Scale");
     if (scale != null) {
       returnType.setScale(Integer.parseInt(scale));
     }
-    String srid = attr(element, "SRID");
+    String srid = attr(reader, "SRID");
     if (srid != null) {
       returnType.setSrid(SRID.valueOf(srid));
     }
-    peekAnnotations(reader, element.getName().getLocalPart(), returnType);
+    readAnnotations(reader, returnType);
     operation.setReturnType(returnType);
   }
 
-  private void readParameter(XMLEventReader reader, StartElement element,
-      CsdlOperation operation) throws XMLStreamException {
+  private void readParameter(XMLStreamReader reader, CsdlOperation operation)
+      throws XMLStreamException {
     CsdlParameter parameter = new CsdlParameter();
-    parameter.setName(attr(element, "Name"));
-    parameter.setType(readType(element));
-    parameter.setCollection(isCollectionType(element));
-    parameter.setNullable(Boolean.parseBoolean(attr(element, "Nullable")));
+    parameter.setName(attr(reader, "Name"));
+    parameter.setType(readType(reader));
+    parameter.setCollection(isCollectionType(reader));
+    parameter.setNullable(Boolean.parseBoolean(attr(reader, "Nullable")));
 
-    String maxLength = attr(element, "MaxLength");
+    String maxLength = attr(reader, "MaxLength");
     if (maxLength != null) {
       parameter.setMaxLength(Integer.parseInt(maxLength));
     }
-    String precision = attr(element, "Precision");
+    String precision = attr(reader, "Precision");
     if (precision != null) {
       parameter.setPrecision(Integer.parseInt(precision));
     }
-    String scale = attr(element, "Scale");
+    String scale = attr(reader, "Scale");
     if (scale != null) {
       parameter.setScale(Integer.parseInt(scale));
     }
-    String srid = attr(element, "SRID");
+    String srid = attr(reader, "SRID");
     if (srid != null) {
       parameter.setSrid(SRID.valueOf(srid));
     }
-    peekAnnotations(reader, element.getName().getLocalPart(), parameter);
+    readAnnotations(reader, parameter);
     operation.getParameters().add(parameter);
   }
 
-  private CsdlTypeDefinition readTypeDefinition(XMLEventReader reader,
-      StartElement element) throws XMLStreamException {
+  private CsdlTypeDefinition readTypeDefinition(XMLStreamReader reader) throws XMLStreamException {
     CsdlTypeDefinition td = new CsdlTypeDefinition();
-    td.setName(attr(element, "Name"));
-    td.setUnderlyingType(new FullQualifiedName(attr(element, "UnderlyingType")));
-    if (attr(element, "Unicode") != null) {
-      td.setUnicode(Boolean.parseBoolean(attr(element, "Unicode")));
+    td.setName(attr(reader, "Name"));
+    td.setUnderlyingType(new FullQualifiedName(attr(reader, "UnderlyingType")));
+    if (attr(reader, "Unicode") != null) {
+      td.setUnicode(Boolean.parseBoolean(attr(reader, "Unicode")));
     }
 
-    String maxLength = attr(element, "MaxLength");
+    String maxLength = attr(reader, "MaxLength");
     if (maxLength != null) {
       td.setMaxLength(Integer.parseInt(maxLength));
     }
-    String precision = attr(element, "Precision");
+    String precision = attr(reader, "Precision");
     if (precision != null) {
       td.setPrecision(Integer.parseInt(precision));
     }
-    String scale = attr(element, "Scale");
+    String scale = attr(reader, "Scale");
     if (scale != null) {
       td.setScale(Integer.parseInt(scale));
     }
-    String srid = attr(element, "SRID");
+    String srid = attr(reader, "SRID");
     if (srid != null) {
       td.setSrid(SRID.valueOf(srid));
     }
-    peekAnnotations(reader, element.getName().getLocalPart(), td);
+    readAnnotations(reader, td);
     return td;
   }
 
-  private CsdlTerm readTerm(XMLEventReader reader, StartElement element) throws XMLStreamException {
+  private CsdlTerm readTerm(XMLStreamReader reader) throws XMLStreamException {
     CsdlTerm term = new CsdlTerm();
-    term.setName(attr(element, "Name"));
-    term.setType(attr(element, "Type"));
+    term.setName(attr(reader, "Name"));
+    term.setType(attr(reader, "Type"));
     
-    if (attr(element, "BaseTerm") != null) {
-      term.setBaseTerm(attr(element, "BaseTerm"));
+    if (attr(reader, "BaseTerm") != null) {
+      term.setBaseTerm(attr(reader, "BaseTerm"));
     }
-    if (attr(element, "DefaultValue") != null) {
-      term.setDefaultValue(attr(element, "DefaultValue"));
+    if (attr(reader, "DefaultValue") != null) {
+      term.setDefaultValue(attr(reader, "DefaultValue"));
     }
-    if (attr(element, "AppliesTo") != null) {
-      String[] appliesTo = attr(element, "AppliesTo").split("\\s+");
+    if (attr(reader, "AppliesTo") != null) {
+      String[] appliesTo = attr(reader, "AppliesTo").split("\\s+");
       term.setAppliesTo(Arrays.asList(appliesTo));
     }
-    term.setNullable(Boolean.parseBoolean(attr(element, "Nullable")));
-    String maxLength = attr(element, "MaxLength");
+    term.setNullable(Boolean.parseBoolean(attr(reader, "Nullable")));
+    String maxLength = attr(reader, "MaxLength");
     if (maxLength != null) {
       term.setMaxLength(Integer.parseInt(maxLength));
     }
-    String precision = attr(element, "Precision");
+    String precision = attr(reader, "Precision");
     if (precision != null) {
       term.setPrecision(Integer.parseInt(precision));
     }
-    String scale = attr(element, "Scale");
+    String scale = attr(reader, "Scale");
     if (scale != null) {
       term.setScale(Integer.parseInt(scale));
     }
-    String srid = attr(element, "SRID");
+    String srid = attr(reader, "SRID");
     if (srid != null) {
       term.setSrid(SRID.valueOf(srid));
     }
-    peekAnnotations(reader, "Term", term);
+    readAnnotations(reader, term);
     return term;
   }
 
-  private void readAnnotationGroup(XMLEventReader reader, StartElement element,
-      CsdlSchema schema) throws XMLStreamException {
+  private void readAnnotationGroup(XMLStreamReader reader, CsdlSchema schema)
+      throws XMLStreamException {
     final CsdlAnnotations annotations = new CsdlAnnotations();
-    annotations.setTarget(attr(element, "Target"));
-    annotations.setQualifier(attr(element, "Qualifier"));
-    peekAnnotations(reader, element.getName().getLocalPart(), annotations);
+    annotations.setTarget(attr(reader, "Target"));
+    annotations.setQualifier(attr(reader, "Qualifier"));
+    readAnnotations(reader, annotations);
     schema.getAnnotationGroups().add(annotations);
   }
 
-  private void peekAnnotations(XMLEventReader reader, String endName,
-      CsdlAnnotatable edmObject) throws XMLStreamException {
-    if(!parseAnnotations) {
-      return;
-    }
-    while (reader.hasNext()) {
-      XMLEvent event = reader.peek();
-
-      if (!event.isStartElement() && !event.isEndElement()) {
-        reader.nextEvent();
-        continue;
-      }
-      
-      if (event.isStartElement()) {
-        StartElement element = event.asStartElement();
-        if (element.getName().getLocalPart().equals("Annotation")) {
-          reader.nextEvent();
-          readAnnotations(reader, element, edmObject);
-        }
-      }
-      
-      if (event.isEndElement()) {
-        EndElement element = event.asEndElement();
-        if (element.getName().getLocalPart().equals("Annotation")) {
-          reader.nextEvent();
-        }
-        
-        if (element.getName().getLocalPart().equals(endName)) {
-          return;
-        }
+  /**
+   * Reads the annotations nested in the current element up to its end tag.
+   */
+  private void readAnnotations(XMLStreamReader reader, CsdlAnnotatable edmObject)
+      throws XMLStreamException {
+    new ElementReader<CsdlAnnotatable>() {
+      @Override
+      void build(XMLStreamReader reader, CsdlAnnotatable edmObject, String name)
+          throws XMLStreamException {
+        readAnnotation(reader, edmObject);
       }
-    }
+    }.read(reader, edmObject, "Annotation");
   }
   
-  private void readAnnotations(XMLEventReader reader, StartElement element,
-      CsdlAnnotatable edmObject) throws XMLStreamException {
-    if (!parseAnnotations) {
-      return;
-    }
+  private void readAnnotation(XMLStreamReader reader, CsdlAnnotatable edmObject)
+      throws XMLStreamException {
     final CsdlAnnotation annotation = new CsdlAnnotation();
-    annotation.setTerm(attr(element, "Term"));
+    annotation.setTerm(attr(reader, "Term"));
     for (ConstantExpressionType type:ConstantExpressionType.values()) {
-      if (attr(element, type.name()) != null) {
+      if (attr(reader, type.name()) != null) {
         annotation.setExpression(new CsdlConstantExpression(
-            type, attr(element, type.name())));
+            type, attr(reader, type.name())));
       }        
     }
-    readExpressions(reader, element, annotation);
+    readExpressions(reader, annotation);
     edmObject.getAnnotations().add(annotation);
   } 
 
@@ -646,158 +910,179 @@ public class MetadataParser {
     }
   }
   
-  private <T> void readExpressions(XMLEventReader reader,
-      StartElement element, T target)
+  private <T> void readExpressions(XMLStreamReader reader, T target)
       throws XMLStreamException {
     new ElementReader<T>() {
       @Override
-      void build(XMLEventReader reader, StartElement element, T target, String name)
+      void build(XMLStreamReader reader, T target, String name)
           throws XMLStreamException {
         
         // attribute based expressions.
-        readAttributeExpressions(element, target);        
+        readAttributeExpressions(reader, target);        
 
         // element based expressions
         for (ConstantExpressionType type:ConstantExpressionType.values()) {
           if (name.equals(type.name())) {
-            if (reader.peek().isCharacters()) {
-              CsdlExpression expr = new CsdlConstantExpression(type, elementValue(reader, element));
-              write(target, expr);
+            String text = elementText(reader);
+            if (text != null) {
+              write(target, new CsdlConstantExpression(type, trimToNull(text)));
             }
+            return;
           }        
         }
         
         if (name.equals("Collection")) {
           CsdlCollection expr = new CsdlCollection();
-          readExpressions(reader, element, expr);
+          readExpressions(reader, expr);
           write(target, expr);
         } else if (name.equals("AnnotationPath")) {
-          write(target, new CsdlAnnotationPath().setValue(elementValue(reader, element)));
+          write(target, new CsdlAnnotationPath().setValue(elementValue(reader)));
         } else if (name.equals("NavigationPropertyPath")) {
           write(target, new CsdlNavigationPropertyPath()
-              .setValue(elementValue(reader, element)));
+              .setValue(elementValue(reader)));
         } else if (name.equals("Path")) {
-          write(target, new CsdlPath().setValue(elementValue(reader, element)));
+          write(target, new CsdlPath().setValue(elementValue(reader)));
         } else if (name.equals("PropertyPath")) {
-          write(target, new CsdlPropertyPath().setValue(elementValue(reader, element)));
+          write(target, new CsdlPropertyPath().setValue(elementValue(reader)));
         } else if (name.equals("UrlRef")) {
           CsdlUrlRef expr = new CsdlUrlRef();
-          readExpressions(reader, element, expr);
+          readExpressions(reader, expr);
           write(target, expr);
         } else if (name.equals("Apply")) {
           CsdlApply expr = new CsdlApply();
-          expr.setFunction(attr(element, "Function"));
-          readExpressions(reader, element, expr);
+          expr.setFunction(attr(reader, "Function"));
+          readExpressions(reader, expr);
           write(target, expr);
         } else if (name.equals("Cast")) {
           CsdlCast expr = new CsdlCast();
-          expr.setType(attr(element, "Type"));
-          readExpressions(reader, element, expr);
+          expr.setType(attr(reader, "Type"));
+          readExpressions(reader, expr);
           write(target, expr);
         } else if (name.equals("If")) {
           CsdlIf expr = new CsdlIf();
-          readExpressions(reader, element, expr);
+          readExpressions(reader, expr);
           write(target, expr);
         } else if (name.equals("IsOf")) {
           CsdlIsOf expr = new CsdlIsOf();
-          expr.setType(attr(element, "Type"));
-          readExpressions(reader, element, expr);
+          expr.setType(attr(reader, "Type"));
+          readExpressions(reader, expr);
           write(target, expr);
         } else if (name.equals("LabeledElement")) {
           CsdlLabeledElement expr = new CsdlLabeledElement();
-          expr.setName(attr(element, "Name"));
-          readExpressions(reader, element, expr);
+          expr.setName(attr(reader, "Name"));
+          readExpressions(reader, expr);
           write(target, expr);
         } else if (name.equals("LabeledElementReference")) {
           CsdlLabeledElementReference expr = new CsdlLabeledElementReference();
-          expr.setValue(elementValue(reader, element));
+          expr.setValue(elementValue(reader));
           write(target, expr);
         } else if (name.equals("Null")) {
           write(target, new CsdlNull());
+          skipElement(reader);
         } else if (name.equals("Record")) {
           CsdlRecord expr = new CsdlRecord();
-          expr.setType(attr(element, "Type"));          
-          readPropertyValues(reader, element, expr);
+          expr.setType(attr(reader, "Type"));          
+          readPropertyValues(reader, expr);
           write(target, expr);          
         }
       }
-    }.read(reader, element, target, "Collection", "AnnotationPath",
+    }.read(reader, target, "Collection", "AnnotationPath",
         "NavigationPropertyPath", "Path", "PropertyPath", "UrlRef",
-        "Apply", "Function", "Cast", "If", "IsOf", "LabeledElement",
+        "Apply", "Cast", "If", "IsOf", "LabeledElement",
         "LabeledElementReference", "Null", "Record","Binary", "Bool", "Date",
         "DateTimeOffset", "Decimal", "Duration", "EnumMember", "Float", "Guid",
         "Int", "String", "TimeOfDay");
   }
   
-  private <T> void readAttributeExpressions(StartElement element, T target)
+  private <T> void readAttributeExpressions(XMLStreamReader reader, T target)
       throws XMLStreamException {
     // attribute based expressions
     for (ConstantExpressionType type:ConstantExpressionType.values()) {
-      if (attr(element, type.name()) != null) {
+      if (attr(reader, type.name()) != null) {
         write(target, new CsdlConstantExpression(
-            type, attr(element, type.name())));
+            type, attr(reader, type.name())));
       }        
     }
     
-    if (attr(element,  "AnnotationPath") != null) {
-     write(target, new CsdlAnnotationPath().setValue(attr(element,  "AnnotationPath"))); 
+    if (attr(reader,  "AnnotationPath") != null) {
+     write(target, new CsdlAnnotationPath().setValue(attr(reader,  "AnnotationPath"))); 
     }
-    if (attr(element,  "NavigationPropertyPath") != null) {
+    if (attr(reader,  "NavigationPropertyPath") != null) {
       write(target, new CsdlNavigationPropertyPath()
-          .setValue(attr(element, "NavigationPropertyPath"))); 
+          .setValue(attr(reader, "NavigationPropertyPath"))); 
     }
-    if (attr(element,  "Path") != null) {
-      write(target, new CsdlPath().setValue(attr(element, "Path"))); 
+    if (attr(reader,  "Path") != null) {
+      write(target, new CsdlPath().setValue(attr(reader, "Path"))); 
     }
-    if (attr(element,  "PropertyPath") != null) {
-      write(target, new CsdlPropertyPath().setValue(attr(element, "PropertyPath"))); 
+    if (attr(reader,  "PropertyPath") != null) {
+      write(target, new CsdlPropertyPath().setValue(attr(reader, "PropertyPath"))); 
     }
-    if (attr(element,  "UrlRef") != null) {
+    if (attr(reader,  "UrlRef") != null) {
       write(target, new CsdlUrlRef().setValue(new CsdlConstantExpression(
-          ConstantExpressionType.String, attr(element, "UrlRef"))));
+          ConstantExpressionType.String, attr(reader, "UrlRef"))));
     }
   }  
-  
-  private String elementValue(XMLEventReader reader, StartElement element) throws XMLStreamException {
+
+  /**
+   * Reads the text content of the current element up to its end tag.
+   * @return the trimmed text, or null if the element has no non-blank text
+   */
+  private String elementValue(XMLStreamReader reader) throws XMLStreamException {
+    return trimToNull(elementText(reader));
+  }
+
+  /**
+   * Reads the text content of the current element up to its end tag.
+   * @return the text, or null if the element has no text content at all
+   */
+  private String elementText(XMLStreamReader reader) throws XMLStreamException {
+    String text = null;
     while (reader.hasNext()) {
-      XMLEvent event = reader.peek();
-      if (event.isStartElement() || event.isEndElement()) {
-        return null;
-      } else if (event.isCharacters()){
-        reader.nextEvent();
-        String data = event.asCharacters().getData();
-        if (data.trim().length() > 0) {
-          return data.trim();
-        }
+      int event = reader.next();
+      if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+          || event == XMLStreamConstants.SPACE) {
+        text = text == null ? reader.getText() : text + reader.getText();
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        break;
+      } else if (event == XMLStreamConstants.START_ELEMENT) {
+        throw new XMLStreamException("Failed to read complete metadata file. Failed at "
+            + reader.getLocalName(), reader.getLocation());
       }
-    }    
-    return null;
+    }
+    return text;
+  }
+
+  private static String trimToNull(String text) {
+    if (text == null || text.trim().length() == 0) {
+      return null;
+    }
+    return text.trim();
   }
   
-  private void readPropertyValues(XMLEventReader reader,
-      StartElement element, CsdlRecord record) throws XMLStreamException {
+  private void readPropertyValues(XMLStreamReader reader, CsdlRecord record)
+      throws XMLStreamException {
     
     new ElementReader<CsdlRecord>() {
       @Override
-      void build(XMLEventReader reader, StartElement element, CsdlRecord record, String name)
+      void build(XMLStreamReader reader, CsdlRecord record, String name)
           throws XMLStreamException {
         CsdlPropertyValue value = new CsdlPropertyValue();
-        value.setProperty(attr(element, "Property"));
-        readAttributeExpressions(element, value);
-        readExpressions(reader, element, value);
+        value.setProperty(attr(reader, "Property"));
+        readAttributeExpressions(reader, value);
+        readExpressions(reader, value);
         record.getPropertyValues().add(value);
       }
-    }.read(reader, element, record, "PropertyValue");    
+    }.read(reader, record, "PropertyValue");    
   }  
   
-  private void readFunction(XMLEventReader reader, StartElement element, CsdlSchema schema)
+  private void readFunction(XMLStreamReader reader, CsdlSchema schema)
       throws XMLStreamException {
     CsdlFunction function = new CsdlFunction();
     function.setParameters(new ArrayList<CsdlParameter>());
-    function.setName(attr(element, "Name"));
-    function.setBound(Boolean.parseBoolean(attr(element, "IsBound")));
-    function.setComposable(Boolean.parseBoolean(attr(element, "IsComposable")));
-    String entitySetPath = attr(element, "EntitySetPath");
+    function.setName(attr(reader, "Name"));
+    function.setBound(Boolean.parseBoolean(attr(reader, "IsBound")));
+    function.setComposable(Boolean.parseBoolean(attr(reader, "IsComposable")));
+    String entitySetPath = attr(reader, "EntitySetPath");
     if (entitySetPath != null) {
       // TODO: need to parse into binding and path.
       function.setEntitySetPath(entitySetPath);
@@ -806,200 +1091,207 @@ public class MetadataParser {
     schema.getFunctions().add(function);
   }
 
-  private void readOperationParameters(XMLEventReader reader, final CsdlOperation operation)
+  private void readOperationParameters(XMLStreamReader reader, final CsdlOperation operation)
       throws XMLStreamException {
     new ElementReader<CsdlOperation>() {
       @Override
-      void build(XMLEventReader reader, StartElement element, CsdlOperation operation, String name)
+      void build(XMLStreamReader reader, CsdlOperation operation, String name)
           throws XMLStreamException {
         if (name.equals("Parameter")) {
-          readParameter(reader, element, operation);
+          readParameter(reader, operation);
         } else if (name.equals("ReturnType")) {
-          readReturnType(reader, element, operation);
+          readReturnType(reader, operation);
         } else if (name.equals("Annotation")) {
-          readAnnotations(reader, element, operation);
+          readAnnotation(reader, operation);
         }
       }
-    }.read(reader, null, operation, "Parameter", "ReturnType", "Annotation");
+    }.read(reader, operation, "Parameter", "ReturnType", "Annotation");
   }
 
-  private void readEnumType(XMLEventReader reader, StartElement element, CsdlSchema schema)
+  private void readEnumType(XMLStreamReader reader, CsdlSchema schema)
       throws XMLStreamException {
     CsdlEnumType type = new CsdlEnumType();
     type.setMembers(new ArrayList<CsdlEnumMember>());
-    type.setName(attr(element, "Name"));
-    if (attr(element, "UnderlyingType") != null) {
-      type.setUnderlyingType(new FullQualifiedName(attr(element, "UnderlyingType")));
+    type.setName(attr(reader, "Name"));
+    if (attr(reader, "UnderlyingType") != null) {
+      type.setUnderlyingType(new FullQualifiedName(attr(reader, "UnderlyingType")));
     }
-    type.setFlags(Boolean.parseBoolean(attr(element, "IsFlags")));
+    type.setFlags(Boolean.parseBoolean(attr(reader, "IsFlags")));
 
-    readEnumMembers(reader, element, type);
+    readEnumMembers(reader, type);
     schema.getEnumTypes().add(type);
   }
 
-  private void readEnumMembers(XMLEventReader reader, StartElement element, CsdlEnumType type)
+  private void readEnumMembers(XMLStreamReader reader, CsdlEnumType type)
       throws XMLStreamException {
     
     new ElementReader<CsdlEnumType>() {
       @Override
-      void build(XMLEventReader reader, StartElement element, CsdlEnumType type, String name)
+      void build(XMLStreamReader reader, CsdlEnumType type, String name)
           throws XMLStreamException {
         if (name.equals("Member")) {
           CsdlEnumMember member = new CsdlEnumMember();
-          member.setName(attr(element, "Name"));
-          member.setValue(attr(element, "Value"));
-          peekAnnotations(reader, name, member);
+          member.setName(attr(reader, "Name"));
+          member.setValue(attr(reader, "Value"));
+          readAnnotations(reader, member);
           type.getMembers().add(member);
         } else if (name.equals("Annotation")) {
-          readAnnotations(reader, element, type);
+          readAnnotation(reader, type);
         }
       }
-    }.read(reader, element, type, "Member", "Annotation");
+    }.read(reader, type, "Member", "Annotation");
   }
 
-  private void readEntityType(XMLEventReader reader, StartElement element, CsdlSchema schema)
+  private void readEntityType(XMLStreamReader reader, CsdlSchema schema)
       throws XMLStreamException {
     CsdlEntityType entityType = new CsdlEntityType();
     entityType.setProperties(new ArrayList<CsdlProperty>());
     entityType.setNavigationProperties(new ArrayList<CsdlNavigationProperty>());
     entityType.setKey(new ArrayList<CsdlPropertyRef>());
-    entityType.setName(attr(element, "Name"));
-    if (attr(element, "BaseType") != null) {
-      entityType.setBaseType(new FullQualifiedName(attr(element, "BaseType")));
+    entityType.setName(attr(reader, "Name"));
+    if (attr(reader, "BaseType") != null) {
+      entityType.setBaseType(new FullQualifiedName(attr(reader, "BaseType")));
     }
-    entityType.setAbstract(Boolean.parseBoolean(attr(element, "Abstract")));
-    entityType.setOpenType(Boolean.parseBoolean(attr(element, "OpenType")));
-    entityType.setHasStream(Boolean.parseBoolean(attr(element, "HasStream")));
+    entityType.setAbstract(Boolean.parseBoolean(attr(reader, "Abstract")));
+    entityType.setOpenType(Boolean.parseBoolean(attr(reader, "OpenType")));
+    entityType.setHasStream(Boolean.parseBoolean(attr(reader, "HasStream")));
     readEntityProperties(reader, entityType);
     schema.getEntityTypes().add(entityType);
   }
 
-  private void readEntityProperties(XMLEventReader reader, CsdlEntityType entityType)
+  private void readEntityProperties(XMLStreamReader reader, CsdlEntityType entityType)
       throws XMLStreamException {
     new ElementReader<CsdlEntityType>() {
       @Override
-      void build(XMLEventReader reader, StartElement element, CsdlEntityType entityType, String name)
+      void build(XMLStreamReader reader, CsdlEntityType entityType, String name)
           throws XMLStreamException {
         if (name.equals("Property")) {
-          entityType.getProperties().add(readProperty(reader, element));
+          entityType.getProperties().add(readProperty(reader));
         } else if (name.equals("NavigationProperty")) {
-          entityType.getNavigationProperties().add(readNavigationProperty(reader, element));
+          entityType.getNavigationProperties().add(readNavigationProperty(reader));
         } else if (name.equals("Key")) {
-          readKey(reader, element, entityType);
+          readKey(reader, entityType);
         } else if (name.equals("Annotation")) {
-          readAnnotations(reader, element, entityType);
+          readAnnotation(reader, entityType);
         }
       }
-    }.read(reader, null, entityType, "Property", "NavigationProperty", "Key", "Annotation");
+    }.read(reader, entityType, "Property", "NavigationProperty", "Key", "Annotation");
   }
 
-  private void readKey(XMLEventReader reader, StartElement element, CsdlEntityType entityType)
+  private void readKey(XMLStreamReader reader, CsdlEntityType entityType)
       throws XMLStreamException {
     new ElementReader<CsdlEntityType>() {
       @Override
-      void build(XMLEventReader reader, StartElement element, CsdlEntityType entityType, String name)
+      void build(XMLStreamReader reader, CsdlEntityType entityType, String name)
           throws XMLStreamException {
         CsdlPropertyRef ref = new CsdlPropertyRef();
-        ref.setName(attr(element, "Name"));
-        ref.setAlias(attr(element, "Alias"));
+        ref.setName(attr(reader, "Name"));
+        ref.setAlias(attr(reader, "Alias"));
         entityType.getKey().add(ref);
+        skipElement(reader);
       }
-    }.read(reader, element, entityType, "PropertyRef");
+    }.read(reader, entityType, "PropertyRef");
   }
 
-  private CsdlNavigationProperty readNavigationProperty(XMLEventReader reader, StartElement element)
+  private CsdlNavigationProperty readNavigationProperty(XMLStreamReader reader)
       throws XMLStreamException {
     CsdlNavigationProperty property = new CsdlNavigationProperty();
     property.setReferentialConstraints(new ArrayList<CsdlReferentialConstraint>());
 
-    property.setName(attr(element, "Name"));
-    property.setType(readType(element));
-    property.setCollection(isCollectionType(element));
-    property.setNullable(Boolean.parseBoolean(attr(element, "Nullable")));
-    property.setPartner(attr(element, "Partner"));
-    property.setContainsTarget(Boolean.parseBoolean(attr(element, "ContainsTarget")));
+    property.setName(attr(reader, "Name"));
+    property.setType(readType(reader));
+    property.setCollection(isCollectionType(reader));
+    property.setNullable(Boolean.parseBoolean(attr(reader, "Nullable")));
+    property.setPartner(attr(reader, "Partner"));
+    property.setContainsTarget(Boolean.parseBoolean(attr(reader, "ContainsTarget")));
 
     new ElementReader<CsdlNavigationProperty>() {
       @Override
-      void build(XMLEventReader reader, StartElement element, CsdlNavigationProperty property,
+      void build(XMLStreamReader reader, CsdlNavigationProperty property,
           String name) throws XMLStreamException {
         if (name.equals("ReferentialConstraint")) {
           CsdlReferentialConstraint constraint = new CsdlReferentialConstraint();
-          constraint.setProperty(attr(element, "Property"));
-          constraint.setReferencedProperty(attr(element, "ReferencedProperty"));
-          peekAnnotations(reader, name, constraint);
+          constraint.setProperty(attr(reader, "Property"));
+          constraint.setReferencedProperty(attr(reader, "ReferencedProperty"));
+          readAnnotations(reader, constraint);
           property.getReferentialConstraints().add(constraint);
         } else if (name.equals("OnDelete")) {
           CsdlOnDelete delete = new CsdlOnDelete();
-          delete.setAction(CsdlOnDeleteAction.valueOf(attr(element, "Action")));
+          delete.setAction(CsdlOnDeleteAction.valueOf(attr(reader, "Action")));
           property.setOnDelete(delete);
-          peekAnnotations(reader, name, delete);
+          readAnnotations(reader, delete);
         } else if (name.equals("Annotation")) {
-          readAnnotations(reader, element, property);
+          readAnnotation(reader, property);
         }
       }
-    }.read(reader, element, property, "ReferentialConstraint", "OnDelete", "Annotation");
+    }.read(reader, property, "ReferentialConstraint", "OnDelete", "Annotation");
     return property;
   }
 
-  private static String attr(StartElement element, String name) {
-    Attribute attr = element.getAttributeByName(new QName(name));
-    if (attr != null) {
-      return attr.getValue();
+  private static String attr(XMLStreamReader reader, String name) {
+    for (int index = 0; index < reader.getAttributeCount(); index++) {
+      if (name.equals(reader.getAttributeLocalName(index))) {
+        String ns = reader.getAttributeNamespace(index);
+        if (ns == null || ns.length() == 0) {
+          return reader.getAttributeValue(index);
+        }
+      }
     }
     return null;
   }
 
-  private static String attrNS(StartElement element, String ns, String name) {
-    Attribute attr = element.getAttributeByName(new QName(ns, name));
-    if (attr != null) {
-      return attr.getValue();
+  private static String attrNS(XMLStreamReader reader, String ns, String name) {
+    for (int index = 0; index < reader.getAttributeCount(); index++) {
+      if (name.equals(reader.getAttributeLocalName(index))
+          && ns.equals(reader.getAttributeNamespace(index))) {
+        return reader.getAttributeValue(index);
+      }
     }
     return null;
   }  
   
-  private CsdlProperty readProperty(XMLEventReader reader, StartElement element)
+  private CsdlProperty readProperty(XMLStreamReader reader)
       throws XMLStreamException {
     CsdlProperty property = new CsdlProperty();
-    property.setName(attr(element, "Name"));
-    property.setType(readType(element));
-    property.setCollection(isCollectionType(element));
-    property.setNullable(Boolean.parseBoolean(attr(element, "Nullable") == null ? "true" : attr(
-        element, "Nullable")));
-    if (attr(element, "Unicode") != null) {
-      property.setUnicode(Boolean.parseBoolean(attr(element, "Unicode")));
+    property.setName(attr(reader, "Name"));
+    property.setType(readType(reader));
+    property.setCollection(isCollectionType(reader));
+    property.setNullable(Boolean.parseBoolean(attr(reader, "Nullable") == null ? "true" : attr(
+        reader, "Nullable")));
+    if (attr(reader, "Unicode") != null) {
+      property.setUnicode(Boolean.parseBoolean(attr(reader, "Unicode")));
     }
 
-    String maxLength = attr(element, "MaxLength");
+    String maxLength = attr(reader, "MaxLength");
     if (maxLength != null) {
       property.setMaxLength(Integer.parseInt(maxLength));
     }
-    String precision = attr(element, "Precision");
+    String precision = attr(reader, "Precision");
     if (precision != null) {
       property.setPrecision(Integer.parseInt(precision));
     }
-    String scale = attr(element, "Scale");
+    String scale = attr(reader, "Scale");
     if (scale != null) {
       property.setScale(Integer.parseInt(scale));
     }
-    String srid = attr(element, "SRID");
+    String srid = attr(reader, "SRID");
     if (srid != null) {
       property.setSrid(SRID.valueOf(srid));
     }
-    String defaultValue = attr(element, "DefaultValue");
+    String defaultValue = attr(reader, "DefaultValue");
     if (defaultValue != null) {
       property.setDefaultValue(defaultValue);
     }
-    peekAnnotations(reader, element.getName().getLocalPart(), property);
+    readAnnotations(reader, property);
     return property;
   }
 
-  private void readEntityContainer(XMLEventReader reader, StartElement element, CsdlSchema schema)
+  private void readEntityContainer(XMLStreamReader reader, CsdlSchema schema)
       throws XMLStreamException {
     final CsdlEntityContainer container = new CsdlEntityContainer();
-    container.setName(attr(element, "Name"));
-    if (attr(element, "Extends") != null) {
-      container.setExtendsContainer(attr(element, "Extends"));
+    container.setName(attr(reader, "Name"));
+    if (attr(reader, "Extends") != null) {
+      container.setExtendsContainer(attr(reader, "Extends"));
     }
     container.setActionImports(new ArrayList<CsdlActionImport>());
     container.setFunctionImports(new ArrayList<CsdlFunctionImport>());
@@ -1008,205 +1300,184 @@ public class MetadataParser {
 
     new ElementReader<CsdlSchema>() {
       @Override
-      void build(XMLEventReader reader, StartElement element, CsdlSchema schema, String name)
+      void build(XMLStreamReader reader, CsdlSchema schema, String name)
           throws XMLStreamException {
         if (name.equals("EntitySet")) {
-          readEntitySet(reader, element, container);
+          readEntitySet(reader, container);
         } else if (name.equals("Singleton")) {
-          readSingleton(reader, element, container);
+          readSingleton(reader, container);
         } else if (name.equals("ActionImport")) {
-          readActionImport(reader, element, container);
+          readActionImport(reader, container);
         } else if (name.equals("FunctionImport")) {
-          readFunctionImport(reader, element, container);
+          readFunctionImport(reader, container);
         } else if (name.equals("Annotation")) {
-          readAnnotations(reader, element, container);
+          readAnnotation(reader, container);
         }
       }
 
-      private void readFunctionImport(XMLEventReader reader,
-          StartElement element, CsdlEntityContainer container)
+      private void readFunctionImport(XMLStreamReader reader, CsdlEntityContainer container)
           throws XMLStreamException {
         CsdlFunctionImport functionImport = new CsdlFunctionImport();
-        functionImport.setName(attr(element, "Name"));
-        functionImport.setFunction(new FullQualifiedName(attr(element, "Function")));
-        functionImport.setIncludeInServiceDocument(Boolean.parseBoolean(attr(element,
+        functionImport.setName(attr(reader, "Name"));
+        functionImport.setFunction(new FullQualifiedName(attr(reader, "Function")));
+        functionImport.setIncludeInServiceDocument(Boolean.parseBoolean(attr(reader,
             "IncludeInServiceDocument")));
 
-        String entitySet = attr(element, "EntitySet");
+        String entitySet = attr(reader, "EntitySet");
         if (entitySet != null) {
           functionImport.setEntitySet(entitySet);
         }
-        peekAnnotations(reader, "FunctionImport", functionImport);
+        readAnnotations(reader, functionImport);
         container.getFunctionImports().add(functionImport);
       }
 
-      private void readActionImport(XMLEventReader reader,
-          StartElement element, CsdlEntityContainer container)
+      private void readActionImport(XMLStreamReader reader, CsdlEntityContainer container)
           throws XMLStreamException {
         CsdlActionImport actionImport = new CsdlActionImport();
-        actionImport.setName(attr(element, "Name"));
-        actionImport.setAction(new FullQualifiedName(attr(element, "Action")));
+        actionImport.setName(attr(reader, "Name"));
+        actionImport.setAction(new FullQualifiedName(attr(reader, "Action")));
 
-        String entitySet = attr(element, "EntitySet");
+        String entitySet = attr(reader, "EntitySet");
         if (entitySet != null) {
           actionImport.setEntitySet(entitySet);
         }
-        peekAnnotations(reader, "ActionImport", actionImport);
+        readAnnotations(reader, actionImport);
         container.getActionImports().add(actionImport);
       }
 
-      private void readSingleton(XMLEventReader reader, StartElement element,
-          CsdlEntityContainer container) throws XMLStreamException {
+      private void readSingleton(XMLStreamReader reader, CsdlEntityContainer container)
+          throws XMLStreamException {
         CsdlSingleton singleton = new CsdlSingleton();
         singleton.setNavigationPropertyBindings(new ArrayList<CsdlNavigationPropertyBinding>());
-        singleton.setName(attr(element, "Name"));
-        singleton.setType(new FullQualifiedName(attr(element, "Type")));
+        singleton.setName(attr(reader, "Name"));
+        singleton.setType(new FullQualifiedName(attr(reader, "Type")));
         singleton.setNavigationPropertyBindings(new ArrayList<CsdlNavigationPropertyBinding>());
-        readNavigationPropertyBindings(reader, element, singleton);
+        readNavigationPropertyBindings(reader, singleton);
         container.getSingletons().add(singleton);
       }
 
-      private void readEntitySet(XMLEventReader reader, StartElement element,
-          CsdlEntityContainer container) throws XMLStreamException {
+      private void readEntitySet(XMLStreamReader reader, CsdlEntityContainer container)
+          throws XMLStreamException {
         CsdlEntitySet entitySet = new CsdlEntitySet();
-        entitySet.setName(attr(element, "Name"));
-        entitySet.setType(new FullQualifiedName(attr(element, "EntityType")));
-        entitySet.setIncludeInServiceDocument(Boolean.parseBoolean(attr(element,
+        entitySet.setName(attr(reader, "Name"));
+        entitySet.setType(new FullQualifiedName(attr(reader, "EntityType")));
+        entitySet.setIncludeInServiceDocument(Boolean.parseBoolean(attr(reader,
             "IncludeInServiceDocument")));
         entitySet.setNavigationPropertyBindings(new ArrayList<CsdlNavigationPropertyBinding>());
-        readNavigationPropertyBindings(reader, element, entitySet);
+        readNavigationPropertyBindings(reader, entitySet);
         container.getEntitySets().add(entitySet);
       }
 
-      private void readNavigationPropertyBindings(XMLEventReader reader, StartElement element,
+      private void readNavigationPropertyBindings(XMLStreamReader reader,
           CsdlBindingTarget entitySet) throws XMLStreamException {
         new ElementReader<CsdlBindingTarget>() {
           @Override
-          void build(XMLEventReader reader, StartElement element,
-              CsdlBindingTarget entitySet, String name) throws XMLStreamException {
+          void build(XMLStreamReader reader, CsdlBindingTarget entitySet, String name)
+              throws XMLStreamException {
             if (name.equals("NavigationPropertyBinding")) {
               CsdlNavigationPropertyBinding binding = new CsdlNavigationPropertyBinding();
-              binding.setPath(attr(element, "Path"));
-              binding.setTarget(attr(element, "Target"));
+              binding.setPath(attr(reader, "Path"));
+              binding.setTarget(attr(reader, "Target"));
               entitySet.getNavigationPropertyBindings().add(binding);
+              skipElement(reader);
             } else if (name.equals("Annotation")) {
-              readAnnotations(reader, element, entitySet);
+              readAnnotation(reader, entitySet);
             }
           }
 
-        }.read(reader, element, entitySet, "NavigationPropertyBinding", "Annotation");
+        }.read(reader, entitySet, "NavigationPropertyBinding", "Annotation");
       }
-    }.read(reader, element, schema, "EntitySet", "Singleton", "ActionImport", "FunctionImport", "Annotation");
+    }.read(reader, schema, "EntitySet", "Singleton", "ActionImport", "FunctionImport", "Annotation");
     schema.setEntityContainer(container);
   }
 
-  private void readComplexType(XMLEventReader reader, StartElement element, CsdlSchema schema)
+  private void readComplexType(XMLStreamReader reader, CsdlSchema schema)
       throws XMLStreamException {
     CsdlComplexType complexType = new CsdlComplexType();
     complexType.setProperties(new ArrayList<CsdlProperty>());
     complexType.setNavigationProperties(new ArrayList<CsdlNavigationProperty>());
-    complexType.setName(attr(element, "Name"));
-    if (attr(element, "BaseType") != null) {
-      complexType.setBaseType(new FullQualifiedName(attr(element, "BaseType")));
+    complexType.setName(attr(reader, "Name"));
+    if (attr(reader, "BaseType") != null) {
+      complexType.setBaseType(new FullQualifiedName(attr(reader, "BaseType")));
     }
-    complexType.setAbstract(Boolean.parseBoolean(attr(element, "Abstract")));
-    complexType.setOpenType(Boolean.parseBoolean(attr(element, "OpenType")));
+    complexType.setAbstract(Boolean.parseBoolean(attr(reader, "Abstract")));
+    complexType.setOpenType(Boolean.parseBoolean(attr(reader, "OpenType")));
     readProperties(reader, complexType);
 
     schema.getComplexTypes().add(complexType);
   }
 
-  private void readProperties(XMLEventReader reader, CsdlComplexType complexType)
+  private void readProperties(XMLStreamReader reader, CsdlComplexType complexType)
       throws XMLStreamException {
     new ElementReader<CsdlComplexType>() {
       @Override
-      void build(XMLEventReader reader, StartElement element, CsdlComplexType complexType, String name)
+      void build(XMLStreamReader reader, CsdlComplexType complexType, String name)
           throws XMLStreamException {
         if (name.equals("Property")) {
-          complexType.getProperties().add(readProperty(reader, element));
+          complexType.getProperties().add(readProperty(reader));
         } else if (name.equals("NavigationProperty")) {
-          complexType.getNavigationProperties().add(readNavigationProperty(reader, element));
+          complexType.getNavigationProperties().add(readNavigationProperty(reader));
         } else if (name.equals("Annotation")) {
-          readAnnotations(reader, element, complexType);
+          readAnnotation(reader, complexType);
         }
       }
-    }.read(reader, null, complexType, "Property", "NavigationProperty", "Annotation");
+    }.read(reader, complexType, "Property", "NavigationProperty", "Annotation");
+  }
+
+  /**
+   * Skips the current element including all its content.
+   */
+  private static void skipElement(XMLStreamReader reader) throws XMLStreamException {
+    int depth = 1;
+    while (depth > 0 && reader.hasNext()) {
+      int event = reader.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+    }
   }
 
+  /**
+   * Reads the child elements of the element the cursor is positioned on. Each child
+   * is handed to {@link #build(XMLStreamReader, Object, String)} on its start tag and
+   * must be consumed up to its end tag; reading stops at the end tag of the parent.
+   */
   abstract class ElementReader<T> {
-    void read(XMLEventReader reader, StartElement element, T t, String... names)
+    void read(XMLStreamReader reader, T t, String... names)
         throws XMLStreamException {
       while (reader.hasNext()) {
-        XMLEvent event = reader.peek();
-
-        if (!parseAnnotations) {
-          XMLEvent eventBefore = event;
-          event = skipAnnotations(reader, event);
-          // if annotation is stripped start again
-          if (eventBefore != event) {            
-            continue;
-          }
+        int event = reader.next();
+        if (event == XMLStreamConstants.END_ELEMENT) {
+          return;
+        }
+        if (event != XMLStreamConstants.START_ELEMENT) {
+          continue;
         }
 
-        if (!event.isStartElement() && !event.isEndElement()) {
-          reader.nextEvent();
+        String name = reader.getLocalName();
+        if (!parseAnnotations && name.equals("Annotation")) {
+          skipElement(reader);
           continue;
         }
 
         boolean hit = false;
-
-        for (String name : names) {
-          if (event.isStartElement()) {
-            element = event.asStartElement();
-            if (element.getName().getLocalPart().equals(name)) {              
-              reader.nextEvent(); // advance cursor start which is current
-              build(reader, element, t, name);
-              hit = true;
-              break;
-            }
-          }
-          if (event.isEndElement()) {
-            EndElement e = event.asEndElement();
-            if (e.getName().getLocalPart().equals(name)) {
-              reader.nextEvent(); // advance cursor to end which is current
-              hit = true;
-              break;
-            }
+        for (String expected : names) {
+          if (expected.equals(name)) {
+            hit = true;
+            break;
           }
         }
         if (!hit) {
-          break;
-        }
-      }
-    }
-
-    private XMLEvent skipAnnotations(XMLEventReader reader, XMLEvent event)
-        throws XMLStreamException {
-      boolean skip = false;
-
-      while (reader.hasNext()) {
-        if (event.isStartElement()) {
-          StartElement element = event.asStartElement();
-          if (element.getName().getLocalPart().equals("Annotation")) {
-            skip = true;
-          }
-        }
-        if (event.isEndElement()) {
-          EndElement element = event.asEndElement();
-          if (element.getName().getLocalPart().equals("Annotation")) {
-            return reader.peek();
-          }
-        }
-        if (skip) {
-          event = reader.nextEvent();
-        } else {
-          return event;
+          throw new XMLStreamException("Failed to read complete metadata file. Failed at "
+              + name, reader.getLocation());
         }
+        build(reader, t, name);
       }
-      return event;
     }
 
-    abstract void build(XMLEventReader reader, StartElement element, T t, String name)
+    abstract void build(XMLStreamReader reader, T t, String name)
         throws XMLStreamException;
   }
   
@@ -0,0 +1,1215 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.apache.olingo.commons.api.edm.FullQualifiedName;
+import org.apache.olingo.commons.api.edm.geo.SRID;
+import org.apache.olingo.commons.api.edm.provider.CsdlAction;
+import org.apache.olingo.commons.api.edm.provider.CsdlActionImport;
+import org.apache.olingo.commons.api.edm.provider.CsdlAnnotation;
+import org.apache.olingo.commons.api.edm.provider.CsdlAnnotations;
+import org.apache.olingo.commons.api.edm.provider.CsdlBindingTarget;
+import org.apache.olingo.commons.api.edm.provider.CsdlComplexType;
+import org.apache.olingo.commons.api.edm.provider.CsdlEntityContainer;
+import org.apache.olingo.commons.api.edm.provider.CsdlEntitySet;
+import org.apache.olingo.commons.api.edm.provider.CsdlEntityType;
+import org.apache.olingo.commons.api.edm.provider.CsdlEnumMember;
+import org.apache.olingo.commons.api.edm.provider.CsdlEnumType;
+import org.apache.olingo.commons.api.edm.provider.CsdlFunction;
+import org.apache.olingo.commons.api.edm.provider.CsdlFunctionImport;
+import org.apache.olingo.commons.api.edm.provider.CsdlNavigationProperty;
+import org.apache.olingo.commons.api.edm.provider.CsdlNavigationPropertyBinding;
+import org.apache.olingo.commons.api.edm.provider.CsdlOnDelete;
+import org.apache.olingo.commons.api.edm.provider.CsdlOnDeleteAction;
+import org.apache.olingo.commons.api.edm.provider.CsdlOperation;
+import org.apache.olingo.commons.api.edm.provider.CsdlParameter;
+import org.apache.olingo.commons.api.edm.provider.CsdlProperty;
+import org.apache.olingo.commons.api.edm.provider.CsdlPropertyRef;
+import org.apache.olingo.commons.api.edm.provider.CsdlReferentialConstraint;
+import org.apache.olingo.commons.api.edm.provider.CsdlReturnType;
+import org.apache.olingo.commons.api.edm.provider.CsdlSchema;
+import org.apache.olingo.commons.api.edm.provider.CsdlSingleton;
+import org.apache.olingo.commons.api.edm.provider.CsdlStructuralType;
+import org.apache.olingo.commons.api.edm.provider.CsdlTerm;
+import org.apache.olingo.commons.api.edm.provider.CsdlTypeDefinition;
+import org.apache.olingo.commons.api.edm.provider.annotation.CsdlAnnotationPath;
+import org.apache.olingo.commons.api.edm.provider.annotation.CsdlApply;
+import org.apache.olingo.commons.api.edm.provider.annotation.CsdlCast;
+import org.apache.olingo.commons.api.edm.provider.annotation.CsdlCollection;
+import org.apache.olingo.commons.api.edm.provider.annotation.CsdlConstantExpression;
+import org.apache.olingo.commons.api.edm.provider.annotation.CsdlConstantExpression.ConstantExpressionType;
+import org.apache.olingo.commons.api.edm.provider.annotation.CsdlExpression;
+import org.apache.olingo.commons.api.edm.provider.annotation.CsdlIf;
+import org.apache.olingo.commons.api.edm.provider.annotation.CsdlIsOf;
+import org.apache.olingo.commons.api.edm.provider.annotation.CsdlLabeledElement;
+import org.apache.olingo.commons.api.edm.provider.annotation.CsdlLabeledElementReference;
+import org.apache.olingo.commons.api.edm.provider.annotation.CsdlLogicalOrComparisonExpression;
+import org.apache.olingo.commons.api.edm.provider.annotation.CsdlLogicalOrComparisonExpression.LogicalOrComparisonExpressionType;
+import org.apache.olingo.commons.api.edm.provider.annotation.CsdlNavigationPropertyPath;
+import org.apache.olingo.commons.api.edm.provider.annotation.CsdlNull;
+import org.apache.olingo.commons.api.edm.provider.annotation.CsdlPath;
+import org.apache.olingo.commons.api.edm.provider.annotation.CsdlPropertyPath;
+import org.apache.olingo.commons.api.edm.provider.annotation.CsdlPropertyValue;
+import org.apache.olingo.commons.api.edm.provider.annotation.CsdlRecord;
+import org.apache.olingo.commons.api.edm.provider.annotation.CsdlUrlRef;
+import org.apache.olingo.commons.api.edmx.EdmxReference;
+import org.apache.olingo.commons.api.edmx.EdmxReferenceInclude;
+import org.apache.olingo.commons.api.edmx.EdmxReferenceIncludeAnnotation;
+import org.apache.olingo.commons.api.ex.ODataException;
+
+/**
+ * Compact binary form of a {@link SchemaBasedEdmProvider}.
+ * <p/>
+ * A snapshot holds the complete CSDL model of a provider, including its referenced and
+ * vocabulary schemas, so that it can be restored at startup without any XML parsing.
+ * Every snapshot records the checksum of the CSDL document it was compiled from;
+ * {@link #read(InputStream, String)} only accepts a snapshot whose checksum matches,
+ * which lets callers fall back to the source CSDL whenever the two have diverged.
+ * <p/>
+ * Strings are written once and afterwards referenced by their index, which keeps
+ * recurring type names and namespaces small. Runtime mappings ({@code CsdlMapping})
+ * are not part of the CSDL document and are therefore not stored.
+ */
+public final class MetadataSnapshot {
+
+  private static final int MAGIC = 0x4F44534E; // "ODSN"
+  private static final int FORMAT_VERSION = 1;
+
+  private static final int STRING_NULL = 0;
+  private static final int STRING_NEW = 1;
+
+  private static final int PROVIDER_NEW = 0;
+
+  private static final byte EXPRESSION_NULL = 0;
+  private static final byte EXPRESSION_CONSTANT = 1;
+  private static final byte EXPRESSION_ANNOTATION_PATH = 2;
+  private static final byte EXPRESSION_NAVIGATION_PROPERTY_PATH = 3;
+  private static final byte EXPRESSION_PATH = 4;
+  private static final byte EXPRESSION_PROPERTY_PATH = 5;
+  private static final byte EXPRESSION_LABELED_ELEMENT_REFERENCE = 6;
+  private static final byte EXPRESSION_NULL_VALUE = 7;
+  private static final byte EXPRESSION_URL_REF = 8;
+  private static final byte EXPRESSION_APPLY = 9;
+  private static final byte EXPRESSION_CAST = 10;
+  private static final byte EXPRESSION_IS_OF = 11;
+  private static final byte EXPRESSION_IF = 12;
+  private static final byte EXPRESSION_LABELED_ELEMENT = 13;
+  private static final byte EXPRESSION_COLLECTION = 14;
+  private static final byte EXPRESSION_RECORD = 15;
+  private static final byte EXPRESSION_LOGICAL_OR_COMPARISON = 16;
+
+  private MetadataSnapshot() {
+    // static utility
+  }
+
+  /**
+   * Compiles a CSDL document into a snapshot file at build time, e.g., through the exec plugin.
+   * <p/>
+   * Arguments: the CSDL file, the snapshot file, and optionally the flags
+   * <code>-parseAnnotations</code>, <code>-implicitlyLoadCoreVocabularies</code>, and
+   * <code>-noLocalCoreVocabularies</code>. These parser settings must match those used by the
+   * service, otherwise the snapshot is ignored.
+   */
+  public static void main(final String[] args) throws IOException, XMLStreamException {
+    if (args.length < 2) {
+      throw new IllegalArgumentException("Usage: MetadataSnapshot <csdl file> <snapshot file> [-parseAnnotations]"
+          + " [-implicitlyLoadCoreVocabularies] [-noLocalCoreVocabularies]");
+    }
+    final List<String> flags = Arrays.asList(args).subList(2, args.length);
+    final File snapshot = new File(args[1]);
+    if (snapshot.getParentFile() != null) {
+      snapshot.getParentFile().mkdirs();
+    }
+    final InputStream csdl = new FileInputStream(args[0]);
+    try {
+      final OutputStream out = new FileOutputStream(snapshot);
+      try {
+        new MetadataParser()
+            .parseAnnotations(flags.contains("-parseAnnotations"))
+            .implicitlyLoadCoreVocabularies(flags.contains("-implicitlyLoadCoreVocabularies"))
+            .useLocalCoreVocabularies(!flags.contains("-noLocalCoreVocabularies"))
+            .writeSnapshot(csdl, out);
+      } finally {
+        out.close();
+      }
+    } finally {
+      csdl.close();
+    }
+  }
+
+  /**
+   * Writes the given provider as snapshot.
+   * @param provider the provider, typically built by {@link MetadataParser}
+   * @param checksum checksum of the CSDL document the provider was built from
+   * @param out stream the snapshot is written to; it is flushed but not closed
+   * @throws IOException if writing fails
+   */
+  public static void write(final SchemaBasedEdmProvider provider, final String checksum, final OutputStream out)
+      throws IOException {
+    final DataOutputStream data = new DataOutputStream(new BufferedOutputStream(out));
+    data.writeInt(MAGIC);
+    data.writeShort(FORMAT_VERSION);
+    data.writeUTF(checksum);
+    new SnapshotWriter(data).writeProvider(provider);
+    data.flush();
+  }
+
+  /**
+   * Restores a provider from a snapshot.
+   * @param in stream containing the snapshot; it is not closed
+   * @param checksum checksum of the current CSDL document
+   * @return the restored provider, or <code>null</code> if the snapshot has been compiled
+   * from a different document or with an incompatible format version
+   * @throws IOException if reading fails or the snapshot is corrupt
+   */
+  public static SchemaBasedEdmProvider read(final InputStream in, final String checksum) throws IOException {
+    final DataInputStream data = new DataInputStream(new BufferedInputStream(in));
+    if (data.readInt() != MAGIC) {
+      throw new IOException("Not a metadata snapshot");
+    }
+    if (data.readUnsignedShort() != FORMAT_VERSION || !data.readUTF().equals(checksum)) {
+      return null;
+    }
+    try {
+      return new SnapshotReader(data).readProvider();
+    } catch (final RuntimeException e) {
+      throw new IOException("Corrupt metadata snapshot", e);
+    }
+  }
+
+  private static final class SnapshotWriter {
+    private final DataOutputStream out;
+    private final Map<String, Integer> strings = new HashMap<String, Integer>();
+    private final Map<SchemaBasedEdmProvider, Integer> providers =
+        new IdentityHashMap<SchemaBasedEdmProvider, Integer>();
+
+    SnapshotWriter(final DataOutputStream out) {
+      this.out = out;
+    }
+
+    void writeProvider(final SchemaBasedEdmProvider provider) throws IOException {
+      final Integer index = providers.get(provider);
+      if (index != null) {
+        writeSize(index + 1);
+        return;
+      }
+      writeSize(PROVIDER_NEW);
+      providers.put(provider, providers.size());
+
+      final List<CsdlSchema> schemas;
+      try {
+        schemas = provider.getSchemas();
+      } catch (final ODataException e) {
+        throw new IOException("Failed to read the schemas of the provider", e);
+      }
+      writeSize(schemas.size());
+      for (final CsdlSchema schema : schemas) {
+        writeSchema(schema);
+      }
+
+      // The same reference is registered once per include; store it only once.
+      final Set<EdmxReference> references = new LinkedHashSet<EdmxReference>(provider.getReferences());
+      writeSize(references.size());
+      for (final EdmxReference reference : references) {
+        writeReference(reference);
+      }
+
+      writeProviders(provider.getReferenceProviders());
+      writeProviders(provider.getVocabularyProviders());
+    }
+
+    private void writeProviders(final Map<String, SchemaBasedEdmProvider> map) throws IOException {
+      writeSize(map.size());
+      for (final Map.Entry<String, SchemaBasedEdmProvider> entry : map.entrySet()) {
+        writeString(entry.getKey());
+        writeProvider(entry.getValue());
+      }
+    }
+
+    private void writeReference(final EdmxReference reference) throws IOException {
+      writeString(reference.getUri().toString());
+      writeSize(reference.getIncludes().size());
+      for (final EdmxReferenceInclude include : reference.getIncludes()) {
+        writeString(include.getNamespace());
+        writeString(include.getAlias());
+      }
+      writeSize(reference.getIncludeAnnotations().size());
+      for (final EdmxReferenceIncludeAnnotation include : reference.getIncludeAnnotations()) {
+        writeString(include.getTermNamespace());
+        writeString(include.getQualifier());
+        writeString(include.getTargetNamespace());
+      }
+      writeAnnotations(reference.getAnnotations());
+    }
+
+    private void writeSchema(final CsdlSchema schema) throws IOException {
+      writeString(schema.getNamespace());
+      writeString(schema.getAlias());
+
+      writeSize(size(schema.getEnumTypes()));
+      if (schema.getEnumTypes() != null) {
+        for (final CsdlEnumType type : schema.getEnumTypes()) {
+          writeEnumType(type);
+        }
+      }
+      writeSize(size(schema.getTypeDefinitions()));
+      if (schema.getTypeDefinitions() != null) {
+        for (final CsdlTypeDefinition type : schema.getTypeDefinitions()) {
+          writeTypeDefinition(type);
+        }
+      }
+      writeSize(size(schema.getEntityTypes()));
+      if (schema.getEntityTypes() != null) {
+        for (final CsdlEntityType type : schema.getEntityTypes()) {
+          writeStructuralType(type);
+          out.writeBoolean(type.hasStream());
+          writeSize(size(type.getKey()));
+          if (type.getKey() != null) {
+            for (final CsdlPropertyRef ref : type.getKey()) {
+              writeString(ref.getName());
+              writeString(ref.getAlias());
+            }
+          }
+        }
+      }
+      writeSize(size(schema.getComplexTypes()));
+      if (schema.getComplexTypes() != null) {
+        for (final CsdlComplexType type : schema.getComplexTypes()) {
+          writeStructuralType(type);
+        }
+      }
+      writeSize(size(schema.getActions()));
+      if (schema.getActions() != null) {
+        for (final CsdlAction action : schema.getActions()) {
+          writeOperation(action);
+        }
+      }
+      writeSize(size(schema.getFunctions()));
+      if (schema.getFunctions() != null) {
+        for (final CsdlFunction function : schema.getFunctions()) {
+          writeOperation(function);
+          out.writeBoolean(function.isComposable());
+        }
+      }
+      writeSize(size(schema.getTerms()));
+      if (schema.getTerms() != null) {
+        for (final CsdlTerm term : schema.getTerms()) {
+          writeTerm(term);
+        }
+      }
+
+      out.writeBoolean(schema.getEntityContainer() != null);
+      if (schema.getEntityContainer() != null) {
+        writeEntityContainer(schema.getEntityContainer());
+      }
+
+      writeSize(size(schema.getAnnotationGroups()));
+      if (schema.getAnnotationGroups() != null) {
+        for (final CsdlAnnotations group : schema.getAnnotationGroups()) {
+          writeString(group.getTarget());
+          writeString(group.getQualifier());
+          writeAnnotations(group.getAnnotations());
+        }
+      }
+      writeAnnotations(schema.getAnnotations());
+    }
+
+    private void writeEnumType(final CsdlEnumType type) throws IOException {
+      writeString(type.getName());
+      writeString(type.getUnderlyingType());
+      out.writeBoolean(type.isFlags());
+      writeSize(size(type.getMembers()));
+      if (type.getMembers() != null) {
+        for (final CsdlEnumMember member : type.getMembers()) {
+          writeString(member.getName());
+          writeString(member.getValue());
+          writeAnnotations(member.getAnnotations());
+        }
+      }
+      writeAnnotations(type.getAnnotations());
+    }
+
+    private void writeTypeDefinition(final CsdlTypeDefinition type) throws IOException {
+      writeString(type.getName());
+      writeString(type.getUnderlyingType());
+      writeInteger(type.getMaxLength());
+      writeInteger(type.getPrecision());
+      writeInteger(type.getScale());
+      writeSrid(type.getSrid());
+      out.writeBoolean(type.isUnicode());
+      writeAnnotations(type.getAnnotations());
+    }
+
+    private void writeStructuralType(final CsdlStructuralType type) throws IOException {
+      writeString(type.getName());
+      writeString(type.getBaseType());
+      out.writeBoolean(type.isAbstract());
+      out.writeBoolean(type.isOpenType());
+      writeSize(size(type.getProperties()));
+      if (type.getProperties() != null) {
+        for (final CsdlProperty property : type.getProperties()) {
+          writeProperty(property);
+        }
+      }
+      writeSize(size(type.getNavigationProperties()));
+      if (type.getNavigationProperties() != null) {
+        for (final CsdlNavigationProperty property : type.getNavigationProperties()) {
+          writeNavigationProperty(property);
+        }
+      }
+      writeAnnotations(type.getAnnotations());
+    }
+
+    private void writeProperty(final CsdlProperty property) throws IOException {
+      writeString(property.getName());
+      writeString(property.getType());
+      out.writeBoolean(property.isCollection());
+      out.writeBoolean(property.isNullable());
+      out.writeBoolean(property.isUnicode());
+      writeString(property.getMimeType());
+      writeString(property.getDefaultValue());
+      writeInteger(property.getMaxLength());
+      writeInteger(property.getPrecision());
+      writeInteger(property.getScale());
+      writeSrid(property.getSrid());
+      writeAnnotations(property.getAnnotations());
+    }
+
+    private void writeNavigationProperty(final CsdlNavigationProperty property) throws IOException {
+      writeString(property.getName());
+      writeString(property.getType());
+      out.writeBoolean(property.isCollection());
+      writeBoolean(property.isNullable());
+      writeString(property.getPartner());
+      out.writeBoolean(property.isContainsTarget());
+      writeSize(size(property.getReferentialConstraints()));
+      if (property.getReferentialConstraints() != null) {
+        for (final CsdlReferentialConstraint constraint : property.getReferentialConstraints()) {
+          writeString(constraint.getProperty());
+          writeString(constraint.getReferencedProperty());
+          writeAnnotations(constraint.getAnnotations());
+        }
+      }
+      out.writeBoolean(property.getOnDelete() != null);
+      if (property.getOnDelete() != null) {
+        writeString(property.getOnDelete().getAction() == null ? null : property.getOnDelete().getAction().name());
+        writeAnnotations(property.getOnDelete().getAnnotations());
+      }
+      writeAnnotations(property.getAnnotations());
+    }
+
+    private void writeOperation(final CsdlOperation operation) throws IOException {
+      writeString(operation.getName());
+      out.writeBoolean(operation.isBound());
+      writeString(operation.getEntitySetPath());
+      writeSize(size(operation.getParameters()));
+      if (operation.getParameters() != null) {
+        for (final CsdlParameter parameter : operation.getParameters()) {
+          writeString(parameter.getName());
+          writeString(parameter.getType());
+          out.writeBoolean(parameter.isCollection());
+          out.writeBoolean(parameter.isNullable());
+          writeInteger(parameter.getMaxLength());
+          writeInteger(parameter.getPrecision());
+          writeInteger(parameter.getScale());
+          writeSrid(parameter.getSrid());
+          writeAnnotations(parameter.getAnnotations());
+        }
+      }
+      final CsdlReturnType returnType = operation.getReturnType();
+      out.writeBoolean(returnType != null);
+      if (returnType != null) {
+        writeString(returnType.getType());
+        out.writeBoolean(returnType.isCollection());
+        out.writeBoolean(returnType.isNullable());
+        writeInteger(returnType.getMaxLength());
+        writeInteger(returnType.getPrecision());
+        writeInteger(returnType.getScale());
+        writeSrid(returnType.getSrid());
+        writeAnnotations(returnType.getAnnotations());
+      }
+      writeAnnotations(operation.getAnnotations());
+    }
+
+    private void writeTerm(final CsdlTerm term) throws IOException {
+      writeString(term.getName());
+      writeString(term.getType());
+      writeString(term.getBaseTerm());
+      writeSize(size(term.getAppliesTo()));
+      if (term.getAppliesTo() != null) {
+        for (final String appliesTo : term.getAppliesTo()) {
+          writeString(appliesTo);
+        }
+      }
+      writeString(term.getDefaultValue());
+      out.writeBoolean(term.isNullable());
+      writeInteger(term.getMaxLength());
+      writeInteger(term.getPrecision());
+      writeInteger(term.getScale());
+      writeSrid(term.getSrid());
+      writeAnnotations(term.getAnnotations());
+    }
+
+    private void writeEntityContainer(final CsdlEntityContainer container) throws IOException {
+      writeString(container.getName());
+      writeString(container.getExtendsContainer());
+      writeSize(size(container.getEntitySets()));
+      if (container.getEntitySets() != null) {
+        for (final CsdlEntitySet entitySet : container.getEntitySets()) {
+          writeBindingTarget(entitySet);
+          out.writeBoolean(entitySet.isIncludeInServiceDocument());
+        }
+      }
+      writeSize(size(container.getSingletons()));
+      if (container.getSingletons() != null) {
+        for (final CsdlSingleton singleton : container.getSingletons()) {
+          writeBindingTarget(singleton);
+        }
+      }
+      writeSize(size(container.getActionImports()));
+      if (container.getActionImports() != null) {
+        for (final CsdlActionImport actionImport : container.getActionImports()) {
+          writeString(actionImport.getName());
+          writeString(actionImport.getAction());
+          writeString(actionImport.getEntitySet());
+          writeAnnotations(actionImport.getAnnotations());
+        }
+      }
+      writeSize(size(container.getFunctionImports()));
+      if (container.getFunctionImports() != null) {
+        for (final CsdlFunctionImport functionImport : container.getFunctionImports()) {
+          writeString(functionImport.getName());
+          writeString(functionImport.getFunctionFQN() == null ? null : functionImport.getFunction());
+          writeString(functionImport.getEntitySet());
+          writeString(functionImport.getTitle());
+          out.writeBoolean(functionImport.isIncludeInServiceDocument());
+          writeAnnotations(functionImport.getAnnotations());
+        }
+      }
+      writeAnnotations(container.getAnnotations());
+    }
+
+    private void writeBindingTarget(final CsdlBindingTarget target) throws IOException {
+      writeString(target.getName());
+      writeString(target.getType());
+      writeString(target.getTitle());
+      writeSize(size(target.getNavigationPropertyBindings()));
+      if (target.getNavigationPropertyBindings() != null) {
+        for (final CsdlNavigationPropertyBinding binding : target.getNavigationPropertyBindings()) {
+          writeString(binding.getPath());
+          writeString(binding.getTarget());
+        }
+      }
+      writeAnnotations(target.getAnnotations());
+    }
+
+    private void writeAnnotations(final List<CsdlAnnotation> annotations) throws IOException {
+      writeSize(size(annotations));
+      if (annotations != null) {
+        for (final CsdlAnnotation annotation : annotations) {
+          writeString(annotation.getTerm());
+          writeString(annotation.getQualifier());
+          writeExpression(annotation.getExpression());
+          writeAnnotations(annotation.getAnnotations());
+        }
+      }
+    }
+
+    private void writeExpression(final CsdlExpression expression) throws IOException {
+      if (expression == null) {
+        out.writeByte(EXPRESSION_NULL);
+      } else if (expression instanceof CsdlConstantExpression) {
+        out.writeByte(EXPRESSION_CONSTANT);
+        writeString(((CsdlConstantExpression) expression).getType().name());
+        writeString(((CsdlConstantExpression) expression).getValue());
+      } else if (expression instanceof CsdlAnnotationPath) {
+        out.writeByte(EXPRESSION_ANNOTATION_PATH);
+        writeString(((CsdlAnnotationPath) expression).getValue());
+      } else if (expression instanceof CsdlNavigationPropertyPath) {
+        out.writeByte(EXPRESSION_NAVIGATION_PROPERTY_PATH);
+        writeString(((CsdlNavigationPropertyPath) expression).getValue());
+      } else if (expression instanceof CsdlPath) {
+        out.writeByte(EXPRESSION_PATH);
+        writeString(((CsdlPath) expression).getValue());
+      } else if (expression instanceof CsdlPropertyPath) {
+        out.writeByte(EXPRESSION_PROPERTY_PATH);
+        writeString(((CsdlPropertyPath) expression).getValue());
+      } else if (expression instanceof CsdlLabeledElementReference) {
+        out.writeByte(EXPRESSION_LABELED_ELEMENT_REFERENCE);
+        writeString(((CsdlLabeledElementReference) expression).getValue());
+      } else if (expression instanceof CsdlNull) {
+        out.writeByte(EXPRESSION_NULL_VALUE);
+        writeAnnotations(((CsdlNull) expression).getAnnotations());
+      } else if (expression instanceof CsdlUrlRef) {
+        out.writeByte(EXPRESSION_URL_REF);
+        writeExpression(((CsdlUrlRef) expression).getValue());
+        writeAnnotations(((CsdlUrlRef) expression).getAnnotations());
+      } else if (expression instanceof CsdlApply) {
+        final CsdlApply apply = (CsdlApply) expression;
+        out.writeByte(EXPRESSION_APPLY);
+        writeString(apply.getFunction());
+        writeExpressions(apply.getParameters());
+        writeAnnotations(apply.getAnnotations());
+      } else if (expression instanceof CsdlCast) {
+        final CsdlCast cast = (CsdlCast) expression;
+        out.writeByte(EXPRESSION_CAST);
+        writeString(cast.getType());
+        writeInteger(cast.getMaxLength());
+        writeInteger(cast.getPrecision());
+        writeInteger(cast.getScale());
+        writeSrid(cast.getSrid());
+        writeExpression(cast.getValue());
+        writeAnnotations(cast.getAnnotations());
+      } else if (expression instanceof CsdlIsOf) {
+        final CsdlIsOf isOf = (CsdlIsOf) expression;
+        out.writeByte(EXPRESSION_IS_OF);
+        writeString(isOf.getType());
+        writeInteger(isOf.getMaxLength());
+        writeInteger(isOf.getPrecision());
+        writeInteger(isOf.getScale());
+        writeSrid(isOf.getSrid());
+        writeExpression(isOf.getValue());
+        writeAnnotations(isOf.getAnnotations());
+      } else if (expression instanceof CsdlIf) {
+        final CsdlIf ifExpression = (CsdlIf) expression;
+        out.writeByte(EXPRESSION_IF);
+        writeExpression(ifExpression.getGuard());
+        writeExpression(ifExpression.getThen());
+        writeExpression(ifExpression.getElse());
+        writeAnnotations(ifExpression.getAnnotations());
+      } else if (expression instanceof CsdlLabeledElement) {
+        final CsdlLabeledElement element = (CsdlLabeledElement) expression;
+        out.writeByte(EXPRESSION_LABELED_ELEMENT);
+        writeString(element.getName());
+        writeExpression(element.getValue());
+        writeAnnotations(element.getAnnotations());
+      } else if (expression instanceof CsdlCollection) {
+        out.writeByte(EXPRESSION_COLLECTION);
+        writeExpressions(((CsdlCollection) expression).getItems());
+      } else if (expression instanceof CsdlRecord) {
+        final CsdlRecord record = (CsdlRecord) expression;
+        out.writeByte(EXPRESSION_RECORD);
+        writeString(record.getType());
+        writeSize(size(record.getPropertyValues()));
+        if (record.getPropertyValues() != null) {
+          for (final CsdlPropertyValue value : record.getPropertyValues()) {
+            writeString(value.getProperty());
+            writeExpression(value.getValue());
+            writeAnnotations(value.getAnnotations());
+          }
+        }
+        writeAnnotations(record.getAnnotations());
+      } else if (expression instanceof CsdlLogicalOrComparisonExpression) {
+        final CsdlLogicalOrComparisonExpression logical = (CsdlLogicalOrComparisonExpression) expression;
+        out.writeByte(EXPRESSION_LOGICAL_OR_COMPARISON);
+        writeString(logical.getType().name());
+        writeExpression(logical.getLeft());
+        writeExpression(logical.getRight());
+        writeAnnotations(logical.getAnnotations());
+      } else {
+        throw new IOException("Unsupported annotation expression " + expression.getClass().getSimpleName());
+      }
+    }
+
+    private void writeExpressions(final List<CsdlExpression> expressions) throws IOException {
+      writeSize(size(expressions));
+      if (expressions != null) {
+        for (final CsdlExpression expression : expressions) {
+          writeExpression(expression);
+        }
+      }
+    }
+
+    private void writeSrid(final SRID srid) throws IOException {
+      writeString(srid == null ? null : srid.toString());
+    }
+
+    private void writeBoolean(final Boolean value) throws IOException {
+      out.writeByte(value == null ? 0 : value ? 1 : 2);
+    }
+
+    private void writeInteger(final Integer value) throws IOException {
+      // Zig-zag encoded, shifted by one to leave room for null.
+      writeSize(value == null ? 0 : ((value << 1) ^ (value >> 31)) + 1);
+    }
+
+    private void writeString(final String value) throws IOException {
+      if (value == null) {
+        writeSize(STRING_NULL);
+        return;
+      }
+      final Integer index = strings.get(value);
+      if (index == null) {
+        strings.put(value, strings.size());
+        writeSize(STRING_NEW);
+        final byte[] bytes = value.getBytes("UTF-8");
+        writeSize(bytes.length);
+        out.write(bytes);
+      } else {
+        writeSize(index + 2);
+      }
+    }
+
+    private void writeSize(final int size) throws IOException {
+      int value = size;
+      while ((value & ~0x7F) != 0) {
+        out.writeByte((value & 0x7F) | 0x80);
+        value >>>= 7;
+      }
+      out.writeByte(value);
+    }
+
+    private static int size(final List<?> list) {
+      return list == null ? 0 : list.size();
+    }
+  }
+
+  private static final class SnapshotReader {
+    private final DataInputStream in;
+    private final List<String> strings = new ArrayList<String>();
+    private final List<SchemaBasedEdmProvider> providers = new ArrayList<SchemaBasedEdmProvider>();
+
+    SnapshotReader(final DataInputStream in) {
+      this.in = in;
+    }
+
+    SchemaBasedEdmProvider readProvider() throws IOException {
+      final int index = readSize();
+      if (index != PROVIDER_NEW) {
+        return providers.get(index - 1);
+      }
+      final SchemaBasedEdmProvider provider = new SchemaBasedEdmProvider();
+      providers.add(provider);
+
+      for (int count = readSize(); count > 0; count--) {
+        provider.addSchema(readSchema());
+      }
+      for (int count = readSize(); count > 0; count--) {
+        provider.addReference(readReference());
+      }
+      for (int count = readSize(); count > 0; count--) {
+        final String namespace = readString();
+        provider.addReferenceSchema(namespace, readProvider());
+      }
+      for (int count = readSize(); count > 0; count--) {
+        final String namespace = readString();
+        provider.addVocabularySchema(namespace, readProvider());
+      }
+      return provider;
+    }
+
+    private EdmxReference readReference() throws IOException {
+      final EdmxReference reference;
+      try {
+        reference = new EdmxReference(new URI(readString()));
+      } catch (final URISyntaxException e) {
+        throw new IOException("Invalid reference URI in metadata snapshot", e);
+      }
+      for (int count = readSize(); count > 0; count--) {
+        final String namespace = readString();
+        reference.addInclude(new EdmxReferenceInclude(namespace, readString()));
+      }
+      for (int count = readSize(); count > 0; count--) {
+        final EdmxReferenceIncludeAnnotation include = new EdmxReferenceIncludeAnnotation(readString());
+        include.setQualifier(readString());
+        include.setTargetNamespace(readString());
+        reference.addIncludeAnnotation(include);
+      }
+      reference.setAnnotations(readAnnotations());
+      return reference;
+    }
+
+    private CsdlSchema readSchema() throws IOException {
+      final CsdlSchema schema = new CsdlSchema();
+      schema.setNamespace(readString());
+      schema.setAlias(readString());
+
+      final List<CsdlEnumType> enumTypes = new ArrayList<CsdlEnumType>();
+      for (int count = readSize(); count > 0; count--) {
+        enumTypes.add(readEnumType());
+      }
+      schema.setEnumTypes(enumTypes);
+
+      final List<CsdlTypeDefinition> typeDefinitions = new ArrayList<CsdlTypeDefinition>();
+      for (int count = readSize(); count > 0; count--) {
+        typeDefinitions.add(readTypeDefinition());
+      }
+      schema.setTypeDefinitions(typeDefinitions);
+
+      final List<CsdlEntityType> entityTypes = new ArrayList<CsdlEntityType>();
+      for (int count = readSize(); count > 0; count--) {
+        final CsdlEntityType type = new CsdlEntityType();
+        readStructuralType(type);
+        type.setHasStream(in.readBoolean());
+        final List<CsdlPropertyRef> key = new ArrayList<CsdlPropertyRef>();
+        for (int keyCount = readSize(); keyCount > 0; keyCount--) {
+          final String name = readString();
+          key.add(new CsdlPropertyRef().setName(name).setAlias(readString()));
+        }
+        type.setKey(key);
+        entityTypes.add(type);
+      }
+      schema.setEntityTypes(entityTypes);
+
+      final List<CsdlComplexType> complexTypes = new ArrayList<CsdlComplexType>();
+      for (int count = readSize(); count > 0; count--) {
+        final CsdlComplexType type = new CsdlComplexType();
+        readStructuralType(type);
+        complexTypes.add(type);
+      }
+      schema.setComplexTypes(complexTypes);
+
+      final List<CsdlAction> actions = new ArrayList<CsdlAction>();
+      for (int count = readSize(); count > 0; count--) {
+        final CsdlAction action = new CsdlAction();
+        readOperation(action);
+        actions.add(action);
+      }
+      schema.setActions(actions);
+
+      final List<CsdlFunction> functions = new ArrayList<CsdlFunction>();
+      for (int count = readSize(); count > 0; count--) {
+        final CsdlFunction function = new CsdlFunction();
+        readOperation(function);
+        function.setComposable(in.readBoolean());
+        functions.add(function);
+      }
+      schema.setFunctions(functions);
+
+      final List<CsdlTerm> terms = new ArrayList<CsdlTerm>();
+      for (int count = readSize(); count > 0; count--) {
+        terms.add(readTerm());
+      }
+      schema.setTerms(terms);
+
+      if (in.readBoolean()) {
+        schema.setEntityContainer(readEntityContainer());
+      }
+
+      final List<CsdlAnnotations> annotationGroups = new ArrayList<CsdlAnnotations>();
+      for (int count = readSize(); count > 0; count--) {
+        final CsdlAnnotations group = new CsdlAnnotations();
+        group.setTarget(readString());
+        group.setQualifier(readString());
+        group.setAnnotations(readAnnotations());
+        annotationGroups.add(group);
+      }
+      schema.setAnnotationsGroup(annotationGroups);
+      schema.setAnnotations(readAnnotations());
+      return schema;
+    }
+
+    private CsdlEnumType readEnumType() throws IOException {
+      final CsdlEnumType type = new CsdlEnumType();
+      type.setName(readString());
+      final String underlyingType = readString();
+      if (underlyingType != null) {
+        type.setUnderlyingType(underlyingType);
+      }
+      type.setFlags(in.readBoolean());
+      final List<CsdlEnumMember> members = new ArrayList<CsdlEnumMember>();
+      for (int count = readSize(); count > 0; count--) {
+        final CsdlEnumMember member = new CsdlEnumMember();
+        member.setName(readString());
+        member.setValue(readString());
+        member.setAnnotations(readAnnotations());
+        members.add(member);
+      }
+      type.setMembers(members);
+      type.setAnnotations(readAnnotations());
+      return type;
+    }
+
+    private CsdlTypeDefinition readTypeDefinition() throws IOException {
+      final CsdlTypeDefinition type = new CsdlTypeDefinition();
+      type.setName(readString());
+      final String underlyingType = readString();
+      if (underlyingType != null) {
+        type.setUnderlyingType(underlyingType);
+      }
+      type.setMaxLength(readInteger());
+      type.setPrecision(readInteger());
+      type.setScale(readInteger());
+      type.setSrid(readSrid());
+      type.setUnicode(in.readBoolean());
+      type.setAnnotations(readAnnotations());
+      return type;
+    }
+
+    private void readStructuralType(final CsdlStructuralType type) throws IOException {
+      type.setName(readString());
+      final String baseType = readString();
+      if (baseType != null) {
+        type.setBaseType(baseType);
+      }
+      type.setAbstract(in.readBoolean());
+      type.setOpenType(in.readBoolean());
+      final List<CsdlProperty> properties = new ArrayList<CsdlProperty>();
+      for (int count = readSize(); count > 0; count--) {
+        properties.add(readProperty());
+      }
+      type.setProperties(properties);
+      final List<CsdlNavigationProperty> navigationProperties = new ArrayList<CsdlNavigationProperty>();
+      for (int count = readSize(); count > 0; count--) {
+        navigationProperties.add(readNavigationProperty());
+      }
+      type.setNavigationProperties(navigationProperties);
+      type.setAnnotations(readAnnotations());
+    }
+
+    private CsdlProperty readProperty() throws IOException {
+      final CsdlProperty property = new CsdlProperty();
+      property.setName(readString());
+      property.setType(readString());
+      property.setCollection(in.readBoolean());
+      property.setNullable(in.readBoolean());
+      property.setUnicode(in.readBoolean());
+      property.setMimeType(readString());
+      property.setDefaultValue(readString());
+      property.setMaxLength(readInteger());
+      property.setPrecision(readInteger());
+      property.setScale(readInteger());
+      property.setSrid(readSrid());
+      property.setAnnotations(readAnnotations());
+      return property;
+    }
+
+    private CsdlNavigationProperty readNavigationProperty() throws IOException {
+      final CsdlNavigationProperty property = new CsdlNavigationProperty();
+      property.setName(readString());
+      final String type = readString();
+      if (type != null) {
+        property.setType(type);
+      }
+      property.setCollection(in.readBoolean());
+      property.setNullable(readBoolean());
+      property.setPartner(readString());
+      property.setContainsTarget(in.readBoolean());
+      final List<CsdlReferentialConstraint> constraints = new ArrayList<CsdlReferentialConstraint>();
+      for (int count = readSize(); count > 0; count--) {
+        final CsdlReferentialConstraint constraint = new CsdlReferentialConstraint();
+        constraint.setProperty(readString());
+        constraint.setReferencedProperty(readString());
+        constraint.setAnnotations(readAnnotations());
+        constraints.add(constraint);
+      }
+      property.setReferentialConstraints(constraints);
+      if (in.readBoolean()) {
+        final CsdlOnDelete onDelete = new CsdlOnDelete();
+        final String action = readString();
+        onDelete.setAction(action == null ? null : CsdlOnDeleteAction.valueOf(action));
+        onDelete.setAnnotations(readAnnotations());
+        property.setOnDelete(onDelete);
+      }
+      property.setAnnotations(readAnnotations());
+      return property;
+    }
+
+    private void readOperation(final CsdlOperation operation) throws IOException {
+      operation.setName(readString());
+      operation.setBound(in.readBoolean());
+      operation.setEntitySetPath(readString());
+      final List<CsdlParameter> parameters = new ArrayList<CsdlParameter>();
+      for (int count = readSize(); count > 0; count--) {
+        final CsdlParameter parameter = new CsdlParameter();
+        parameter.setName(readString());
+        parameter.setType(readString());
+        parameter.setCollection(in.readBoolean());
+        parameter.setNullable(in.readBoolean());
+        parameter.setMaxLength(readInteger());
+        parameter.setPrecision(readInteger());
+        parameter.setScale(readInteger());
+        parameter.setSrid(readSrid());
+        parameter.setAnnotations(readAnnotations());
+        parameters.add(parameter);
+      }
+      operation.setParameters(parameters);
+      if (in.readBoolean()) {
+        final CsdlReturnType returnType = new CsdlReturnType();
+        returnType.setType(readString());
+        returnType.setCollection(in.readBoolean());
+        returnType.setNullable(in.readBoolean());
+        returnType.setMaxLength(readInteger());
+        returnType.setPrecision(readInteger());
+        returnType.setScale(readInteger());
+        returnType.setSrid(readSrid());
+        returnType.setAnnotations(readAnnotations());
+        operation.setReturnType(returnType);
+      }
+      operation.setAnnotations(readAnnotations());
+    }
+
+    private CsdlTerm readTerm() throws IOException {
+      final CsdlTerm term = new CsdlTerm();
+      term.setName(readString());
+      term.setType(readString());
+      term.setBaseTerm(readString());
+      final List<String> appliesTo = new ArrayList<String>();
+      for (int count = readSize(); count > 0; count--) {
+        appliesTo.add(readString());
+      }
+      term.setAppliesTo(appliesTo);
+      term.setDefaultValue(readString());
+      term.setNullable(in.readBoolean());
+      term.setMaxLength(readInteger());
+      term.setPrecision(readInteger());
+      term.setScale(readInteger());
+      term.setSrid(readSrid());
+      term.setAnnotations(readAnnotations());
+      return term;
+    }
+
+    private CsdlEntityContainer readEntityContainer() throws IOException {
+      final CsdlEntityContainer container = new CsdlEntityContainer();
+      container.setName(readString());
+      final String extendsContainer = readString();
+      if (extendsContainer != null) {
+        container.setExtendsContainer(extendsContainer);
+      }
+      final List<CsdlEntitySet> entitySets = new ArrayList<CsdlEntitySet>();
+      for (int count = readSize(); count > 0; count--) {
+        final CsdlEntitySet entitySet = new CsdlEntitySet();
+        readBindingTarget(entitySet);
+        entitySet.setIncludeInServiceDocument(in.readBoolean());
+        entitySets.add(entitySet);
+      }
+      container.setEntitySets(entitySets);
+      final List<CsdlSingleton> singletons = new ArrayList<CsdlSingleton>();
+      for (int count = readSize(); count > 0; count--) {
+        final CsdlSingleton singleton = new CsdlSingleton();
+        readBindingTarget(singleton);
+        singletons.add(singleton);
+      }
+      container.setSingletons(singletons);
+      final List<CsdlActionImport> actionImports = new ArrayList<CsdlActionImport>();
+      for (int count = readSize(); count > 0; count--) {
+        final CsdlActionImport actionImport = new CsdlActionImport();
+        actionImport.setName(readString());
+        final String action = readString();
+        if (action != null) {
+          actionImport.setAction(action);
+        }
+        actionImport.setEntitySet(readString());
+        actionImport.setAnnotations(readAnnotations());
+        actionImports.add(actionImport);
+      }
+      container.setActionImports(actionImports);
+      final List<CsdlFunctionImport> functionImports = new ArrayList<CsdlFunctionImport>();
+      for (int count = readSize(); count > 0; count--) {
+        final CsdlFunctionImport functionImport = new CsdlFunctionImport();
+        functionImport.setName(readString());
+        final String function = readString();
+        if (function != null) {
+          functionImport.setFunction(function);
+        }
+        functionImport.setEntitySet(readString());
+        functionImport.setTitle(readString());
+        functionImport.setIncludeInServiceDocument(in.readBoolean());
+        functionImport.setAnnotations(readAnnotations());
+        functionImports.add(functionImport);
+      }
+      container.setFunctionImports(functionImports);
+      container.setAnnotations(readAnnotations());
+      return container;
+    }
+
+    private void readBindingTarget(final CsdlBindingTarget target) throws IOException {
+      target.setName(readString());
+      final String type = readString();
+      if (type != null) {
+        target.setType(type);
+      }
+      target.setTitle(readString());
+      final List<CsdlNavigationPropertyBinding> bindings = new ArrayList<CsdlNavigationPropertyBinding>();
+      for (int count = readSize(); count > 0; count--) {
+        final String path = readString();
+        bindings.add(new CsdlNavigationPropertyBinding().setPath(path).setTarget(readString()));
+      }
+      target.setNavigationPropertyBindings(bindings);
+      target.setAnnotations(readAnnotations());
+    }
+
+    private List<CsdlAnnotation> readAnnotations() throws IOException {
+      final int count = readSize();
+      final List<CsdlAnnotation> annotations = new ArrayList<CsdlAnnotation>(count);
+      for (int index = 0; index < count; index++) {
+        final CsdlAnnotation annotation = new CsdlAnnotation();
+        annotation.setTerm(readString());
+        annotation.setQualifier(readString());
+        annotation.setExpression(readExpression());
+        annotation.setAnnotations(readAnnotations());
+        annotations.add(annotation);
+      }
+      return annotations;
+    }
+
+    private CsdlExpression readExpression() throws IOException {
+      final byte kind = in.readByte();
+      switch (kind) {
+      case EXPRESSION_NULL:
+        return null;
+      case EXPRESSION_CONSTANT:
+        final ConstantExpressionType type = ConstantExpressionType.valueOf(readString());
+        return new CsdlConstantExpression(type, readString());
+      case EXPRESSION_ANNOTATION_PATH:
+        return new CsdlAnnotationPath().setValue(readString());
+      case EXPRESSION_NAVIGATION_PROPERTY_PATH:
+        return new CsdlNavigationPropertyPath().setValue(readString());
+      case EXPRESSION_PATH:
+        return new CsdlPath().setValue(readString());
+      case EXPRESSION_PROPERTY_PATH:
+        return new CsdlPropertyPath().setValue(readString());
+      case EXPRESSION_LABELED_ELEMENT_REFERENCE:
+        return new CsdlLabeledElementReference().setValue(readString());
+      case EXPRESSION_NULL_VALUE:
+        return new CsdlNull().setAnnotations(readAnnotations());
+      case EXPRESSION_URL_REF:
+        final CsdlUrlRef urlRef = new CsdlUrlRef().setValue(readExpression());
+        return urlRef.setAnnotations(readAnnotations());
+      case EXPRESSION_APPLY:
+        final CsdlApply apply = new CsdlApply().setFunction(readString());
+        apply.setParameters(readExpressions());
+        return apply.setAnnotations(readAnnotations());
+      case EXPRESSION_CAST:
+        final CsdlCast cast = new CsdlCast().setType(readString());
+        cast.setMaxLength(readInteger());
+        cast.setPrecision(readInteger());
+        cast.setScale(readInteger());
+        cast.setSrid(readSrid());
+        cast.setValue(readExpression());
+        return cast.setAnnotations(readAnnotations());
+      case EXPRESSION_IS_OF:
+        final CsdlIsOf isOf = new CsdlIsOf().setType(readString());
+        isOf.setMaxLength(readInteger());
+        isOf.setPrecision(readInteger());
+        isOf.setScale(readInteger());
+        isOf.setSrid(readSrid());
+        isOf.setValue(readExpression());
+        return isOf.setAnnotations(readAnnotations());
+      case EXPRESSION_IF:
+        final CsdlIf ifExpression = new CsdlIf().setGuard(readExpression());
+        ifExpression.setThen(readExpression());
+        ifExpression.setElse(readExpression());
+        return ifExpression.setAnnotations(readAnnotations());
+      case EXPRESSION_LABELED_ELEMENT:
+        final CsdlLabeledElement element = new CsdlLabeledElement().setName(readString());
+        element.setValue(readExpression());
+        return element.setAnnotations(readAnnotations());
+      case EXPRESSION_COLLECTION:
+        return new CsdlCollection().setItems(readExpressions());
+      case EXPRESSION_RECORD:
+        final CsdlRecord record = new CsdlRecord().setType(readString());
+        final List<CsdlPropertyValue> values = new ArrayList<CsdlPropertyValue>();
+        for (int count = readSize(); count > 0; count--) {
+          final CsdlPropertyValue value = new CsdlPropertyValue().setProperty(readString());
+          value.setValue(readExpression());
+          values.add(value.setAnnotations(readAnnotations()));
+        }
+        record.setPropertyValues(values);
+        return record.setAnnotations(readAnnotations());
+      case EXPRESSION_LOGICAL_OR_COMPARISON:
+        final CsdlLogicalOrComparisonExpression logical = new CsdlLogicalOrComparisonExpression(
+            LogicalOrComparisonExpressionType.valueOf(readString()));
+        logical.setLeft(readExpression());
+        logical.setRight(readExpression());
+        return logical.setAnnotations(readAnnotations());
+      default:
+        throw new IOException("Unknown annotation expression kind " + kind + " in metadata snapshot");
+      }
+    }
+
+    private List<CsdlExpression> readExpressions() throws IOException {
+      final int count = readSize();
+      final List<CsdlExpression> expressions = new ArrayList<CsdlExpression>(count);
+      for (int index = 0; index < count; index++) {
+        expressions.add(readExpression());
+      }
+      return expressions;
+    }
+
+    private SRID readSrid() throws IOException {
+      final String srid = readString();
+      return srid == null ? null : SRID.valueOf(srid);
+    }
+
+    private Boolean readBoolean() throws IOException {
+      final byte value = in.readByte();
+      return value == 0 ? null : value == 1;
+    }
+
+    private Integer readInteger() throws IOException {
+      final int encoded = readSize();
+      if (encoded == 0) {
+        return null;
+      }
+      final int value = encoded - 1;
+      return (value >>> 1) ^ -(value & 1);
+    }
+
+    private String readString() throws IOException {
+      final int index = readSize();
+      if (index == STRING_NULL) {
+        return null;
+      } else if (index == STRING_NEW) {
+        final byte[] bytes = new byte[readSize()];
+        in.readFully(bytes);
+        final String value = new String(bytes, "UTF-8");
+        strings.add(value);
+        return value;
+      } else {
+        return strings.get(index - 2);
+      }
+    }
+
+    private int readSize() throws IOException {
+      int value = 0;
+      for (int shift = 0; shift < 32; shift += 7) {
+        final int b = in.readByte();
+        value |= (b & 0x7F) << shift;
+        if ((b & 0x80) == 0) {
+          return value;
+        }
+      }
+      throw new IOException("Malformed size in metadata snapshot");
+    }
+  }
+}
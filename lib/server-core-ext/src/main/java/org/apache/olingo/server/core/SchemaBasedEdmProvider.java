@@ -69,6 +69,14 @@ public class SchemaBasedEdmProvider implements CsdlEdmProvider {
     this.coreVocabularySchemas.put(ns, provider);
   }
   
+  Map<String, SchemaBasedEdmProvider> getReferenceProviders() {
+    return this.referenceSchemas;
+  }
+
+  Map<String, SchemaBasedEdmProvider> getVocabularyProviders() {
+    return this.coreVocabularySchemas;
+  }
+
   protected void addReference(EdmxReference reference) {
     for (EdmxReferenceInclude include : reference.getIncludes()) {
       this.references.put(include.getNamespace(), reference);
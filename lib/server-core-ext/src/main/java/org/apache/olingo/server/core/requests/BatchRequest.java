@@ -18,12 +18,13 @@
  */
 package org.apache.olingo.server.core.requests;
 
-import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.UUID;
 
+import org.apache.olingo.commons.api.ex.ODataRuntimeException;
 import org.apache.olingo.commons.api.format.ContentType;
 import org.apache.olingo.commons.api.http.HttpHeader;
 import org.apache.olingo.commons.api.http.HttpMethod;
@@ -37,13 +38,19 @@ import org.apache.olingo.server.api.ServiceMetadata;
 import org.apache.olingo.server.api.deserializer.batch.BatchDeserializerException;
 import org.apache.olingo.server.api.deserializer.batch.BatchOptions;
 import org.apache.olingo.server.api.deserializer.batch.BatchRequestPart;
+import org.apache.olingo.server.api.deserializer.batch.BatchRequestPartIterator;
 import org.apache.olingo.server.api.deserializer.batch.ODataResponsePart;
+import org.apache.olingo.server.api.serializer.SerializerException;
 import org.apache.olingo.server.core.ContentNegotiatorException;
 import org.apache.olingo.server.core.ServiceDispatcher;
 import org.apache.olingo.server.core.ServiceHandler;
 import org.apache.olingo.server.core.ServiceRequest;
 import org.apache.olingo.server.core.batchhandler.referenceRewriting.BatchReferenceRewriter;
+import org.apache.olingo.server.core.deserializer.batch.BatchParser;
 import org.apache.olingo.server.core.deserializer.batch.BatchParserCommon;
+import org.apache.olingo.server.core.serializer.BatchResponseSerializer;
+import org.apache.olingo.server.core.serializer.BatchResponseWriter;
+import org.apache.olingo.server.core.serializer.WriteThroughContent;
 
 public class BatchRequest extends ServiceRequest {
   private static final String PREFERENCE_CONTINUE_ON_ERROR = "odata.continue-on-error";
@@ -55,26 +62,52 @@ public class BatchRequest extends ServiceRequest {
   }
 
   @Override
-  public void execute(ServiceHandler handler, ODataResponse response)
+  public void execute(final ServiceHandler handler, ODataResponse response)
       throws ODataLibraryException, ODataApplicationException {
 
     // check for valid HTTP Verb
     assertHttpMethod(response);
 
     validateContentType();
-    boolean continueOnError = isContinueOnError();
+    final boolean continueOnError = isContinueOnError();
     final String boundary = extractBoundary(getRequestContentType());
 
     final BatchOptions options = BatchOptions.with().rawBaseUri(request.getRawBaseUri())
         .rawServiceResolutionUri(this.request.getRawServiceResolutionUri()).build();
 
-    final List<BatchRequestPart> parts = this.odata.createFixedFormatDeserializer()
-        .parseBatchRequest(request.getBody(), boundary, options);
+    final BatchRequestPartIterator parts = new BatchParser()
+        .parseBatchRequestIncrementally(request.getBody(), boundary, options);
 
-    ODataResponsePart partResponse = null;
-    final List<ODataResponsePart> responseParts = new ArrayList<ODataResponsePart>();
+    // send response; the parts are executed while the response is written,
+    // each response part as soon as it is available
+    final String responseBoundary = "batch_" + UUID.randomUUID().toString();
+    response.setHeader(HttpHeader.CONTENT_TYPE, ContentType.MULTIPART_MIXED + ";boundary="
+        + responseBoundary);
+    response.setODataContent(new WriteThroughContent(new WriteThroughContent.ContentWriter() {
+      @Override
+      public void write(OutputStream outputStream) throws SerializerException {
+        final BatchResponseWriter writer = new BatchResponseSerializer().createWriter(outputStream,
+            responseBoundary);
+        try {
+          executeParts(parts, handler, continueOnError, writer);
+        } catch (SerializerException e) {
+          throw e;
+        } catch (ODataLibraryException e) {
+          throw new ODataRuntimeException("Error while executing the batch request", e);
+        } catch (ODataApplicationException e) {
+          throw new ODataRuntimeException("Error while executing the batch request", e);
+        }
+        writer.close();
+      }
+    }, null));
+    response.setStatusCode(HttpStatusCode.ACCEPTED.getStatusCode());
+  }
 
-    for (BatchRequestPart part : parts) {
+  void executeParts(BatchRequestPartIterator parts, ServiceHandler handler, boolean continueOnError,
+      BatchResponseWriter writer) throws ODataLibraryException, ODataApplicationException {
+    ODataResponsePart partResponse = null;
+    while (parts.hasNext()) {
+      final BatchRequestPart part = parts.next();
       if (part.isChangeSet()) {
         String txnId = null;
         try {
@@ -101,7 +134,7 @@ public class BatchRequest extends ServiceRequest {
         ODataRequest partRequest = part.getRequests().get(0);
         partResponse = process(partRequest, handler);
       }
-      responseParts.add(partResponse);
+      writer.write(partResponse);
 
       // on error, should we continue?
       final int statusCode = partResponse.getResponses().get(0).getStatusCode();
@@ -109,16 +142,6 @@ public class BatchRequest extends ServiceRequest {
         break;
       }
     }
-
-    // send response
-    final String responseBoundary = "batch_" + UUID.randomUUID().toString();
-    ;
-    final InputStream responseContent = odata.createFixedFormatSerializer().batchResponse(
-        responseParts, responseBoundary);
-    response.setHeader(HttpHeader.CONTENT_TYPE, ContentType.MULTIPART_MIXED + ";boundary="
-        + responseBoundary);
-    response.setContent(responseContent);
-    response.setStatusCode(HttpStatusCode.ACCEPTED.getStatusCode());
   }
 
   ODataResponsePart process(ODataRequest partRequest, ServiceHandler serviceHandler) {
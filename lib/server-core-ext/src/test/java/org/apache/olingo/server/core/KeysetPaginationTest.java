@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.FileReader;
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.sql.Timestamp;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.data.ValueType;
+import org.apache.olingo.commons.api.edm.Edm;
+import org.apache.olingo.commons.api.edm.EdmEntityType;
+import org.apache.olingo.commons.api.edm.provider.CsdlEdmProvider;
+import org.apache.olingo.commons.api.edmx.EdmxReference;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.OData;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.core.uri.parser.Parser;
+import org.junit.Before;
+import org.junit.Test;
+
+public class KeysetPaginationTest {
+  private static final String PEOPLE = "http://localhost/trippin/People";
+
+  private OData odata;
+  private Edm edm;
+  private EdmEntityType personType;
+
+  @Before
+  public void setUp() throws Exception {
+    odata = OData.newInstance();
+    final CsdlEdmProvider provider =
+        (CsdlEdmProvider) new MetadataParser().buildEdmProvider(new FileReader("src/test/resources/trippin.xml"));
+    edm = odata.createServiceMetadata(provider, Collections.<EdmxReference> emptyList()).getEdm();
+    personType = edm.getEntityContainer().getEntitySet("People").getEntityType();
+  }
+
+  @Test
+  public void sortKeysWithKeyAsTiebreaker() throws Exception {
+    final List<KeysetPagination.SortKey> sortKeys = create("$orderby=LastName%20desc").getSortKeys();
+    assertEquals(2, sortKeys.size());
+    assertEquals("LastName", sortKeys.get(0).getName());
+    assertTrue(sortKeys.get(0).isDescending());
+    assertEquals("UserName", sortKeys.get(1).getName());
+    assertFalse(sortKeys.get(1).isDescending());
+
+    assertEquals(1, create("$orderby=UserName%20desc").getSortKeys().size());
+    assertEquals(1, create(null).getSortKeys().size());
+  }
+
+  @Test
+  public void seekAfterLastEntity() throws Exception {
+    final KeysetPagination firstPage = create("$orderby=LastName%20desc&$skip=5&$top=100");
+    assertNull(firstPage.getSeekAfter());
+
+    final URI nextLink = firstPage.createNextLink(person("russellwhyte", "O'Neil, Jr.", 1));
+    assertTrue(nextLink.toString().startsWith(PEOPLE + "?$orderby=LastName%20desc&$top=100&%24skiptoken="));
+    final KeysetPagination nextPage = create(nextLink.getRawQuery());
+    assertEquals(Arrays.asList((Object) "O'Neil, Jr.", "russellwhyte"), nextPage.getSeekAfter().getValues());
+
+    final KeysetPagination.SeekAfter seekAfter = nextPage.getSeekAfter();
+    assertTrue(seekAfter.matches(person("scottketchum", "Ketchum", 2)));
+    assertTrue(seekAfter.matches(person("ursulabright", "O'Neil, Jr.", 3)));
+    assertFalse(seekAfter.matches(person("russellwhyte", "O'Neil, Jr.", 1)));
+    assertFalse(seekAfter.matches(person("angelhuffman", "O'Neil, Jr.", 4)));
+    assertFalse(seekAfter.matches(person("javieralfred", "Whyte", 5)));
+
+    final URI thirdLink = nextPage.createNextLink(person("scottketchum", "Ketchum", 2));
+    assertEquals(1, thirdLink.getRawQuery().split("skiptoken").length - 1);
+  }
+
+  @Test
+  public void valuesOfOtherJavaTypes() throws Exception {
+    final KeysetPagination pagination = create("$orderby=Concurrency");
+    final KeysetPagination nextPage =
+        create(pagination.createNextLink(person("russellwhyte", null, 3)).getRawQuery());
+    assertEquals(Long.valueOf(3), nextPage.getSeekAfter().getValues().get(0));
+    assertTrue(nextPage.getSeekAfter().matches(person("scottketchum", null, 4)));
+    assertFalse(nextPage.getSeekAfter().matches(person("angelhuffman", null, 2)));
+  }
+
+  @Test
+  public void nullValuesFirst() throws Exception {
+    final KeysetPagination pagination = create("$orderby=FirstName");
+    final KeysetPagination nextPage =
+        create(pagination.createNextLink(person("russellwhyte", null, 1)).getRawQuery());
+    assertEquals(Arrays.asList(null, (Object) "russellwhyte"), nextPage.getSeekAfter().getValues());
+    assertTrue(nextPage.getSeekAfter().matches(person("scottketchum", null, 2)));
+    final Entity named = person("angelhuffman", null, 3);
+    named.addProperty(new Property(null, "FirstName", ValueType.PRIMITIVE, "Angel"));
+    assertTrue(nextPage.getSeekAfter().matches(named));
+  }
+
+  @Test
+  public void decimalValuesWithScale() throws Exception {
+    final EdmEntityType orderType = createOrders();
+    final KeysetPagination pagination = createOrder(orderType, "$orderby=Amount%20desc");
+    final URI nextLink = pagination.createNextLink(order(1, new BigDecimal("12.50"), null));
+    assertTrue(nextLink.getRawQuery().endsWith("skiptoken=12.50%2C1"));
+    final KeysetPagination nextPage = createOrder(orderType, nextLink.getRawQuery());
+    assertEquals(Arrays.asList((Object) new BigDecimal("12.50"), 1), nextPage.getSeekAfter().getValues());
+
+    final KeysetPagination.SeekAfter seekAfter = nextPage.getSeekAfter();
+    assertTrue(seekAfter.matches(order(2, new BigDecimal("12.49"), null)));
+    assertTrue(seekAfter.matches(order(3, new BigDecimal("12.5"), null)));
+    assertFalse(seekAfter.matches(order(4, 12.75, null)));
+
+    try {
+      pagination.createNextLink(order(1, new BigDecimal("12.345"), null));
+      fail("Expected exception not thrown.");
+    } catch (final ODataApplicationException e) {
+      assertEquals(HttpStatusCode.INTERNAL_SERVER_ERROR.getStatusCode(), e.getStatusCode());
+    }
+  }
+
+  @Test
+  public void dateTimeOffsetValuesWithPrecision() throws Exception {
+    final EdmEntityType orderType = createOrders();
+    final KeysetPagination pagination = createOrder(orderType, "$orderby=PlacedAt");
+    final Timestamp placedAt = Timestamp.valueOf("2016-01-02 03:04:05.678");
+    final KeysetPagination nextPage =
+        createOrder(orderType, pagination.createNextLink(order(1, null, placedAt)).getRawQuery());
+    assertEquals(placedAt.getTime(), ((Timestamp) nextPage.getSeekAfter().getValues().get(0)).getTime());
+
+    final KeysetPagination.SeekAfter seekAfter = nextPage.getSeekAfter();
+    assertTrue(seekAfter.matches(order(2, null, new Timestamp(placedAt.getTime() + 1))));
+    assertFalse(seekAfter.matches(order(0, null, placedAt)));
+    final Calendar earlier = Calendar.getInstance();
+    earlier.setTimeInMillis(placedAt.getTime() - 1000);
+    assertFalse(seekAfter.matches(order(3, null, earlier)));
+  }
+
+  @Test
+  public void invalidSkipToken() throws Exception {
+    expectException("$skiptoken=a,b", HttpStatusCode.BAD_REQUEST);
+    expectException("$orderby=Concurrency&$skiptoken='a'", HttpStatusCode.BAD_REQUEST);
+    expectException("$orderby=Concurrency&$skiptoken=1", HttpStatusCode.BAD_REQUEST);
+  }
+
+  @Test
+  public void unsupportedOrderBy() throws Exception {
+    expectException("$orderby=length(LastName)", HttpStatusCode.NOT_IMPLEMENTED);
+  }
+
+  private KeysetPagination create(final String query) throws Exception {
+    return KeysetPagination.create(new Parser(edm, odata).parseUri("People", query, null), personType,
+        query == null ? PEOPLE : PEOPLE + '?' + query);
+  }
+
+  private EdmEntityType createOrders() throws Exception {
+    final CsdlEdmProvider provider = (CsdlEdmProvider) new MetadataParser().buildEdmProvider(new StringReader(
+        "<edmx:Edmx xmlns:edmx=\"http://docs.oasis-open.org/odata/ns/edmx\" Version=\"4.0\">"
+            + "<edmx:DataServices><Schema xmlns=\"http://docs.oasis-open.org/odata/ns/edm\" Namespace=\"ns\">"
+            + "<EntityType Name=\"Order\"><Key><PropertyRef Name=\"OrderId\"/></Key>"
+            + "<Property Name=\"OrderId\" Type=\"Edm.Int32\" Nullable=\"false\"/>"
+            + "<Property Name=\"Amount\" Type=\"Edm.Decimal\" Precision=\"10\" Scale=\"2\"/>"
+            + "<Property Name=\"PlacedAt\" Type=\"Edm.DateTimeOffset\" Precision=\"3\"/>"
+            + "</EntityType>"
+            + "<EntityContainer Name=\"Container\"><EntitySet Name=\"Orders\" EntityType=\"ns.Order\"/>"
+            + "</EntityContainer></Schema></edmx:DataServices></edmx:Edmx>"));
+    edm = odata.createServiceMetadata(provider, Collections.<EdmxReference> emptyList()).getEdm();
+    return edm.getEntityContainer().getEntitySet("Orders").getEntityType();
+  }
+
+  private KeysetPagination createOrder(final EdmEntityType orderType, final String query) throws Exception {
+    return KeysetPagination.create(new Parser(edm, odata).parseUri("Orders", query, null), orderType,
+        "http://localhost/Orders?" + query);
+  }
+
+  private Entity order(final int id, final Object amount, final Object placedAt) {
+    final Entity entity = new Entity();
+    entity.addProperty(new Property(null, "OrderId", ValueType.PRIMITIVE, id));
+    entity.addProperty(new Property(null, "Amount", ValueType.PRIMITIVE, amount));
+    entity.addProperty(new Property(null, "PlacedAt", ValueType.PRIMITIVE, placedAt));
+    return entity;
+  }
+
+  private Entity person(final String userName, final String lastName, final int concurrency) {
+    final Entity entity = new Entity();
+    entity.addProperty(new Property(null, "UserName", ValueType.PRIMITIVE, userName));
+    entity.addProperty(new Property(null, "LastName", ValueType.PRIMITIVE, lastName));
+    entity.addProperty(new Property(null, "Concurrency", ValueType.PRIMITIVE, concurrency));
+    return entity;
+  }
+
+  private void expectException(final String query, final HttpStatusCode statusCode) throws Exception {
+    try {
+      create(query);
+      fail("Expected exception not thrown.");
+    } catch (final ODataApplicationException e) {
+      assertEquals(statusCode.getStatusCode(), e.getStatusCode());
+    }
+  }
+}
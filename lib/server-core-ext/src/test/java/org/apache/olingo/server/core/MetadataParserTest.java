@@ -23,9 +23,15 @@ import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.FileReader;
+import java.io.StringReader;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import javax.xml.stream.XMLStreamException;
 
 import org.apache.olingo.commons.api.ex.ODataException;
 import org.apache.olingo.commons.api.edm.FullQualifiedName;
@@ -188,4 +194,32 @@ public class MetadataParserTest {
     MetadataParser parser = new MetadataParser();
     provider = (CsdlEdmProvider) parser.buildEdmProvider(new FileReader("src/test/resources/skip-annotation.xml"));
   }  
+
+  @Test
+  public void referencesLoadedOnExecutor() throws Exception {
+    ExecutorService executor = Executors.newFixedThreadPool(2);
+    try {
+      MetadataParser parser = new MetadataParser().referenceExecutor(executor);
+      provider = (CsdlEdmProvider) parser.buildEdmProvider(new FileReader("src/test/resources/trippin.xml"));
+      assertNotNull(provider.getTerm(new FullQualifiedName("org.apache.olingo.v1",
+          "xml10-incompatible-char-replacement")));
+      assertNotNull(provider.getEntityType(new FullQualifiedName(NS, "Person")));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void unexpectedElementRejected() throws Exception {
+    try {
+      new MetadataParser().parseAnnotations(true).buildEdmProvider(new StringReader(
+          "<edmx:Edmx xmlns:edmx=\"http://docs.oasis-open.org/odata/ns/edmx\" Version=\"4.0\">"
+          + "<edmx:DataServices><Schema xmlns=\"http://docs.oasis-open.org/odata/ns/edm\" Namespace=\"ns\">"
+          + "<EntityType Name=\"ET\"><Unknown/></EntityType>"
+          + "</Schema></edmx:DataServices></edmx:Edmx>"));
+      fail("Expected exception not thrown.");
+    } catch (XMLStreamException e) {
+      assertTrue(e.getMessage().contains("Unknown"));
+    }
+  }
 }
@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.net.URI;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.olingo.commons.api.edm.FullQualifiedName;
+import org.apache.olingo.commons.api.edm.geo.SRID;
+import org.junit.Test;
+
+public class MetadataSnapshotTest {
+
+  @Test
+  public void snapshotEqualsParsedMetadata() throws Exception {
+    assertSnapshotEqualsParsedMetadata("src/test/resources/trippin.xml", new MetadataParser());
+  }
+
+  @Test
+  public void snapshotEqualsParsedMetadataWithAnnotations() throws Exception {
+    assertSnapshotEqualsParsedMetadata("src/test/resources/annotations.xml",
+        new MetadataParser().parseAnnotations(true));
+  }
+
+  @Test
+  public void snapshotRestoresProviderWithoutParsing() throws Exception {
+    final MetadataParser parser = new MetadataParser();
+    final byte[] csdl = read("src/test/resources/trippin.xml");
+    final byte[] snapshot = snapshot(parser, csdl);
+
+    final SchemaBasedEdmProvider provider = MetadataSnapshot.read(new ByteArrayInputStream(snapshot),
+        parser.checksum(csdl));
+    assertNotNull(provider);
+    assertNotNull(provider.getEntityType(
+        new FullQualifiedName("Microsoft.OData.SampleService.Models.TripPin", "Person")));
+  }
+
+  @Test
+  public void divergingSnapshotIsIgnored() throws Exception {
+    final MetadataParser parser = new MetadataParser();
+    final byte[] snapshot = snapshot(parser, read("src/test/resources/trippin.xml"));
+    final byte[] csdl = read("src/test/resources/annotations.xml");
+
+    assertNull(MetadataSnapshot.read(new ByteArrayInputStream(snapshot), parser.checksum(csdl)));
+    assertNull(MetadataSnapshot.read(new ByteArrayInputStream(snapshot),
+        new MetadataParser().parseAnnotations(true).checksum(read("src/test/resources/trippin.xml"))));
+
+    // The parser falls back to the CSDL document.
+    final SchemaBasedEdmProvider provider = parser.buildEdmProvider(new ByteArrayInputStream(csdl),
+        new ByteArrayInputStream(snapshot));
+    assertEquals("Org.OData.AnnoatationTest", provider.getSchemas().get(0).getNamespace());
+  }
+
+  @Test
+  public void changedReferencedDocumentInvalidatesSnapshot() throws Exception {
+    final byte[] reference = read("src/main/resources/org.apache.olingo.v1.xml");
+    final byte[][] current = { reference };
+    final MetadataParser parser = new MetadataParser().referenceResolver(new ReferenceResolver() {
+      @Override
+      public InputStream resolveReference(final URI referenceUri, final String xmlBase) {
+        return new ByteArrayInputStream(current[0]);
+      }
+    });
+    final byte[] csdl = read("src/test/resources/trippin.xml");
+    final byte[] snapshot = snapshot(parser, csdl);
+    assertNotNull(MetadataSnapshot.read(new ByteArrayInputStream(snapshot), parser.checksum(csdl)));
+
+    current[0] = (new String(reference, "UTF-8") + "<!-- changed -->").getBytes("UTF-8");
+    assertNull(MetadataSnapshot.read(new ByteArrayInputStream(snapshot), parser.checksum(csdl)));
+  }
+
+  @Test
+  public void corruptSnapshotIsIgnored() throws Exception {
+    final MetadataParser parser = new MetadataParser();
+    final byte[] csdl = read("src/test/resources/trippin.xml");
+    final byte[] snapshot = snapshot(parser, csdl);
+    final byte[] truncated = new byte[snapshot.length / 2];
+    System.arraycopy(snapshot, 0, truncated, 0, truncated.length);
+
+    try {
+      MetadataSnapshot.read(new ByteArrayInputStream(truncated), parser.checksum(csdl));
+      fail("Expected exception not thrown.");
+    } catch (final IOException e) {
+      // expected: the snapshot ends prematurely
+    }
+    assertNotNull(parser.buildEdmProvider(new ByteArrayInputStream(csdl), new ByteArrayInputStream(truncated))
+        .getEntityContainer());
+  }
+
+  private void assertSnapshotEqualsParsedMetadata(final String file, final MetadataParser parser)
+      throws Exception {
+    final byte[] csdl = read(file);
+    final SchemaBasedEdmProvider parsed = parser.buildEdmProvider(new ByteArrayInputStream(csdl), null);
+    final SchemaBasedEdmProvider restored = parser.buildEdmProvider(new ByteArrayInputStream(csdl),
+        new ByteArrayInputStream(snapshot(parser, csdl)));
+    assertNotSame(parsed, restored);
+    assertSameModel("provider", parsed, restored, new IdentityHashMap<Object, Object>());
+  }
+
+  /** Compares two CSDL object graphs field by field. */
+  private void assertSameModel(final String path, final Object expected, final Object actual,
+      final Map<Object, Object> visited) throws Exception {
+    if (expected == null || actual == null) {
+      assertEquals(path, expected, actual);
+    } else if (expected instanceof List) {
+      assertEquals(path, ((List<?>) expected).size(), ((List<?>) actual).size());
+      for (int index = 0; index < ((List<?>) expected).size(); index++) {
+        assertSameModel(path + "[" + index + "]", ((List<?>) expected).get(index), ((List<?>) actual).get(index),
+            visited);
+      }
+    } else if (expected instanceof Map) {
+      assertEquals(path, ((Map<?, ?>) expected).keySet(), ((Map<?, ?>) actual).keySet());
+      for (final Object key : ((Map<?, ?>) expected).keySet()) {
+        assertSameModel(path + "[" + key + "]", ((Map<?, ?>) expected).get(key), ((Map<?, ?>) actual).get(key),
+            visited);
+      }
+    } else if (expected.getClass().getName().startsWith("org.apache.olingo.")
+        && !(expected instanceof FullQualifiedName) && !(expected instanceof SRID) && !(expected instanceof Enum)) {
+      assertEquals(path, expected.getClass(), actual.getClass());
+      if (visited.put(expected, actual) != null) {
+        return;
+      }
+      for (Class<?> type = expected.getClass(); type != Object.class; type = type.getSuperclass()) {
+        for (final Field field : type.getDeclaredFields()) {
+          if (!Modifier.isStatic(field.getModifiers())) {
+            field.setAccessible(true);
+            assertSameModel(path + "." + field.getName(), field.get(expected), field.get(actual), visited);
+          }
+        }
+      }
+    } else {
+      assertEquals(path, expected, actual);
+    }
+  }
+
+  private byte[] snapshot(final MetadataParser parser, final byte[] csdl) throws Exception {
+    ByteArrayOutputStream snapshot = new ByteArrayOutputStream();
+    parser.writeSnapshot(new ByteArrayInputStream(csdl), snapshot);
+    return snapshot.toByteArray();
+  }
+
+  private byte[] read(final String file) throws Exception {
+    final InputStream in = new FileInputStream(file);
+    try {
+      return IOUtils.toByteArray(in);
+    } finally {
+      in.close();
+    }
+  }
+}
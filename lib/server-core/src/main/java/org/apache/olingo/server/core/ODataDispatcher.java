@@ -69,6 +69,7 @@ import org.apache.olingo.server.api.uri.UriResourcePartTyped;
 import org.apache.olingo.server.api.uri.UriResourcePrimitiveProperty;
 import org.apache.olingo.server.api.uri.UriResourceProperty;
 import org.apache.olingo.server.core.batchhandler.BatchHandler;
+import org.apache.olingo.server.core.debug.ServerCoreDebugger;
 import org.apache.olingo.server.core.etag.PreconditionsValidator;
 
 public class ODataDispatcher {
@@ -76,10 +77,22 @@ public class ODataDispatcher {
   private static final String NOT_IMPLEMENTED_MESSAGE = "not implemented";
   private final UriInfo uriInfo;
   private final ODataHandlerImpl handler;
+  private final ServerCoreDebugger debugger;
 
   public ODataDispatcher(final UriInfo uriInfo, final ODataHandlerImpl handler) {
+    this(uriInfo, handler, null);
+  }
+
+  /**
+   * @param uriInfo the parsed request URI
+   * @param handler the handler which provides processors and extensions
+   * @param debugger the debugger of the request, also used for the operations of a batch request;
+   *                 <code>null</code> to use the default of the handler
+   */
+  public ODataDispatcher(final UriInfo uriInfo, final ODataHandlerImpl handler, final ServerCoreDebugger debugger) {
     this.uriInfo = uriInfo;
     this.handler = handler;
+    this.debugger = debugger;
   }
 
   public void dispatch(final ODataRequest request, final ODataResponse response) throws ODataApplicationException,
@@ -112,7 +125,7 @@ public class ODataDispatcher {
 
     case batch:
       checkMethod(request.getMethod(), HttpMethod.POST);
-      new BatchHandler(handler, handler.selectProcessor(BatchProcessor.class))
+      new BatchHandler(handler, handler.selectProcessor(BatchProcessor.class), debugger)
           .process(request, response, true);
       break;
 
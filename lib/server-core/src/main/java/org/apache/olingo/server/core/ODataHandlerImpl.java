@@ -18,9 +18,11 @@
  */
 package org.apache.olingo.server.core;
 
-import java.util.LinkedList;
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
+import org.apache.olingo.commons.api.edm.Edm;
 import org.apache.olingo.commons.api.edm.constants.ODataServiceVersion;
 import org.apache.olingo.commons.api.ex.ODataRuntimeException;
 import org.apache.olingo.commons.api.format.ContentType;
@@ -35,6 +37,7 @@ import org.apache.olingo.server.api.ODataResponse;
 import org.apache.olingo.server.api.ODataServerError;
 import org.apache.olingo.server.api.OlingoExtension;
 import org.apache.olingo.server.api.ServiceMetadata;
+import org.apache.olingo.server.api.batch.ParallelBatchSupport;
 import org.apache.olingo.server.api.deserializer.DeserializerException;
 import org.apache.olingo.server.api.etag.CustomETagSupport;
 import org.apache.olingo.server.api.etag.PreconditionException;
@@ -47,7 +50,9 @@ import org.apache.olingo.server.api.serializer.SerializerException;
 import org.apache.olingo.server.api.uri.UriInfo;
 import org.apache.olingo.server.api.uri.queryoption.FormatOption;
 import org.apache.olingo.server.api.uri.queryoption.SystemQueryOptionKind;
+import org.apache.olingo.server.core.async.AsyncSupportImpl;
 import org.apache.olingo.server.core.debug.ServerCoreDebugger;
+import org.apache.olingo.server.core.uri.UriInfoCacheImpl;
 import org.apache.olingo.server.core.uri.parser.Parser;
 import org.apache.olingo.server.core.uri.parser.UriParserException;
 import org.apache.olingo.server.core.uri.parser.UriParserSemanticException;
@@ -56,73 +61,123 @@ import org.apache.olingo.server.core.uri.queryoption.FormatOptionImpl;
 import org.apache.olingo.server.core.uri.validator.UriValidationException;
 import org.apache.olingo.server.core.uri.validator.UriValidator;
 
+/**
+ * Handles OData requests.
+ * <p/>
+ * The handler keeps only its configuration, i.e., the registered processors and extensions, in fields;
+ * all state of a single request is kept in an {@link ODataRequestContext}.
+ * Therefore one instance can be created once, configured, and then used by all request threads concurrently.
+ * Processors and extensions should be registered before the first request is processed.
+ */
 public class ODataHandlerImpl implements ODataHandler {
 
   private final OData odata;
   private final ServiceMetadata serviceMetadata;
-  private final List<Processor> processors = new LinkedList<Processor>();
-  private final ServerCoreDebugger debugger;
+  private final List<Processor> processors = new CopyOnWriteArrayList<Processor>();
+  private final ServerCoreDebugger defaultDebugger;
 
-  private CustomContentTypeSupport customContentTypeSupport;
-  private CustomETagSupport customETagSupport;
+  private volatile CustomContentTypeSupport customContentTypeSupport;
+  private volatile CustomETagSupport customETagSupport;
+  private volatile ParallelBatchSupport parallelBatchSupport;
+  private volatile UriInfoCacheImpl uriInfoCache;
+  private volatile AsyncSupportImpl asyncSupport;
 
-  private UriInfo uriInfo;
-  private Exception lastThrownException;
+  /**
+   * Context of the request started last, for the deprecated accessors;
+   * with concurrent requests it may belong to any of them.
+   */
+  private volatile ODataRequestContext lastContext;
 
   public ODataHandlerImpl(final OData odata, final ServiceMetadata serviceMetadata, final ServerCoreDebugger debugger) {
     this.odata = odata;
     this.serviceMetadata = serviceMetadata;
-    this.debugger = debugger;
+    this.defaultDebugger = debugger;
 
     register(new DefaultRedirectProcessor());
     register(new DefaultProcessor());
   }
 
   public ODataResponse process(final ODataRequest request) {
+    return process(request, new ODataRequestContext(defaultDebugger));
+  }
+
+  /**
+   * Processes an OData request with the given request-scoped context.
+   * If asynchronous processing is registered, requests with the preference <code>respond-async</code>
+   * are queued and requests to status monitor resources are answered from the queue.
+   * @param request the OData request
+   * @param context the state of this request; must not be shared with other requests
+   * @return OData response
+   */
+  public ODataResponse process(final ODataRequest request, final ODataRequestContext context) {
+    lastContext = context;
+    final AsyncSupportImpl async = asyncSupport;
+    if (async != null) {
+      if (async.isStatusMonitorRequest(request)) {
+        return async.handleStatusMonitorRequest(request);
+      } else if (odata.createPreferences(request.getHeaders(HttpHeader.PREFER)).hasRespondAsync()) {
+        try {
+          final ODataResponse response = async.submit(request, withDebugger(defaultDebugger));
+          if (response != null) {
+            return response;
+          }
+        } catch (final IOException e) {
+          final ODataResponse response = new ODataResponse();
+          handleException(request, response, ODataExceptionHelper.createServerErrorObject(e), e, context);
+          return response;
+        }
+      }
+    }
+    return processSynchronously(request, context);
+  }
+
+  private ODataResponse processSynchronously(final ODataRequest request, final ODataRequestContext context) {
+    final ServerCoreDebugger debugger = context.getDebugger();
     ODataResponse response = new ODataResponse();
     final int responseHandle = debugger.startRuntimeMeasurement("ODataHandler", "process");
     try {
-      processInternal(request, response);
+      processInternal(request, response, context);
     } catch (final UriValidationException e) {
       ODataServerError serverError = ODataExceptionHelper.createServerErrorObject(e, null);
-      handleException(request, response, serverError, e);
+      handleException(request, response, serverError, e, context);
     } catch (final UriParserSemanticException e) {
       ODataServerError serverError = ODataExceptionHelper.createServerErrorObject(e, null);
-      handleException(request, response, serverError, e);
+      handleException(request, response, serverError, e, context);
     } catch (final UriParserSyntaxException e) {
       ODataServerError serverError = ODataExceptionHelper.createServerErrorObject(e, null);
-      handleException(request, response, serverError, e);
+      handleException(request, response, serverError, e, context);
     } catch (final UriParserException e) {
       ODataServerError serverError = ODataExceptionHelper.createServerErrorObject(e, null);
-      handleException(request, response, serverError, e);
+      handleException(request, response, serverError, e, context);
     } catch (ContentNegotiatorException e) {
       ODataServerError serverError = ODataExceptionHelper.createServerErrorObject(e, null);
-      handleException(request, response, serverError, e);
+      handleException(request, response, serverError, e, context);
     } catch (SerializerException e) {
       ODataServerError serverError = ODataExceptionHelper.createServerErrorObject(e, null);
-      handleException(request, response, serverError, e);
+      handleException(request, response, serverError, e, context);
     } catch (DeserializerException e) {
       ODataServerError serverError = ODataExceptionHelper.createServerErrorObject(e, null);
-      handleException(request, response, serverError, e);
+      handleException(request, response, serverError, e, context);
     } catch (PreconditionException e) {
       ODataServerError serverError = ODataExceptionHelper.createServerErrorObject(e, null);
-      handleException(request, response, serverError, e);
+      handleException(request, response, serverError, e, context);
     } catch (ODataHandlerException e) {
       ODataServerError serverError = ODataExceptionHelper.createServerErrorObject(e, null);
-      handleException(request, response, serverError, e);
+      handleException(request, response, serverError, e, context);
     } catch (ODataApplicationException e) {
       ODataServerError serverError = ODataExceptionHelper.createServerErrorObject(e);
-      handleException(request, response, serverError, e);
+      handleException(request, response, serverError, e, context);
     } catch (Exception e) {
       ODataServerError serverError = ODataExceptionHelper.createServerErrorObject(e);
-      handleException(request, response, serverError, e);
+      handleException(request, response, serverError, e, context);
     }
     debugger.stopRuntimeMeasurement(responseHandle);
     return response;
   }
 
-  private void processInternal(final ODataRequest request, final ODataResponse response)
-      throws ODataApplicationException, ODataLibraryException {
+  private void processInternal(final ODataRequest request, final ODataResponse response,
+      final ODataRequestContext context) throws ODataApplicationException, ODataLibraryException {
+    final ServerCoreDebugger debugger = context.getDebugger();
     final int measurementHandle = debugger.startRuntimeMeasurement("ODataHandler", "processInternal");
 
     response.setHeader(HttpHeader.ODATA_VERSION, ODataServiceVersion.V40.toString());
@@ -133,19 +188,46 @@ public class ODataHandlerImpl implements ODataHandler {
       throw e;
     }
 
+    // The URI info is kept locally because operations of a batch request may be processed concurrently.
+    final UriInfo uriInfo = parseUri(request, context, measurementHandle);
+
+    final int measurementDispatcher = debugger.startRuntimeMeasurement("ODataDispatcher", "dispatch");
+    try {
+      new ODataDispatcher(uriInfo, this, debugger).dispatch(request, response);
+    } finally {
+      debugger.stopRuntimeMeasurement(measurementDispatcher);
+      debugger.stopRuntimeMeasurement(measurementHandle);
+    }
+  }
+
+  private UriInfo parseUri(final ODataRequest request, final ODataRequestContext context,
+      final int measurementHandle) throws ODataLibraryException {
+    final ServerCoreDebugger debugger = context.getDebugger();
+    final Edm edm = serviceMetadata.getEdm();
+    final HttpMethod method = request.getMethod();
+    if (uriInfoCache != null) {
+      final UriInfo cachedUriInfo =
+          uriInfoCache.get(edm, method, request.getRawODataPath(), request.getRawQueryPath());
+      if (cachedUriInfo != null) {
+        context.setUriInfo(cachedUriInfo);
+        return cachedUriInfo;
+      }
+    }
+
     final int measurementUriParser = debugger.startRuntimeMeasurement("Parser", "parseUri");
+    final UriInfo uriInfo;
     try {
-      uriInfo = new Parser(serviceMetadata.getEdm(), odata)
+      uriInfo = new Parser(edm, odata)
           .parseUri(request.getRawODataPath(), request.getRawQueryPath(), null);
     } catch (final ODataLibraryException e) {
       debugger.stopRuntimeMeasurement(measurementUriParser);
       debugger.stopRuntimeMeasurement(measurementHandle);
       throw e;
     }
+    context.setUriInfo(uriInfo);
     debugger.stopRuntimeMeasurement(measurementUriParser);
 
     final int measurementUriValidator = debugger.startRuntimeMeasurement("UriValidator", "validate");
-    final HttpMethod method = request.getMethod();
     try {
       new UriValidator().validate(uriInfo, method);
     } catch (final UriValidationException e) {
@@ -155,19 +237,29 @@ public class ODataHandlerImpl implements ODataHandler {
     }
     debugger.stopRuntimeMeasurement(measurementUriValidator);
 
-    final int measurementDispatcher = debugger.startRuntimeMeasurement("ODataDispatcher", "dispatch");
-    try {
-      new ODataDispatcher(uriInfo, this).dispatch(request, response);
-    } finally {
-      debugger.stopRuntimeMeasurement(measurementDispatcher);
-      debugger.stopRuntimeMeasurement(measurementHandle);
+    if (uriInfoCache != null) {
+      final UriInfo cachedUriInfo =
+          uriInfoCache.put(edm, method, request.getRawODataPath(), request.getRawQueryPath(), uriInfo);
+      context.setUriInfo(cachedUriInfo);
+      return cachedUriInfo;
     }
+    return uriInfo;
   }
 
   public void handleException(final ODataRequest request, final ODataResponse response,
       final ODataServerError serverError, final Exception exception) {
+    handleException(request, response, serverError, exception, new ODataRequestContext(defaultDebugger));
+  }
+
+  /**
+   * Handles an exception that occurred while processing the request with the given context.
+   * The exception is recorded in the context.
+   */
+  public void handleException(final ODataRequest request, final ODataResponse response,
+      final ODataServerError serverError, final Exception exception, final ODataRequestContext context) {
+    final ServerCoreDebugger debugger = context.getDebugger();
     final int measurementHandle = debugger.startRuntimeMeasurement("ODataHandler", "handleException");
-    lastThrownException = exception;
+    context.setLastThrownException(exception);
     ErrorProcessor exceptionProcessor;
     try {
       exceptionProcessor = selectProcessor(ErrorProcessor.class);
@@ -177,7 +269,7 @@ public class ODataHandlerImpl implements ODataHandler {
     }
     ContentType requestedContentType;
     try {
-      final FormatOption formatOption = getFormatOption(request, uriInfo);
+      final FormatOption formatOption = getFormatOption(request, context.getUriInfo());
       requestedContentType = ContentNegotiator.doContentNegotiation(formatOption, request,
           getCustomContentTypeSupport(), RepresentationType.ERROR);
     } catch (final ContentNegotiatorException e) {
@@ -228,7 +320,6 @@ public class ODataHandlerImpl implements ODataHandler {
   <T extends Processor> T selectProcessor(final Class<T> cls) throws ODataHandlerException {
     for (final Processor processor : processors) {
       if (cls.isAssignableFrom(processor.getClass())) {
-        processor.init(odata, serviceMetadata);
         return cls.cast(processor);
       }
     }
@@ -236,7 +327,12 @@ public class ODataHandlerImpl implements ODataHandler {
         ODataHandlerException.MessageKeys.PROCESSOR_NOT_IMPLEMENTED, cls.getSimpleName());
   }
 
+  /**
+   * Registers a processor and initializes it once;
+   * the processor is then used by all requests concurrently.
+   */
   public void register(final Processor processor) {
+    processor.init(odata, serviceMetadata);
     processors.add(0, processor);
   }
 
@@ -246,6 +342,12 @@ public class ODataHandlerImpl implements ODataHandler {
       this.customContentTypeSupport = (CustomContentTypeSupport) extension;
     } else if(extension instanceof CustomETagSupport) {
       this.customETagSupport = (CustomETagSupport) extension;
+    } else if(extension instanceof ParallelBatchSupport) {
+      this.parallelBatchSupport = (ParallelBatchSupport) extension;
+    } else if(extension instanceof UriInfoCacheImpl) {
+      this.uriInfoCache = (UriInfoCacheImpl) extension;
+    } else if(extension instanceof AsyncSupportImpl) {
+      this.asyncSupport = (AsyncSupportImpl) extension;
     } else {
       throw new ODataRuntimeException("Got not supported exception with class name " +
           extension.getClass().getSimpleName());
@@ -260,11 +362,59 @@ public class ODataHandlerImpl implements ODataHandler {
     return customETagSupport;
   }
 
+  public ParallelBatchSupport getParallelBatchSupport() {
+    return parallelBatchSupport;
+  }
+
+  /**
+   * Returns the exception that has been handled while processing the request
+   * which has been started last, if any.
+   * @deprecated use {@link #process(ODataRequest, ODataRequestContext)} and
+   * {@link ODataRequestContext#getLastThrownException()}
+   */
+  @Deprecated
   public Exception getLastThrownException() {
-    return lastThrownException;
+    final ODataRequestContext context = lastContext;
+    return context == null ? null : context.getLastThrownException();
   }
 
+  /**
+   * Returns the parsed URI of the request which has been started last, if any.
+   * @deprecated use {@link #process(ODataRequest, ODataRequestContext)} and
+   * {@link ODataRequestContext#getUriInfo()}
+   */
+  @Deprecated
   public UriInfo getUriInfo() {
-    return uriInfo;
+    final ODataRequestContext context = lastContext;
+    return context == null ? null : context.getUriInfo();
+  }
+
+  /**
+   * Returns a handler which processes each request with a new context using the given debugger,
+   * e.g., for the operations of a batch request that should be measured along with the batch request.
+   * The requests are always processed synchronously.
+   * Registrations are passed on to this handler.
+   * @param requestDebugger the debugger; <code>null</code> to use the default debugger of this handler
+   */
+  public ODataHandler withDebugger(final ServerCoreDebugger requestDebugger) {
+    final ServerCoreDebugger debugger = requestDebugger == null ? defaultDebugger : requestDebugger;
+    return new ODataHandler() {
+      @Override
+      public ODataResponse process(final ODataRequest request) {
+        final ODataRequestContext context = new ODataRequestContext(debugger);
+        lastContext = context;
+        return processSynchronously(request, context);
+      }
+
+      @Override
+      public void register(final Processor processor) {
+        ODataHandlerImpl.this.register(processor);
+      }
+
+      @Override
+      public void register(final OlingoExtension extension) {
+        ODataHandlerImpl.this.register(extension);
+      }
+    };
   }
 }
@@ -47,25 +47,36 @@ import org.apache.olingo.server.api.ODataResponse;
 import org.apache.olingo.server.api.ODataServerError;
 import org.apache.olingo.server.api.OlingoExtension;
 import org.apache.olingo.server.api.ServiceMetadata;
+import org.apache.olingo.server.api.async.AsyncSupport;
+import org.apache.olingo.server.api.batch.ParallelBatchSupport;
 import org.apache.olingo.server.api.debug.DebugSupport;
 import org.apache.olingo.server.api.deserializer.DeserializerException;
 import org.apache.olingo.server.api.etag.CustomETagSupport;
 import org.apache.olingo.server.api.processor.Processor;
 import org.apache.olingo.server.api.serializer.CustomContentTypeSupport;
+import org.apache.olingo.server.api.uri.UriInfoCache;
 import org.apache.olingo.server.core.debug.ServerCoreDebugger;
 
+/**
+ * Handles HTTP requests as OData requests.
+ * <p/>
+ * An instance can be created and configured once, e.g., at servlet initialization,
+ * and then be used by all request threads concurrently;
+ * per-request state is kept in an {@link ODataRequestContext}.
+ */
 public class ODataHttpHandlerImpl implements ODataHttpHandler {
 
   public static final int COPY_BUFFER_SIZE = 8192;
 
+  private final OData odata;
   private final ODataHandlerImpl handler;
-  private final ServerCoreDebugger debugger;
 
-  private int split = 0;
+  private volatile DebugSupport debugSupport;
+  private volatile int split = 0;
 
   public ODataHttpHandlerImpl(final OData odata, final ServiceMetadata serviceMetadata) {
-    debugger = new ServerCoreDebugger(odata);
-    handler = new ODataHandlerImpl(odata, serviceMetadata, debugger);
+    this.odata = odata;
+    handler = new ODataHandlerImpl(odata, serviceMetadata, new ServerCoreDebugger(odata));
   }
 
   @Override
@@ -78,17 +89,20 @@ public class ODataHttpHandlerImpl implements ODataHttpHandler {
     ODataRequest odRequest = new ODataRequest();
     Exception exception = null;
     ODataResponse odResponse;
+    final ServerCoreDebugger debugger = new ServerCoreDebugger(odata);
+    debugger.setDebugSupportProcessor(debugSupport);
     debugger.resolveDebugMode(request);
+    final ODataRequestContext context = new ODataRequestContext(debugger);
 
     final int processMethodHandle = debugger.startRuntimeMeasurement("ODataHttpHandlerImpl", "process");
     try {
-      fillODataRequest(odRequest, request, split);
+      fillODataRequest(odRequest, request, split, debugger);
 
-      odResponse = process(odRequest);
+      odResponse = handler.process(odRequest, context);
       // ALL future methods after process must not throw exceptions!
     } catch (Exception e) {
       exception = e;
-      odResponse = handleException(odRequest, e);
+      odResponse = handleException(odRequest, e, context);
     }
     debugger.stopRuntimeMeasurement(processMethodHandle);
 
@@ -96,10 +110,10 @@ public class ODataHttpHandlerImpl implements ODataHttpHandler {
       Map<String, String> serverEnvironmentVariables = createEnvironmentVariablesMap(request);
       if (exception == null) {
         // This is to ensure that we have access to the thrown OData Exception
-        exception = handler.getLastThrownException();
+        exception = context.getLastThrownException();
       }
       odResponse =
-          debugger.createDebugResponse(odRequest, odResponse, exception, handler.getUriInfo(),
+          debugger.createDebugResponse(odRequest, odResponse, exception, context.getUriInfo(),
               serverEnvironmentVariables);
     }
 
@@ -134,7 +148,8 @@ public class ODataHttpHandlerImpl implements ODataHttpHandler {
     this.split = split;
   }
 
-  private ODataResponse handleException(final ODataRequest odRequest, final Exception e) {
+  private ODataResponse handleException(final ODataRequest odRequest, final Exception e,
+      final ODataRequestContext context) {
     ODataResponse resp = new ODataResponse();
     ODataServerError serverError;
     if (e instanceof ODataHandlerException) {
@@ -144,7 +159,7 @@ public class ODataHttpHandlerImpl implements ODataHttpHandler {
     } else {
       serverError = ODataExceptionHelper.createServerErrorObject(e);
     }
-    handler.handleException(odRequest, resp, serverError, e);
+    handler.handleException(odRequest, resp, serverError, e, context);
     return resp;
   }
 
@@ -206,7 +221,7 @@ public class ODataHttpHandlerImpl implements ODataHttpHandler {
   }
 
   private ODataRequest fillODataRequest(final ODataRequest odRequest, final HttpServletRequest httpRequest,
-      final int split) throws ODataLibraryException {
+      final int split, final ServerCoreDebugger debugger) throws ODataLibraryException {
     final int requestHandle = debugger.startRuntimeMeasurement("ODataHttpHandlerImpl", "fillODataRequest");
     try {
       odRequest.setBody(httpRequest.getInputStream());
@@ -328,8 +343,23 @@ public class ODataHttpHandlerImpl implements ODataHttpHandler {
     handler.register(customConcurrencyControlSupport);
   }
 
+  @Override
+  public void register(final ParallelBatchSupport parallelBatchSupport) {
+    handler.register(parallelBatchSupport);
+  }
+
+  @Override
+  public void register(final UriInfoCache uriInfoCache) {
+    handler.register(uriInfoCache);
+  }
+
+  @Override
+  public void register(final AsyncSupport asyncSupport) {
+    handler.register(asyncSupport);
+  }
+
   @Override
   public void register(final DebugSupport debugSupport) {
-    debugger.setDebugSupportProcessor(debugSupport);
+    this.debugSupport = debugSupport;
   }
 }
@@ -20,6 +20,8 @@ package org.apache.olingo.server.core;
 
 import java.util.Collection;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.olingo.commons.api.edm.EdmPrimitiveType;
 import org.apache.olingo.commons.api.edm.EdmPrimitiveTypeKind;
@@ -31,6 +33,7 @@ import org.apache.olingo.server.api.OData;
 import org.apache.olingo.server.api.ODataHandler;
 import org.apache.olingo.server.api.ODataHttpHandler;
 import org.apache.olingo.server.api.ServiceMetadata;
+import org.apache.olingo.server.api.async.AsyncSupport;
 import org.apache.olingo.server.api.debug.DebugResponseHelper;
 import org.apache.olingo.server.api.deserializer.DeserializerException;
 import org.apache.olingo.server.api.deserializer.FixedFormatDeserializer;
@@ -41,23 +44,39 @@ import org.apache.olingo.server.api.prefer.Preferences;
 import org.apache.olingo.server.api.serializer.FixedFormatSerializer;
 import org.apache.olingo.server.api.serializer.ODataSerializer;
 import org.apache.olingo.server.api.serializer.SerializerException;
+import org.apache.olingo.server.api.uri.CursorStore;
 import org.apache.olingo.server.api.uri.UriHelper;
+import org.apache.olingo.server.api.uri.UriInfoCache;
+import org.apache.olingo.server.core.async.AsyncSupportImpl;
 import org.apache.olingo.server.core.debug.DebugResponseHelperImpl;
 import org.apache.olingo.server.core.debug.ServerCoreDebugger;
 import org.apache.olingo.server.core.deserializer.FixedFormatDeserializerImpl;
 import org.apache.olingo.server.core.deserializer.json.ODataJsonDeserializer;
+import org.apache.olingo.server.core.deserializer.json.ODataJsonStreamDeserializer;
 import org.apache.olingo.server.core.deserializer.xml.ODataXmlDeserializer;
 import org.apache.olingo.server.core.etag.ETagHelperImpl;
 import org.apache.olingo.server.core.prefer.PreferencesImpl;
 import org.apache.olingo.server.core.serializer.FixedFormatSerializerImpl;
 import org.apache.olingo.server.core.serializer.json.ODataJsonSerializer;
 import org.apache.olingo.server.core.serializer.xml.ODataXmlSerializer;
+import org.apache.olingo.server.core.uri.CursorStoreImpl;
 import org.apache.olingo.server.core.uri.UriHelperImpl;
+import org.apache.olingo.server.core.uri.UriInfoCacheImpl;
 
 public class ODataImpl extends OData {
 
   @Override
   public ODataSerializer createSerializer(final ContentType contentType) throws SerializerException {
+    return createSerializer(contentType, false);
+  }
+
+  @Override
+  public ODataSerializer createWriteThroughSerializer(final ContentType contentType) throws SerializerException {
+    return createSerializer(contentType, true);
+  }
+
+  private ODataSerializer createSerializer(final ContentType contentType, final boolean isWriteThrough)
+      throws SerializerException {
     ODataSerializer serializer = null;
 
     if (contentType.isCompatible(ContentType.APPLICATION_JSON)) {
@@ -65,7 +84,7 @@ public class ODataImpl extends OData {
       if (metadata == null
           || ContentType.VALUE_ODATA_METADATA_MINIMAL.equals(metadata)
           || ContentType.VALUE_ODATA_METADATA_NONE.equals(metadata)) {
-        serializer = new ODataJsonSerializer(contentType);
+        serializer = new ODataJsonSerializer(contentType, isWriteThrough);
       }
     } else if (contentType.isCompatible(ContentType.APPLICATION_XML)
         || contentType.isCompatible(ContentType.APPLICATION_ATOM_XML)) {
@@ -107,6 +126,12 @@ public class ODataImpl extends OData {
     return new ServiceMetadataImpl(edmProvider, references, serviceMetadataETagSupport);
   }
 
+  @Override
+  public ServiceMetadata createFrozenServiceMetadata(final CsdlEdmProvider edmProvider,
+      final List<EdmxReference> references, final ServiceMetadataETagSupport serviceMetadataETagSupport) {
+    return new ServiceMetadataImpl(edmProvider, references, serviceMetadataETagSupport, true);
+  }
+
   @Override
   public FixedFormatDeserializer createFixedFormatDeserializer() {
     return new FixedFormatDeserializerImpl();
@@ -143,6 +168,16 @@ public class ODataImpl extends OData {
     }
   }
 
+  @Override
+  public ODataDeserializer createStreamingDeserializer(final ContentType contentType,
+      final ServiceMetadata metadata) throws DeserializerException {
+    if (contentType.isCompatible(ContentType.JSON)) {
+      return new ODataJsonStreamDeserializer(contentType, metadata);
+    } else {
+      return createDeserializer(contentType, metadata);
+    }
+  }
+
   @Override
   public EdmPrimitiveType createPrimitiveTypeInstance(final EdmPrimitiveTypeKind kind) {
     return EdmPrimitiveTypeFactory.getInstance(kind);
@@ -165,4 +200,19 @@ public class ODataImpl extends OData {
     return new DebugResponseHelperImpl(debugFormat);
   }
 
+  @Override
+  public UriInfoCache createUriInfoCache(final int maximumSize) {
+    return new UriInfoCacheImpl(maximumSize);
+  }
+
+  @Override
+  public <T> CursorStore<T> createCursorStore(final int maximumSize, final long timeToLive, final TimeUnit unit) {
+    return new CursorStoreImpl<T>(maximumSize, timeToLive, unit);
+  }
+
+  @Override
+  public AsyncSupport createAsyncSupport(final ExecutorService executor) {
+    return new AsyncSupportImpl(executor);
+  }
+
 }
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core;
+
+import org.apache.olingo.server.api.uri.UriInfo;
+import org.apache.olingo.server.core.debug.ServerCoreDebugger;
+
+/**
+ * State of the processing of a single request.
+ * <p/>
+ * A new context is created for every request (and for every operation of a batch request)
+ * so that handlers can be shared between concurrently processed requests.
+ */
+public class ODataRequestContext {
+
+  private final ServerCoreDebugger debugger;
+  private UriInfo uriInfo;
+  private Exception lastThrownException;
+
+  public ODataRequestContext(final ServerCoreDebugger debugger) {
+    this.debugger = debugger;
+  }
+
+  /** Returns the debugger which collects the runtime measurements of the request. */
+  public ServerCoreDebugger getDebugger() {
+    return debugger;
+  }
+
+  /** Returns the parsed request URI or <code>null</code> if the URI has not been parsed (successfully). */
+  public UriInfo getUriInfo() {
+    return uriInfo;
+  }
+
+  public void setUriInfo(final UriInfo uriInfo) {
+    this.uriInfo = uriInfo;
+  }
+
+  /** Returns the exception that has been handled while processing the request, if any. */
+  public Exception getLastThrownException() {
+    return lastThrownException;
+  }
+
+  public void setLastThrownException(final Exception lastThrownException) {
+    this.lastThrownException = lastThrownException;
+  }
+}
@@ -40,7 +40,20 @@ public class ServiceMetadataImpl implements ServiceMetadata {
 
   public ServiceMetadataImpl(final CsdlEdmProvider edmProvider, final List<EdmxReference> references,
       final ServiceMetadataETagSupport serviceMetadataETagSupport) {
-    edm = new EdmProviderImpl(edmProvider);
+    this(edmProvider, references, serviceMetadataETagSupport, false);
+  }
+
+  /**
+   * @param frozen whether all elements of the entity data model have to be read immediately
+   * @see EdmProviderImpl#freeze()
+   */
+  public ServiceMetadataImpl(final CsdlEdmProvider edmProvider, final List<EdmxReference> references,
+      final ServiceMetadataETagSupport serviceMetadataETagSupport, final boolean frozen) {
+    final EdmProviderImpl edmProviderImpl = new EdmProviderImpl(edmProvider);
+    if (frozen) {
+      edmProviderImpl.freeze();
+    }
+    edm = edmProviderImpl;
     this.references = new ArrayList<EdmxReference>();
     this.references.addAll(references);
     this.serviceMetadataETagSupport = serviceMetadataETagSupport;
@@ -0,0 +1,363 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.async;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.olingo.commons.api.edm.constants.ODataServiceVersion;
+import org.apache.olingo.commons.api.format.ContentType;
+import org.apache.olingo.commons.api.format.PreferenceName;
+import org.apache.olingo.commons.api.http.HttpHeader;
+import org.apache.olingo.commons.api.http.HttpMethod;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.ODataHandler;
+import org.apache.olingo.server.api.ODataRequest;
+import org.apache.olingo.server.api.ODataResponse;
+import org.apache.olingo.server.api.ODataServerError;
+import org.apache.olingo.server.api.async.AsyncSupport;
+import org.apache.olingo.server.api.serializer.SerializerException;
+import org.apache.olingo.server.core.ODataExceptionHelper;
+import org.apache.olingo.server.core.ODataImpl;
+import org.apache.olingo.server.core.serializer.AsyncResponseSerializer;
+
+/**
+ * Keeps the asynchronously processed requests of a service.
+ * <p/>
+ * Finished requests are evicted lazily: a status monitor whose time to live has passed is removed when it is
+ * accessed, and all expired requests are removed when the maximum number of requests has been reached.
+ */
+public class AsyncSupportImpl implements AsyncSupport {
+
+  private static final int DEFAULT_SPOOL_THRESHOLD = 1024 * 1024;
+  private static final int DEFAULT_MAXIMUM_JOB_COUNT = 1000;
+  private static final long DEFAULT_TIME_TO_LIVE = TimeUnit.MINUTES.toMillis(10);
+  private static final int BUFFER_SIZE = 8192;
+  private static final String STATUS_MONITOR_PREFIX = STATUS_MONITOR_SEGMENT + '/';
+
+  private final ExecutorService executor;
+  private final ConcurrentMap<String, Job> jobs = new ConcurrentHashMap<String, Job>();
+
+  private volatile int spoolThreshold = DEFAULT_SPOOL_THRESHOLD;
+  private volatile File spoolDirectory;
+  private volatile long timeToLive = DEFAULT_TIME_TO_LIVE;
+  private volatile int maximumJobCount = DEFAULT_MAXIMUM_JOB_COUNT;
+
+  public AsyncSupportImpl(final ExecutorService executor) {
+    if (executor == null) {
+      throw new IllegalArgumentException("An executor is required.");
+    }
+    this.executor = executor;
+  }
+
+  @Override
+  public AsyncSupport setSpoolThreshold(final int bytes) {
+    spoolThreshold = bytes;
+    return this;
+  }
+
+  @Override
+  public AsyncSupport setSpoolDirectory(final File directory) {
+    spoolDirectory = directory;
+    return this;
+  }
+
+  @Override
+  public AsyncSupport setTimeToLive(final long timeToLive, final TimeUnit unit) {
+    this.timeToLive = unit.toMillis(timeToLive);
+    return this;
+  }
+
+  @Override
+  public AsyncSupport setMaximumJobCount(final int maximumJobCount) {
+    this.maximumJobCount = maximumJobCount;
+    return this;
+  }
+
+  @Override
+  public int getJobCount() {
+    evictExpired();
+    return jobs.size();
+  }
+
+  @Override
+  public void clear() {
+    for (final Iterator<Job> iterator = jobs.values().iterator(); iterator.hasNext();) {
+      final Job job = iterator.next();
+      iterator.remove();
+      job.cancel();
+    }
+  }
+
+  /**
+   * Returns whether the request addresses a status monitor resource.
+   * @param request the OData request
+   */
+  public boolean isStatusMonitorRequest(final ODataRequest request) {
+    final String path = request.getRawODataPath();
+    return path != null && path.startsWith(STATUS_MONITOR_PREFIX, path.startsWith("/") ? 1 : 0);
+  }
+
+  /**
+   * Queues the request for asynchronous processing.
+   * @param request the OData request; its body is read before this method returns
+   * @param handler the handler that processes the request synchronously
+   * @return the response with status <code>202 Accepted</code>,
+   *         the response with status <code>503 Service Unavailable</code> if the maximum number of requests
+   *         has been reached, or <code>null</code> if the executor did not accept the request
+   * @throws IOException if the request body cannot be buffered
+   */
+  public ODataResponse submit(final ODataRequest request, final ODataHandler handler) throws IOException {
+    if (jobs.size() >= maximumJobCount) {
+      evictExpired();
+      if (jobs.size() >= maximumJobCount) {
+        return createResponse(HttpStatusCode.SERVICE_UNAVAILABLE);
+      }
+    }
+    final SpoolOutputStream requestBody = new SpoolOutputStream(spoolThreshold, spoolDirectory);
+    if (request.getBody() != null) {
+      copy(request.getBody(), requestBody);
+      request.setBody(requestBody.getInputStream());
+    }
+
+    final String id = UUID.randomUUID().toString();
+    final Job job = new Job(id, requestBody);
+    jobs.put(id, job);
+    try {
+      job.future = executor.submit(new Runnable() {
+        @Override
+        public void run() {
+          job.run(request, handler);
+        }
+      });
+    } catch (final RejectedExecutionException e) {
+      jobs.remove(id);
+      if (request.getBody() != null) {
+        request.setBody(requestBody.getInputStream());
+      }
+      return null;
+    }
+
+    final ODataResponse response = createResponse(HttpStatusCode.ACCEPTED);
+    response.setHeader(HttpHeader.LOCATION, getStatusMonitorUri(request, id));
+    response.setHeader(HttpHeader.PREFERENCE_APPLIED, PreferenceName.RESPOND_ASYNC.toString());
+    return response;
+  }
+
+  /**
+   * Handles a request to a status monitor resource or to the result of an asynchronously processed request.
+   * @param request the OData request
+   * @return the response
+   */
+  public ODataResponse handleStatusMonitorRequest(final ODataRequest request) {
+    final String path = request.getRawODataPath();
+    final String resource = path.substring(path.indexOf(STATUS_MONITOR_PREFIX) + STATUS_MONITOR_PREFIX.length());
+    final int slash = resource.indexOf('/');
+    final String id = slash < 0 ? resource : resource.substring(0, slash);
+    final boolean result = slash >= 0 && RESULT_SEGMENT.equals(resource.substring(slash + 1));
+    Job job = jobs.get(id);
+    if (job != null && job.isExpired(System.currentTimeMillis()) && jobs.remove(id, job)) {
+      job.cancel();
+      job = null;
+    }
+    if (job == null || slash >= 0 && !result) {
+      return createResponse(HttpStatusCode.NOT_FOUND);
+    }
+
+    if (request.getMethod() == HttpMethod.DELETE && !result) {
+      if (jobs.remove(id, job)) {
+        job.cancel();
+      }
+      return createResponse(HttpStatusCode.NO_CONTENT);
+    } else if (request.getMethod() != HttpMethod.GET) {
+      return createResponse(HttpStatusCode.METHOD_NOT_ALLOWED);
+    }
+
+    final String statusMonitorUri = getStatusMonitorUri(request, id);
+    if (!job.isFinished()) {
+      final ODataResponse response = createResponse(HttpStatusCode.ACCEPTED);
+      response.setHeader(HttpHeader.LOCATION, statusMonitorUri);
+      return response;
+    } else if (!result) {
+      final ODataResponse response = createResponse(HttpStatusCode.SEE_OTHER);
+      response.setHeader(HttpHeader.LOCATION, statusMonitorUri + '/' + RESULT_SEGMENT);
+      return response;
+    }
+
+    try {
+      final ODataResponse response = createResponse(HttpStatusCode.OK);
+      response.setHeader(HttpHeader.CONTENT_TYPE, ContentType.APPLICATION_HTTP.toContentTypeString());
+      response.setContent(job.getResult());
+      return response;
+    } catch (final IOException e) {
+      return createResponse(HttpStatusCode.INTERNAL_SERVER_ERROR);
+    } catch (final SerializerException e) {
+      return createResponse(HttpStatusCode.INTERNAL_SERVER_ERROR);
+    }
+  }
+
+  private void evictExpired() {
+    final long now = System.currentTimeMillis();
+    for (final Iterator<Job> iterator = jobs.values().iterator(); iterator.hasNext();) {
+      final Job job = iterator.next();
+      if (job.isExpired(now)) {
+        iterator.remove();
+        job.cancel();
+      }
+    }
+  }
+
+  private String getStatusMonitorUri(final ODataRequest request, final String id) {
+    return request.getRawBaseUri() + '/' + STATUS_MONITOR_PREFIX + id;
+  }
+
+  private ODataResponse createResponse(final HttpStatusCode status) {
+    final ODataResponse response = new ODataResponse();
+    response.setStatusCode(status.getStatusCode());
+    response.setHeader(HttpHeader.ODATA_VERSION, ODataServiceVersion.V40.toString());
+    return response;
+  }
+
+  /**
+   * Creates the response for an exception thrown while processing a request asynchronously.
+   * The error is serialized into the given body; the exception is kept as cause in the error object.
+   */
+  private ODataResponse createErrorResponse(final Exception exception, final SpoolOutputStream body) {
+    final ODataServerError serverError = ODataExceptionHelper.createServerErrorObject(exception);
+    final ODataResponse response = createResponse(HttpStatusCode.fromStatusCode(serverError.getStatusCode()));
+    try {
+      copy(new ODataImpl().createSerializer(ContentType.JSON).error(serverError).getContent(), body);
+      response.setHeader(HttpHeader.CONTENT_TYPE, ContentType.JSON.toContentTypeString());
+    } catch (final SerializerException e) {
+      // The response is sent without body.
+    } catch (final IOException e) {
+      // The response is sent without body.
+    }
+    return response;
+  }
+
+  private static void copy(final InputStream input, final OutputStream output) throws IOException {
+    try {
+      final byte[] buffer = new byte[BUFFER_SIZE];
+      int count;
+      while ((count = input.read(buffer)) > 0) {
+        output.write(buffer, 0, count);
+      }
+    } finally {
+      try {
+        input.close();
+      } finally {
+        output.close();
+      }
+    }
+  }
+
+  private class Job {
+    private final String id;
+    private final SpoolOutputStream requestBody;
+    private volatile Future<?> future;
+    private volatile ODataResponse response;
+    private volatile SpoolOutputStream responseBody;
+    private volatile long finishedAt;
+    private boolean cancelled;
+
+    private Job(final String id, final SpoolOutputStream requestBody) {
+      this.id = id;
+      this.requestBody = requestBody;
+    }
+
+    private void run(final ODataRequest request, final ODataHandler handler) {
+      ODataResponse result = null;
+      SpoolOutputStream body = new SpoolOutputStream(spoolThreshold, spoolDirectory);
+      try {
+        result = handler.process(request);
+        if (result.getContent() != null) {
+          copy(result.getContent(), body);
+        } else {
+          if (result.getODataContent() != null) {
+            result.getODataContent().write(body);
+          }
+          body.close();
+        }
+      } catch (final IOException e) {
+        body.delete();
+        body = new SpoolOutputStream(spoolThreshold, spoolDirectory);
+        result = createErrorResponse(e, body);
+      } catch (final RuntimeException e) {
+        body.delete();
+        body = new SpoolOutputStream(spoolThreshold, spoolDirectory);
+        result = createErrorResponse(e, body);
+      } finally {
+        requestBody.delete();
+        finish(result, body);
+      }
+    }
+
+    private synchronized void finish(final ODataResponse result, final SpoolOutputStream body) {
+      if (cancelled || jobs.get(id) != this) {
+        body.delete();
+      } else {
+        response = result;
+        responseBody = body;
+        finishedAt = System.currentTimeMillis();
+      }
+    }
+
+    private synchronized void cancel() {
+      cancelled = true;
+      if (future != null) {
+        future.cancel(true);
+      }
+      if (responseBody != null) {
+        responseBody.delete();
+      }
+      requestBody.delete();
+    }
+
+    private boolean isFinished() {
+      return finishedAt > 0;
+    }
+
+    private boolean isExpired(final long now) {
+      return isFinished() && now - finishedAt > timeToLive;
+    }
+
+    private InputStream getResult() throws IOException, SerializerException {
+      final ODataResponse head = new ODataResponse();
+      head.setStatusCode(response.getStatusCode());
+      for (final Map.Entry<String, List<String>> header : response.getAllHeaders().entrySet()) {
+        head.addHeader(header.getKey(), header.getValue());
+      }
+      return new SequenceInputStream(new AsyncResponseSerializer().serialize(head), responseBody.getInputStream());
+    }
+  }
+}
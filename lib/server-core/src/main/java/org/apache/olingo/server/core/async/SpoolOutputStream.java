@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.async;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+/**
+ * Output stream that keeps its content in memory up to a threshold
+ * and moves it to a temporary file as soon as the threshold is exceeded.
+ * The content can be read as often as needed after the stream has been closed;
+ * {@link #delete()} releases it.
+ */
+public class SpoolOutputStream extends OutputStream {
+
+  private static final String FILE_PREFIX = "olingo-async-";
+  private static final String FILE_SUFFIX = ".tmp";
+
+  private final int threshold;
+  private final File directory;
+  private ByteArrayOutputStream memory = new ByteArrayOutputStream();
+  private File file;
+  private OutputStream fileOutput;
+
+  /**
+   * @param threshold the maximum number of bytes kept in memory
+   * @param directory the directory for the temporary file;
+   *                  <code>null</code> for the system-dependent default temporary-file directory
+   */
+  public SpoolOutputStream(final int threshold, final File directory) {
+    this.threshold = threshold;
+    this.directory = directory;
+  }
+
+  @Override
+  public void write(final int b) throws IOException {
+    target(1).write(b);
+  }
+
+  @Override
+  public void write(final byte[] b, final int off, final int len) throws IOException {
+    target(len).write(b, off, len);
+  }
+
+  private OutputStream target(final int length) throws IOException {
+    if (file == null && memory.size() + length > threshold) {
+      file = File.createTempFile(FILE_PREFIX, FILE_SUFFIX, directory);
+      fileOutput = new BufferedOutputStream(new FileOutputStream(file));
+      memory.writeTo(fileOutput);
+      memory = null;
+    }
+    return file == null ? memory : fileOutput;
+  }
+
+  @Override
+  public void flush() throws IOException {
+    if (fileOutput != null) {
+      fileOutput.flush();
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (fileOutput != null) {
+      fileOutput.close();
+    }
+  }
+
+  /** Returns whether the content has been moved to a temporary file. */
+  public boolean isSpooled() {
+    return file != null;
+  }
+
+  /**
+   * Opens a new stream on the content; the stream has to be closed by the caller.
+   * @return the content
+   * @throws IOException if the temporary file cannot be read
+   */
+  public InputStream getInputStream() throws IOException {
+    return file == null ? new ByteArrayInputStream(memory.toByteArray()) : new FileInputStream(file);
+  }
+
+  /** Releases the content and deletes the temporary file, if any. */
+  public void delete() {
+    if (file == null) {
+      memory = new ByteArrayOutputStream();
+    } else {
+      try {
+        close();
+      } catch (final IOException e) {
+        // ignore since the file is deleted anyway
+      }
+      file.delete();
+    }
+  }
+}
@@ -18,20 +18,40 @@
  */
 package org.apache.olingo.server.core.batchhandler;
 
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import org.apache.olingo.commons.api.ex.ODataRuntimeException;
+import org.apache.olingo.commons.api.http.HttpMethod;
 import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.ODataContent;
 import org.apache.olingo.server.api.ODataHandler;
 import org.apache.olingo.server.api.ODataLibraryException;
 import org.apache.olingo.server.api.ODataRequest;
 import org.apache.olingo.server.api.ODataResponse;
-import org.apache.olingo.server.api.batch.BatchFacade;
+import org.apache.olingo.server.api.batch.StreamingBatchFacade;
 import org.apache.olingo.server.api.deserializer.batch.BatchDeserializerException;
 import org.apache.olingo.server.api.deserializer.batch.BatchRequestPart;
+import org.apache.olingo.server.api.deserializer.batch.BatchRequestPartIterator;
 import org.apache.olingo.server.api.deserializer.batch.ODataResponsePart;
 import org.apache.olingo.server.api.processor.BatchProcessor;
+import org.apache.olingo.server.api.serializer.BatchSerializerException;
+import org.apache.olingo.server.api.serializer.SerializerException;
 import org.apache.olingo.server.core.deserializer.batch.BatchParserCommon;
+import org.apache.olingo.server.core.serializer.BatchResponseSerializer;
+import org.apache.olingo.server.core.serializer.BatchResponseWriter;
+import org.apache.olingo.server.core.serializer.WriteThroughContent;
 
-public class BatchFacadeImpl implements BatchFacade {
+public class BatchFacadeImpl implements StreamingBatchFacade {
   private final BatchPartHandler partHandler;
+  private final Executor executor;
 
   /**
    * Creates a new BatchFacade.
@@ -41,7 +61,23 @@ public class BatchFacadeImpl implements BatchFacade {
    */
   public BatchFacadeImpl(final ODataHandler oDataHandler, final BatchProcessor batchProcessor,
                          final boolean isStrict) {
+    this(oDataHandler, batchProcessor, isStrict, null);
+  }
+
+  /**
+   * Creates a new BatchFacade.
+   * @param oDataHandler   handler
+   * @param batchProcessor batch processor
+   * @param isStrict       mode switch (currently not used)
+   * @param executor       executor for retrieve operations outside of change sets;
+   *                       if <code>null</code> all operations are executed sequentially;
+   *                       otherwise the handler must not keep state of a request outside of its
+   *                       {@link org.apache.olingo.server.core.ODataRequestContext request context}
+   */
+  public BatchFacadeImpl(final ODataHandler oDataHandler, final BatchProcessor batchProcessor,
+                         final boolean isStrict, final Executor executor) {
     partHandler = new BatchPartHandler(oDataHandler, batchProcessor, this);
+    this.executor = executor;
   }
 
   @Override
@@ -56,8 +92,179 @@ public class BatchFacadeImpl implements BatchFacade {
     return partHandler.handleBatchRequest(request);
   }
 
+  @Override
+  public List<ODataResponsePart> handleBatchRequests(final List<BatchRequestPart> requests,
+      final boolean continueOnError) throws ODataApplicationException, ODataLibraryException {
+    final ListWriter writer = new ListWriter(requests.size());
+    int index = 0;
+    while (index < requests.size()) {
+      int end = index + 1;
+      if (executor != null && isRetrieve(requests.get(index))) {
+        while (end < requests.size() && isRetrieve(requests.get(end))) {
+          end++;
+        }
+      }
+      if (!handle(requests.subList(index, end), continueOnError, writer)) {
+        break;
+      }
+      index = end;
+    }
+    return writer.responseParts;
+  }
+
+  @Override
+  public ODataContent handleBatchRequests(final BatchRequestPartIterator requests, final boolean continueOnError,
+      final String boundary) {
+    return new WriteThroughContent(new WriteThroughContent.ContentWriter() {
+      @Override
+      public void write(final OutputStream outputStream) throws SerializerException {
+        final BatchResponseWriter writer = new BatchResponseSerializer().createWriter(outputStream, boundary);
+        try {
+          handle(requests, continueOnError, writer);
+        } catch (final ODataApplicationException e) {
+          throw new ODataRuntimeException("Error while handling the batch request", e);
+        } catch (final SerializerException e) {
+          throw e;
+        } catch (final ODataLibraryException e) {
+          throw new ODataRuntimeException("Error while handling the batch request", e);
+        }
+        writer.close();
+      }
+    }, null);
+  }
+
+  private void handle(final BatchRequestPartIterator requests, final boolean continueOnError,
+      final BatchResponseWriter writer) throws ODataApplicationException, ODataLibraryException {
+    // Retrieve requests have no body, so they can be kept while the following parts are read.
+    final List<BatchRequestPart> retrieves = new ArrayList<BatchRequestPart>();
+    while (requests.hasNext()) {
+      final BatchRequestPart request = requests.next();
+      if (executor != null && isRetrieve(request)) {
+        retrieves.add(request);
+      } else if (!handleRetrieves(retrieves, continueOnError, writer)
+          || !handle(Collections.singletonList(request), continueOnError, writer)) {
+        return;
+      }
+    }
+    handleRetrieves(retrieves, continueOnError, writer);
+  }
+
+  private boolean handleRetrieves(final List<BatchRequestPart> retrieves, final boolean continueOnError,
+      final BatchResponseWriter writer) throws ODataApplicationException, ODataLibraryException {
+    final boolean continues = handle(retrieves, continueOnError, writer);
+    retrieves.clear();
+    return continues;
+  }
+
+  /**
+   * Handles the requests, in parallel if there is more than one, and writes each response
+   * as soon as it and all responses before it are available; if processing does not
+   * continue on error, only up to the first error response.
+   * @return whether processing continues
+   */
+  private boolean handle(final List<BatchRequestPart> requests, final boolean continueOnError,
+      final BatchResponseWriter writer) throws ODataApplicationException, ODataLibraryException {
+    if (requests.size() < 2) {
+      for (final BatchRequestPart request : requests) {
+        if (!write(handleBatchRequest(request), continueOnError, writer)) {
+          return false;
+        }
+      }
+      return true;
+    }
+    List<FutureTask<ODataResponsePart>> tasks = new ArrayList<FutureTask<ODataResponsePart>>(requests.size());
+    for (final BatchRequestPart request : requests) {
+      final FutureTask<ODataResponsePart> task = new FutureTask<ODataResponsePart>(
+          new Callable<ODataResponsePart>() {
+            @Override
+            public ODataResponsePart call() throws ODataApplicationException, ODataLibraryException {
+              return partHandler.handleBatchRequest(request);
+            }
+          });
+      try {
+        executor.execute(task);
+      } catch (final RejectedExecutionException e) {
+        task.run();
+      }
+      tasks.add(task);
+    }
+
+    int index = 0;
+    try {
+      for (; index < tasks.size(); index++) {
+        if (!write(getResult(tasks.get(index)), continueOnError, writer)) {
+          return false;
+        }
+      }
+      return true;
+    } finally {
+      // The responses after an error are not written, so the remaining operations need not run.
+      for (index++; index < tasks.size(); index++) {
+        tasks.get(index).cancel(true);
+      }
+    }
+  }
+
+  private boolean write(final ODataResponsePart responsePart, final boolean continueOnError,
+      final BatchResponseWriter writer) throws BatchSerializerException {
+    writer.write(responsePart);
+    return continueOnError || !isError(responsePart);
+  }
+
+  private ODataResponsePart getResult(final FutureTask<ODataResponsePart> task)
+      throws ODataApplicationException, ODataLibraryException {
+    try {
+      return task.get();
+    } catch (final InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new ODataRuntimeException("Interrupted while waiting for a batch operation", e);
+    } catch (final ExecutionException e) {
+      final Throwable cause = e.getCause();
+      if (cause instanceof ODataApplicationException) {
+        throw (ODataApplicationException) cause;
+      } else if (cause instanceof ODataLibraryException) {
+        throw (ODataLibraryException) cause;
+      } else if (cause instanceof RuntimeException) {
+        throw (RuntimeException) cause;
+      } else if (cause instanceof Error) {
+        throw (Error) cause;
+      } else {
+        throw new ODataRuntimeException((Exception) cause);
+      }
+    }
+  }
+
+  private boolean isRetrieve(final BatchRequestPart request) {
+    return !request.isChangeSet() && request.getRequests().size() == 1
+        && request.getRequests().get(0).getMethod() == HttpMethod.GET;
+  }
+
+  private boolean isError(final ODataResponsePart responsePart) {
+    final int statusCode = responsePart.getResponses().get(0).getStatusCode();
+    return statusCode >= 400 && statusCode <= 600;
+  }
+
   @Override
   public String extractBoundaryFromContentType(final String contentType) throws BatchDeserializerException {
     return BatchParserCommon.getBoundary(contentType, 0);
   }
+
+  /** Collects the response parts in a list. */
+  private static class ListWriter implements BatchResponseWriter {
+    private final List<ODataResponsePart> responseParts;
+
+    ListWriter(final int size) {
+      responseParts = new ArrayList<ODataResponsePart>(size);
+    }
+
+    @Override
+    public void write(final ODataResponsePart part) {
+      responseParts.add(part);
+    }
+
+    @Override
+    public void close() {
+      // Nothing to close.
+    }
+  }
 }
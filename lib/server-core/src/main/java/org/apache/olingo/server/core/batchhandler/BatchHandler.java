@@ -26,27 +26,44 @@ import org.apache.olingo.server.api.ODataLibraryException;
 import org.apache.olingo.server.api.ODataRequest;
 import org.apache.olingo.server.api.ODataResponse;
 import org.apache.olingo.server.api.batch.BatchFacade;
+import org.apache.olingo.server.api.batch.ParallelBatchSupport;
 import org.apache.olingo.server.api.deserializer.batch.BatchDeserializerException;
 import org.apache.olingo.server.api.deserializer.batch.BatchDeserializerException.MessageKeys;
 import org.apache.olingo.server.api.processor.BatchProcessor;
 import org.apache.olingo.server.core.ODataHandlerImpl;
+import org.apache.olingo.server.core.debug.ServerCoreDebugger;
 import org.apache.olingo.server.core.deserializer.batch.BatchParserCommon;
 
 public class BatchHandler {
   private final BatchProcessor batchProcessor;
   private final ODataHandlerImpl oDataHandler;
+  private final ServerCoreDebugger debugger;
 
   public BatchHandler(final ODataHandlerImpl oDataHandler, final BatchProcessor batchProcessor) {
+    this(oDataHandler, batchProcessor, null);
+  }
 
+  /**
+   * @param oDataHandler the handler which processes the operations of the batch request
+   * @param batchProcessor the batch processor
+   * @param debugger the debugger of the batch request, used for its operations;
+   *                 <code>null</code> to use the default of the handler
+   */
+  public BatchHandler(final ODataHandlerImpl oDataHandler, final BatchProcessor batchProcessor,
+      final ServerCoreDebugger debugger) {
     this.batchProcessor = batchProcessor;
     this.oDataHandler = oDataHandler;
+    this.debugger = debugger;
   }
 
   public void process(final ODataRequest request, final ODataResponse response, final boolean isStrict)
       throws ODataApplicationException, ODataLibraryException {
     validateRequest(request);
 
-    final BatchFacade operation = new BatchFacadeImpl(oDataHandler, batchProcessor, isStrict);
+    final ParallelBatchSupport parallelBatchSupport = oDataHandler.getParallelBatchSupport();
+    // Each operation gets its own request context so that operations can be processed in parallel.
+    final BatchFacade operation = new BatchFacadeImpl(oDataHandler.withDebugger(debugger), batchProcessor, isStrict,
+        parallelBatchSupport == null ? null : parallelBatchSupport.getExecutor());
     batchProcessor.processBatch(operation, request, response);
   }
 
@@ -37,6 +37,7 @@ import org.apache.olingo.server.api.debug.DebugInformation;
 import org.apache.olingo.server.api.debug.DebugSupport;
 import org.apache.olingo.server.api.debug.RuntimeMeasurement;
 import org.apache.olingo.server.api.uri.UriInfo;
+import org.apache.olingo.server.core.serializer.WriteThroughResult;
 
 public class ServerCoreDebugger {
 
@@ -71,6 +72,10 @@ public class ServerCoreDebugger {
     }
 
     try {
+      if (response != null && response.getContent() == null && response.getODataContent() != null) {
+        // Deferred content is rendered so that the body can be shown.
+        response.setContent(new WriteThroughResult(response.getODataContent()).getContent());
+      }
       DebugInformation debugInfo =
           createDebugInformation(request, response, exception, uriInfo, serverEnvironmentVariables);
 
@@ -108,26 +113,31 @@ public class ServerCoreDebugger {
 
   public int startRuntimeMeasurement(final String className, final String methodName) {
     if (isDebugMode) {
-      int handleId = runtimeInformation.size();
-
       final RuntimeMeasurement measurement = new RuntimeMeasurement();
       measurement.setTimeStarted(System.nanoTime());
       measurement.setClassName(className);
       measurement.setMethodName(methodName);
 
-      runtimeInformation.add(measurement);
-
-      return handleId;
+      // Operations of a batch request may be measured concurrently.
+      synchronized (runtimeInformation) {
+        int handleId = runtimeInformation.size();
+        runtimeInformation.add(measurement);
+        return handleId;
+      }
     } else {
       return 0;
     }
   }
 
   public void stopRuntimeMeasurement(final int handle) {
-    if (isDebugMode && handle < runtimeInformation.size()) {
-      RuntimeMeasurement runtimeMeasurement = runtimeInformation.get(handle);
-      if (runtimeMeasurement != null) {
-        runtimeMeasurement.setTimeStopped(System.nanoTime());
+    if (isDebugMode) {
+      synchronized (runtimeInformation) {
+        if (handle < runtimeInformation.size()) {
+          RuntimeMeasurement runtimeMeasurement = runtimeInformation.get(handle);
+          if (runtimeMeasurement != null) {
+            runtimeMeasurement.setTimeStopped(System.nanoTime());
+          }
+        }
       }
     }
   }
@@ -39,10 +39,12 @@ import org.apache.olingo.server.api.deserializer.FixedFormatDeserializer;
 import org.apache.olingo.server.api.deserializer.batch.BatchDeserializerException;
 import org.apache.olingo.server.api.deserializer.batch.BatchOptions;
 import org.apache.olingo.server.api.deserializer.batch.BatchRequestPart;
+import org.apache.olingo.server.api.deserializer.batch.BatchRequestPartIterator;
+import org.apache.olingo.server.api.deserializer.batch.IncrementalBatchDeserializer;
 import org.apache.olingo.server.core.deserializer.batch.BatchParser;
 import org.apache.olingo.server.core.deserializer.json.ODataJsonDeserializer;
 
-public class FixedFormatDeserializerImpl implements FixedFormatDeserializer {
+public class FixedFormatDeserializerImpl implements FixedFormatDeserializer, IncrementalBatchDeserializer {
 
   private static final int DEFAULT_BUFFER_SIZE = 128;
 
@@ -126,4 +128,10 @@ public class FixedFormatDeserializerImpl implements FixedFormatDeserializer {
 
     return parser.parseBatchRequest(content, boundary, options);
   }
+
+  @Override
+  public BatchRequestPartIterator parseBatchRequestIncrementally(final InputStream content, final String boundary,
+      final BatchOptions options) throws BatchDeserializerException {
+    return new BatchParser().parseBatchRequestIncrementally(content, boundary, options);
+  }
 }
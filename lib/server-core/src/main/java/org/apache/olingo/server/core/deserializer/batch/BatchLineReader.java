@@ -23,6 +23,7 @@ import java.io.InputStream;
 import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.apache.olingo.commons.api.format.ContentType;
@@ -33,6 +34,7 @@ public class BatchLineReader {
   private static final byte LF = '\n';
   private static final int EOF = -1;
   private static final int BUFFER_SIZE = 8192;
+  private static final int MAX_LINE_BYTES = 64 * 1024;
   private static final Charset DEFAULT_CHARSET = Charset.forName("UTF-8");
   private static final Charset CS_ISO_8859_1 = Charset.forName("iso-8859-1");
   public static final String BOUNDARY = "boundary";
@@ -43,6 +45,7 @@ public class BatchLineReader {
   private ReadState readState = new ReadState();
   private InputStream reader;
   private byte[] buffer;
+  private ByteBuffer lineBuffer = ByteBuffer.allocate(BUFFER_SIZE);
   private int offset = 0;
   private int limit = 0;
 
@@ -130,15 +133,52 @@ public class BatchLineReader {
   }
 
   String readLine() throws IOException {
-    if (limit == EOF) {
+    final int length = readLineIntoBuffer(Integer.MAX_VALUE);
+    if (length == 0) {
       return null;
+    } else {
+      String currentLine;
+      if (readState.isReadBody()) {
+        currentLine = new String(lineBuffer.array(), 0, length, getCurrentCharset());
+      } else {
+        currentLine = new String(lineBuffer.array(), 0, length, CS_ISO_8859_1);
+      }
+      updateCurrentCharset(currentLine);
+      return currentLine;
     }
+  }
+
+  /**
+   * Reads the next line including its line ending without decoding it.
+   * Lines longer than 64 KiB, e.g., request bodies without line breaks,
+   * are returned in pieces of that length so that they never have to be held completely.
+   * @return the bytes of the line, or <code>null</code> at the end of the stream
+   */
+  byte[] readLineBytes() throws IOException {
+    final int length = readLineIntoBuffer(MAX_LINE_BYTES);
+    return length == 0 ? null : Arrays.copyOf(lineBuffer.array(), length);
+  }
 
-    ByteBuffer innerBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+  /**
+   * Reads the next line into the line buffer; the buffer is reused for all lines
+   * but shrunk again after it had to grow for a long line.
+   * @param maxLength the maximum number of bytes to read; the rest of a longer line is read next time
+   * @return the length of the line; <code>0</code> at the end of the stream
+   */
+  private int readLineIntoBuffer(final int maxLength) throws IOException {
+    if (limit == EOF) {
+      return 0;
+    }
+
+    if (lineBuffer.capacity() > BUFFER_SIZE) {
+      lineBuffer = ByteBuffer.allocate(BUFFER_SIZE);
+    } else {
+      lineBuffer.clear();
+    }
     // EOF will be considered as line ending
     boolean foundLineEnd = false;
 
-    while (!foundLineEnd) {
+    while (!foundLineEnd && lineBuffer.position() < maxLength) {
       // Is buffer refill required?
       if (limit == offset && fillBuffer() == EOF) {
         foundLineEnd = true;
@@ -146,13 +186,8 @@ public class BatchLineReader {
 
       if (!foundLineEnd) {
         byte currentChar = buffer[offset++];
-        if (!innerBuffer.hasRemaining()) {
-          innerBuffer.flip();
-          ByteBuffer tmp = ByteBuffer.allocate(innerBuffer.limit() * 2);
-          tmp.put(innerBuffer);
-          innerBuffer = tmp;
-        }
-        innerBuffer.put(currentChar);
+        ensureLineBufferCapacity();
+        lineBuffer.put(currentChar);
 
         if (currentChar == LF) {
           foundLineEnd = true;
@@ -167,24 +202,23 @@ public class BatchLineReader {
 
           // Check if there is at least one character
           if (limit != EOF && buffer[offset] == LF) {
-            innerBuffer.put(LF);
+            ensureLineBufferCapacity();
+            lineBuffer.put(LF);
             offset++;
           }
         }
       }
     }
 
-    if (innerBuffer.position() == 0) {
-      return null;
-    } else {
-      String currentLine;
-      if (readState.isReadBody()) {
-        currentLine = new String(innerBuffer.array(), 0, innerBuffer.position(), getCurrentCharset());
-      } else {
-        currentLine = new String(innerBuffer.array(), 0, innerBuffer.position(), CS_ISO_8859_1);
-      }
-      updateCurrentCharset(currentLine);
-      return currentLine;
+    return lineBuffer.position();
+  }
+
+  private void ensureLineBufferCapacity() {
+    if (!lineBuffer.hasRemaining()) {
+      lineBuffer.flip();
+      ByteBuffer tmp = ByteBuffer.allocate(lineBuffer.limit() * 2);
+      tmp.put(lineBuffer);
+      lineBuffer = tmp;
     }
   }
 
@@ -18,11 +18,7 @@
  */
 package org.apache.olingo.server.core.deserializer.batch;
 
-import java.io.ByteArrayInputStream;
-import java.io.InputStream;
-import java.nio.charset.Charset;
 import java.util.Iterator;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -38,6 +34,7 @@ public class BatchParserCommon {
           + "\"([a-zA-Z0-9_\\-\\.'\\+\\s\\(\\),/:=\\?]{1,69}[a-zA-Z0-9_\\-\\.'\\+\\(\\),/:=\\?])\"";
   private static final Pattern PATTERN_LAST_CRLF = Pattern.compile("(.*)\\r\\n\\s*", Pattern.DOTALL);
   private static final Pattern PATTERN_HEADER_LINE = Pattern.compile("([a-zA-Z\\-]+):\\s?(.*)\\s*");
+  private static final Pattern PATTERN_BLANK_LINE = Pattern.compile("\\s*\r?\n\\s*");
 
   public static final String CONTENT_TRANSFER_ENCODING = "Content-Transfer-Encoding";
 
@@ -105,55 +102,6 @@ public class BatchParserCommon {
     return boundary;
   }
 
-  public static List<List<Line>> splitMessageByBoundary(final List<Line> message, final String boundary)
-      throws BatchDeserializerException {
-    final List<List<Line>> messageParts = new LinkedList<List<Line>>();
-    List<Line> currentPart = new LinkedList<Line>();
-    boolean isEndReached = false;
-
-    final String quotedBoundary = Pattern.quote(boundary);
-    final Pattern boundaryDelimiterPattern = Pattern.compile("--" + quotedBoundary + "--\\s*");
-    final Pattern boundaryPattern = Pattern.compile("--" + quotedBoundary + "\\s*");
-
-    for (Line currentLine : message) {
-      if (boundaryDelimiterPattern.matcher(currentLine.toString()).matches()) {
-        removeEndingCRLFFromList(currentPart);
-        messageParts.add(currentPart);
-        isEndReached = true;
-      } else if (boundaryPattern.matcher(currentLine.toString()).matches()) {
-        removeEndingCRLFFromList(currentPart);
-        messageParts.add(currentPart);
-        currentPart = new LinkedList<Line>();
-      } else {
-        currentPart.add(currentLine);
-      }
-
-      if (isEndReached) {
-        break;
-      }
-    }
-
-    // Remove preamble
-    if (messageParts.size() > 0) {
-      messageParts.remove(0);
-    }
-
-    if (!isEndReached) {
-      final int lineNumber = (message.size() > 0) ? message.get(0).getLineNumber() : 0;
-      throw new BatchDeserializerException("Missing close boundary delimiter",
-          BatchDeserializerException.MessageKeys.MISSING_CLOSE_DELIMITER, Integer.toString(lineNumber));
-    }
-
-    return messageParts;
-  }
-
-  private static void removeEndingCRLFFromList(final List<Line> list) {
-    if (list.size() > 0) {
-      Line lastLine = list.remove(list.size() - 1);
-      list.add(removeEndingCRLF(lastLine));
-    }
-  }
-
   public static Line removeEndingCRLF(final Line line) {
     Matcher matcher = PATTERN_LAST_CRLF.matcher(line.toString());
     if (matcher.matches()) {
@@ -167,68 +115,39 @@ public class BatchParserCommon {
     final int headerLineNumber = remainingMessage.size() != 0 ? remainingMessage.get(0).getLineNumber() : 0;
     final Header headers = new Header(headerLineNumber);
     final Iterator<Line> iter = remainingMessage.iterator();
-    Line currentLine;
     boolean isHeader = true;
 
     while (iter.hasNext() && isHeader) {
-      currentLine = iter.next();
-      final Matcher headerMatcher = PATTERN_HEADER_LINE.matcher(currentLine.toString());
-
-      if (headerMatcher.matches() && headerMatcher.groupCount() == 2) {
+      isHeader = consumeHeaderLine(headers, iter.next());
+      if (isHeader) {
         iter.remove();
-
-        String headerName = headerMatcher.group(1).trim();
-        String headerValue = headerMatcher.group(2).trim();
-
-        headers.addHeader(headerName, Header.splitValuesByComma(headerValue), currentLine.getLineNumber());
-      } else {
-        isHeader = false;
       }
     }
 
     return headers;
   }
 
-  public static void consumeBlankLine(final List<Line> remainingMessage, final boolean isStrict)
-      throws BatchDeserializerException {
-    if (remainingMessage.size() > 0 && remainingMessage.get(0).toString().matches("\\s*\r?\n\\s*")) {
-      remainingMessage.remove(0);
-    } else {
-      if (isStrict) {
-        final int lineNumber = (remainingMessage.size() > 0) ? remainingMessage.get(0).getLineNumber() : 0;
-        throw new BatchDeserializerException("Missing blank line",
-            BatchDeserializerException.MessageKeys.MISSING_BLANK_LINE, "[None]", Integer.toString(lineNumber));
-      }
-    }
-  }
-
-  public static InputStream convertLineListToInputStream(final List<Line> messageList, final Charset charset) {
-    final String message = lineListToString(messageList);
-
-    return new ByteArrayInputStream(message.getBytes(charset));
-  }
+  /**
+   * Adds the header field contained in the given line to the headers.
+   * @param headers the headers
+   * @param line the line to parse
+   * @return <code>true</code> if the line contains a header field, otherwise <code>false</code>
+   */
+  public static boolean consumeHeaderLine(final Header headers, final Line line) {
+    final Matcher headerMatcher = PATTERN_HEADER_LINE.matcher(line.toString());
 
-  private static String lineListToString(final List<Line> messageList) {
-    final StringBuilder builder = new StringBuilder();
+    if (headerMatcher.matches() && headerMatcher.groupCount() == 2) {
+      String headerName = headerMatcher.group(1).trim();
+      String headerValue = headerMatcher.group(2).trim();
 
-    for (Line currentLine : messageList) {
-      builder.append(currentLine.toString());
+      headers.addHeader(headerName, Header.splitValuesByComma(headerValue), line.getLineNumber());
+      return true;
+    } else {
+      return false;
     }
-
-    return builder.toString();
   }
 
-  public static String trimLineListToLength(final List<Line> list, final int length) {
-    final String message = lineListToString(list);
-    final int lastIndex = Math.min(length, message.length());
-
-    return (lastIndex > 0) ? message.substring(0, lastIndex) : "";
-  }
-
-  public static InputStream convertLineListToInputStream(final List<Line> list, final Charset charset,
-      final int length) {
-    final String message = trimLineListToLength(list, length);
-
-    return new ByteArrayInputStream(message.getBytes(charset));
+  public static boolean isBlankLine(final Line line) {
+    return line != null && PATTERN_BLANK_LINE.matcher(line.toString()).matches();
   }
 }
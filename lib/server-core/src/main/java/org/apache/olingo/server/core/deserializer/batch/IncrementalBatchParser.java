@@ -0,0 +1,473 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.deserializer.batch;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.regex.Pattern;
+
+import org.apache.olingo.commons.api.format.ContentType;
+import org.apache.olingo.commons.api.http.HttpHeader;
+import org.apache.olingo.commons.api.http.HttpMethod;
+import org.apache.olingo.server.api.ODataRequest;
+import org.apache.olingo.server.api.deserializer.batch.BatchDeserializerException;
+import org.apache.olingo.server.api.deserializer.batch.BatchDeserializerException.MessageKeys;
+import org.apache.olingo.server.api.deserializer.batch.BatchOptions;
+import org.apache.olingo.server.api.deserializer.batch.BatchRequestPart;
+import org.apache.olingo.server.api.deserializer.batch.BatchRequestPartIterator;
+
+/**
+ * Parses a batch request part by part while reading it from the input stream.
+ * <p>
+ * Only the lines of the current part are read. The body of a request outside of a change set
+ * is read directly from the input stream unless the parser has been created as buffering;
+ * request bodies inside a change set are always buffered because a change set is
+ * returned as a whole.
+ */
+public class IncrementalBatchParser implements BatchRequestPartIterator {
+
+  private static final Charset CS_ISO_8859_1 = Charset.forName("iso-8859-1");
+  private static final byte CR = '\r';
+  private static final byte LF = '\n';
+  private static final int BUFFER_SIZE = 8192;
+
+  private final BatchLineReader reader;
+  private final String boundary;
+  private final BatchBoundary batchBoundary;
+  private final boolean isStrict;
+  private final boolean isBuffered;
+  private final BatchRequestTransformator transformator;
+
+  private final List<RawLine> lookahead = new ArrayList<RawLine>(2);
+  private boolean isEndOfStream = false;
+  private int lineNumber = 0;
+
+  private BatchBoundary changeSetBoundary;
+  private BodyInputStream currentBody;
+  private BatchRequestPart nextPart;
+  private boolean isStarted = false;
+  private boolean isFinished = false;
+
+  public IncrementalBatchParser(final InputStream content, final String boundary, final BatchOptions options,
+      final boolean isBuffered) {
+    reader = new BatchLineReader(content);
+    this.boundary = boundary;
+    batchBoundary = new BatchBoundary(boundary);
+    isStrict = options.isStrict();
+    this.isBuffered = isBuffered;
+    transformator = new BatchRequestTransformator(options.getRawBaseUri(), options.getRawServiceResolutionUri());
+  }
+
+  @Override
+  public boolean hasNext() throws BatchDeserializerException {
+    if (nextPart == null && !isFinished) {
+      try {
+        nextPart = readNextPart();
+      } catch (final IOException e) {
+        throw new BatchDeserializerException("Error while reading the batch request", e,
+            MessageKeys.IO_EXCEPTION);
+      }
+    }
+    return nextPart != null;
+  }
+
+  @Override
+  public BatchRequestPart next() throws BatchDeserializerException {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    final BatchRequestPart part = nextPart;
+    nextPart = null;
+    return part;
+  }
+
+  private BatchRequestPart readNextPart() throws IOException, BatchDeserializerException {
+    if (currentBody != null) {
+      currentBody.skipRemaining();
+      currentBody = null;
+    }
+    if (!isStarted) {
+      skipPartLines();
+      isStarted = true;
+    }
+
+    final RawLine delimiter = readLine();
+    if (delimiter == null) {
+      finish();
+      throw createMissingCloseDelimiterException();
+    } else if (batchBoundary.isCloseDelimiter(delimiter)) {
+      finish();
+      return null;
+    } else {
+      try {
+        return readPart();
+      } catch (final BatchDeserializerException e) {
+        // The missing end of the batch request takes precedence over errors in its last part.
+        changeSetBoundary = null;
+        skipPartLines();
+        final boolean isEndOfBatch = peekLine(0) == null;
+        finish();
+        throw isEndOfBatch ? createMissingCloseDelimiterException() : e;
+      }
+    }
+  }
+
+  private void finish() throws IOException {
+    isFinished = true;
+    reader.close();
+  }
+
+  private BatchDeserializerException createMissingCloseDelimiterException() {
+    return new BatchDeserializerException("Missing close boundary delimiter",
+        MessageKeys.MISSING_CLOSE_DELIMITER, Integer.toString(lineNumber > 0 ? 1 : 0));
+  }
+
+  private BatchRequestPart readPart() throws IOException, BatchDeserializerException {
+    final Header header = readHeaders();
+    readBlankLine();
+    final boolean isChangeSet = isChangeSet(header);
+    transformator.validateBodyPartHeader(header, isChangeSet);
+
+    List<ODataRequest> requests = new ArrayList<ODataRequest>();
+    if (isChangeSet) {
+      readChangeSet(header, requests);
+    } else {
+      requests.add(readRequest(!isBuffered));
+    }
+    return new BatchRequestPart(isChangeSet, requests);
+  }
+
+  private void readChangeSet(final Header header, final List<ODataRequest> requests)
+      throws IOException, BatchDeserializerException {
+    final HeaderField contentTypeField = header.getHeaderField(HttpHeader.CONTENT_TYPE);
+    final String changeSetBoundaryString = BatchParserCommon.getBoundary(contentTypeField.getValue(),
+        contentTypeField.getLineNumber());
+    if (changeSetBoundaryString.equals(boundary)) {
+      throw new BatchDeserializerException("Change set boundary is equals to batch request boundary",
+          MessageKeys.INVALID_BOUNDARY, Integer.toString(contentTypeField.getLineNumber()));
+    }
+    changeSetBoundary = new BatchBoundary(changeSetBoundaryString);
+
+    final RawLine firstLine = peekPartLine();
+    final int firstLineNumber = firstLine == null ? 0 : firstLine.getLineNumber();
+    skipPartLines();
+    RawLine delimiter = readLine();
+    while (delimiter != null && changeSetBoundary.isDelimiter(delimiter)) {
+      final Header changeRequestPartHeader = readHeaders();
+      readBlankLine();
+      final Line statusLine = readStatusLine();
+      final Header requestHeader = readHeaders();
+      readBlankLine();
+      transformator.validateChangeSetPartHeader(changeRequestPartHeader, requestHeader);
+      requests.add(createRequest(statusLine, requestHeader, true, false));
+      delimiter = readLine();
+    }
+
+    if (delimiter == null || !changeSetBoundary.isCloseDelimiter(delimiter)) {
+      throw new BatchDeserializerException("Missing close boundary delimiter",
+          MessageKeys.MISSING_CLOSE_DELIMITER, Integer.toString(firstLineNumber));
+    }
+    // Skip the epilogue of the change set.
+    changeSetBoundary = null;
+    skipPartLines();
+  }
+
+  private ODataRequest readRequest(final boolean isStreamed) throws IOException, BatchDeserializerException {
+    final Line statusLine = readStatusLine();
+    final Header requestHeader = readHeaders();
+    readBlankLine();
+    return createRequest(statusLine, requestHeader, false, isStreamed);
+  }
+
+  private ODataRequest createRequest(final Line line, final Header header, final boolean isChangeSet,
+      final boolean isStreamed) throws IOException, BatchDeserializerException {
+    final HttpRequestStatusLine statusLine = transformator.parseStatusLine(line, isChangeSet);
+    InputStream body;
+    if (statusLine.getMethod() == HttpMethod.GET) {
+      validateEmptyBody(statusLine);
+      body = new ByteArrayInputStream(new byte[0]);
+    } else {
+      final BodyInputStream bodyStream =
+          new BodyInputStream(BatchTransformatorCommon.getContentLength(header));
+      if (isStreamed) {
+        currentBody = bodyStream;
+        body = bodyStream;
+      } else {
+        body = bodyStream.toBuffer();
+      }
+    }
+    return transformator.createRequest(statusLine, header, body);
+  }
+
+  private void validateEmptyBody(final HttpRequestStatusLine statusLine)
+      throws IOException, BatchDeserializerException {
+    RawLine line = readPartLine();
+    if (line != null && (peekPartLine() != null || line.toLine().toString().trim().length() > 0)) {
+      throw new BatchDeserializerException("Invalid request line", MessageKeys.INVALID_CONTENT,
+          Integer.toString(statusLine.getLineNumber()));
+    }
+  }
+
+  private boolean isChangeSet(final Header header) throws BatchDeserializerException {
+    final List<String> contentTypes = header.getHeaders(HttpHeader.CONTENT_TYPE);
+
+    if (contentTypes.isEmpty()) {
+      throw new BatchDeserializerException("Missing content type", MessageKeys.MISSING_CONTENT_TYPE,
+          Integer.toString(header.getLineNumber()));
+    }
+
+    for (final String contentType : contentTypes) {
+      try {
+        BatchParserCommon.parseContentType(contentType, ContentType.MULTIPART_MIXED, 0);
+        return true;
+      } catch (final BatchDeserializerException e) {
+        // not a change set
+      }
+    }
+    return false;
+  }
+
+  private Header readHeaders() throws IOException {
+    RawLine line = peekPartLine();
+    final Header header = new Header(line == null ? 0 : line.getLineNumber());
+    while (line != null && BatchParserCommon.consumeHeaderLine(header, line.toLine())) {
+      readLine();
+      line = peekPartLine();
+    }
+    return header;
+  }
+
+  private void readBlankLine() throws IOException, BatchDeserializerException {
+    final RawLine line = peekPartLine();
+    if (line != null && BatchParserCommon.isBlankLine(line.toLine())) {
+      readLine();
+    } else if (isStrict) {
+      throw new BatchDeserializerException("Missing blank line", MessageKeys.MISSING_BLANK_LINE,
+          "[None]", Integer.toString(line == null ? 0 : line.getLineNumber()));
+    }
+  }
+
+  private Line readStatusLine() throws IOException, BatchDeserializerException {
+    final RawLine line = readPartLine();
+    if (line == null || line.toLine().toString().trim().length() == 0) {
+      throw new BatchDeserializerException("Missing http request line", MessageKeys.INVALID_STATUS_LINE,
+          Integer.toString(line == null ? 0 : line.getLineNumber()));
+    }
+    return line.toLine();
+  }
+
+  private void skipPartLines() throws IOException {
+    while (readPartLine() != null) {
+      // skip
+    }
+  }
+
+  /**
+   * Reads the next line of the current part.
+   * The line break of the last line of a part belongs to the following boundary delimiter and is removed.
+   * @return the line or <code>null</code> if the end of the part has been reached
+   */
+  private RawLine readPartLine() throws IOException {
+    final RawLine line = peekPartLine();
+    if (line != null) {
+      readLine();
+    }
+    return line;
+  }
+
+  private RawLine peekPartLine() throws IOException {
+    final RawLine line = peekLine(0);
+    if (isPartEnd(line)) {
+      return null;
+    } else {
+      return isPartEnd(peekLine(1)) ? line.withoutEndingCRLF() : line;
+    }
+  }
+
+  private boolean isPartEnd(final RawLine line) {
+    return line == null || batchBoundary.isBoundaryLine(line)
+        || changeSetBoundary != null && changeSetBoundary.isBoundaryLine(line);
+  }
+
+  private RawLine peekLine(final int index) throws IOException {
+    while (lookahead.size() <= index && !isEndOfStream) {
+      final byte[] bytes = reader.readLineBytes();
+      if (bytes == null) {
+        isEndOfStream = true;
+      } else {
+        lookahead.add(new RawLine(bytes, ++lineNumber));
+      }
+    }
+    return lookahead.size() > index ? lookahead.get(index) : null;
+  }
+
+  private RawLine readLine() throws IOException {
+    return peekLine(0) == null ? null : lookahead.remove(0);
+  }
+
+  /** Line as read from the input stream; the text is decoded on demand. */
+  private static class RawLine {
+    private final byte[] bytes;
+    private final int length;
+    private final int lineNumber;
+    private Line line;
+
+    RawLine(final byte[] bytes, final int lineNumber) {
+      this(bytes, bytes.length, lineNumber);
+    }
+
+    private RawLine(final byte[] bytes, final int length, final int lineNumber) {
+      this.bytes = bytes;
+      this.length = length;
+      this.lineNumber = lineNumber;
+    }
+
+    int getLineNumber() {
+      return lineNumber;
+    }
+
+    boolean startsWith(final byte[] prefix) {
+      if (length < prefix.length) {
+        return false;
+      }
+      for (int index = 0; index < prefix.length; index++) {
+        if (bytes[index] != prefix[index]) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    RawLine withoutEndingCRLF() {
+      return length >= 2 && bytes[length - 2] == CR && bytes[length - 1] == LF ?
+          new RawLine(bytes, length - 2, lineNumber) :
+          this;
+    }
+
+    Line toLine() {
+      if (line == null) {
+        line = new Line(new String(bytes, 0, length, CS_ISO_8859_1), lineNumber);
+      }
+      return line;
+    }
+  }
+
+  /** Recognizes the delimiter lines of a multipart message. */
+  private static class BatchBoundary {
+    private final byte[] prefix;
+    private final Pattern delimiterPattern;
+    private final Pattern closeDelimiterPattern;
+
+    BatchBoundary(final String boundary) {
+      prefix = ("--" + boundary).getBytes(CS_ISO_8859_1);
+      final String quotedBoundary = Pattern.quote(boundary);
+      delimiterPattern = Pattern.compile("--" + quotedBoundary + "\\s*");
+      closeDelimiterPattern = Pattern.compile("--" + quotedBoundary + "--\\s*");
+    }
+
+    boolean isBoundaryLine(final RawLine line) {
+      return isDelimiter(line) || isCloseDelimiter(line);
+    }
+
+    boolean isDelimiter(final RawLine line) {
+      return line.startsWith(prefix) && delimiterPattern.matcher(line.toLine().toString()).matches();
+    }
+
+    boolean isCloseDelimiter(final RawLine line) {
+      return line.startsWith(prefix) && closeDelimiterPattern.matcher(line.toLine().toString()).matches();
+    }
+  }
+
+  /**
+   * Body of a request, read line by line up to the end of the current part.
+   * If a content length is given, no more bytes are returned.
+   */
+  private class BodyInputStream extends InputStream {
+    private int remaining;
+    private RawLine line;
+    private int position;
+
+    BodyInputStream(final int contentLength) {
+      remaining = contentLength;
+    }
+
+    @Override
+    public int read() throws IOException {
+      if (remaining == 0 || !fillLine()) {
+        return -1;
+      }
+      if (remaining > 0) {
+        remaining--;
+      }
+      return line.bytes[position++] & 0xFF;
+    }
+
+    @Override
+    public int read(final byte[] buffer, final int offset, final int length) throws IOException {
+      if (length == 0) {
+        return 0;
+      }
+      if (remaining == 0 || !fillLine()) {
+        return -1;
+      }
+      int count = Math.min(length, line.length - position);
+      if (remaining > 0) {
+        count = Math.min(count, remaining);
+        remaining -= count;
+      }
+      System.arraycopy(line.bytes, position, buffer, offset, count);
+      position += count;
+      return count;
+    }
+
+    private boolean fillLine() throws IOException {
+      while (line == null || position == line.length) {
+        line = readPartLine();
+        position = 0;
+        if (line == null) {
+          remaining = 0;
+          return false;
+        }
+      }
+      return true;
+    }
+
+    void skipRemaining() throws IOException {
+      remaining = 0;
+      skipPartLines();
+    }
+
+    InputStream toBuffer() throws IOException {
+      final ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+      final byte[] bytes = new byte[BUFFER_SIZE];
+      int count;
+      while ((count = read(bytes, 0, bytes.length)) != -1) {
+        buffer.write(bytes, 0, count);
+      }
+      skipRemaining();
+      return new ByteArrayInputStream(buffer.toByteArray());
+    }
+  }
+}
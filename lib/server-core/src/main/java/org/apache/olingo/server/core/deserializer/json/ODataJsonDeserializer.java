@@ -30,6 +30,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 
 import org.apache.olingo.commons.api.Constants;
+import org.apache.olingo.commons.api.data.CompactEntity;
 import org.apache.olingo.commons.api.data.ComplexValue;
 import org.apache.olingo.commons.api.data.Entity;
 import org.apache.olingo.commons.api.data.EntityCollection;
@@ -66,6 +67,7 @@ import org.apache.olingo.server.core.deserializer.helper.ExpandTreeBuilderImpl;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParseException;
 import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
 import com.fasterxml.jackson.databind.DeserializationFeature;
 import com.fasterxml.jackson.databind.JsonMappingException;
 import com.fasterxml.jackson.databind.JsonNode;
@@ -75,19 +77,34 @@ import com.fasterxml.jackson.databind.node.ObjectNode;
 
 public class ODataJsonDeserializer implements ODataDeserializer {
 
-  private static final String ODATA_ANNOTATION_MARKER = "@";
-  private static final String ODATA_CONTROL_INFORMATION_PREFIX = "@odata.";
+  static final String ODATA_ANNOTATION_MARKER = "@";
+  static final String ODATA_CONTROL_INFORMATION_PREFIX = "@odata.";
 
   private final boolean isIEEE754Compatible;
+  private final boolean useCompactEntities;
   private ServiceMetadata serviceMetadata;
 
   public ODataJsonDeserializer(final ContentType contentType) {
-    isIEEE754Compatible = isODataIEEE754Compatible(contentType);
+    this(contentType, null, false);
   }
   
   public ODataJsonDeserializer(final ContentType contentType, final ServiceMetadata serviceMetadata) {
+    this(contentType, serviceMetadata, false);
+  }
+
+  /**
+   * Creates a deserializer which optionally reads entities into {@link CompactEntity} instances.
+   * These keep their properties in the order of the type definition and do not support renaming
+   * of properties, so the caller has to opt in.
+   * @param contentType the content type of the payload
+   * @param serviceMetadata the service metadata, or <code>null</code>
+   * @param useCompactEntities whether entities are read into {@link CompactEntity} instances
+   */
+  public ODataJsonDeserializer(final ContentType contentType, final ServiceMetadata serviceMetadata,
+      final boolean useCompactEntities) {
     isIEEE754Compatible = isODataIEEE754Compatible(contentType);
     this.serviceMetadata = serviceMetadata;
+    this.useCompactEntities = useCompactEntities;
   }
   
   public void setMetadata(ServiceMetadata metadata) {
@@ -166,7 +183,7 @@ public class ODataJsonDeserializer implements ODataDeserializer {
 
   private Entity consumeEntityNode(final EdmEntityType edmEntityType, final ObjectNode tree,
       final ExpandTreeBuilder expandBuilder) throws DeserializerException {
-    Entity entity = new Entity();
+    Entity entity = useCompactEntities ? new CompactEntity(edmEntityType) : new Entity();
     entity.setType(edmEntityType.getFullQualifiedName().getFullQualifiedNameAsString());
 
     // Check and consume all Properties
@@ -206,7 +223,8 @@ public class ODataJsonDeserializer implements ODataDeserializer {
     objectMapper.configure(DeserializationFeature.FAIL_ON_READING_DUP_TREE_KEY, true);
     JsonParser parser = new JsonFactory(objectMapper).createParser(stream);
     final JsonNode tree = parser.getCodec().readTree(parser);
-    if (tree == null || !tree.isObject()) {
+    // Nothing must follow the top-level JSON object.
+    if (tree == null || !tree.isObject() || parser.nextToken() != null) {
       throw new DeserializerException("Invalid JSON syntax.",
           DeserializerException.MessageKeys.JSON_SYNTAX_EXCEPTION);
     }
@@ -632,7 +650,7 @@ public class ODataJsonDeserializer implements ODataDeserializer {
    * @param edmPrimitiveType
    * @return the java class to be used during deserialization
    */
-  private Class<?> getJavaClassForPrimitiveType(final EdmMapping mapping, final EdmPrimitiveType type) {
+  Class<?> getJavaClassForPrimitiveType(final EdmMapping mapping, final EdmPrimitiveType type) {
     final EdmPrimitiveType edmPrimitiveType =
         type.getKind() == EdmTypeKind.ENUM ?
             ((EdmEnumType) type).getUnderlyingType() :
@@ -691,13 +709,25 @@ public class ODataJsonDeserializer implements ODataDeserializer {
 
   private void checkJsonTypeBasedOnPrimitiveType(final String propertyName, final EdmPrimitiveType edmPrimitiveType,
       final JsonNode jsonNode) throws DeserializerException {
+    checkJsonTypeBasedOnPrimitiveType(propertyName, edmPrimitiveType, jsonNode.asToken());
+  }
+
+  /**
+   * Checks that the JSON value type fits the primitive type of a property.
+   * @param propertyName name of the property which is checked
+   * @param edmPrimitiveType primitive type of the property
+   * @param token JSON token of the (non-null) value
+   * @throws DeserializerException if the value type does not fit
+   */
+  void checkJsonTypeBasedOnPrimitiveType(final String propertyName, final EdmPrimitiveType edmPrimitiveType,
+      final JsonToken token) throws DeserializerException {
     boolean valid = true;
     if (edmPrimitiveType.getKind() == EdmTypeKind.DEFINITION) {
       checkJsonTypeBasedOnPrimitiveType(propertyName,
-          ((EdmTypeDefinition) edmPrimitiveType).getUnderlyingType(), jsonNode);
+          ((EdmTypeDefinition) edmPrimitiveType).getUnderlyingType(), token);
     } else if (edmPrimitiveType.getKind() == EdmTypeKind.ENUM) {
       // Enum values must be strings.
-      valid = jsonNode.isTextual();
+      valid = token == JsonToken.VALUE_STRING;
     } else {
       final String name = edmPrimitiveType.getName();
       EdmPrimitiveTypeKind primKind;
@@ -707,29 +737,29 @@ public class ODataJsonDeserializer implements ODataDeserializer {
         throw new DeserializerException("Unknown Primitive Type: " + name, e,
             DeserializerException.MessageKeys.UNKNOWN_PRIMITIVE_TYPE, name, propertyName);
       }
-      valid = matchTextualCase(jsonNode, primKind)
-          || matchNumberCase(jsonNode, primKind)
-          || matchBooleanCase(jsonNode, primKind)
-          || matchIEEENumberCase(jsonNode, primKind);
+      valid = matchTextualCase(token, primKind)
+          || matchNumberCase(token, primKind)
+          || matchBooleanCase(token, primKind)
+          || matchIEEENumberCase(token, primKind);
     }
     if (!valid) {
       throw new DeserializerException(
-          "Invalid json type: " + jsonNode.getNodeType() + " for " + edmPrimitiveType + " property: " + propertyName,
+          "Invalid json type: " + token + " for " + edmPrimitiveType + " property: " + propertyName,
           DeserializerException.MessageKeys.INVALID_VALUE_FOR_PROPERTY, propertyName);
     }
   }
 
-  private boolean matchIEEENumberCase(final JsonNode node, final EdmPrimitiveTypeKind primKind) {
-    return (isIEEE754Compatible ? node.isTextual() : node.isNumber())
+  private boolean matchIEEENumberCase(final JsonToken token, final EdmPrimitiveTypeKind primKind) {
+    return (isIEEE754Compatible ? token == JsonToken.VALUE_STRING : isNumber(token))
         && (primKind == EdmPrimitiveTypeKind.Int64 || primKind == EdmPrimitiveTypeKind.Decimal);
   }
 
-  private boolean matchBooleanCase(final JsonNode node, final EdmPrimitiveTypeKind primKind) {
-    return node.isBoolean() && primKind == EdmPrimitiveTypeKind.Boolean;
+  private boolean matchBooleanCase(final JsonToken token, final EdmPrimitiveTypeKind primKind) {
+    return (token == JsonToken.VALUE_TRUE || token == JsonToken.VALUE_FALSE) && primKind == EdmPrimitiveTypeKind.Boolean;
   }
 
-  private boolean matchNumberCase(final JsonNode node, final EdmPrimitiveTypeKind primKind) {
-    return node.isNumber() &&
+  private boolean matchNumberCase(final JsonToken token, final EdmPrimitiveTypeKind primKind) {
+    return isNumber(token) &&
         (primKind == EdmPrimitiveTypeKind.Int16
             || primKind == EdmPrimitiveTypeKind.Int32
             || primKind == EdmPrimitiveTypeKind.Byte
@@ -738,8 +768,12 @@ public class ODataJsonDeserializer implements ODataDeserializer {
             || primKind == EdmPrimitiveTypeKind.Double);
   }
 
-  private boolean matchTextualCase(final JsonNode node, final EdmPrimitiveTypeKind primKind) {
-    return node.isTextual() &&
+  private boolean isNumber(final JsonToken token) {
+    return token == JsonToken.VALUE_NUMBER_INT || token == JsonToken.VALUE_NUMBER_FLOAT;
+  }
+
+  private boolean matchTextualCase(final JsonToken token, final EdmPrimitiveTypeKind primKind) {
+    return token == JsonToken.VALUE_STRING &&
         (primKind == EdmPrimitiveTypeKind.String
             || primKind == EdmPrimitiveTypeKind.Binary
             || primKind == EdmPrimitiveTypeKind.Date
@@ -814,7 +848,7 @@ public class ODataJsonDeserializer implements ODataDeserializer {
     }
   }
 
-  private DeserializerException wrapParseException(final IOException e) {
+  DeserializerException wrapParseException(final IOException e) {
     if (e instanceof JsonParseException) {
       return new DeserializerException("A JsonParseException occurred.", e,
           DeserializerException.MessageKeys.JSON_SYNTAX_EXCEPTION);
@@ -836,35 +870,45 @@ public class ODataJsonDeserializer implements ODataDeserializer {
   private EdmType getDerivedType(final EdmStructuredType edmType, final JsonNode jsonNode)
       throws DeserializerException {
     JsonNode odataTypeNode = jsonNode.get(Constants.JSON_TYPE);
-    if (odataTypeNode != null) {
-      String odataType = odataTypeNode.asText();
-      if (!odataType.isEmpty()) {
-        odataType = odataType.substring(1);
-        
-        if (odataType.equalsIgnoreCase(edmType.getFullQualifiedName().getFullQualifiedNameAsString())) {
-          return edmType;
-        } else if (this.serviceMetadata == null) {
-          throw new DeserializerException(
-              "Failed to resolve Odata type " + odataType + " due to metadata is not available",
-              DeserializerException.MessageKeys.UNKNOWN_CONTENT);
-        }
-        
-        EdmStructuredType currentEdmType = null;
-        if(edmType instanceof EdmEntityType) {
-          currentEdmType = serviceMetadata.getEdm()
-              .getEntityType(new FullQualifiedName(odataType));          
-        } else {
-          currentEdmType = serviceMetadata.getEdm()
-              .getComplexType(new FullQualifiedName(odataType));          
-        }
-        if (!isAssignable(edmType, currentEdmType)) {
-          throw new DeserializerException(
-              "Odata type " + odataType + " not allowed here",
-              DeserializerException.MessageKeys.UNKNOWN_CONTENT);
-        }
+    return odataTypeNode == null ? edmType : getDerivedType(edmType, odataTypeNode.asText());
+  }
 
-        return currentEdmType;
+  /**
+   * Resolves the value of an <code>@odata.type</code> annotation.
+   * @param edmType the declared type
+   * @param odataTypeValue the annotation value, e.g., <code>#Namespace.Type</code>
+   * @return the declared type or the derived type denoted by the annotation
+   * @throws DeserializerException if the annotated type is not known or not derived from the declared type
+   */
+  EdmStructuredType getDerivedType(final EdmStructuredType edmType, final String odataTypeValue)
+      throws DeserializerException {
+    String odataType = odataTypeValue;
+    if (!odataType.isEmpty()) {
+      odataType = odataType.substring(1);
+      
+      if (odataType.equalsIgnoreCase(edmType.getFullQualifiedName().getFullQualifiedNameAsString())) {
+        return edmType;
+      } else if (this.serviceMetadata == null) {
+        throw new DeserializerException(
+            "Failed to resolve Odata type " + odataType + " due to metadata is not available",
+            DeserializerException.MessageKeys.UNKNOWN_CONTENT);
+      }
+      
+      EdmStructuredType currentEdmType = null;
+      if(edmType instanceof EdmEntityType) {
+        currentEdmType = serviceMetadata.getEdm()
+            .getEntityType(new FullQualifiedName(odataType));          
+      } else {
+        currentEdmType = serviceMetadata.getEdm()
+            .getComplexType(new FullQualifiedName(odataType));          
       }
+      if (!isAssignable(edmType, currentEdmType)) {
+        throw new DeserializerException(
+            "Odata type " + odataType + " not allowed here",
+            DeserializerException.MessageKeys.UNKNOWN_CONTENT);
+      }
+
+      return currentEdmType;
     }
     return edmType;
   }
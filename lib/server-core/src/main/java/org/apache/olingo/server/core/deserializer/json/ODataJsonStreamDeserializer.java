@@ -0,0 +1,607 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.deserializer.json;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.olingo.commons.api.Constants;
+import org.apache.olingo.commons.api.data.ComplexValue;
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.Link;
+import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.data.ValueType;
+import org.apache.olingo.commons.api.edm.EdmComplexType;
+import org.apache.olingo.commons.api.edm.EdmEntityType;
+import org.apache.olingo.commons.api.edm.EdmMapping;
+import org.apache.olingo.commons.api.edm.EdmNavigationProperty;
+import org.apache.olingo.commons.api.edm.EdmPrimitiveType;
+import org.apache.olingo.commons.api.edm.EdmPrimitiveTypeException;
+import org.apache.olingo.commons.api.edm.EdmProperty;
+import org.apache.olingo.commons.api.edm.EdmStructuredType;
+import org.apache.olingo.commons.api.edm.EdmType;
+import org.apache.olingo.commons.api.edm.constants.EdmTypeKind;
+import org.apache.olingo.commons.api.format.ContentType;
+import org.apache.olingo.server.api.ServiceMetadata;
+import org.apache.olingo.server.api.deserializer.DeserializerException;
+import org.apache.olingo.server.api.deserializer.DeserializerException.MessageKeys;
+import org.apache.olingo.server.api.deserializer.DeserializerResult;
+import org.apache.olingo.server.core.deserializer.DeserializerResultImpl;
+import org.apache.olingo.server.core.deserializer.helper.ExpandTreeBuilder;
+import org.apache.olingo.server.core.deserializer.helper.ExpandTreeBuilderImpl;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+/**
+ * Deserializer for entities and entity collections in JSON format which reads
+ * the request body directly from the JSON token stream.
+ * <p/>
+ * In contrast to {@link ODataJsonDeserializer} no JSON tree of the whole payload is built;
+ * properties, inline entities of deep inserts, and binding links are created in a single pass.
+ * Only fields which cannot be interpreted when they are read, i.e., properties of a derived type
+ * preceding its <code>@odata.type</code> annotation, are buffered until the end of their object.
+ * <p/>
+ * The remaining payload kinds (action parameters, properties, entity references) are small
+ * and are read by the tree-based implementation.
+ */
+public class ODataJsonStreamDeserializer extends ODataJsonDeserializer {
+
+  /** Mapper for buffered fields; configured once and shared, as it is thread-safe. */
+  private static final ObjectMapper MAPPER =
+      new ObjectMapper().configure(DeserializationFeature.FAIL_ON_READING_DUP_TREE_KEY, true);
+  private static final JsonFactory FACTORY = MAPPER.getFactory();
+
+  public ODataJsonStreamDeserializer(final ContentType contentType) {
+    super(contentType);
+  }
+
+  public ODataJsonStreamDeserializer(final ContentType contentType, final ServiceMetadata serviceMetadata) {
+    super(contentType, serviceMetadata);
+  }
+
+  @Override
+  public DeserializerResult entityCollection(final InputStream stream, final EdmEntityType edmEntityType)
+      throws DeserializerException {
+    JsonParser parser = null;
+    try {
+      parser = createParser(stream);
+      EntityCollection entityCollection = null;
+      String unknownField = null;
+      Set<String> fieldNames = new HashSet<String>();
+      while (parser.nextToken() == JsonToken.FIELD_NAME) {
+        final String name = parser.getCurrentName();
+        checkDuplicate(fieldNames, name);
+        parser.nextToken();
+        if (Constants.VALUE.equals(name)) {
+          entityCollection = new EntityCollection();
+          readEntityArray(parser, edmEntityType, null, entityCollection.getEntities());
+        } else if (!skipAnnotation(parser, name)) {
+          parser.skipChildren();
+          if (unknownField == null) {
+            unknownField = name;
+          }
+        }
+      }
+      if (entityCollection == null) {
+        throw new DeserializerException("Could not find value array.",
+            DeserializerException.MessageKeys.VALUE_ARRAY_NOT_PRESENT);
+      }
+      assertNoUnknownField(unknownField);
+      assertEndOfContent(parser);
+      return DeserializerResultImpl.with().entityCollection(entityCollection).build();
+    } catch (final IOException e) {
+      throw wrapParseException(e);
+    } finally {
+      close(parser);
+    }
+  }
+
+  @Override
+  public DeserializerResult entity(final InputStream stream, final EdmEntityType edmEntityType)
+      throws DeserializerException {
+    JsonParser parser = null;
+    try {
+      parser = createParser(stream);
+      final ExpandTreeBuilderImpl expandBuilder = new ExpandTreeBuilderImpl();
+      final Entity entity = readEntity(parser, edmEntityType, expandBuilder);
+      assertEndOfContent(parser);
+      return DeserializerResultImpl.with().entity(entity)
+          .expandOption(expandBuilder.build())
+          .build();
+    } catch (final IOException e) {
+      throw wrapParseException(e);
+    } finally {
+      close(parser);
+    }
+  }
+
+  /** Creates a parser positioned on the start of the top-level JSON object. */
+  private JsonParser createParser(final InputStream stream) throws IOException, DeserializerException {
+    final JsonParser parser = FACTORY.createParser(stream);
+    if (parser.nextToken() != JsonToken.START_OBJECT) {
+      throw new DeserializerException("Invalid JSON syntax.",
+          DeserializerException.MessageKeys.JSON_SYNTAX_EXCEPTION);
+    }
+    return parser;
+  }
+
+  /** Checks that nothing follows the top-level JSON object. */
+  private void assertEndOfContent(final JsonParser parser) throws IOException, DeserializerException {
+    if (parser.nextToken() != null) {
+      throw new DeserializerException("Invalid JSON syntax.",
+          DeserializerException.MessageKeys.JSON_SYNTAX_EXCEPTION);
+    }
+  }
+
+  /** Closes the parser together with the input stream. */
+  private void close(final JsonParser parser) {
+    if (parser != null) {
+      try {
+        parser.close();
+      } catch (final IOException e) {
+        // The content has been read already or its error is reported instead.
+      }
+    }
+  }
+
+  private void readEntityArray(final JsonParser parser, final EdmEntityType edmEntityType,
+      final ExpandTreeBuilder expandBuilder, final List<Entity> entities) throws IOException, DeserializerException {
+    if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+      throw new DeserializerException("The content of the value tag must be an Array but is not.",
+          DeserializerException.MessageKeys.VALUE_TAG_MUST_BE_AN_ARRAY);
+    }
+    while (parser.nextToken() != JsonToken.END_ARRAY) {
+      if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+        throw new DeserializerException("Nested Arrays and primitive values are not allowed for an entity value.",
+            DeserializerException.MessageKeys.INVALID_ENTITY);
+      }
+      entities.add(readEntity(parser, edmEntityType, expandBuilder));
+    }
+  }
+
+  /**
+   * Reads an entity; the parser must be positioned on the start of the entity object
+   * and is positioned on its end afterwards.
+   */
+  private Entity readEntity(final JsonParser parser, final EdmEntityType edmEntityType,
+      final ExpandTreeBuilder expandBuilder) throws IOException, DeserializerException {
+    Entity entity = new Entity();
+    EdmEntityType entityType = edmEntityType;
+    boolean typeAnnotated = false;
+    Map<String, JsonNode> buffered = null;
+    String unknownField = null;
+    Set<String> fieldNames = new HashSet<String>();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      final String name = parser.getCurrentName();
+      checkDuplicate(fieldNames, name);
+      parser.nextToken();
+      if (Constants.JSON_TYPE.equals(name)) {
+        entityType = (EdmEntityType) getDerivedType(edmEntityType, readAnnotationText(parser));
+        typeAnnotated = true;
+      } else if (!readEntityField(parser, name, entityType, typeAnnotated, entity, expandBuilder)) {
+        if (typeAnnotated) {
+          // The type is final; the field will never be known.
+          parser.skipChildren();
+          if (unknownField == null) {
+            unknownField = name;
+          }
+        } else {
+          if (buffered == null) {
+            buffered = new LinkedHashMap<String, JsonNode>();
+          }
+          buffered.put(name, parser.<JsonNode> readValueAsTree());
+        }
+      }
+    }
+
+    if (buffered != null) {
+      for (final Map.Entry<String, JsonNode> field : buffered.entrySet()) {
+        final JsonParser fieldParser = field.getValue().traverse(MAPPER);
+        fieldParser.nextToken();
+        if (!readEntityField(fieldParser, field.getKey(), entityType, true, entity, expandBuilder)
+            && unknownField == null) {
+          unknownField = field.getKey();
+        }
+      }
+    }
+    assertNoUnknownField(unknownField);
+    sortProperties(entity.getProperties(), entityType);
+
+    entity.setType(entityType.getFullQualifiedName().getFullQualifiedNameAsString());
+    return entity;
+  }
+
+  /**
+   * Reads the value of an entity field if the field is known for the given entity type.
+   * @param isFinalType whether the entity type can no longer change to a derived type
+   * @return <code>false</code> if the field is unknown; the value has not been consumed then
+   */
+  private boolean readEntityField(final JsonParser parser, final String name, final EdmEntityType entityType,
+      final boolean isFinalType, final Entity entity, final ExpandTreeBuilder expandBuilder)
+      throws IOException, DeserializerException {
+    if (name.contains(Constants.JSON_BIND_LINK_SUFFIX)) {
+      final String navigationPropertyName = name.split(ODATA_ANNOTATION_MARKER)[0];
+      final EdmNavigationProperty navigationProperty = entityType.getNavigationProperty(navigationPropertyName);
+      if (navigationProperty == null) {
+        if (isFinalType) {
+          throw new DeserializerException("Invalid navigationPropertyName: " + navigationPropertyName,
+              DeserializerException.MessageKeys.NAVIGATION_PROPERTY_NOT_FOUND, navigationPropertyName);
+        }
+        return false;
+      }
+      entity.getNavigationBindings().add(readBindingLink(parser, name, navigationProperty));
+    } else if (skipAnnotation(parser, name)) {
+      return true;
+    } else if (entityType.getProperty(name) instanceof EdmProperty) {
+      entity.addProperty(readProperty(parser, (EdmProperty) entityType.getProperty(name)));
+    } else if (entityType.getNavigationProperty(name) != null) {
+      entity.getNavigationLinks().add(readLink(parser, entityType.getNavigationProperty(name), expandBuilder));
+    } else {
+      return false;
+    }
+    return true;
+  }
+
+  private Link readLink(final JsonParser parser, final EdmNavigationProperty edmNavigationProperty,
+      final ExpandTreeBuilder expandBuilder) throws IOException, DeserializerException {
+    final String name = edmNavigationProperty.getName();
+    final JsonToken token = parser.getCurrentToken();
+    if (token == JsonToken.VALUE_NULL && (!edmNavigationProperty.isNullable() || edmNavigationProperty.isCollection())) {
+      throw new DeserializerException("Property: " + name + " must not be null.",
+          MessageKeys.INVALID_NULL_PROPERTY, name);
+    }
+    Link link = new Link();
+    link.setTitle(name);
+    final ExpandTreeBuilder childExpandBuilder = expandBuilder == null ? null :
+        expandBuilder.expand(edmNavigationProperty);
+    if (token == JsonToken.START_ARRAY && edmNavigationProperty.isCollection()) {
+      link.setType(Constants.ENTITY_SET_NAVIGATION_LINK_TYPE);
+      EntityCollection inlineEntitySet = new EntityCollection();
+      readEntityArray(parser, edmNavigationProperty.getType(), childExpandBuilder, inlineEntitySet.getEntities());
+      link.setInlineEntitySet(inlineEntitySet);
+    } else if ((token == JsonToken.START_OBJECT || token == JsonToken.VALUE_NULL)
+        && !edmNavigationProperty.isCollection()) {
+      link.setType(Constants.ENTITY_NAVIGATION_LINK_TYPE);
+      if (token == JsonToken.START_OBJECT) {
+        link.setInlineEntity(readEntity(parser, edmNavigationProperty.getType(), childExpandBuilder));
+      }
+    } else {
+      throw new DeserializerException("Invalid value: " + token + " for expanded navigation property: " + name,
+          MessageKeys.INVALID_VALUE_FOR_NAVIGATION_PROPERTY, name);
+    }
+    return link;
+  }
+
+  private Link readBindingLink(final JsonParser parser, final String key,
+      final EdmNavigationProperty edmNavigationProperty) throws IOException, DeserializerException {
+    Link bindingLink = new Link();
+    bindingLink.setTitle(edmNavigationProperty.getName());
+    JsonToken token = parser.getCurrentToken();
+    assertNotNullAnnotation(key, token);
+    if (edmNavigationProperty.isCollection()) {
+      if (token != JsonToken.START_ARRAY) {
+        throw new DeserializerException("Binding annotation: " + key + " must be an array.",
+            DeserializerException.MessageKeys.INVALID_ANNOTATION_TYPE, key);
+      }
+      List<String> bindingLinkStrings = new ArrayList<String>();
+      while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+        assertNotNullAnnotation(key, token);
+        if (token != JsonToken.VALUE_STRING) {
+          throw new DeserializerException("Binding annotation: " + key + " must have string valued array.",
+              DeserializerException.MessageKeys.INVALID_ANNOTATION_TYPE, key);
+        }
+        bindingLinkStrings.add(parser.getText());
+      }
+      bindingLink.setType(Constants.ENTITY_COLLECTION_BINDING_LINK_TYPE);
+      bindingLink.setBindingLinks(bindingLinkStrings);
+    } else {
+      if (isStructureStart(token)) {
+        throw new DeserializerException("Binding annotation: " + key + " must be a string value.",
+            DeserializerException.MessageKeys.INVALID_ANNOTATION_TYPE, key);
+      }
+      bindingLink.setBindingLink(parser.getText());
+      bindingLink.setType(Constants.ENTITY_BINDING_LINK_TYPE);
+    }
+    return bindingLink;
+  }
+
+  private void assertNotNullAnnotation(final String key, final JsonToken token) throws DeserializerException {
+    if (token == JsonToken.VALUE_NULL) {
+      throw new DeserializerException("Annotation: " + key + "must not have a null value.",
+          DeserializerException.MessageKeys.INVALID_NULL_ANNOTATION, key);
+    }
+  }
+
+  private Property readProperty(final JsonParser parser, final EdmProperty edmProperty)
+      throws IOException, DeserializerException {
+    final String name = edmProperty.getName();
+    final EdmType type = edmProperty.getType();
+    if (parser.getCurrentToken() == JsonToken.VALUE_NULL && !edmProperty.isNullable()) {
+      throw new DeserializerException("Property: " + name + " must not be null.",
+          DeserializerException.MessageKeys.INVALID_NULL_PROPERTY, name);
+    }
+    Property property = new Property();
+    property.setName(name);
+    property.setType(type.getFullQualifiedName().getFullQualifiedNameAsString());
+    if (edmProperty.isCollection()) {
+      if (parser.getCurrentToken() != JsonToken.START_ARRAY) {
+        throw new DeserializerException("Value for property: " + name + " must be an array but is not.",
+            DeserializerException.MessageKeys.INVALID_JSON_TYPE_FOR_PROPERTY, name);
+      }
+      List<Object> valueArray = new ArrayList<Object>();
+      switch (type.getKind()) {
+      case PRIMITIVE:
+      case DEFINITION:
+      case ENUM:
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+          valueArray.add(readPrimitiveValue(parser, edmProperty));
+        }
+        property.setValue(type.getKind() == EdmTypeKind.ENUM ?
+            ValueType.COLLECTION_ENUM :
+            ValueType.COLLECTION_PRIMITIVE,
+            valueArray);
+        break;
+      case COMPLEX:
+        while (parser.nextToken() != JsonToken.END_ARRAY) {
+          valueArray.add(readComplexValue(parser, name, (EdmComplexType) type, edmProperty.isNullable(), null));
+        }
+        property.setValue(ValueType.COLLECTION_COMPLEX, valueArray);
+        break;
+      default:
+        throw new DeserializerException("Invalid Type Kind for a property found: " + type.getKind(),
+            DeserializerException.MessageKeys.INVALID_JSON_TYPE_FOR_PROPERTY, name);
+      }
+    } else {
+      switch (type.getKind()) {
+      case PRIMITIVE:
+      case DEFINITION:
+      case ENUM:
+        property.setValue(type.getKind() == EdmTypeKind.ENUM ? ValueType.ENUM : ValueType.PRIMITIVE,
+            readPrimitiveValue(parser, edmProperty));
+        break;
+      case COMPLEX:
+        property.setValue(ValueType.COMPLEX,
+            readComplexValue(parser, name, (EdmComplexType) type, edmProperty.isNullable(), property));
+        break;
+      default:
+        throw new DeserializerException("Invalid Type Kind for a property found: " + type.getKind(),
+            DeserializerException.MessageKeys.INVALID_JSON_TYPE_FOR_PROPERTY, name);
+      }
+    }
+    return property;
+  }
+
+  /**
+   * Reads a complex value; the parser must be positioned on the start of the value
+   * and is positioned on its end afterwards.
+   * @param property the property holding the value; its type is set to a derived type
+   *                 given by an <code>@odata.type</code> annotation; <code>null</code> for collection items,
+   *                 where the annotation is ignored
+   */
+  private ComplexValue readComplexValue(final JsonParser parser, final String name, final EdmComplexType edmType,
+      final boolean isNullable, final Property property) throws IOException, DeserializerException {
+    final JsonToken token = parser.getCurrentToken();
+    if (token == JsonToken.VALUE_NULL) {
+      if (isNullable) {
+        return null;
+      }
+      throw new DeserializerException("Property: " + name + " must not be null.",
+          DeserializerException.MessageKeys.INVALID_NULL_PROPERTY, name);
+    }
+    if (token != JsonToken.START_OBJECT) {
+      throw new DeserializerException(
+          "Invalid value for property: " + name + " must not be an array or primitive value.",
+          DeserializerException.MessageKeys.INVALID_JSON_TYPE_FOR_PROPERTY, name);
+    }
+    // Even if there are no properties defined we have to give back an empty list
+    ComplexValue complexValue = new ComplexValue();
+    EdmComplexType complexType = edmType;
+    boolean typeAnnotated = property == null;
+    Map<String, JsonNode> buffered = null;
+    String unknownField = null;
+    Set<String> fieldNames = new HashSet<String>();
+    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+      final String fieldName = parser.getCurrentName();
+      checkDuplicate(fieldNames, fieldName);
+      parser.nextToken();
+      if (property != null && Constants.JSON_TYPE.equals(fieldName)) {
+        complexType = (EdmComplexType) getDerivedType(edmType, readAnnotationText(parser));
+        typeAnnotated = true;
+      } else if (!readComplexField(parser, fieldName, complexType, complexValue)) {
+        if (typeAnnotated) {
+          parser.skipChildren();
+          if (unknownField == null) {
+            unknownField = fieldName;
+          }
+        } else {
+          if (buffered == null) {
+            buffered = new LinkedHashMap<String, JsonNode>();
+          }
+          buffered.put(fieldName, parser.<JsonNode> readValueAsTree());
+        }
+      }
+    }
+
+    if (buffered != null) {
+      for (final Map.Entry<String, JsonNode> field : buffered.entrySet()) {
+        final JsonParser fieldParser = field.getValue().traverse(MAPPER);
+        fieldParser.nextToken();
+        if (!readComplexField(fieldParser, field.getKey(), complexType, complexValue) && unknownField == null) {
+          unknownField = field.getKey();
+        }
+      }
+    }
+    assertNoUnknownField(unknownField);
+    sortProperties(complexValue.getValue(), complexType);
+
+    if (property != null) {
+      property.setType(complexType.getFullQualifiedName().getFullQualifiedNameAsString());
+    }
+    return complexValue;
+  }
+
+  private boolean readComplexField(final JsonParser parser, final String name, final EdmComplexType complexType,
+      final ComplexValue complexValue) throws IOException, DeserializerException {
+    if (skipAnnotation(parser, name)) {
+      return true;
+    } else if (complexType.getProperty(name) instanceof EdmProperty) {
+      complexValue.getValue().add(readProperty(parser, (EdmProperty) complexType.getProperty(name)));
+      return true;
+    } else {
+      return false;
+    }
+  }
+
+  private Object readPrimitiveValue(final JsonParser parser, final EdmProperty edmProperty)
+      throws IOException, DeserializerException {
+    final String name = edmProperty.getName();
+    final EdmPrimitiveType type = (EdmPrimitiveType) edmProperty.getType();
+    final JsonToken token = parser.getCurrentToken();
+    if (isStructureStart(token)) {
+      throw new DeserializerException("Invalid value for property: " + name + " must not be an object or array.",
+          DeserializerException.MessageKeys.INVALID_JSON_TYPE_FOR_PROPERTY, name);
+    }
+    if (token == JsonToken.VALUE_NULL) {
+      if (edmProperty.isNullable()) {
+        return null;
+      }
+      throw new DeserializerException("Property: " + name + " must not be null.",
+          DeserializerException.MessageKeys.INVALID_NULL_PROPERTY, name);
+    }
+    checkJsonTypeBasedOnPrimitiveType(name, type, token);
+    final EdmMapping mapping = edmProperty.getMapping();
+    final String text = getValueText(parser);
+    try {
+      return type.valueOfString(text,
+          edmProperty.isNullable(), edmProperty.getMaxLength(), edmProperty.getPrecision(), edmProperty.getScale(),
+          edmProperty.isUnicode(), getJavaClassForPrimitiveType(mapping, type));
+    } catch (final EdmPrimitiveTypeException e) {
+      throw new DeserializerException(
+          "Invalid value: " + text + " for property: " + name, e,
+          DeserializerException.MessageKeys.INVALID_VALUE_FOR_PROPERTY, name);
+    }
+  }
+
+  /**
+   * Brings the properties into the order of the type definition, as the tree-based deserializer does.
+   * Clients usually send the properties in this order already, so normally this is a single check.
+   */
+  private void sortProperties(final List<Property> properties, final EdmStructuredType type) {
+    if (properties.size() < 2) {
+      return;
+    }
+    final List<String> names = type.getPropertyNames();
+    int position = 0;
+    for (final Property property : properties) {
+      while (position < names.size() && !names.get(position).equals(property.getName())) {
+        position++;
+      }
+      if (position == names.size()) {
+        break;
+      }
+    }
+    if (position < names.size()) {
+      return;
+    }
+    Map<String, Property> byName = new HashMap<String, Property>();
+    for (final Property property : properties) {
+      byName.put(property.getName(), property);
+    }
+    properties.clear();
+    for (final String name : names) {
+      final Property property = byName.get(name);
+      if (property != null) {
+        properties.add(property);
+      }
+    }
+  }
+
+  /**
+   * Skips the value of a field if the field is control information.
+   * Control Information is ignored for requests as per specification chapter "4.5 Control Information".
+   * @return <code>true</code> if the value has been skipped, <code>false</code> if the field is no annotation
+   * @throws DeserializerException if the field is a custom annotation
+   */
+  private boolean skipAnnotation(final JsonParser parser, final String name)
+      throws IOException, DeserializerException {
+    if (name.contains(ODATA_CONTROL_INFORMATION_PREFIX)) {
+      parser.skipChildren();
+      return true;
+    } else if (name.contains(ODATA_ANNOTATION_MARKER)) {
+      throw new DeserializerException("Custom annotation with field name: " + name + " not supported",
+          DeserializerException.MessageKeys.NOT_IMPLEMENTED);
+    }
+    return false;
+  }
+
+  /**
+   * Returns the text of a scalar value as the tree-based deserializer sees it:
+   * the tree holds numbers as Java numbers, so, e.g., <code>1.5E2</code> is read as <code>150.0</code>.
+   */
+  private String getValueText(final JsonParser parser) throws IOException {
+    switch (parser.getCurrentToken()) {
+    case VALUE_NUMBER_INT:
+      return parser.getNumberValue().toString();
+    case VALUE_NUMBER_FLOAT:
+      return Double.toString(parser.getDoubleValue());
+    default:
+      return parser.getText();
+    }
+  }
+
+  /** Returns the text of a scalar annotation value, or an empty string for objects and arrays. */
+  private String readAnnotationText(final JsonParser parser) throws IOException {
+    if (isStructureStart(parser.getCurrentToken())) {
+      parser.skipChildren();
+      return "";
+    }
+    return parser.getText();
+  }
+
+  private boolean isStructureStart(final JsonToken token) {
+    return token == JsonToken.START_OBJECT || token == JsonToken.START_ARRAY;
+  }
+
+  private void checkDuplicate(final Set<String> fieldNames, final String name) throws DeserializerException {
+    if (!fieldNames.add(name)) {
+      throw new DeserializerException("Duplicate json property detected.",
+          DeserializerException.MessageKeys.DUPLICATE_PROPERTY);
+    }
+  }
+
+  private void assertNoUnknownField(final String unknownField) throws DeserializerException {
+    if (unknownField != null) {
+      throw new DeserializerException("Tree should be empty but still has content left: " + unknownField,
+          DeserializerException.MessageKeys.UNKNOWN_CONTENT, unknownField);
+    }
+  }
+}
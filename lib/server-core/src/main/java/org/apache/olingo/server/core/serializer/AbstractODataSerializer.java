@@ -21,13 +21,66 @@ package org.apache.olingo.server.core.serializer;
 import java.io.IOException;
 import java.io.OutputStream;
 
+import org.apache.olingo.server.api.ODataContentWriteErrorCallback;
 import org.apache.olingo.server.api.serializer.ODataSerializer;
 import org.apache.olingo.server.api.serializer.SerializerException;
+import org.apache.olingo.server.api.serializer.SerializerResult;
+import org.apache.olingo.server.core.serializer.WriteThroughContent.ContentWriter;
+import org.apache.olingo.server.core.serializer.utils.CircleStreamBuffer;
 
 public abstract class AbstractODataSerializer implements ODataSerializer {
 
   protected static final String IO_EXCEPTION_TEXT = "An I/O exception occurred.";
 
+  private final boolean isWriteThrough;
+
+  protected AbstractODataSerializer() {
+    this(false);
+  }
+
+  /**
+   * @param isWriteThrough whether results are rendered only when their content is written
+   *                       (see {@link WriteThroughContent})
+   */
+  protected AbstractODataSerializer(final boolean isWriteThrough) {
+    this.isWriteThrough = isWriteThrough;
+  }
+
+  /**
+   * Creates the result for the content rendered by the given writer.
+   * In write-through mode the writer is called when the content of the result is written;
+   * otherwise it is called immediately and renders into a buffer.
+   * @param writer renders the content
+   * @param errorCallback callback for errors during deferred writing, may be <code>null</code>;
+   *                      see {@link WriteThroughContent} for the behavior without callback
+   * @return the serializer result
+   * @throws SerializerException if the content could not be rendered immediately
+   */
+  protected SerializerResult serialize(final ContentWriter writer, final ODataContentWriteErrorCallback errorCallback)
+      throws SerializerException {
+    if (isWriteThrough) {
+      return new WriteThroughResult(new WriteThroughContent(writer, errorCallback));
+    }
+    OutputStream outputStream = null;
+    SerializerException cachedException = null;
+    try {
+      CircleStreamBuffer buffer = new CircleStreamBuffer();
+      outputStream = buffer.getOutputStream();
+      writer.write(outputStream);
+      outputStream.close();
+      return SerializerResultImpl.with().content(buffer.getInputStream()).build();
+    } catch (final IOException e) {
+      cachedException =
+          new SerializerException(IO_EXCEPTION_TEXT, e, SerializerException.MessageKeys.IO_EXCEPTION);
+      throw cachedException;
+    } catch (final SerializerException e) {
+      cachedException = e;
+      throw cachedException;
+    } finally {
+      closeCircleStreamBufferOutput(outputStream, cachedException);
+    }
+  }
+
   protected void closeCircleStreamBufferOutput(final OutputStream outputStream,
       final SerializerException cachedException)
       throws SerializerException {
@@ -91,6 +91,8 @@ public class AsyncResponseSerializer {
         oc.write(inBuffer);
         inBuffer.rewind();
       }
+    } else if (response.getODataContent() != null) {
+      response.getODataContent().write(buffer);
     }
   }
 
@@ -18,14 +18,12 @@
  */
 package org.apache.olingo.server.core.serializer;
 
+import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.nio.ByteBuffer;
-import java.nio.channels.Channels;
-import java.nio.channels.ReadableByteChannel;
-import java.nio.channels.WritableByteChannel;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.util.List;
 import java.util.Map;
@@ -43,6 +41,8 @@ import org.apache.olingo.server.core.deserializer.batch.BatchParserCommon;
 
 public class BatchResponseSerializer {
   private static final int BUFFER_SIZE = 4096;
+  /** Maximum length of a body without declared length that is still written with a Content-Length header. */
+  private static final int MAX_BUFFERED_BODY_SIZE = 64 * 1024;
   private static final String DOUBLE_DASH = "--";
   private static final String COLON = ":";
   private static final String SP = " ";
@@ -50,31 +50,67 @@ public class BatchResponseSerializer {
 
   public InputStream serialize(final List<ODataResponsePart> responses, final String boundary)
       throws BatchSerializerException {
-    BodyBuilder builder = createBody(responses, boundary);
-
-    return new ByteArrayInputStream(builder.getContent());
+    final ByteArrayOutputStream output = new ByteArrayOutputStream(BUFFER_SIZE);
+    write(responses, output, boundary);
+    return new ByteArrayInputStream(output.toByteArray());
   }
 
-  private BodyBuilder createBody(final List<ODataResponsePart> batchResponses, final String boundary)
+  private void write(final List<ODataResponsePart> responses, final OutputStream output, final String boundary)
       throws BatchSerializerException {
-    final BodyBuilder builder = new BodyBuilder();
+    final BatchResponseWriter writer = createWriter(output, boundary);
+    for (final ODataResponsePart part : responses) {
+      writer.write(part);
+    }
+    writer.close();
+  }
+
+  public BatchResponseWriter createWriter(final OutputStream output, final String boundary) {
+    return new StreamWriter(output, boundary);
+  }
 
-    for (final ODataResponsePart part : batchResponses) {
-      builder.append(getDashBoundary(boundary));
+  /**
+   * Writes each response part directly into the output stream.
+   */
+  private class StreamWriter implements BatchResponseWriter {
+    private final BodyBuilder builder;
+    private final String boundary;
 
-      if (part.isChangeSet()) {
-        appendChangeSet(part, builder);
-      } else {
-        appendBodyPart(part.getResponses().get(0), builder, false);
+    StreamWriter(final OutputStream output, final String boundary) {
+      builder = new BodyBuilder(output);
+      this.boundary = boundary;
+    }
+
+    @Override
+    public void write(final ODataResponsePart part) throws BatchSerializerException {
+      try {
+        builder.append(getDashBoundary(boundary));
+
+        if (part.isChangeSet()) {
+          appendChangeSet(part, builder);
+        } else {
+          appendBodyPart(part.getResponses().get(0), builder, false);
+        }
+        builder.flush();
+      } catch (final IOException e) {
+        throw new BatchSerializerException("Error on writing response content", e,
+            BatchSerializerException.MessageKeys.IO_EXCEPTION);
       }
     }
-    builder.append(getCloseDelimiter(boundary));
 
-    return builder;
+    @Override
+    public void close() throws BatchSerializerException {
+      try {
+        builder.append(getCloseDelimiter(boundary));
+        builder.flush();
+      } catch (final IOException e) {
+        throw new BatchSerializerException("Error on writing response content", e,
+            BatchSerializerException.MessageKeys.IO_EXCEPTION);
+      }
+    }
   }
 
   private void appendChangeSet(final ODataResponsePart part, final BodyBuilder builder)
-      throws BatchSerializerException {
+      throws BatchSerializerException, IOException {
     final String changeSetBoundary = generateBoundary("changeset");
 
     appendChangeSetHeader(builder, changeSetBoundary);
@@ -89,26 +125,49 @@ public class BatchResponseSerializer {
   }
 
   private void appendBodyPart(final ODataResponse response, final BodyBuilder builder, final boolean isChangeSet)
-      throws BatchSerializerException {
+      throws BatchSerializerException, IOException {
 
     appendBodyPartHeader(response, builder, isChangeSet);
     builder.append(CRLF);
 
     appendStatusLine(response, builder);
-    Body body = new Body(response);
-    appendResponseHeader(response, body.getLength(), builder);
+    final int declaredLength = getDeclaredContentLength(response);
+    if (declaredLength >= 0 && response.getContent() != null) {
+      // The length is known in advance so the content can be copied without buffering.
+      appendResponseHeader(response, declaredLength, builder);
+      builder.append(CRLF);
+      builder.append(response.getContent(), declaredLength);
+    } else {
+      final BodyWriter body = new BodyWriter(response, builder);
+      if (response.getContent() != null) {
+        body.append(response.getContent());
+      } else if (response.getODataContent() != null) {
+        response.getODataContent().write(body);
+      }
+      body.finish();
+    }
     builder.append(CRLF);
+  }
 
-    builder.append(body);
-    builder.append(CRLF);
+  private int getDeclaredContentLength(final ODataResponse response) {
+    final String contentLength = response.getHeader(HttpHeader.CONTENT_LENGTH);
+    if (contentLength != null) {
+      try {
+        return Integer.parseInt(contentLength.trim());
+      } catch (final NumberFormatException e) {
+        // The length is determined from the content.
+      }
+    }
+    return -1;
   }
 
-  private void appendChangeSetHeader(final BodyBuilder builder, final String changeSetBoundary) {
+  private void appendChangeSetHeader(final BodyBuilder builder, final String changeSetBoundary) throws IOException {
     appendHeader(HttpHeader.CONTENT_TYPE, ContentType.MULTIPART_MIXED
         + "; boundary=" + changeSetBoundary, builder);
   }
 
-  private void appendHeader(final String name, final String value, final BodyBuilder builder) {
+  private void appendHeader(final String name, final String value, final BodyBuilder builder)
+      throws IOException {
     builder.append(name)
         .append(COLON)
         .append(SP)
@@ -116,7 +175,7 @@ public class BatchResponseSerializer {
         .append(CRLF);
   }
 
-  private void appendStatusLine(final ODataResponse response, final BodyBuilder builder) {
+  private void appendStatusLine(final ODataResponse response, final BodyBuilder builder) throws IOException {
     builder.append("HTTP/1.1")
         .append(SP)
         .append(response.getStatusCode())
@@ -133,31 +192,40 @@ public class BatchResponseSerializer {
     return status.getInfo();
   }
 
+  /**
+   * Appends the response header; a negative content length omits the Content-Length header.
+   */
   private void appendResponseHeader(final ODataResponse response, final int contentLength,
-      final BodyBuilder builder) {
+      final BodyBuilder builder) throws IOException {
     final Map<String, List<String>> header = response.getAllHeaders();
 
     for (final Map.Entry<String, List<String>> entry : header.entrySet()) {
-      // Requests never have a content id header.
-      if (!entry.getKey().equalsIgnoreCase(HttpHeader.CONTENT_ID)) {
+      // Requests never have a content id header; the content length is appended below.
+      if (!entry.getKey().equalsIgnoreCase(HttpHeader.CONTENT_ID)
+          && !entry.getKey().equalsIgnoreCase(HttpHeader.CONTENT_LENGTH)) {
         appendHeader(entry.getKey(), entry.getValue().get(0), builder);
       }
     }
 
-    appendHeader(HttpHeader.CONTENT_LENGTH, Integer.toString(contentLength), builder);
+    if (contentLength >= 0) {
+      appendHeader(HttpHeader.CONTENT_LENGTH, Integer.toString(contentLength), builder);
+    }
   }
 
   private void appendBodyPartHeader(final ODataResponse response, final BodyBuilder builder,
-      final boolean isChangeSet) throws BatchSerializerException {
+      final boolean isChangeSet) throws BatchSerializerException, IOException {
     appendHeader(HttpHeader.CONTENT_TYPE, ContentType.APPLICATION_HTTP.toContentTypeString(), builder);
     appendHeader(BatchParserCommon.CONTENT_TRANSFER_ENCODING, BatchParserCommon.BINARY_ENCODING, builder);
 
     if (isChangeSet) {
-      if (response.getHeader(HttpHeader.CONTENT_ID) != null) {
-        appendHeader(HttpHeader.CONTENT_ID, response.getHeader(HttpHeader.CONTENT_ID), builder);
-      } else {
-        throw new BatchSerializerException("Missing content id", MessageKeys.MISSING_CONTENT_ID);
-      }
+      checkContentId(response);
+      appendHeader(HttpHeader.CONTENT_ID, response.getHeader(HttpHeader.CONTENT_ID), builder);
+    }
+  }
+
+  private void checkContentId(final ODataResponse response) throws BatchSerializerException {
+    if (response.getHeader(HttpHeader.CONTENT_ID) == null) {
+      throw new BatchSerializerException("Missing content id", MessageKeys.MISSING_CONTENT_ID);
     }
   }
 
@@ -174,93 +242,125 @@ public class BatchResponseSerializer {
   }
 
   /**
-   * Builder class to create the body and the header.
+   * Builder class to write the body and the header into the output stream.
    */
   private static class BodyBuilder {
     private static final Charset CHARSET_ISO_8859_1 = Charset.forName("iso-8859-1");
-    private ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE);
-    private boolean isClosed = false;
-
-    public byte[] getContent() {
-      isClosed = true;
-      byte[] tmp = new byte[buffer.position()];
-      buffer.flip();
-      buffer.get(tmp, 0, buffer.limit());
-      return tmp;
+    private final OutputStream output;
+
+    BodyBuilder(final OutputStream output) {
+      this.output = new BufferedOutputStream(output, BUFFER_SIZE);
     }
 
-    public BodyBuilder append(final String string) {
-      byte[] b = string.getBytes(CHARSET_ISO_8859_1);
-      put(b);
+    public BodyBuilder append(final String string) throws IOException {
+      output.write(string.getBytes(CHARSET_ISO_8859_1));
       return this;
     }
 
-    private void put(final byte[] b) {
-      if (isClosed) {
-        throw new RuntimeException("BodyBuilder is closed.");
-      }
-      if (buffer.remaining() < b.length) {
-        buffer.flip();
-        int newSize = (buffer.limit() * 2) + b.length;
-        ByteBuffer tmp = ByteBuffer.allocate(newSize);
-        tmp.put(buffer);
-        buffer = tmp;
-      }
-      buffer.put(b);
+    public BodyBuilder append(final int statusCode) throws IOException {
+      return append(String.valueOf(statusCode));
     }
 
-    public BodyBuilder append(final int statusCode) {
-      return append(String.valueOf(statusCode));
+    public BodyBuilder append(final byte[] bytes, final int offset, final int length) throws IOException {
+      output.write(bytes, offset, length);
+      return this;
     }
 
-    public BodyBuilder append(final Body body) {
-      put(body.getContent());
+    public BodyBuilder append(final ByteArrayOutputStream bytes) throws IOException {
+      bytes.writeTo(output);
       return this;
     }
 
-    @Override
-    public String toString() {
-      return new String(buffer.array(), 0, buffer.position(), CHARSET_ISO_8859_1);
+    public BodyBuilder appendByte(final int b) throws IOException {
+      output.write(b);
+      return this;
+    }
+
+    /**
+     * Copies exactly <code>length</code> bytes of the content;
+     * content beyond the declared length is not part of the response.
+     */
+    public BodyBuilder append(final InputStream content, final int length) throws IOException {
+      byte[] buffer = new byte[BUFFER_SIZE];
+      int remaining = length;
+      while (remaining > 0) {
+        final int count = content.read(buffer, 0, Math.min(buffer.length, remaining));
+        if (count == -1) {
+          throw new IOException("Response content is shorter than its declared length " + length + ".");
+        }
+        output.write(buffer, 0, count);
+        remaining -= count;
+      }
+      return this;
+    }
+
+    public void flush() throws IOException {
+      output.flush();
     }
   }
 
   /**
-   * Body part which is read and stored as bytes (no charset conversion).
+   * Writes the response header and the body of a part which does not declare its length.
+   * The body is buffered up to {@link #MAX_BUFFERED_BODY_SIZE} bytes; a body that fits
+   * is written with its length in a Content-Length header. A longer body is written
+   * directly into the output without Content-Length header and is delimited by the
+   * boundary only, so it is never held in memory as a whole.
    */
-  private static class Body {
-    private final byte[] content;
+  private class BodyWriter extends OutputStream {
+    private final ODataResponse response;
+    private final BodyBuilder builder;
+    private ByteArrayOutputStream buffer = new ByteArrayOutputStream(BUFFER_SIZE);
+
+    BodyWriter(final ODataResponse response, final BodyBuilder builder) {
+      this.response = response;
+      this.builder = builder;
+    }
 
-    Body(final ODataResponse response) {
-      content = getBody(response);
+    public void append(final InputStream content) throws IOException {
+      byte[] bytes = new byte[BUFFER_SIZE];
+      int count;
+      while ((count = content.read(bytes)) != -1) {
+        write(bytes, 0, count);
+      }
     }
 
-    private int getLength() {
-      return content.length;
+    @Override
+    public void write(final int b) throws IOException {
+      if (buffer != null && buffer.size() < MAX_BUFFERED_BODY_SIZE) {
+        buffer.write(b);
+      } else {
+        startStreaming();
+        builder.appendByte(b);
+      }
     }
 
-    private byte[] getContent() {
-      return content;
+    @Override
+    public void write(final byte[] bytes, final int offset, final int length) throws IOException {
+      if (buffer != null && buffer.size() + length <= MAX_BUFFERED_BODY_SIZE) {
+        buffer.write(bytes, offset, length);
+      } else {
+        startStreaming();
+        builder.append(bytes, offset, length);
+      }
     }
 
-    private byte[] getBody(final ODataResponse response) {
-      if (response == null || response.getContent() == null) {
-        return new byte[0];
+    private void startStreaming() throws IOException {
+      if (buffer != null) {
+        appendResponseHeader(response, -1, builder);
+        builder.append(CRLF);
+        builder.append(buffer);
+        buffer = null;
       }
+    }
 
-      try {
-        ByteArrayOutputStream output = new ByteArrayOutputStream();
-        ByteBuffer inBuffer = ByteBuffer.allocate(BUFFER_SIZE);
-        ReadableByteChannel ic = Channels.newChannel(response.getContent());
-        WritableByteChannel oc = Channels.newChannel(output);
-        while (ic.read(inBuffer) > 0) {
-          inBuffer.flip();
-          oc.write(inBuffer);
-          inBuffer.rewind();
-        }
-        return output.toByteArray();
-      } catch (IOException e) {
-        throw new ODataRuntimeException("Error on reading request content", e);
+    /** Writes the body if it has been buffered completely. */
+    public void finish() throws IOException {
+      if (buffer != null) {
+        appendResponseHeader(response, buffer.size(), builder);
+        builder.append(CRLF);
+        builder.append(buffer);
+        buffer = null;
       }
     }
   }
-}
\ No newline at end of file
+}
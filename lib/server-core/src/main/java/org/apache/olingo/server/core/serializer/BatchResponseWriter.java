@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.serializer;
+
+import org.apache.olingo.server.api.deserializer.batch.ODataResponsePart;
+import org.apache.olingo.server.api.serializer.BatchSerializerException;
+
+/**
+ * Writes the parts of a batch response to an output stream one after the other.
+ * <p>
+ * Each part is written and flushed as soon as it is passed to {@link #write(ODataResponsePart)},
+ * so the complete batch response is never held in memory.
+ * The response body of a part is copied without buffering if the response
+ * declares its length in a Content-Length header; exactly that many bytes are copied.
+ * Otherwise a short body is written with its length; a longer body is written directly,
+ * without Content-Length header, and is delimited by the boundary only.
+ */
+public interface BatchResponseWriter {
+
+  /**
+   * Writes a part of the batch response.
+   * @param part the response part
+   * @throws BatchSerializerException if the part cannot be serialized or written
+   */
+  void write(ODataResponsePart part) throws BatchSerializerException;
+
+  /**
+   * Writes the close delimiter of the batch response.
+   * The underlying output stream is flushed but not closed.
+   * @throws BatchSerializerException if the close delimiter cannot be written
+   */
+  void close() throws BatchSerializerException;
+}
@@ -0,0 +1,81 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.serializer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+
+import org.apache.olingo.commons.api.ex.ODataRuntimeException;
+import org.apache.olingo.server.api.ODataContent;
+import org.apache.olingo.server.api.ODataContentWriteErrorCallback;
+import org.apache.olingo.server.api.serializer.SerializerException;
+import org.apache.olingo.server.core.ODataWritableContent.WriteErrorContext;
+
+/**
+ * Deferred content of a serializer result.
+ * <p/>
+ * The content is rendered only when one of the <code>write</code> methods is called,
+ * directly into the given stream.
+ * If an error occurs during writing, the registered
+ * {@link ODataContentWriteErrorCallback} is called; without a callback
+ * an {@link ODataRuntimeException} is thrown.
+ */
+public class WriteThroughContent implements ODataContent {
+
+  /** Renders content into an output stream. */
+  public interface ContentWriter {
+    void write(OutputStream outputStream) throws IOException, SerializerException;
+  }
+
+  private final ContentWriter writer;
+  private final ODataContentWriteErrorCallback errorCallback;
+
+  public WriteThroughContent(final ContentWriter writer, final ODataContentWriteErrorCallback errorCallback) {
+    this.writer = writer;
+    this.errorCallback = errorCallback;
+  }
+
+  @Override
+  public void write(final WritableByteChannel channel) {
+    write(Channels.newOutputStream(channel));
+  }
+
+  @Override
+  public void write(final OutputStream stream) {
+    try {
+      writer.write(stream);
+      stream.flush();
+    } catch (final IOException e) {
+      handleError(new SerializerException(AbstractODataSerializer.IO_EXCEPTION_TEXT, e,
+          SerializerException.MessageKeys.IO_EXCEPTION), stream);
+    } catch (final SerializerException e) {
+      handleError(e, stream);
+    }
+  }
+
+  private void handleError(final SerializerException e, final OutputStream stream) {
+    if (errorCallback == null) {
+      throw new ODataRuntimeException("Failed content serialization", e);
+    } else {
+      errorCallback.handleError(new WriteErrorContext(e), Channels.newChannel(stream));
+    }
+  }
+}
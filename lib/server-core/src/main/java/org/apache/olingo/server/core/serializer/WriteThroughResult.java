@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.serializer;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.olingo.commons.api.ex.ODataRuntimeException;
+import org.apache.olingo.server.api.ODataContent;
+import org.apache.olingo.server.api.serializer.SerializerResult;
+import org.apache.olingo.server.api.serializer.SerializerStreamResult;
+import org.apache.olingo.server.core.serializer.utils.CircleStreamBuffer;
+
+/**
+ * Result of a write-through serializer.
+ * <p/>
+ * The content is rendered when {@link #getODataContent()} is written;
+ * {@link #getContent()} renders it into a buffer first.
+ */
+public class WriteThroughResult implements SerializerResult, SerializerStreamResult {
+  private final ODataContent odataContent;
+  private InputStream content;
+
+  public WriteThroughResult(final ODataContent odataContent) {
+    this.odataContent = odataContent;
+  }
+
+  @Override
+  public ODataContent getODataContent() {
+    return odataContent;
+  }
+
+  @Override
+  public InputStream getContent() {
+    if (content == null) {
+      CircleStreamBuffer buffer = new CircleStreamBuffer();
+      final OutputStream outputStream = buffer.getOutputStream();
+      odataContent.write(outputStream);
+      try {
+        outputStream.close();
+      } catch (final IOException e) {
+        throw new ODataRuntimeException("Failed content serialization", e);
+      }
+      content = buffer.getInputStream();
+    }
+    return content;
+  }
+}
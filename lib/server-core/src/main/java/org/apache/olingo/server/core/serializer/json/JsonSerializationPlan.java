@@ -0,0 +1,359 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.serializer.json;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.olingo.commons.api.data.CompactEntity;
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.edm.EdmEntityType;
+import org.apache.olingo.commons.api.edm.EdmNavigationProperty;
+import org.apache.olingo.commons.api.edm.EdmProperty;
+import org.apache.olingo.commons.api.edm.EdmStructuredType;
+import org.apache.olingo.server.api.ServiceMetadata;
+import org.apache.olingo.server.api.serializer.SerializerException;
+import org.apache.olingo.server.api.uri.UriResource;
+import org.apache.olingo.server.api.uri.UriResourceNavigation;
+import org.apache.olingo.server.api.uri.UriResourceProperty;
+import org.apache.olingo.server.api.uri.queryoption.ExpandItem;
+import org.apache.olingo.server.api.uri.queryoption.ExpandOption;
+import org.apache.olingo.server.api.uri.queryoption.SelectItem;
+import org.apache.olingo.server.api.uri.queryoption.SelectOption;
+import org.apache.olingo.server.core.serializer.utils.ExpandSelectHelper;
+
+import com.fasterxml.jackson.core.SerializableString;
+import com.fasterxml.jackson.core.io.SerializedString;
+
+/**
+ * Precomputed serialization plan for a structured type.
+ * <p>
+ * A plan resolves the <code>$select</code> and <code>$expand</code> options against the type once
+ * and keeps the ordered list of properties and navigation properties to write, together with
+ * their pre-escaped JSON field names.
+ * A plan depends only on the type and on the shape of the options, i.e., on the selected and
+ * expanded names, so it does not refer to the request-scoped options and is shared by all
+ * requests with the same shape.
+ */
+final class JsonSerializationPlan {
+
+  /** Upper bound for the number of plans per service metadata; further shapes are planned on each use. */
+  private static final int MAX_PLANS = 1024;
+
+  /** Plans per service metadata; kept only as long as the service metadata is in use. */
+  private static final Map<ServiceMetadata, ConcurrentMap<PlanKey, JsonSerializationPlan>> PLANS =
+      Collections.synchronizedMap(new WeakHashMap<ServiceMetadata, ConcurrentMap<PlanKey, JsonSerializationPlan>>());
+
+  private final List<PropertyPlan> properties;
+  private final List<NavigationPlan> navigationProperties;
+  private final boolean keyPredicateNamesSelected;
+
+  private JsonSerializationPlan(final List<PropertyPlan> properties, final List<NavigationPlan> navigationProperties,
+      final boolean keyPredicateNamesSelected) {
+    this.properties = properties;
+    this.navigationProperties = navigationProperties;
+    this.keyPredicateNamesSelected = keyPredicateNamesSelected;
+  }
+
+  /**
+   * Returns the plan for the given type and options, creating it on first use of their shape.
+   * @param metadata the service metadata the type belongs to; if <code>null</code> the plan is not cached
+   * @param type the structured type to be serialized
+   * @param select the select option, or <code>null</code>
+   * @param expand the expand option, or <code>null</code>
+   * @return the serialization plan
+   * @throws SerializerException if the expand option is not supported
+   */
+  static JsonSerializationPlan get(final ServiceMetadata metadata, final EdmStructuredType type,
+      final SelectOption select, final ExpandOption expand) throws SerializerException {
+    if (metadata == null) {
+      return create(type, select, expand);
+    }
+    ConcurrentMap<PlanKey, JsonSerializationPlan> plans;
+    synchronized (PLANS) {
+      plans = PLANS.get(metadata);
+      if (plans == null) {
+        plans = new ConcurrentHashMap<PlanKey, JsonSerializationPlan>();
+        PLANS.put(metadata, plans);
+      }
+    }
+    final PlanKey key = new PlanKey(type, getShape(select, expand));
+    JsonSerializationPlan plan = plans.get(key);
+    if (plan == null) {
+      plan = create(type, select, expand);
+      if (plans.size() < MAX_PLANS) {
+        plans.putIfAbsent(key, plan);
+      }
+    }
+    return plan;
+  }
+
+  /**
+   * Creates the plan for the given type and options.
+   * @param type the structured type to be serialized
+   * @param select the select option, or <code>null</code>
+   * @param expand the expand option, or <code>null</code>
+   * @return the serialization plan
+   * @throws SerializerException if the expand option is not supported
+   */
+  private static JsonSerializationPlan create(final EdmStructuredType type, final SelectOption select,
+      final ExpandOption expand) throws SerializerException {
+    final boolean all = ExpandSelectHelper.isAll(select);
+    final Set<String> selected = all ? Collections.<String> emptySet() :
+        ExpandSelectHelper.getSelectedPropertyNames(select.getSelectItems());
+
+    List<PropertyPlan> properties = new ArrayList<PropertyPlan>();
+    for (final String propertyName : type.getPropertyNames()) {
+      if (all || selected.contains(propertyName)) {
+        final EdmProperty edmProperty = type.getStructuralProperty(propertyName);
+        final Set<List<String>> selectedPaths = all || edmProperty.isPrimitive() ? null :
+            ExpandSelectHelper.getSelectedPaths(select.getSelectItems(), propertyName);
+        properties.add(new PropertyPlan(edmProperty, selectedPaths));
+      }
+    }
+
+    List<NavigationPlan> navigationProperties = new ArrayList<NavigationPlan>();
+    if (ExpandSelectHelper.hasExpand(expand)) {
+      final boolean expandAll = ExpandSelectHelper.isExpandAll(expand);
+      final Set<String> expanded = expandAll ? new HashSet<String>() :
+          ExpandSelectHelper.getExpandedPropertyNames(expand.getExpandItems());
+      for (final String propertyName : type.getNavigationPropertyNames()) {
+        if (expandAll || expanded.contains(propertyName)) {
+          final int expandItemIndex = expandAll ? -1 : getExpandItemIndex(expand.getExpandItems(), propertyName);
+          if (expandItemIndex >= 0 && expand.getExpandItems().get(expandItemIndex).getLevelsOption() != null) {
+            throw new SerializerException("Expand option $levels is not supported.",
+                SerializerException.MessageKeys.NOT_IMPLEMENTED);
+          }
+          navigationProperties.add(new NavigationPlan(type.getNavigationProperty(propertyName), expandItemIndex));
+        }
+      }
+    }
+
+    boolean keyPredicateNamesSelected = true;
+    if (!all && type instanceof EdmEntityType) {
+      for (final String key : ((EdmEntityType) type).getKeyPredicateNames()) {
+        if (!selected.contains(key)) {
+          keyPredicateNamesSelected = false;
+          break;
+        }
+      }
+    }
+
+    return new JsonSerializationPlan(Collections.unmodifiableList(properties),
+        Collections.unmodifiableList(navigationProperties), keyPredicateNamesSelected);
+  }
+
+  private static int getExpandItemIndex(final List<ExpandItem> expandItems, final String propertyName) {
+    final ExpandItem item = ExpandSelectHelper.getExpandItem(expandItems, propertyName);
+    return item == null ? -1 : expandItems.indexOf(item);
+  }
+
+  /**
+   * Describes everything of the options the plan depends on: the property names of the select paths
+   * and the first navigation property and the presence of <code>$levels</code> of the expand items,
+   * all in the order of the request.
+   */
+  private static String getShape(final SelectOption select, final ExpandOption expand) {
+    final boolean allSelected = ExpandSelectHelper.isAll(select);
+    final boolean hasExpand = ExpandSelectHelper.hasExpand(expand);
+    if (allSelected && !hasExpand) {
+      return "";
+    }
+    StringBuilder shape = new StringBuilder();
+    if (allSelected) {
+      shape.append('*');
+    } else {
+      for (final SelectItem item : select.getSelectItems()) {
+        for (final UriResource part : item.getResourcePath().getUriResourceParts()) {
+          shape.append(part instanceof UriResourceProperty ?
+              ((UriResourceProperty) part).getProperty().getName() : "#").append('/');
+        }
+        shape.append(',');
+      }
+    }
+    shape.append('|');
+    if (hasExpand) {
+      if (ExpandSelectHelper.isExpandAll(expand)) {
+        shape.append('*');
+      } else {
+        for (final ExpandItem item : expand.getExpandItems()) {
+          final UriResource resource = item.getResourcePath().getUriResourceParts().get(0);
+          shape.append(resource instanceof UriResourceNavigation ?
+              ((UriResourceNavigation) resource).getProperty().getName() : "#");
+          shape.append(item.getLevelsOption() == null ? ',' : '$');
+        }
+      }
+    }
+    return shape.toString();
+  }
+
+  /** Returns the selected structural properties in the order of the type definition. */
+  List<PropertyPlan> getProperties() {
+    return properties;
+  }
+
+  /** Returns the expanded navigation properties in the order of the type definition. */
+  List<NavigationPlan> getNavigationProperties() {
+    return navigationProperties;
+  }
+
+  /** Returns whether all key properties of an entity type are part of the selection. */
+  boolean areKeyPredicateNamesSelected() {
+    return keyPredicateNamesSelected;
+  }
+
+  /**
+   * Looks up the properties of one entity in the order of the plan.
+   * A {@link CompactEntity} is asked for each property by name, which is a slot lookup;
+   * the properties of other entities are resolved from their list.
+   * @param entity the entity
+   * @return array with the property for each entry of {@link #getProperties()}, <code>null</code> if missing
+   */
+  Property[] resolve(final Entity entity) {
+    if (entity instanceof CompactEntity) {
+      Property[] result = new Property[properties.size()];
+      for (int index = 0; index < result.length; index++) {
+        result[index] = entity.getProperty(properties.get(index).getName());
+      }
+      return result;
+    }
+    return resolve(entity.getProperties());
+  }
+
+  /**
+   * Looks up the properties of one entity or complex value in the order of the plan.
+   * Data providers usually deliver the properties in the order of the type definition,
+   * so the lookup first tries the next position after the last match and only falls back
+   * to a scan of the whole list if that fails.
+   * @param values the properties of the entity or complex value
+   * @return array with the property for each entry of {@link #getProperties()}, <code>null</code> if missing
+   */
+  Property[] resolve(final List<Property> values) {
+    Property[] result = new Property[properties.size()];
+    final int size = values.size();
+    int position = 0;
+    for (int index = 0; index < result.length; index++) {
+      final String name = properties.get(index).getName();
+      Property found = null;
+      for (int offset = 0; offset < size && found == null; offset++) {
+        final Property candidate = values.get((position + offset) % size);
+        if (name.equals(candidate.getName())) {
+          found = candidate;
+          position = (position + offset + 1) % size;
+        }
+      }
+      result[index] = found;
+    }
+    return result;
+  }
+
+  /** Plan entry for one structural property. */
+  static final class PropertyPlan {
+    private final EdmProperty edmProperty;
+    private final SerializableString fieldName;
+    private final Set<List<String>> selectedPaths;
+
+    private PropertyPlan(final EdmProperty edmProperty, final Set<List<String>> selectedPaths) {
+      this.edmProperty = edmProperty;
+      fieldName = new SerializedString(edmProperty.getName());
+      this.selectedPaths = selectedPaths;
+    }
+
+    String getName() {
+      return edmProperty.getName();
+    }
+
+    EdmProperty getEdmProperty() {
+      return edmProperty;
+    }
+
+    SerializableString getFieldName() {
+      return fieldName;
+    }
+
+    Set<List<String>> getSelectedPaths() {
+      return selectedPaths;
+    }
+  }
+
+  /** Plan entry for one expanded navigation property. */
+  static final class NavigationPlan {
+    private final EdmNavigationProperty property;
+    private final SerializableString fieldName;
+    private final int expandItemIndex;
+
+    private NavigationPlan(final EdmNavigationProperty property, final int expandItemIndex) {
+      this.property = property;
+      fieldName = new SerializedString(property.getName());
+      this.expandItemIndex = expandItemIndex;
+    }
+
+    EdmNavigationProperty getProperty() {
+      return property;
+    }
+
+    SerializableString getFieldName() {
+      return fieldName;
+    }
+
+    /**
+     * Returns the options of the expand item for this navigation property.
+     * @param expand the expand option the plan has been created for
+     * @return the expand item, or <code>null</code> for <code>$expand=*</code>
+     */
+    ExpandItem getInnerOptions(final ExpandOption expand) {
+      return expandItemIndex < 0 ? null : expand.getExpandItems().get(expandItemIndex);
+    }
+  }
+
+  private static final class PlanKey {
+    private final EdmStructuredType type;
+    private final String shape;
+
+    private PlanKey(final EdmStructuredType type, final String shape) {
+      this.type = type;
+      this.shape = shape;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof PlanKey)) {
+        return false;
+      }
+      final PlanKey other = (PlanKey) obj;
+      return type == other.type && shape.equals(other.shape);
+    }
+
+    @Override
+    public int hashCode() {
+      return 31 * System.identityHashCode(type) + shape.hashCode();
+    }
+  }
+}
@@ -21,7 +21,6 @@ package org.apache.olingo.server.core.serializer.json;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 
@@ -33,6 +32,7 @@ import org.apache.olingo.commons.api.data.Entity;
 import org.apache.olingo.commons.api.data.EntityIterator;
 import org.apache.olingo.commons.api.data.Link;
 import org.apache.olingo.commons.api.data.Linked;
+import org.apache.olingo.commons.api.data.PrimitiveProperty;
 import org.apache.olingo.commons.api.data.Property;
 import org.apache.olingo.commons.api.edm.EdmComplexType;
 import org.apache.olingo.commons.api.edm.EdmEntitySet;
@@ -66,8 +66,7 @@ import org.apache.olingo.server.api.uri.queryoption.ExpandOption;
 import org.apache.olingo.server.api.uri.queryoption.SelectOption;
 import org.apache.olingo.server.core.ODataWritableContent;
 import org.apache.olingo.server.core.serializer.AbstractODataSerializer;
-import org.apache.olingo.server.core.serializer.SerializerResultImpl;
-import org.apache.olingo.server.core.serializer.utils.CircleStreamBuffer;
+import org.apache.olingo.server.core.serializer.WriteThroughContent.ContentWriter;
 import org.apache.olingo.server.core.serializer.utils.ContentTypeHelper;
 import org.apache.olingo.server.core.serializer.utils.ContextURLBuilder;
 import org.apache.olingo.server.core.serializer.utils.ExpandSelectHelper;
@@ -82,6 +81,15 @@ public class ODataJsonSerializer extends AbstractODataSerializer {
   private final boolean isODataMetadataNone;
 
   public ODataJsonSerializer(final ContentType contentType) {
+    this(contentType, false);
+  }
+
+  /**
+   * @param contentType the content type of the results
+   * @param isWriteThrough whether results are rendered only when their content is written
+   */
+  public ODataJsonSerializer(final ContentType contentType, final boolean isWriteThrough) {
+    super(isWriteThrough);
     isIEEE754Compatible = isODataIEEE754Compatible(contentType);
     isODataMetadataNone = ContentTypeHelper.isODataMetadataNone(contentType);
   }
@@ -89,25 +97,14 @@ public class ODataJsonSerializer extends AbstractODataSerializer {
   @Override
   public SerializerResult serviceDocument(final ServiceMetadata metadata, final String serviceRoot)
       throws SerializerException {
-    OutputStream outputStream = null;
-    SerializerException cachedException = null;
-
-    try {
-      CircleStreamBuffer buffer = new CircleStreamBuffer();
-      outputStream = buffer.getOutputStream();
-      JsonGenerator json = new JsonFactory().createGenerator(outputStream);
-      new ServiceDocumentJsonSerializer(metadata, serviceRoot, isODataMetadataNone).writeServiceDocument(json);
-
-      json.close();
-      outputStream.close();
-      return SerializerResultImpl.with().content(buffer.getInputStream()).build();
-    } catch (final IOException e) {
-      cachedException =
-          new SerializerException(IO_EXCEPTION_TEXT, e, SerializerException.MessageKeys.IO_EXCEPTION);
-      throw cachedException;
-    } finally {
-      closeCircleStreamBufferOutput(outputStream, cachedException);
-    }
+    return serialize(new ContentWriter() {
+      @Override
+      public void write(final OutputStream outputStream) throws IOException, SerializerException {
+        JsonGenerator json = new JsonFactory().createGenerator(outputStream);
+        new ServiceDocumentJsonSerializer(metadata, serviceRoot, isODataMetadataNone).writeServiceDocument(json);
+        json.close();
+      }
+    }, null);
   }
 
   @Override
@@ -118,65 +115,46 @@ public class ODataJsonSerializer extends AbstractODataSerializer {
 
   @Override
   public SerializerResult error(final ODataServerError error) throws SerializerException {
-    OutputStream outputStream = null;
-    SerializerException cachedException = null;
-    try {
-      CircleStreamBuffer buffer = new CircleStreamBuffer();
-      outputStream = buffer.getOutputStream();
-      JsonGenerator json = new JsonFactory().createGenerator(outputStream);
-      new ODataErrorSerializer().writeErrorDocument(json, error);
-
-      json.close();
-      outputStream.close();
-      return SerializerResultImpl.with().content(buffer.getInputStream()).build();
-    } catch (final IOException e) {
-      cachedException =
-          new SerializerException(IO_EXCEPTION_TEXT, e, SerializerException.MessageKeys.IO_EXCEPTION);
-      throw cachedException;
-    } finally {
-      closeCircleStreamBufferOutput(outputStream, cachedException);
-    }
+    return serialize(new ContentWriter() {
+      @Override
+      public void write(final OutputStream outputStream) throws IOException, SerializerException {
+        JsonGenerator json = new JsonFactory().createGenerator(outputStream);
+        new ODataErrorSerializer().writeErrorDocument(json, error);
+        json.close();
+      }
+    }, null);
   }
 
   @Override
   public SerializerResult entityCollection(final ServiceMetadata metadata,
       final EdmEntityType entityType, final AbstractEntityCollection entitySet,
       final EntityCollectionSerializerOptions options) throws SerializerException {
-    OutputStream outputStream = null;
-    SerializerException cachedException = null;
-    try {
-      CircleStreamBuffer buffer = new CircleStreamBuffer();
-      outputStream = buffer.getOutputStream();
-      JsonGenerator json = new JsonFactory().createGenerator(outputStream);
-      json.writeStartObject();
+    final ContextURL contextURL = checkContextURL(options == null ? null : options.getContextURL());
+    return serialize(new ContentWriter() {
+      @Override
+      public void write(final OutputStream outputStream) throws IOException, SerializerException {
+        JsonGenerator json = new JsonFactory().createGenerator(outputStream);
+        json.writeStartObject();
 
-      final ContextURL contextURL = checkContextURL(options == null ? null : options.getContextURL());
-      writeContextURL(contextURL, json);
+        writeContextURL(contextURL, json);
 
-      writeMetadataETag(metadata, json);
+        writeMetadataETag(metadata, json);
 
-      if (options != null && options.getCount() != null && options.getCount().getValue()) {
-        writeCount(entitySet, json);
-      }
-      json.writeFieldName(Constants.VALUE);
-      if (options == null) {
-        writeEntitySet(metadata, entityType, entitySet, null, null, false, json);
-      } else {
-        writeEntitySet(metadata, entityType, entitySet,
-            options.getExpand(), options.getSelect(), options.getWriteOnlyReferences(), json);
-      }
-      writeNextLink(entitySet, json);
+        if (options != null && options.getCount() != null && options.getCount().getValue()) {
+          writeCount(entitySet, json);
+        }
+        json.writeFieldName(Constants.VALUE);
+        if (options == null) {
+          writeEntitySet(metadata, entityType, entitySet, null, null, false, json);
+        } else {
+          writeEntitySet(metadata, entityType, entitySet, options.getExpand(), options.getSelect(),
+              options.getWriteOnlyReferences(), json);
+        }
+        writeNextLink(entitySet, json);
 
-      json.close();
-      outputStream.close();
-      return SerializerResultImpl.with().content(buffer.getInputStream()).build();
-    } catch (final IOException e) {
-      cachedException =
-          new SerializerException(IO_EXCEPTION_TEXT, e, SerializerException.MessageKeys.IO_EXCEPTION);
-      throw cachedException;
-    } finally {
-      closeCircleStreamBufferOutput(outputStream, cachedException);
-    }
+        json.close();
+      }
+    }, options == null ? null : options.getODataContentWriteErrorCallback());
   }
 
   @Override
@@ -208,8 +186,8 @@ public class ODataJsonSerializer extends AbstractODataSerializer {
       if (options == null) {
         writeEntitySet(metadata, entityType, entitySet, null, null, false, json);
       } else {
-        writeEntitySet(metadata, entityType, entitySet,
-            options.getExpand(), options.getSelect(), options.getWriteOnlyReferences(), json);
+        writeEntitySet(metadata, entityType, entitySet, options.getExpand(), options.getSelect(),
+            options.getWriteOnlyReferences(), json);
       }
       // next link not supported by default for streaming results
 //      writeNextLink(entitySet, json);
@@ -225,29 +203,19 @@ public class ODataJsonSerializer extends AbstractODataSerializer {
   @Override
   public SerializerResult entity(final ServiceMetadata metadata, final EdmEntityType entityType,
       final Entity entity, final EntitySerializerOptions options) throws SerializerException {
-    OutputStream outputStream = null;
-    SerializerException cachedException = null;
-    try {
-      final ContextURL contextURL = checkContextURL(options == null ? null : options.getContextURL());
-      CircleStreamBuffer buffer = new CircleStreamBuffer();
-      outputStream = buffer.getOutputStream();
-      JsonGenerator json = new JsonFactory().createGenerator(outputStream);
-      writeEntity(metadata, entityType, entity, contextURL,
-          options == null ? null : options.getExpand(),
-          options == null ? null : options.getSelect(),
-          options == null ? false : options.getWriteOnlyReferences(),
-          json);
-
-      json.close();
-      outputStream.close();
-      return SerializerResultImpl.with().content(buffer.getInputStream()).build();
-    } catch (final IOException e) {
-      cachedException =
-          new SerializerException(IO_EXCEPTION_TEXT, e, SerializerException.MessageKeys.IO_EXCEPTION);
-      throw cachedException;
-    } finally {
-      closeCircleStreamBufferOutput(outputStream, cachedException);
-    }
+    final ContextURL contextURL = checkContextURL(options == null ? null : options.getContextURL());
+    return serialize(new ContentWriter() {
+      @Override
+      public void write(final OutputStream outputStream) throws IOException, SerializerException {
+        JsonGenerator json = new JsonFactory().createGenerator(outputStream);
+        writeEntity(metadata, entityType, entity, contextURL,
+            options == null ? null : options.getExpand(),
+            options == null ? null : options.getSelect(),
+            options == null ? false : options.getWriteOnlyReferences(),
+            json);
+        json.close();
+      }
+    }, options == null ? null : options.getODataContentWriteErrorCallback());
   }
 
   ContextURL checkContextURL(final ContextURL contextURL) throws SerializerException {
@@ -290,19 +258,6 @@ public class ODataJsonSerializer extends AbstractODataSerializer {
     return entity.getId().toASCIIString();
   }
 
-  private boolean areKeyPredicateNamesSelected(SelectOption select, EdmEntityType type) {
-    if (select == null || ExpandSelectHelper.isAll(select)) {
-      return true;
-    }
-    final Set<String> selected = ExpandSelectHelper.getSelectedPropertyNames(select.getSelectItems());
-    for (String key : type.getKeyPredicateNames()) {
-      if (!selected.contains(key)) {
-        return false;
-      }
-    }
-    return true;
-  }
-
   public void writeEntity(final ServiceMetadata metadata, final EdmEntityType entityType, final Entity entity,
       final ContextURL contextURL, final ExpandOption expand, final SelectOption select, final boolean onlyReference,
       final JsonGenerator json)
@@ -339,11 +294,12 @@ public class ODataJsonSerializer extends AbstractODataSerializer {
       if (!isODataMetadataNone && !resolvedType.equals(entityType)) {
         json.writeStringField(Constants.JSON_TYPE, "#" + entity.getType());
       }
-      if (!isODataMetadataNone && !areKeyPredicateNamesSelected(select, resolvedType)) {
+      final JsonSerializationPlan plan = JsonSerializationPlan.get(metadata, resolvedType, select, expand);
+      if (!isODataMetadataNone && !plan.areKeyPredicateNamesSelected()) {
         json.writeStringField(Constants.JSON_ID, getEntityId(entity));
       }
-      writeProperties(metadata, resolvedType, entity.getProperties(), select, json);
-      writeNavigationProperties(metadata, resolvedType, entity, expand, json);
+      writeProperties(metadata, plan, plan.resolve(entity), json);
+      writeNavigationProperties(metadata, plan, entity, expand, json);
       json.writeEndObject();
     }
   }
@@ -400,17 +356,19 @@ public class ODataJsonSerializer extends AbstractODataSerializer {
       final List<Property> properties,
       final SelectOption select, final JsonGenerator json)
       throws IOException, SerializerException {
-    final boolean all = ExpandSelectHelper.isAll(select);
-    final Set<String> selected = all ? new HashSet<String>() :
-        ExpandSelectHelper.getSelectedPropertyNames(select.getSelectItems());
-    for (final String propertyName : type.getPropertyNames()) {
-      if (all || selected.contains(propertyName)) {
-        final EdmProperty edmProperty = type.getStructuralProperty(propertyName);
-        final Property property = findProperty(propertyName, properties);
-        final Set<List<String>> selectedPaths = all || edmProperty.isPrimitive() ? null :
-            ExpandSelectHelper.getSelectedPaths(select.getSelectItems(), propertyName);
-        writeProperty(metadata, edmProperty, property, selectedPaths, json);
-      }
+    final JsonSerializationPlan plan = JsonSerializationPlan.get(metadata, type, select, null);
+    writeProperties(metadata, plan, plan.resolve(properties), json);
+  }
+
+  private void writeProperties(final ServiceMetadata metadata, final JsonSerializationPlan plan,
+      final Property[] values, final JsonGenerator json)
+      throws IOException, SerializerException {
+    final List<JsonSerializationPlan.PropertyPlan> propertyPlans = plan.getProperties();
+    for (int index = 0; index < values.length; index++) {
+      final JsonSerializationPlan.PropertyPlan propertyPlan = propertyPlans.get(index);
+      json.writeFieldName(propertyPlan.getFieldName());
+      writePropertyContent(metadata, propertyPlan.getEdmProperty(), values[index], propertyPlan.getSelectedPaths(),
+          json);
     }
   }
 
@@ -418,28 +376,25 @@ public class ODataJsonSerializer extends AbstractODataSerializer {
       final EdmStructuredType type, final Linked linked, final ExpandOption expand,
       final JsonGenerator json) throws SerializerException, IOException {
     if (ExpandSelectHelper.hasExpand(expand)) {
-      final boolean expandAll = ExpandSelectHelper.isExpandAll(expand);
-      final Set<String> expanded = expandAll ? new HashSet<String>() :
-          ExpandSelectHelper.getExpandedPropertyNames(expand.getExpandItems());
-      for (final String propertyName : type.getNavigationPropertyNames()) {
-        if (expandAll || expanded.contains(propertyName)) {
-          final EdmNavigationProperty property = type.getNavigationProperty(propertyName);
-          final Link navigationLink = linked.getNavigationLink(property.getName());
-          final ExpandItem innerOptions = expandAll ? null :
-              ExpandSelectHelper.getExpandItem(expand.getExpandItems(), propertyName);
-          if (innerOptions != null && innerOptions.getLevelsOption() != null) {
-            throw new SerializerException("Expand option $levels is not supported.",
-                SerializerException.MessageKeys.NOT_IMPLEMENTED);
-          }
-          writeExpandedNavigationProperty(metadata, property, navigationLink,
-              innerOptions == null ? null : innerOptions.getExpandOption(),
-              innerOptions == null ? null : innerOptions.getSelectOption(),
-              innerOptions == null ? null : innerOptions.getCountOption(),
-              innerOptions == null ? false : innerOptions.hasCountPath(),
-              innerOptions == null ? false : innerOptions.isRef(),
-              json);
-        }
-      }
+      writeNavigationProperties(metadata, JsonSerializationPlan.get(metadata, type, null, expand), linked, expand,
+          json);
+    }
+  }
+
+  private void writeNavigationProperties(final ServiceMetadata metadata, final JsonSerializationPlan plan,
+      final Linked linked, final ExpandOption expand, final JsonGenerator json)
+      throws SerializerException, IOException {
+    for (final JsonSerializationPlan.NavigationPlan navigationPlan : plan.getNavigationProperties()) {
+      final EdmNavigationProperty property = navigationPlan.getProperty();
+      final Link navigationLink = linked.getNavigationLink(property.getName());
+      final ExpandItem innerOptions = navigationPlan.getInnerOptions(expand);
+      writeExpandedNavigationProperty(metadata, property, navigationLink,
+          innerOptions == null ? null : innerOptions.getExpandOption(),
+          innerOptions == null ? null : innerOptions.getSelectOption(),
+          innerOptions == null ? null : innerOptions.getCountOption(),
+          innerOptions == null ? false : innerOptions.hasCountPath(),
+          innerOptions == null ? false : innerOptions.isRef(),
+          json);
     }
   }
 
@@ -489,6 +444,12 @@ public class ODataJsonSerializer extends AbstractODataSerializer {
       final Set<List<String>> selectedPaths, final JsonGenerator json)
       throws IOException, SerializerException {
     json.writeFieldName(edmProperty.getName());
+    writePropertyContent(metadata, edmProperty, property, selectedPaths, json);
+  }
+
+  private void writePropertyContent(final ServiceMetadata metadata, final EdmProperty edmProperty,
+      final Property property, final Set<List<String>> selectedPaths, final JsonGenerator json)
+      throws IOException, SerializerException {
     if (property == null || property.isNull()) {
       if (edmProperty.isNullable() == Boolean.FALSE) {
         throw new SerializerException("Non-nullable property not present!",
@@ -590,6 +551,10 @@ public class ODataJsonSerializer extends AbstractODataSerializer {
       final Boolean isNullable, final Integer maxLength, final Integer precision, final Integer scale,
       final Boolean isUnicode, final JsonGenerator json)
       throws EdmPrimitiveTypeException, IOException, SerializerException {
+    if (property instanceof PrimitiveProperty && ((PrimitiveProperty) property).getKind() != null
+        && writeUnboxedValue(type, (PrimitiveProperty) property, json)) {
+      return;
+    }
     if (property.isPrimitive()) {
       writePrimitiveValue(type, property.asPrimitive(),
           isNullable, maxLength, precision, scale, isUnicode, json);
@@ -608,6 +573,9 @@ public class ODataJsonSerializer extends AbstractODataSerializer {
   protected void writePrimitiveValue(final EdmPrimitiveType type, final Object primitiveValue,
       final Boolean isNullable, final Integer maxLength, final Integer precision, final Integer scale,
       final Boolean isUnicode, final JsonGenerator json) throws EdmPrimitiveTypeException, IOException {
+    if (writeNumberOrBoolean(type, primitiveValue, json)) {
+      return;
+    }
     final String value = type.valueToString(primitiveValue,
         isNullable, maxLength, precision, scale, isUnicode);
     if (value == null) {
@@ -629,6 +597,80 @@ public class ODataJsonSerializer extends AbstractODataSerializer {
     }
   }
 
+  /**
+   * Writes integer, double, and boolean values directly as JSON numbers and booleans,
+   * without formatting them to a string first.
+   * Only value classes the type accepts without range check are handled; the facets of these
+   * types do not restrict the values.
+   * @return <code>true</code> if the value has been written
+   */
+  private boolean writeNumberOrBoolean(final EdmPrimitiveType type, final Object value, final JsonGenerator json)
+      throws IOException {
+    if (value instanceof Integer || value instanceof Short || value instanceof Byte) {
+      if (type == EdmPrimitiveTypeFactory.getInstance(EdmPrimitiveTypeKind.Int32)
+          || type == EdmPrimitiveTypeFactory.getInstance(EdmPrimitiveTypeKind.Int16) && !(value instanceof Integer)
+          || type == EdmPrimitiveTypeFactory.getInstance(EdmPrimitiveTypeKind.Int64) && !isIEEE754Compatible) {
+        json.writeNumber(((Number) value).intValue());
+        return true;
+      }
+    } else if (value instanceof Long) {
+      if (type == EdmPrimitiveTypeFactory.getInstance(EdmPrimitiveTypeKind.Int64) && !isIEEE754Compatible) {
+        json.writeNumber((Long) value);
+        return true;
+      }
+    } else if (value instanceof Double) {
+      return writeDouble(type, (Double) value, json);
+    } else if (value instanceof Boolean) {
+      if (type == EdmPrimitiveTypeFactory.getInstance(EdmPrimitiveTypeKind.Boolean)) {
+        json.writeBoolean((Boolean) value);
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Writes the value of a {@link PrimitiveProperty} without boxing it.
+   * @return <code>true</code> if the value has been written
+   */
+  private boolean writeUnboxedValue(final EdmPrimitiveType type, final PrimitiveProperty property,
+      final JsonGenerator json) throws IOException {
+    switch (property.getKind()) {
+    case BOOLEAN:
+      if (type == EdmPrimitiveTypeFactory.getInstance(EdmPrimitiveTypeKind.Boolean)) {
+        json.writeBoolean(property.getBoolean());
+        return true;
+      }
+      return false;
+    case INT:
+      if (type == EdmPrimitiveTypeFactory.getInstance(EdmPrimitiveTypeKind.Int32)
+          || type == EdmPrimitiveTypeFactory.getInstance(EdmPrimitiveTypeKind.Int64) && !isIEEE754Compatible) {
+        json.writeNumber(property.getInt());
+        return true;
+      }
+      return false;
+    case LONG:
+      if (type == EdmPrimitiveTypeFactory.getInstance(EdmPrimitiveTypeKind.Int64) && !isIEEE754Compatible) {
+        json.writeNumber(property.getLong());
+        return true;
+      }
+      return false;
+    default:
+      return writeDouble(type, property.getDouble(), json);
+    }
+  }
+
+  /** Writes finite doubles; infinity and NaN keep their OData string representation. */
+  private boolean writeDouble(final EdmPrimitiveType type, final double value, final JsonGenerator json)
+      throws IOException {
+    if (type == EdmPrimitiveTypeFactory.getInstance(EdmPrimitiveTypeKind.Double)
+        && !Double.isInfinite(value) && !Double.isNaN(value)) {
+      json.writeNumber(value);
+      return true;
+    }
+    return false;
+  }
+
   protected void writeComplexValue(final ServiceMetadata metadata, final Property complexProperty,
       final EdmComplexType type, final List<Property> properties,
       final Set<List<String>> selectedPaths, final JsonGenerator json)
@@ -665,220 +707,159 @@ public class ODataJsonSerializer extends AbstractODataSerializer {
   @Override
   public SerializerResult primitive(final ServiceMetadata metadata, final EdmPrimitiveType type,
       final Property property, final PrimitiveSerializerOptions options) throws SerializerException {
-    OutputStream outputStream = null;
-    SerializerException cachedException = null;
-    try {
-      final ContextURL contextURL = checkContextURL(options == null ? null : options.getContextURL());
-      CircleStreamBuffer buffer = new CircleStreamBuffer();
-      outputStream = buffer.getOutputStream();
-      JsonGenerator json = new JsonFactory().createGenerator(outputStream);
-      json.writeStartObject();
-      writeContextURL(contextURL, json);
-      writeMetadataETag(metadata, json);
-      if (property.isNull()) {
-        throw new SerializerException("Property value can not be null.", SerializerException.MessageKeys.NULL_INPUT);
-      } else {
+    final ContextURL contextURL = checkContextURL(options == null ? null : options.getContextURL());
+    if (property.isNull()) {
+      throw new SerializerException("Property value can not be null.", SerializerException.MessageKeys.NULL_INPUT);
+    }
+    return serialize(new ContentWriter() {
+      @Override
+      public void write(final OutputStream outputStream) throws IOException, SerializerException {
+        JsonGenerator json = new JsonFactory().createGenerator(outputStream);
+        json.writeStartObject();
+        writeContextURL(contextURL, json);
+        writeMetadataETag(metadata, json);
         json.writeFieldName(Constants.VALUE);
-        writePrimitive(type, property,
-            options == null ? null : options.isNullable(),
-            options == null ? null : options.getMaxLength(),
-            options == null ? null : options.getPrecision(),
-            options == null ? null : options.getScale(),
-            options == null ? null : options.isUnicode(), json);
+        try {
+          writePrimitive(type, property,
+              options == null ? null : options.isNullable(),
+              options == null ? null : options.getMaxLength(),
+              options == null ? null : options.getPrecision(),
+              options == null ? null : options.getScale(),
+              options == null ? null : options.isUnicode(), json);
+        } catch (final EdmPrimitiveTypeException e) {
+          throw new SerializerException("Wrong value for property!", e,
+              SerializerException.MessageKeys.WRONG_PROPERTY_VALUE,
+              property.getName(), property.getValue().toString());
+        }
+        json.writeEndObject();
+        json.close();
       }
-      json.writeEndObject();
-
-      json.close();
-      outputStream.close();
-      return SerializerResultImpl.with().content(buffer.getInputStream()).build();
-    } catch (final IOException e) {
-      cachedException =
-          new SerializerException(IO_EXCEPTION_TEXT, e, SerializerException.MessageKeys.IO_EXCEPTION);
-      throw cachedException;
-    } catch (final EdmPrimitiveTypeException e) {
-      cachedException = new SerializerException("Wrong value for property!", e,
-          SerializerException.MessageKeys.WRONG_PROPERTY_VALUE,
-          property.getName(), property.getValue().toString());
-      throw cachedException;
-    } finally {
-      closeCircleStreamBufferOutput(outputStream, cachedException);
-    }
+    }, options == null ? null : options.getODataContentWriteErrorCallback());
   }
 
   @Override
   public SerializerResult complex(final ServiceMetadata metadata, final EdmComplexType type,
       final Property property, final ComplexSerializerOptions options) throws SerializerException {
-    OutputStream outputStream = null;
-    SerializerException cachedException = null;
-    try {
-      final ContextURL contextURL = checkContextURL(options == null ? null : options.getContextURL());
-      CircleStreamBuffer buffer = new CircleStreamBuffer();
-      outputStream = buffer.getOutputStream();
-      JsonGenerator json = new JsonFactory().createGenerator(outputStream);
-      json.writeStartObject();
-      writeContextURL(contextURL, json);
-      writeMetadataETag(metadata, json);
-      final EdmComplexType resolvedType = resolveComplexType(metadata, type, property.getType());
-      if (!isODataMetadataNone && !resolvedType.equals(type)) {
-        json.writeStringField(Constants.JSON_TYPE, "#" + property.getType());
-      }
-      final List<Property> values =
-          property.isNull() ? Collections.<Property> emptyList() : property.asComplex().getValue();
-      writeProperties(metadata, type, values, options == null ? null : options.getSelect(), json);
-      if (!property.isNull() && property.isComplex()) {
-        writeNavigationProperties(metadata, type, property.asComplex(),
-            options == null ? null : options.getExpand(), json);
+    final ContextURL contextURL = checkContextURL(options == null ? null : options.getContextURL());
+    final EdmComplexType resolvedType = resolveComplexType(metadata, type, property.getType());
+    return serialize(new ContentWriter() {
+      @Override
+      public void write(final OutputStream outputStream) throws IOException, SerializerException {
+        JsonGenerator json = new JsonFactory().createGenerator(outputStream);
+        json.writeStartObject();
+        writeContextURL(contextURL, json);
+        writeMetadataETag(metadata, json);
+        if (!isODataMetadataNone && !resolvedType.equals(type)) {
+          json.writeStringField(Constants.JSON_TYPE, "#" + property.getType());
+        }
+        final List<Property> values =
+            property.isNull() ? Collections.<Property> emptyList() : property.asComplex().getValue();
+        writeProperties(metadata, type, values, options == null ? null : options.getSelect(), json);
+        if (!property.isNull() && property.isComplex()) {
+          writeNavigationProperties(metadata, type, property.asComplex(),
+              options == null ? null : options.getExpand(), json);
+        }
+        json.writeEndObject();
+        json.close();
       }
-      json.writeEndObject();
-
-      json.close();
-      outputStream.close();
-      return SerializerResultImpl.with().content(buffer.getInputStream()).build();
-    } catch (final IOException e) {
-      cachedException =
-          new SerializerException(IO_EXCEPTION_TEXT, e, SerializerException.MessageKeys.IO_EXCEPTION);
-      throw cachedException;
-    } finally {
-      closeCircleStreamBufferOutput(outputStream, cachedException);
-    }
+    }, options == null ? null : options.getODataContentWriteErrorCallback());
   }
 
   @Override
   public SerializerResult primitiveCollection(final ServiceMetadata metadata, final EdmPrimitiveType type,
       final Property property, final PrimitiveSerializerOptions options) throws SerializerException {
-    OutputStream outputStream = null;
-    SerializerException cachedException = null;
-    try {
-      final ContextURL contextURL = checkContextURL(options == null ? null : options.getContextURL());
-      CircleStreamBuffer buffer = new CircleStreamBuffer();
-      outputStream = buffer.getOutputStream();
-      JsonGenerator json = new JsonFactory().createGenerator(outputStream);
-      json.writeStartObject();
-      writeContextURL(contextURL, json);
-      writeMetadataETag(metadata, json);
-      json.writeFieldName(Constants.VALUE);
-      writePrimitiveCollection(type, property,
-          options == null ? null : options.isNullable(),
-          options == null ? null : options.getMaxLength(),
-          options == null ? null : options.getPrecision(),
-          options == null ? null : options.getScale(),
-          options == null ? null : options.isUnicode(), json);
-      json.writeEndObject();
-
-      json.close();
-      outputStream.close();
-      return SerializerResultImpl.with().content(buffer.getInputStream()).build();
-    } catch (final IOException e) {
-      cachedException =
-          new SerializerException(IO_EXCEPTION_TEXT, e, SerializerException.MessageKeys.IO_EXCEPTION);
-      throw cachedException;
-    } finally {
-      closeCircleStreamBufferOutput(outputStream, cachedException);
-    }
+    final ContextURL contextURL = checkContextURL(options == null ? null : options.getContextURL());
+    return serialize(new ContentWriter() {
+      @Override
+      public void write(final OutputStream outputStream) throws IOException, SerializerException {
+        JsonGenerator json = new JsonFactory().createGenerator(outputStream);
+        json.writeStartObject();
+        writeContextURL(contextURL, json);
+        writeMetadataETag(metadata, json);
+        json.writeFieldName(Constants.VALUE);
+        writePrimitiveCollection(type, property,
+            options == null ? null : options.isNullable(),
+            options == null ? null : options.getMaxLength(),
+            options == null ? null : options.getPrecision(),
+            options == null ? null : options.getScale(),
+            options == null ? null : options.isUnicode(), json);
+        json.writeEndObject();
+        json.close();
+      }
+    }, options == null ? null : options.getODataContentWriteErrorCallback());
   }
 
   @Override
   public SerializerResult complexCollection(final ServiceMetadata metadata, final EdmComplexType type,
       final Property property, final ComplexSerializerOptions options) throws SerializerException {
-    OutputStream outputStream = null;
-    SerializerException cachedException = null;
-    try {
-      final ContextURL contextURL = checkContextURL(options == null ? null : options.getContextURL());
-      CircleStreamBuffer buffer = new CircleStreamBuffer();
-      outputStream = buffer.getOutputStream();
-      JsonGenerator json = new JsonFactory().createGenerator(outputStream);
-      json.writeStartObject();
-      writeContextURL(contextURL, json);
-      writeMetadataETag(metadata, json);
-      json.writeFieldName(Constants.VALUE);
-      writeComplexCollection(metadata, type, property, null, json);
-      json.writeEndObject();
-
-      json.close();
-      outputStream.close();
-      return SerializerResultImpl.with().content(buffer.getInputStream()).build();
-    } catch (final IOException e) {
-      cachedException =
-          new SerializerException(IO_EXCEPTION_TEXT, e, SerializerException.MessageKeys.IO_EXCEPTION);
-      throw cachedException;
-    } finally {
-      closeCircleStreamBufferOutput(outputStream, cachedException);
-    }
+    final ContextURL contextURL = checkContextURL(options == null ? null : options.getContextURL());
+    return serialize(new ContentWriter() {
+      @Override
+      public void write(final OutputStream outputStream) throws IOException, SerializerException {
+        JsonGenerator json = new JsonFactory().createGenerator(outputStream);
+        json.writeStartObject();
+        writeContextURL(contextURL, json);
+        writeMetadataETag(metadata, json);
+        json.writeFieldName(Constants.VALUE);
+        writeComplexCollection(metadata, type, property, null, json);
+        json.writeEndObject();
+        json.close();
+      }
+    }, options == null ? null : options.getODataContentWriteErrorCallback());
   }
 
   @Override
   public SerializerResult reference(final ServiceMetadata metadata, final EdmEntitySet edmEntitySet,
       final Entity entity, final ReferenceSerializerOptions options) throws SerializerException {
-    OutputStream outputStream = null;
-    SerializerException cachedException = null;
-
-    try {
-      final ContextURL contextURL = checkContextURL(options == null ? null : options.getContextURL());
-      CircleStreamBuffer buffer = new CircleStreamBuffer();
-      final UriHelper uriHelper = new UriHelperImpl();
-      outputStream = buffer.getOutputStream();
-      final JsonGenerator json = new JsonFactory().createGenerator(outputStream);
+    final ContextURL contextURL = checkContextURL(options == null ? null : options.getContextURL());
+    return serialize(new ContentWriter() {
+      @Override
+      public void write(final OutputStream outputStream) throws IOException, SerializerException {
+        final UriHelper uriHelper = new UriHelperImpl();
+        final JsonGenerator json = new JsonFactory().createGenerator(outputStream);
 
-      json.writeStartObject();
-      writeContextURL(contextURL, json);
-      json.writeStringField(Constants.JSON_ID, uriHelper.buildCanonicalURL(edmEntitySet, entity));
-      json.writeEndObject();
+        json.writeStartObject();
+        writeContextURL(contextURL, json);
+        json.writeStringField(Constants.JSON_ID, uriHelper.buildCanonicalURL(edmEntitySet, entity));
+        json.writeEndObject();
 
-      json.close();
-      outputStream.close();
-      return SerializerResultImpl.with().content(buffer.getInputStream()).build();
-    } catch (final IOException e) {
-      cachedException =
-          new SerializerException(IO_EXCEPTION_TEXT, e, SerializerException.MessageKeys.IO_EXCEPTION);
-      throw cachedException;
-    } finally {
-      closeCircleStreamBufferOutput(outputStream, cachedException);
-    }
+        json.close();
+      }
+    }, options == null ? null : options.getODataContentWriteErrorCallback());
   }
 
   @Override
   public SerializerResult referenceCollection(final ServiceMetadata metadata, final EdmEntitySet edmEntitySet,
       final AbstractEntityCollection entityCollection, final ReferenceCollectionSerializerOptions options)
       throws SerializerException {
-    OutputStream outputStream = null;
-    SerializerException cachedException = null;
-
-    try {
-      final ContextURL contextURL = checkContextURL(options == null ? null : options.getContextURL());
-      CircleStreamBuffer buffer = new CircleStreamBuffer();
-      final UriHelper uriHelper = new UriHelperImpl();
-      outputStream = buffer.getOutputStream();
-      final JsonGenerator json = new JsonFactory().createGenerator(outputStream);
-      json.writeStartObject();
-
-      writeContextURL(contextURL, json);
-      if (options != null && options.getCount() != null && options.getCount().getValue()) {
-        writeCount(entityCollection, json);
-      }
-
-      json.writeArrayFieldStart(Constants.VALUE);
-      for (final Entity entity : entityCollection) {
+    final ContextURL contextURL = checkContextURL(options == null ? null : options.getContextURL());
+    return serialize(new ContentWriter() {
+      @Override
+      public void write(final OutputStream outputStream) throws IOException, SerializerException {
+        final UriHelper uriHelper = new UriHelperImpl();
+        final JsonGenerator json = new JsonFactory().createGenerator(outputStream);
         json.writeStartObject();
-        json.writeStringField(Constants.JSON_ID, uriHelper.buildCanonicalURL(edmEntitySet, entity));
-        json.writeEndObject();
-      }
-      json.writeEndArray();
 
-      writeNextLink(entityCollection, json);
+        writeContextURL(contextURL, json);
+        if (options != null && options.getCount() != null && options.getCount().getValue()) {
+          writeCount(entityCollection, json);
+        }
 
-      json.writeEndObject();
+        json.writeArrayFieldStart(Constants.VALUE);
+        for (final Entity entity : entityCollection) {
+          json.writeStartObject();
+          json.writeStringField(Constants.JSON_ID, uriHelper.buildCanonicalURL(edmEntitySet, entity));
+          json.writeEndObject();
+        }
+        json.writeEndArray();
 
-      json.close();
-      outputStream.close();
-      return SerializerResultImpl.with().content(buffer.getInputStream()).build();
-    } catch (final IOException e) {
-      cachedException =
-          new SerializerException(IO_EXCEPTION_TEXT, e, SerializerException.MessageKeys.IO_EXCEPTION);
-      throw cachedException;
-    } finally {
-      closeCircleStreamBufferOutput(outputStream, cachedException);
-    }
+        writeNextLink(entityCollection, json);
+
+        json.writeEndObject();
 
+        json.close();
+      }
+    }, options == null ? null : options.getODataContentWriteErrorCallback());
   }
 
   void writeContextURL(final ContextURL contextURL, final JsonGenerator json) throws IOException {
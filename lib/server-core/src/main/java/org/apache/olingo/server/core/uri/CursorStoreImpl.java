@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.uri;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.olingo.server.api.uri.CursorStore;
+
+/**
+ * Store of paging cursors with a maximum size and a fixed time to live.
+ * <p/>
+ * The cursors are kept in insertion order; since all of them live equally long,
+ * the expired cursors are always the eldest ones.
+ */
+public class CursorStoreImpl<T> implements CursorStore<T> {
+
+  private final Map<String, StoredCursor<T>> entries;
+  private final long timeToLive;
+
+  public CursorStoreImpl(final int maximumSize, final long timeToLive, final TimeUnit unit) {
+    if (maximumSize <= 0) {
+      throw new IllegalArgumentException("The maximum size must be greater than zero.");
+    }
+    if (timeToLive <= 0) {
+      throw new IllegalArgumentException("The time to live must be greater than zero.");
+    }
+    this.timeToLive = unit.toNanos(timeToLive);
+    entries = new LinkedHashMap<String, StoredCursor<T>>() {
+      private static final long serialVersionUID = 1L;
+
+      @Override
+      protected boolean removeEldestEntry(final Map.Entry<String, StoredCursor<T>> eldest) {
+        return size() > maximumSize;
+      }
+    };
+  }
+
+  @Override
+  public synchronized String put(final T cursor) {
+    if (cursor == null) {
+      throw new IllegalArgumentException("The cursor must not be null.");
+    }
+    final long now = System.nanoTime();
+    removeExpired(now);
+    final String token = UUID.randomUUID().toString();
+    entries.put(token, new StoredCursor<T>(cursor, now + timeToLive));
+    return token;
+  }
+
+  @Override
+  public synchronized T get(final String token) {
+    final StoredCursor<T> entry = entries.get(token);
+    if (entry == null) {
+      return null;
+    } else if (entry.isExpired(System.nanoTime())) {
+      entries.remove(token);
+      return null;
+    }
+    return entry.cursor;
+  }
+
+  @Override
+  public synchronized int size() {
+    removeExpired(System.nanoTime());
+    return entries.size();
+  }
+
+  @Override
+  public synchronized void clear() {
+    entries.clear();
+  }
+
+  private void removeExpired(final long now) {
+    final Iterator<StoredCursor<T>> iterator = entries.values().iterator();
+    while (iterator.hasNext() && iterator.next().isExpired(now)) {
+      iterator.remove();
+    }
+  }
+
+  private static final class StoredCursor<T> {
+    private final T cursor;
+    private final long expiresAt;
+
+    StoredCursor(final T cursor, final long expiresAt) {
+      this.cursor = cursor;
+      this.expiresAt = expiresAt;
+    }
+
+    boolean isExpired(final long now) {
+      return now - expiresAt >= 0;
+    }
+  }
+}
@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.uri;
+
+import java.util.List;
+
+import org.apache.olingo.commons.api.edm.EdmEntityType;
+import org.apache.olingo.server.api.uri.UriInfo;
+import org.apache.olingo.server.api.uri.UriInfoAll;
+import org.apache.olingo.server.api.uri.UriInfoBatch;
+import org.apache.olingo.server.api.uri.UriInfoCrossjoin;
+import org.apache.olingo.server.api.uri.UriInfoEntityId;
+import org.apache.olingo.server.api.uri.UriInfoKind;
+import org.apache.olingo.server.api.uri.UriInfoMetadata;
+import org.apache.olingo.server.api.uri.UriInfoResource;
+import org.apache.olingo.server.api.uri.UriInfoService;
+import org.apache.olingo.server.api.uri.UriResource;
+import org.apache.olingo.server.api.uri.queryoption.AliasQueryOption;
+import org.apache.olingo.server.api.uri.queryoption.ApplyOption;
+import org.apache.olingo.server.api.uri.queryoption.CountOption;
+import org.apache.olingo.server.api.uri.queryoption.CustomQueryOption;
+import org.apache.olingo.server.api.uri.queryoption.ExpandOption;
+import org.apache.olingo.server.api.uri.queryoption.FilterOption;
+import org.apache.olingo.server.api.uri.queryoption.FormatOption;
+import org.apache.olingo.server.api.uri.queryoption.IdOption;
+import org.apache.olingo.server.api.uri.queryoption.OrderByOption;
+import org.apache.olingo.server.api.uri.queryoption.SearchOption;
+import org.apache.olingo.server.api.uri.queryoption.SelectOption;
+import org.apache.olingo.server.api.uri.queryoption.SkipOption;
+import org.apache.olingo.server.api.uri.queryoption.SkipTokenOption;
+import org.apache.olingo.server.api.uri.queryoption.SystemQueryOption;
+import org.apache.olingo.server.api.uri.queryoption.TopOption;
+
+/**
+ * Read-only view of a URI info which can be shared between requests.
+ * <p/>
+ * The view has no setters and cannot be cast to {@link UriInfoImpl};
+ * the collections it returns are unmodifiable already.
+ */
+public final class UnmodifiableUriInfo implements UriInfo {
+
+  private final UriInfo uriInfo;
+
+  private UnmodifiableUriInfo(final UriInfo uriInfo) {
+    this.uriInfo = uriInfo;
+  }
+
+  /**
+   * Returns a read-only view of the given URI info.
+   * @param uriInfo the URI info
+   * @return the URI info itself if it is a read-only view already, otherwise a new view
+   */
+  public static UriInfo of(final UriInfo uriInfo) {
+    return uriInfo instanceof UnmodifiableUriInfo ? uriInfo : new UnmodifiableUriInfo(uriInfo);
+  }
+
+  @Override
+  public UriInfoKind getKind() {
+    return uriInfo.getKind();
+  }
+
+  @Override
+  public UriInfoAll asUriInfoAll() {
+    return this;
+  }
+
+  @Override
+  public UriInfoBatch asUriInfoBatch() {
+    return this;
+  }
+
+  @Override
+  public UriInfoCrossjoin asUriInfoCrossjoin() {
+    return this;
+  }
+
+  @Override
+  public UriInfoEntityId asUriInfoEntityId() {
+    return this;
+  }
+
+  @Override
+  public UriInfoService asUriInfoService() {
+    return this;
+  }
+
+  @Override
+  public UriInfoMetadata asUriInfoMetadata() {
+    return this;
+  }
+
+  @Override
+  public UriInfoResource asUriInfoResource() {
+    return this;
+  }
+
+  @Override
+  public List<String> getEntitySetNames() {
+    return uriInfo.getEntitySetNames();
+  }
+
+  @Override
+  public EdmEntityType getEntityTypeCast() {
+    return uriInfo.getEntityTypeCast();
+  }
+
+  @Override
+  public List<UriResource> getUriResourceParts() {
+    return uriInfo.getUriResourceParts();
+  }
+
+  @Override
+  public ExpandOption getExpandOption() {
+    return uriInfo.getExpandOption();
+  }
+
+  @Override
+  public FilterOption getFilterOption() {
+    return uriInfo.getFilterOption();
+  }
+
+  @Override
+  public FormatOption getFormatOption() {
+    return uriInfo.getFormatOption();
+  }
+
+  @Override
+  public IdOption getIdOption() {
+    return uriInfo.getIdOption();
+  }
+
+  @Override
+  public CountOption getCountOption() {
+    return uriInfo.getCountOption();
+  }
+
+  @Override
+  public OrderByOption getOrderByOption() {
+    return uriInfo.getOrderByOption();
+  }
+
+  @Override
+  public SearchOption getSearchOption() {
+    return uriInfo.getSearchOption();
+  }
+
+  @Override
+  public SelectOption getSelectOption() {
+    return uriInfo.getSelectOption();
+  }
+
+  @Override
+  public SkipOption getSkipOption() {
+    return uriInfo.getSkipOption();
+  }
+
+  @Override
+  public SkipTokenOption getSkipTokenOption() {
+    return uriInfo.getSkipTokenOption();
+  }
+
+  @Override
+  public TopOption getTopOption() {
+    return uriInfo.getTopOption();
+  }
+
+  @Override
+  public ApplyOption getApplyOption() {
+    return uriInfo.getApplyOption();
+  }
+
+  @Override
+  public List<SystemQueryOption> getSystemQueryOptions() {
+    return uriInfo.getSystemQueryOptions();
+  }
+
+  @Override
+  public String getValueForAlias(final String alias) {
+    return uriInfo.getValueForAlias(alias);
+  }
+
+  @Override
+  public List<AliasQueryOption> getAliases() {
+    return uriInfo.getAliases();
+  }
+
+  @Override
+  public List<CustomQueryOption> getCustomQueryOptions() {
+    return uriInfo.getCustomQueryOptions();
+  }
+
+  @Override
+  public String getFragment() {
+    return uriInfo.getFragment();
+  }
+}
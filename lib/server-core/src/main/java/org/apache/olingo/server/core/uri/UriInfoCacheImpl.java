@@ -0,0 +1,196 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.uri;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+import org.apache.olingo.commons.api.edm.Edm;
+import org.apache.olingo.commons.api.http.HttpMethod;
+import org.apache.olingo.server.api.uri.UriInfo;
+import org.apache.olingo.server.api.uri.UriInfoCache;
+
+/**
+ * Cache of parsed and validated URIs with approximate least-recently-used eviction.
+ * <p/>
+ * Lookups do not lock; each entry records when it has been used last.
+ * When the cache grows beyond its maximum size, one thread at a time evicts the least
+ * recently used entries, about an eighth of the maximum size more than necessary,
+ * so that the cost of an eviction is shared by many insertions.
+ * The cached URI infos are read-only views shared by all requests.
+ */
+public class UriInfoCacheImpl implements UriInfoCache {
+
+  private static final Comparator<Map.Entry<Key, Entry>> LEAST_RECENTLY_USED =
+      new Comparator<Map.Entry<Key, Entry>>() {
+        @Override
+        public int compare(final Map.Entry<Key, Entry> first, final Map.Entry<Key, Entry> second) {
+          final long firstUsed = first.getValue().lastUsed;
+          final long secondUsed = second.getValue().lastUsed;
+          return firstUsed < secondUsed ? -1 : firstUsed == secondUsed ? 0 : 1;
+        }
+      };
+
+  private final ConcurrentMap<Key, Entry> entries = new ConcurrentHashMap<Key, Entry>();
+  private final int maximumSize;
+  private final int evictionBatchSize;
+  private final ReentrantLock evictionLock = new ReentrantLock();
+  private final AtomicLong clock = new AtomicLong();
+  private final AtomicLong hitCount = new AtomicLong();
+  private final AtomicLong missCount = new AtomicLong();
+  private volatile Edm edm;
+
+  public UriInfoCacheImpl(final int maximumSize) {
+    if (maximumSize <= 0) {
+      throw new IllegalArgumentException("The maximum size must be greater than zero.");
+    }
+    this.maximumSize = maximumSize;
+    evictionBatchSize = maximumSize / 8;
+  }
+
+  /**
+   * Gets the cached URI info for a request.
+   * @return the read-only URI info or <code>null</code> if the request URI is not in the cache
+   * for the given metadata
+   */
+  public UriInfo get(final Edm edm, final HttpMethod method, final String path, final String query) {
+    final Entry entry = entries.get(new Key(method, path, query));
+    if (entry == null || entry.edm != edm) {
+      missCount.incrementAndGet();
+      return null;
+    }
+    entry.lastUsed = clock.incrementAndGet();
+    hitCount.incrementAndGet();
+    return entry.uriInfo;
+  }
+
+  /**
+   * Adds the URI info of a successfully validated request.
+   * @return the read-only URI info as it is cached
+   */
+  public UriInfo put(final Edm edm, final HttpMethod method, final String path, final String query,
+      final UriInfo uriInfo) {
+    if (edm != this.edm) {
+      synchronized (this) {
+        if (edm != this.edm) {
+          entries.clear();
+          this.edm = edm;
+        }
+      }
+    }
+    final Entry entry = new Entry(edm, UnmodifiableUriInfo.of(uriInfo), clock.incrementAndGet());
+    entries.put(new Key(method, path, query), entry);
+    if (entries.size() > maximumSize) {
+      evict();
+    }
+    return entry.uriInfo;
+  }
+
+  private void evict() {
+    if (!evictionLock.tryLock()) {
+      return;
+    }
+    try {
+      final int excess = entries.size() - maximumSize;
+      if (excess > 0) {
+        List<Map.Entry<Key, Entry>> candidates = new ArrayList<Map.Entry<Key, Entry>>(entries.entrySet());
+        Collections.sort(candidates, LEAST_RECENTLY_USED);
+        final int count = Math.min(excess + evictionBatchSize, candidates.size());
+        for (int index = 0; index < count; index++) {
+          entries.remove(candidates.get(index).getKey(), candidates.get(index).getValue());
+        }
+      }
+    } finally {
+      evictionLock.unlock();
+    }
+  }
+
+  @Override
+  public long getHitCount() {
+    return hitCount.get();
+  }
+
+  @Override
+  public long getMissCount() {
+    return missCount.get();
+  }
+
+  @Override
+  public int size() {
+    return entries.size();
+  }
+
+  @Override
+  public void clear() {
+    entries.clear();
+  }
+
+  private static final class Entry {
+    private final Edm edm;
+    private final UriInfo uriInfo;
+    private volatile long lastUsed;
+
+    Entry(final Edm edm, final UriInfo uriInfo, final long lastUsed) {
+      this.edm = edm;
+      this.uriInfo = uriInfo;
+      this.lastUsed = lastUsed;
+    }
+  }
+
+  private static final class Key {
+    private final HttpMethod method;
+    private final String path;
+    private final String query;
+
+    Key(final HttpMethod method, final String path, final String query) {
+      this.method = method;
+      this.path = path;
+      this.query = query;
+    }
+
+    @Override
+    public boolean equals(final Object obj) {
+      if (this == obj) {
+        return true;
+      }
+      if (!(obj instanceof Key)) {
+        return false;
+      }
+      final Key other = (Key) obj;
+      return method == other.method
+          && (path == null ? other.path == null : path.equals(other.path))
+          && (query == null ? other.query == null : query.equals(other.query));
+    }
+
+    @Override
+    public int hashCode() {
+      int result = method == null ? 0 : method.hashCode();
+      result = 31 * result + (path == null ? 0 : path.hashCode());
+      result = 31 * result + (query == null ? 0 : query.hashCode());
+      return result;
+    }
+  }
+}
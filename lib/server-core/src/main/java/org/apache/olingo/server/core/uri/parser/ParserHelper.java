@@ -60,6 +60,42 @@ import org.apache.olingo.server.core.uri.validator.UriValidationException;
 
 public class ParserHelper {
 
+  private static final TokenKind[] PRIMITIVE_VALUES = {
+      TokenKind.NULL,
+      TokenKind.BooleanValue,
+      TokenKind.StringValue,
+
+      // The order of the next seven expressions is important in order to avoid
+      // finding partly parsed tokens (counter-intuitive as it may be, even a GUID may start with digits ...).
+      TokenKind.DoubleValue,
+      TokenKind.DecimalValue,
+      TokenKind.GuidValue,
+      TokenKind.DateTimeOffsetValue,
+      TokenKind.DateValue,
+      TokenKind.TimeOfDayValue,
+      TokenKind.IntegerValue,
+
+      TokenKind.DurationValue,
+      TokenKind.BinaryValue,
+      TokenKind.EnumValue,
+
+      // Geography and geometry literals are defined to be primitive,
+      // although they contain several parts with their own meaning.
+      TokenKind.GeographyPoint,
+      TokenKind.GeometryPoint,
+      TokenKind.GeographyLineString,
+      TokenKind.GeometryLineString,
+      TokenKind.GeographyPolygon,
+      TokenKind.GeometryPolygon,
+      TokenKind.GeographyMultiPoint,
+      TokenKind.GeometryMultiPoint,
+      TokenKind.GeographyMultiLineString,
+      TokenKind.GeometryMultiLineString,
+      TokenKind.GeographyMultiPolygon,
+      TokenKind.GeometryMultiPolygon,
+      TokenKind.GeographyCollection,
+      TokenKind.GeometryCollection };
+
   private static final OData odata = new ODataImpl();
 
   protected static final Map<TokenKind, EdmPrimitiveTypeKind> tokenToPrimitiveType;
@@ -118,41 +154,7 @@ public class ParserHelper {
   }
 
   protected static TokenKind nextPrimitiveValue(UriTokenizer tokenizer) {
-    return next(tokenizer,
-        TokenKind.NULL,
-        TokenKind.BooleanValue,
-        TokenKind.StringValue,
-
-        // The order of the next seven expressions is important in order to avoid
-        // finding partly parsed tokens (counter-intuitive as it may be, even a GUID may start with digits ...).
-        TokenKind.DoubleValue,
-        TokenKind.DecimalValue,
-        TokenKind.GuidValue,
-        TokenKind.DateTimeOffsetValue,
-        TokenKind.DateValue,
-        TokenKind.TimeOfDayValue,
-        TokenKind.IntegerValue,
-
-        TokenKind.DurationValue,
-        TokenKind.BinaryValue,
-        TokenKind.EnumValue,
-
-        // Geography and geometry literals are defined to be primitive,
-        // although they contain several parts with their own meaning.
-        TokenKind.GeographyPoint,
-        TokenKind.GeometryPoint,
-        TokenKind.GeographyLineString,
-        TokenKind.GeometryLineString,
-        TokenKind.GeographyPolygon,
-        TokenKind.GeometryPolygon,
-        TokenKind.GeographyMultiPoint,
-        TokenKind.GeometryMultiPoint,
-        TokenKind.GeographyMultiLineString,
-        TokenKind.GeometryMultiLineString,
-        TokenKind.GeographyMultiPolygon,
-        TokenKind.GeometryMultiPolygon,
-        TokenKind.GeographyCollection,
-        TokenKind.GeometryCollection);
+    return next(tokenizer, PRIMITIVE_VALUES);
   }
 
   protected static List<UriParameter> parseFunctionParameters(UriTokenizer tokenizer,
@@ -199,8 +201,7 @@ public class ParserHelper {
         throw new UriParserSemanticException("Wrong parameter value.",
             UriParserSemanticException.MessageKeys.INVALID_KEY_VALUE, "");
       } else {
-        final String literalValue = tokenizer.getText();
-        parameter.setText("null".equals(literalValue) ? null : literalValue);
+        parameter.setText(tokenizer.isText("null") ? null : tokenizer.getText());
       }
       parameters.add(parameter);
     } while (tokenizer.next(TokenKind.COMMA));
@@ -227,6 +227,32 @@ public class UriTokenizer {
     return parseString.substring(startIndex, index);
   }
 
+  /**
+   * Returns the start position in the parse string of the token found by the last successful
+   * {@link #next(TokenKind)} call.
+   * Together with {@link #getTokenEnd()} this allows to inspect the token without creating a string.
+   */
+  public int getTokenStart() {
+    return startIndex;
+  }
+
+  /**
+   * Returns the position in the parse string after the token found by the last successful
+   * {@link #next(TokenKind)} call.
+   * @see #getTokenStart()
+   */
+  public int getTokenEnd() {
+    return index;
+  }
+
+  /**
+   * Determines whether the token found by the last successful {@link #next(TokenKind)} call
+   * is equal to the given text, without creating a string for the token.
+   */
+  public boolean isText(final String text) {
+    return text.length() == index - startIndex && parseString.startsWith(text, startIndex);
+  }
+
   /**
    * Tries to find a token of the given token kind at the current index.
    * The order in which this method is called with different token kinds is important,
@@ -723,8 +749,7 @@ public class UriTokenizer {
    */
   private boolean nextConstantIgnoreCase(final String constant) {
     final int length = constant.length();
-    if (index + length <= parseString.length()
-        && constant.equalsIgnoreCase(parseString.substring(index, index + length))) {
+    if (parseString.regionMatches(true, index, constant, 0, length)) {
       index += length;
       return true;
     } else {
@@ -1218,7 +1243,7 @@ public class UriTokenizer {
     final int lastGoodIndex = index;
     if (nextCharacter('(') && nextPosition()) {
       int count = 1;
-      final String firstPosition = isRing ? parseString.substring(lastGoodIndex + 1, index) : null;
+      final int firstPositionLength = index - lastGoodIndex - 1;
       int positionStart = -1;
       while (nextCharacter(',')) {
         positionStart = index;
@@ -1234,8 +1259,9 @@ public class UriTokenizer {
         return false;
       }
       if (isRing) {
-        final String lastPosition = parseString.substring(positionStart, index);
-        if (!lastPosition.equals(firstPosition)) {
+        // The positions are compared in place in the parse string.
+        if (index - positionStart != firstPositionLength
+            || !parseString.regionMatches(positionStart, parseString, lastGoodIndex + 1, firstPositionLength)) {
           index = lastGoodIndex;
           return false;
         }
@@ -1514,6 +1540,7 @@ public class UriTokenizer {
   }
 
   private boolean nextWord() {
+    final int start = index;
     int count = 0;
     while (index < parseString.length()) {
       final int code = parseString.codePointAt(index);
@@ -1525,8 +1552,11 @@ public class UriTokenizer {
         break;
       }
     }
-    final String word = parseString.substring(index - count, index);
-    return count > 0 && !("OR".equals(word) || "AND".equals(word) || "NOT".equals(word));
+    return count > 0 && !(isWord(start, "OR") || isWord(start, "AND") || isWord(start, "NOT"));
+  }
+
+  private boolean isWord(final int start, final String word) {
+    return index - start == word.length() && parseString.startsWith(word, start);
   }
 
   private boolean nextPhrase() {
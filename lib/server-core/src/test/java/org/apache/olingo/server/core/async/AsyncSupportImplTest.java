@@ -0,0 +1,243 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.async;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.olingo.commons.api.http.HttpHeader;
+import org.apache.olingo.commons.api.http.HttpMethod;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.ODataHandler;
+import org.apache.olingo.server.api.ODataRequest;
+import org.apache.olingo.server.api.ODataResponse;
+import org.apache.olingo.server.api.OlingoExtension;
+import org.apache.olingo.server.api.processor.Processor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class AsyncSupportImplTest {
+
+  private static final String BASE_URI = "http://localhost/odata";
+
+  private ExecutorService executor;
+  private AsyncSupportImpl asyncSupport;
+  private CountDownLatch release;
+
+  @Before
+  public void setUp() {
+    executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(1));
+    asyncSupport = new AsyncSupportImpl(executor);
+    release = new CountDownLatch(1);
+  }
+
+  @After
+  public void tearDown() {
+    release.countDown();
+    asyncSupport.clear();
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void statusMonitorRequest() {
+    assertTrue(asyncSupport.isStatusMonitorRequest(createRequest(HttpMethod.GET, "/$async/1")));
+    assertTrue(asyncSupport.isStatusMonitorRequest(createRequest(HttpMethod.GET, "$async/1/result")));
+    assertFalse(asyncSupport.isStatusMonitorRequest(createRequest(HttpMethod.GET, "/ESAllPrim")));
+    assertFalse(asyncSupport.isStatusMonitorRequest(createRequest(HttpMethod.GET, "/$asyncX")));
+  }
+
+  @Test
+  public void processAndRetrieveResult() throws Exception {
+    final ODataRequest request = createRequest(HttpMethod.POST, "/ESAllPrim");
+    request.setBody(new ByteArrayInputStream("request body".getBytes("UTF-8")));
+    final ODataResponse accepted = asyncSupport.submit(request, new EchoHandler());
+    assertEquals(HttpStatusCode.ACCEPTED.getStatusCode(), accepted.getStatusCode());
+    final String monitor = accepted.getHeader(HttpHeader.LOCATION);
+
+    ODataResponse response = asyncSupport.handleStatusMonitorRequest(createRequest(HttpMethod.GET, monitor));
+    assertEquals(HttpStatusCode.ACCEPTED.getStatusCode(), response.getStatusCode());
+    assertEquals(monitor, response.getHeader(HttpHeader.LOCATION));
+    assertEquals(HttpStatusCode.ACCEPTED.getStatusCode(),
+        asyncSupport.handleStatusMonitorRequest(createRequest(HttpMethod.GET, monitor + "/result")).getStatusCode());
+
+    release.countDown();
+    response = waitForResult(monitor);
+    assertEquals(HttpStatusCode.SEE_OTHER.getStatusCode(), response.getStatusCode());
+    assertEquals(monitor + "/result", response.getHeader(HttpHeader.LOCATION));
+
+    response = asyncSupport.handleStatusMonitorRequest(createRequest(HttpMethod.GET, monitor + "/result"));
+    assertEquals(HttpStatusCode.OK.getStatusCode(), response.getStatusCode());
+    final String result = IOUtils.toString(response.getContent(), "ISO-8859-1");
+    assertTrue(result.startsWith("HTTP/1.1 201 Created\r\n"));
+    assertTrue(result.contains("Content-Type: text/plain\r\n"));
+    assertTrue(result.endsWith("\r\n\r\nrequest body"));
+  }
+
+  @Test
+  public void spoolToFile() throws Exception {
+    final File directory = new File(System.getProperty("java.io.tmpdir"), "olingo-async-test-" + System.nanoTime());
+    assertTrue(directory.mkdir());
+    try {
+      asyncSupport.setSpoolThreshold(4).setSpoolDirectory(directory);
+      final ODataRequest request = createRequest(HttpMethod.POST, "/ESAllPrim");
+      request.setBody(new ByteArrayInputStream("larger than the threshold".getBytes("UTF-8")));
+      final String monitor = asyncSupport.submit(request, new EchoHandler()).getHeader(HttpHeader.LOCATION);
+      assertEquals(1, directory.list().length);
+
+      release.countDown();
+      waitForResult(monitor);
+      assertEquals(1, directory.list().length);
+      final String result = IOUtils.toString(asyncSupport.handleStatusMonitorRequest(
+          createRequest(HttpMethod.GET, monitor + "/result")).getContent(), "ISO-8859-1");
+      assertTrue(result.endsWith("larger than the threshold"));
+
+      assertEquals(HttpStatusCode.NO_CONTENT.getStatusCode(),
+          asyncSupport.handleStatusMonitorRequest(createRequest(HttpMethod.DELETE, monitor)).getStatusCode());
+      assertEquals(0, directory.list().length);
+    } finally {
+      for (final File file : directory.listFiles()) {
+        file.delete();
+      }
+      directory.delete();
+    }
+  }
+
+  @Test
+  public void cancel() throws Exception {
+    final String monitor = asyncSupport.submit(createRequest(HttpMethod.GET, "/ESAllPrim"), new EchoHandler())
+        .getHeader(HttpHeader.LOCATION);
+    assertEquals(1, asyncSupport.getJobCount());
+    assertEquals(HttpStatusCode.METHOD_NOT_ALLOWED.getStatusCode(),
+        asyncSupport.handleStatusMonitorRequest(createRequest(HttpMethod.PUT, monitor)).getStatusCode());
+    assertEquals(HttpStatusCode.NO_CONTENT.getStatusCode(),
+        asyncSupport.handleStatusMonitorRequest(createRequest(HttpMethod.DELETE, monitor)).getStatusCode());
+    assertEquals(0, asyncSupport.getJobCount());
+    assertEquals(HttpStatusCode.NOT_FOUND.getStatusCode(),
+        asyncSupport.handleStatusMonitorRequest(createRequest(HttpMethod.GET, monitor)).getStatusCode());
+  }
+
+  @Test
+  public void evictAfterTimeToLive() throws Exception {
+    asyncSupport.setTimeToLive(0, TimeUnit.MILLISECONDS);
+    final String monitor = asyncSupport.submit(createRequest(HttpMethod.GET, "/ESAllPrim"), new EchoHandler())
+        .getHeader(HttpHeader.LOCATION);
+    release.countDown();
+    while (asyncSupport.getJobCount() > 0) {
+      Thread.sleep(1);
+    }
+    assertEquals(HttpStatusCode.NOT_FOUND.getStatusCode(),
+        asyncSupport.handleStatusMonitorRequest(createRequest(HttpMethod.GET, monitor)).getStatusCode());
+  }
+
+  @Test
+  public void rejected() throws Exception {
+    assertNotNull(asyncSupport.submit(createRequest(HttpMethod.GET, "/ESAllPrim"), new EchoHandler()));
+    assertNotNull(asyncSupport.submit(createRequest(HttpMethod.GET, "/ESAllPrim"), new EchoHandler()));
+    final ODataRequest request = createRequest(HttpMethod.POST, "/ESAllPrim");
+    request.setBody(new ByteArrayInputStream("body".getBytes("UTF-8")));
+    assertNull(asyncSupport.submit(request, new EchoHandler()));
+    assertEquals("body", IOUtils.toString(request.getBody(), "UTF-8"));
+    assertEquals(2, asyncSupport.getJobCount());
+  }
+
+  @Test
+  public void maximumJobCount() throws Exception {
+    asyncSupport.setMaximumJobCount(1);
+    assertEquals(HttpStatusCode.ACCEPTED.getStatusCode(),
+        asyncSupport.submit(createRequest(HttpMethod.GET, "/ESAllPrim"), new EchoHandler()).getStatusCode());
+    assertEquals(HttpStatusCode.SERVICE_UNAVAILABLE.getStatusCode(),
+        asyncSupport.submit(createRequest(HttpMethod.GET, "/ESAllPrim"), new EchoHandler()).getStatusCode());
+    assertEquals(1, asyncSupport.getJobCount());
+  }
+
+  @Test
+  public void errorResponse() throws Exception {
+    final String monitor = asyncSupport.submit(createRequest(HttpMethod.GET, "/ESAllPrim"), new EchoHandler() {
+      @Override
+      public ODataResponse process(final ODataRequest request) {
+        throw new IllegalStateException("processing failed");
+      }
+    }).getHeader(HttpHeader.LOCATION);
+    waitForResult(monitor);
+    final String result = IOUtils.toString(asyncSupport.handleStatusMonitorRequest(
+        createRequest(HttpMethod.GET, monitor + "/result")).getContent(), "ISO-8859-1");
+    assertTrue(result.startsWith("HTTP/1.1 500 Internal Server Error\r\n"));
+    assertTrue(result.contains("Content-Type: application/json"));
+    assertTrue(result.contains("\"message\":\"processing failed\""));
+  }
+
+  @Test
+  public void unknownStatusMonitor() {
+    assertEquals(HttpStatusCode.NOT_FOUND.getStatusCode(),
+        asyncSupport.handleStatusMonitorRequest(createRequest(HttpMethod.GET, "/$async/unknown")).getStatusCode());
+  }
+
+  private ODataResponse waitForResult(final String monitor) throws InterruptedException {
+    ODataResponse response;
+    while ((response = asyncSupport.handleStatusMonitorRequest(createRequest(HttpMethod.GET, monitor)))
+        .getStatusCode() == HttpStatusCode.ACCEPTED.getStatusCode()) {
+      Thread.sleep(1);
+    }
+    return response;
+  }
+
+  private ODataRequest createRequest(final HttpMethod method, final String uri) {
+    ODataRequest request = new ODataRequest();
+    request.setMethod(method);
+    request.setRawBaseUri(BASE_URI);
+    request.setRawODataPath(uri.startsWith(BASE_URI) ? uri.substring(BASE_URI.length()) : uri);
+    return request;
+  }
+
+  /** Waits for the release of the test and echoes the request body. */
+  private class EchoHandler implements ODataHandler {
+    @Override
+    public ODataResponse process(final ODataRequest request) {
+      ODataResponse response = new ODataResponse();
+      try {
+        release.await();
+        response.setStatusCode(HttpStatusCode.CREATED.getStatusCode());
+        response.setHeader(HttpHeader.CONTENT_TYPE, "text/plain");
+        response.setContent(request.getBody());
+      } catch (final InterruptedException e) {
+        response.setStatusCode(HttpStatusCode.SERVICE_UNAVAILABLE.getStatusCode());
+      }
+      return response;
+    }
+
+    @Override
+    public void register(final Processor processor) {}
+
+    @Override
+    public void register(final OlingoExtension extension) {}
+  }
+}
@@ -0,0 +1,218 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.batchhandler;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.olingo.commons.api.http.HttpHeader;
+import org.apache.olingo.commons.api.http.HttpMethod;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.ODataContent;
+import org.apache.olingo.server.api.ODataHandler;
+import org.apache.olingo.server.api.ODataRequest;
+import org.apache.olingo.server.api.ODataResponse;
+import org.apache.olingo.server.api.OlingoExtension;
+import org.apache.olingo.server.api.deserializer.batch.BatchRequestPart;
+import org.apache.olingo.server.api.deserializer.batch.BatchRequestPartIterator;
+import org.apache.olingo.server.api.deserializer.batch.ODataResponsePart;
+import org.apache.olingo.server.api.processor.Processor;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class BatchFacadeImplTest {
+
+  private static final int PARTS = 4;
+  private static final String BOUNDARY = "batch_test";
+  private ExecutorService executor;
+
+  @Before
+  public void setup() {
+    executor = Executors.newFixedThreadPool(PARTS);
+  }
+
+  @After
+  public void tearDown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void retrieveOperationsInParallel() throws Exception {
+    // Each request waits until all requests have started; sequential execution would time out.
+    final CountDownLatch latch = new CountDownLatch(PARTS);
+    final BatchFacadeImpl facade = new BatchFacadeImpl(new TestHandler() {
+      @Override
+      protected int getStatusCode(final ODataRequest request) throws InterruptedException {
+        latch.countDown();
+        return latch.await(5, TimeUnit.SECONDS) ?
+            HttpStatusCode.OK.getStatusCode() :
+            HttpStatusCode.INTERNAL_SERVER_ERROR.getStatusCode();
+      }
+    }, null, true, executor);
+
+    final List<ODataResponsePart> responseParts = facade.handleBatchRequests(createRequests(), false);
+
+    assertEquals(PARTS, responseParts.size());
+    for (int index = 0; index < PARTS; index++) {
+      final ODataResponse response = responseParts.get(index).getResponses().get(0);
+      assertEquals(HttpStatusCode.OK.getStatusCode(), response.getStatusCode());
+      assertEquals(Integer.toString(index), response.getHeader(HttpHeader.CONTENT_ID));
+    }
+  }
+
+  @Test
+  public void stopAfterFirstError() throws Exception {
+    final BatchFacadeImpl facade = new BatchFacadeImpl(new TestHandler() {
+      @Override
+      protected int getStatusCode(final ODataRequest request) {
+        return "1".equals(request.getHeader(HttpHeader.CONTENT_ID)) ?
+            HttpStatusCode.NOT_FOUND.getStatusCode() :
+            HttpStatusCode.OK.getStatusCode();
+      }
+    }, null, true, executor);
+
+    assertEquals(2, facade.handleBatchRequests(createRequests(), false).size());
+    assertEquals(PARTS, facade.handleBatchRequests(createRequests(), true).size());
+  }
+
+  @Test
+  public void remainingOperationsAreCancelledAfterError() throws Exception {
+    // Only the first operation is executed; the others are queued and would never run.
+    final List<Future<?>> queued = new ArrayList<Future<?>>();
+    final Executor firstOnly = new Executor() {
+      @Override
+      public void execute(final Runnable command) {
+        if (queued.isEmpty()) {
+          command.run();
+        }
+        queued.add((Future<?>) command);
+      }
+    };
+    final BatchFacadeImpl facade = new BatchFacadeImpl(new TestHandler() {
+      @Override
+      protected int getStatusCode(final ODataRequest request) {
+        return HttpStatusCode.NOT_FOUND.getStatusCode();
+      }
+    }, null, true, firstOnly);
+
+    assertEquals(1, facade.handleBatchRequests(createRequests(), false).size());
+    assertEquals(PARTS, queued.size());
+    for (final Future<?> future : queued.subList(1, PARTS)) {
+      assertTrue(future.isCancelled());
+    }
+  }
+
+  @Test
+  public void sequentialWithoutExecutor() throws Exception {
+    final List<String> order = new ArrayList<String>();
+    final BatchFacadeImpl facade = new BatchFacadeImpl(new TestHandler() {
+      @Override
+      protected int getStatusCode(final ODataRequest request) {
+        order.add(request.getHeader(HttpHeader.CONTENT_ID));
+        return HttpStatusCode.OK.getStatusCode();
+      }
+    }, null, true);
+
+    assertEquals(PARTS, facade.handleBatchRequests(createRequests(), false).size());
+    assertEquals("[0, 1, 2, 3]", order.toString());
+  }
+
+  @Test
+  public void partsAreHandledWhileRead() throws Exception {
+    final List<BatchRequestPart> requests = createRequests();
+    requests.get(2).getRequests().get(0).setMethod(HttpMethod.POST);
+    final int[] read = new int[1];
+    final BatchRequestPartIterator iterator = new BatchRequestPartIterator() {
+      @Override
+      public boolean hasNext() {
+        return read[0] < requests.size();
+      }
+
+      @Override
+      public BatchRequestPart next() {
+        return requests.get(read[0]++);
+      }
+    };
+    final List<String> handled = Collections.synchronizedList(new ArrayList<String>());
+    final BatchFacadeImpl facade = new BatchFacadeImpl(new TestHandler() {
+      @Override
+      protected int getStatusCode(final ODataRequest request) {
+        handled.add(request.getHeader(HttpHeader.CONTENT_ID) + "@" + read[0]);
+        return HttpStatusCode.OK.getStatusCode();
+      }
+    }, null, true, executor);
+
+    final ODataContent content = facade.handleBatchRequests(iterator, false, BOUNDARY);
+    assertEquals(0, read[0]);
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    content.write(output);
+    final String written = new String(output.toByteArray(), "ISO-8859-1");
+    assertEquals(PARTS, written.split("--" + BOUNDARY + "\r\n").length - 1);
+    assertTrue(written.endsWith("--" + BOUNDARY + "--\r\n"));
+    // The retrieve operations are collected until the next part is read; that part is handled immediately.
+    final List<String> sorted = new ArrayList<String>(handled);
+    Collections.sort(sorted);
+    assertEquals("[0@3, 1@3, 2@3, 3@4]", sorted.toString());
+  }
+
+  private List<BatchRequestPart> createRequests() {
+    List<BatchRequestPart> requests = new ArrayList<BatchRequestPart>();
+    for (int index = 0; index < PARTS; index++) {
+      final ODataRequest request = new ODataRequest();
+      request.setMethod(HttpMethod.GET);
+      request.addHeader(HttpHeader.CONTENT_ID, Integer.toString(index));
+      requests.add(new BatchRequestPart(false, request));
+    }
+    return requests;
+  }
+
+  private abstract static class TestHandler implements ODataHandler {
+
+    protected abstract int getStatusCode(ODataRequest request) throws InterruptedException;
+
+    @Override
+    public ODataResponse process(final ODataRequest request) {
+      final ODataResponse response = new ODataResponse();
+      try {
+        response.setStatusCode(getStatusCode(request));
+      } catch (final InterruptedException e) {
+        response.setStatusCode(HttpStatusCode.INTERNAL_SERVER_ERROR.getStatusCode());
+      }
+      return response;
+    }
+
+    @Override
+    public void register(final Processor processor) {}
+
+    @Override
+    public void register(final OlingoExtension extension) {}
+  }
+}
@@ -78,6 +78,7 @@ public class MockedBatchHandlerTest {
 
     entityCounter = 1;
     oDataHandler = mock(ODataHandlerImpl.class);
+    when(oDataHandler.withDebugger(null)).thenReturn(oDataHandler);
     batchHandler = new BatchHandler(oDataHandler, batchProcessor);
   }
 
@@ -245,6 +245,35 @@ public class BatchLineReaderTest {
     reader.close();
   }
 
+  @Test
+  public void testLongLineBytesInPieces() throws Exception {
+    final StringBuilder text = new StringBuilder();
+    for (int count = 0; count < 100000; count++) {
+      text.append('a');
+    }
+    BatchLineReader reader = create(text + "\r\nTest\r\n");
+
+    assertEquals(64 * 1024, reader.readLineBytes().length);
+    assertEquals(100000 - 64 * 1024 + 2, reader.readLineBytes().length);
+    assertEquals("Test\r\n", new String(reader.readLineBytes(), "UTF-8"));
+    assertNull(reader.readLineBytes());
+    reader.close();
+  }
+
+  @Test
+  public void testLongLineAsString() throws Exception {
+    final StringBuilder text = new StringBuilder();
+    for (int count = 0; count < 100000; count++) {
+      text.append('a');
+    }
+    BatchLineReader reader = create(text + "\r\nTest\r\n");
+
+    assertEquals(text + "\r\n", reader.readLine());
+    assertEquals("Test\r\n", reader.readLine());
+    assertNull(reader.readLine());
+    reader.close();
+  }
+
   private BatchLineReader create(final String inputString) throws Exception {
     return new BatchLineReader(new ByteArrayInputStream(inputString
         .getBytes("UTF-8")));
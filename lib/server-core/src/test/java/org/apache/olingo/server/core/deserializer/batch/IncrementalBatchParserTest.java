@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.deserializer.batch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.apache.olingo.commons.api.http.HttpMethod;
+import org.apache.olingo.server.api.ODataRequest;
+import org.apache.olingo.server.api.deserializer.batch.BatchDeserializerException;
+import org.apache.olingo.server.api.deserializer.batch.BatchDeserializerException.MessageKeys;
+import org.apache.olingo.server.api.deserializer.batch.BatchOptions;
+import org.apache.olingo.server.api.deserializer.batch.BatchRequestPart;
+import org.apache.olingo.server.api.deserializer.batch.BatchRequestPartIterator;
+import org.junit.Test;
+
+public class IncrementalBatchParserTest {
+
+  private static final String SERVICE_ROOT = "http://localhost/odata";
+  private static final String CRLF = "\r\n";
+  private static final String BOUNDARY = "batch_8194-cf13-1f56";
+  private static final String MIME_HEADERS = "Content-Type: application/http" + CRLF
+      + "Content-Transfer-Encoding: binary" + CRLF;
+  private static final String GET_REQUEST = ""
+      + "--" + BOUNDARY + CRLF
+      + MIME_HEADERS
+      + CRLF
+      + "GET Employees('1')/EmployeeName HTTP/1.1" + CRLF
+      + CRLF
+      + CRLF;
+  private static final String POST_REQUEST = ""
+      + "--" + BOUNDARY + CRLF
+      + MIME_HEADERS
+      + CRLF
+      + "POST Employees HTTP/1.1" + CRLF
+      + "Content-Type: application/json" + CRLF
+      + CRLF
+      + "{\"EmployeeName\":" + CRLF
+      + "\"Peter Fall\"}" + CRLF;
+
+  @Test
+  public void partsAreReadOnDemand() throws Exception {
+    StringBuilder batch = new StringBuilder();
+    for (int count = 0; count < 500; count++) {
+      batch.append(GET_REQUEST);
+    }
+    batch.append("--" + BOUNDARY + "--");
+    final ByteArrayInputStream in = new ByteArrayInputStream(batch.toString().getBytes("UTF-8"));
+    final BatchRequestPartIterator iterator = parse(in);
+
+    assertTrue(iterator.hasNext());
+    final BatchRequestPart part = iterator.next();
+    assertFalse(part.isChangeSet());
+    assertEquals(HttpMethod.GET, part.getRequests().get(0).getMethod());
+    assertTrue(in.available() > 0);
+
+    int count = 1;
+    while (iterator.hasNext()) {
+      iterator.next();
+      count++;
+    }
+    assertEquals(500, count);
+    assertEquals(0, in.available());
+  }
+
+  @Test
+  public void bodyIsStreamed() throws Exception {
+    final BatchRequestPartIterator iterator = parse(POST_REQUEST + GET_REQUEST + "--" + BOUNDARY + "--");
+
+    final ODataRequest request = iterator.next().getRequests().get(0);
+    assertEquals(HttpMethod.POST, request.getMethod());
+    assertEquals("{\"EmployeeName\":" + CRLF + "\"Peter Fall\"}", IOUtils.toString(request.getBody()));
+
+    assertEquals(HttpMethod.GET, iterator.next().getRequests().get(0).getMethod());
+    assertFalse(iterator.hasNext());
+  }
+
+  @Test
+  public void unreadBodyIsSkipped() throws Exception {
+    final BatchRequestPartIterator iterator = parse(POST_REQUEST + GET_REQUEST + "--" + BOUNDARY + "--");
+
+    final InputStream body = iterator.next().getRequests().get(0).getBody();
+    assertEquals('{', body.read());
+    assertTrue(iterator.hasNext());
+    assertEquals(-1, body.read());
+    assertEquals(HttpMethod.GET, iterator.next().getRequests().get(0).getMethod());
+    assertFalse(iterator.hasNext());
+  }
+
+  @Test
+  public void bodyIsLimitedByContentLength() throws Exception {
+    final BatchRequestPartIterator iterator = parse(""
+        + "--" + BOUNDARY + CRLF
+        + MIME_HEADERS
+        + CRLF
+        + "POST Employees HTTP/1.1" + CRLF
+        + "Content-Length: 4" + CRLF
+        + CRLF
+        + "äöü" + CRLF
+        + "--" + BOUNDARY + "--");
+
+    assertEquals("äö", IOUtils.toString(iterator.next().getRequests().get(0).getBody(), "UTF-8"));
+    assertFalse(iterator.hasNext());
+  }
+
+  @Test
+  public void singleBytesAreLimitedByContentLength() throws Exception {
+    final BatchRequestPartIterator iterator = parse(""
+        + "--" + BOUNDARY + CRLF
+        + MIME_HEADERS
+        + CRLF
+        + "POST Employees HTTP/1.1" + CRLF
+        + "Content-Length: 2" + CRLF
+        + CRLF
+        + "abc" + CRLF
+        + "--" + BOUNDARY + "--");
+
+    final InputStream body = iterator.next().getRequests().get(0).getBody();
+    assertEquals('a', body.read());
+    assertEquals('b', body.read());
+    assertEquals(-1, body.read());
+    assertFalse(iterator.hasNext());
+  }
+
+  @Test
+  public void missingCloseDelimiterAfterParts() throws Exception {
+    final BatchRequestPartIterator iterator = parse(GET_REQUEST + GET_REQUEST);
+
+    assertTrue(iterator.hasNext());
+    iterator.next();
+    assertTrue(iterator.hasNext());
+    iterator.next();
+    try {
+      iterator.hasNext();
+      fail("Expected exception not thrown.");
+    } catch (final BatchDeserializerException e) {
+      assertEquals(MessageKeys.MISSING_CLOSE_DELIMITER, e.getMessageKey());
+    }
+  }
+
+  @Test
+  public void longBodyLine() throws Exception {
+    final StringBuilder content = new StringBuilder();
+    for (int count = 0; count < 100000; count++) {
+      content.append((char) ('a' + count % 26));
+    }
+    final BatchRequestPartIterator iterator = parse(""
+        + "--" + BOUNDARY + CRLF
+        + MIME_HEADERS
+        + CRLF
+        + "POST Employees HTTP/1.1" + CRLF
+        + "Content-Type: application/json" + CRLF
+        + CRLF
+        + content + CRLF
+        + "--" + BOUNDARY + "--");
+
+    assertEquals(content.toString(), IOUtils.toString(iterator.next().getRequests().get(0).getBody()));
+    assertFalse(iterator.hasNext());
+  }
+
+  @Test
+  public void readErrorIsDeserializerException() throws Exception {
+    final BatchRequestPartIterator iterator = parse(new InputStream() {
+      @Override
+      public int read() throws IOException {
+        throw new IOException("connection reset");
+      }
+    });
+    try {
+      iterator.hasNext();
+      fail("Expected exception not thrown.");
+    } catch (final BatchDeserializerException e) {
+      assertEquals(MessageKeys.IO_EXCEPTION, e.getMessageKey());
+    }
+  }
+
+  private BatchRequestPartIterator parse(final String batch) throws Exception {
+    return parse(new ByteArrayInputStream(batch.getBytes("UTF-8")));
+  }
+
+  private BatchRequestPartIterator parse(final InputStream in) {
+    final BatchOptions options = BatchOptions.with().isStrict(true).rawBaseUri(SERVICE_ROOT).build();
+    return new BatchParser().parseBatchRequestIncrementally(in, BOUNDARY, options);
+  }
+}
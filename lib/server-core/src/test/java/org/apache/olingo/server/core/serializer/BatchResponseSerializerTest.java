@@ -19,11 +19,15 @@
 package org.apache.olingo.server.core.serializer;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.List;
@@ -36,6 +40,7 @@ import org.apache.olingo.commons.api.http.HttpHeader;
 import org.apache.olingo.commons.api.http.HttpStatusCode;
 import org.apache.olingo.server.api.ODataResponse;
 import org.apache.olingo.server.api.deserializer.batch.ODataResponsePart;
+import org.apache.olingo.server.api.serializer.BatchSerializerException;
 import org.apache.olingo.server.core.deserializer.batch.BatchLineReader;
 import org.junit.Test;
 
@@ -476,6 +481,130 @@ public class BatchResponseSerializerTest {
     assertTrue(body.get(line++).contains("--batch_"));
   }
 
+  @Test
+  public void testWriterWritesEachPartImmediately() throws Exception {
+    ODataResponse response = new ODataResponse();
+    response.setStatusCode(HttpStatusCode.OK.getStatusCode());
+    response.setHeader(HttpHeader.CONTENT_TYPE, "application/json");
+    response.setContent(IOUtils.toInputStream("Walter Winter"));
+
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    final BatchResponseWriter writer = new BatchResponseSerializer().createWriter(output, BOUNDARY);
+    writer.write(new ODataResponsePart(response, false));
+    final int firstPartLength = output.size();
+    assertTrue(new String(output.toByteArray(), CS_ISO_8859_1).endsWith("Walter Winter" + CRLF));
+
+    writer.close();
+    final String closeDelimiter = "--" + BOUNDARY + "--" + CRLF;
+    assertEquals(firstPartLength + closeDelimiter.length(), output.size());
+    assertTrue(new String(output.toByteArray(), CS_ISO_8859_1).endsWith(closeDelimiter));
+  }
+
+  @Test
+  public void testDeclaredContentLength() throws Exception {
+    ODataResponse response = new ODataResponse();
+    response.setStatusCode(HttpStatusCode.OK.getStatusCode());
+    response.setHeader(HttpHeader.CONTENT_TYPE, "application/json");
+    response.setHeader(HttpHeader.CONTENT_LENGTH, "13");
+    response.setContent(IOUtils.toInputStream("Walter Winter"));
+    List<ODataResponsePart> parts = new ArrayList<ODataResponsePart>();
+    parts.add(new ODataResponsePart(response, false));
+
+    final InputStream content = new BatchResponseSerializer().serialize(parts, BOUNDARY);
+    final BatchLineReader reader = new BatchLineReader(content);
+    final List<String> body = reader.toList();
+    reader.close();
+
+    int line = 0;
+    assertEquals(10, body.size());
+    assertTrue(body.get(line++).contains("--batch_"));
+    assertEquals("Content-Type: application/http" + CRLF, body.get(line++));
+    assertEquals("Content-Transfer-Encoding: binary" + CRLF, body.get(line++));
+    assertEquals(CRLF, body.get(line++));
+    assertEquals("HTTP/1.1 200 OK" + CRLF, body.get(line++));
+    assertEquals("Content-Type: application/json" + CRLF, body.get(line++));
+    assertEquals("Content-Length: 13" + CRLF, body.get(line++));
+    assertEquals(CRLF, body.get(line++));
+    assertEquals("Walter Winter" + CRLF, body.get(line++));
+    assertTrue(body.get(line++).contains("--batch_"));
+  }
+
+  @Test
+  public void testContentIsCappedAtDeclaredLength() throws Exception {
+    ODataResponse response = new ODataResponse();
+    response.setStatusCode(HttpStatusCode.OK.getStatusCode());
+    response.setHeader(HttpHeader.CONTENT_TYPE, "application/json");
+    response.setHeader(HttpHeader.CONTENT_LENGTH, "6");
+    response.setContent(IOUtils.toInputStream("Walter Winter"));
+
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    final BatchResponseWriter writer = new BatchResponseSerializer().createWriter(output, BOUNDARY);
+    writer.write(new ODataResponsePart(response, false));
+    final String written = new String(output.toByteArray(), CS_ISO_8859_1);
+    assertTrue(written.endsWith("Content-Length: 6" + CRLF + CRLF + "Walter" + CRLF));
+  }
+
+  @Test(expected = BatchSerializerException.class)
+  public void testContentShorterThanDeclaredLength() throws Exception {
+    ODataResponse response = new ODataResponse();
+    response.setStatusCode(HttpStatusCode.OK.getStatusCode());
+    response.setHeader(HttpHeader.CONTENT_LENGTH, "100");
+    response.setContent(IOUtils.toInputStream("Walter Winter"));
+    new BatchResponseSerializer().createWriter(new ByteArrayOutputStream(), BOUNDARY)
+        .write(new ODataResponsePart(response, false));
+  }
+
+  @Test(expected = BatchSerializerException.class)
+  public void testWriteErrorIsSerializerException() throws Exception {
+    ODataResponse response = new ODataResponse();
+    response.setStatusCode(HttpStatusCode.OK.getStatusCode());
+    response.setContent(IOUtils.toInputStream("Walter Winter"));
+    final OutputStream failing = new OutputStream() {
+      @Override
+      public void write(final int b) throws IOException {
+        throw new IOException("connection closed");
+      }
+    };
+    new BatchResponseSerializer().createWriter(failing, BOUNDARY).write(new ODataResponsePart(response, false));
+  }
+
+  @Test
+  public void testLongContentWithoutLengthIsStreamed() throws Exception {
+    ODataResponse response = new ODataResponse();
+    response.setStatusCode(HttpStatusCode.OK.getStatusCode());
+    response.setHeader(HttpHeader.CONTENT_TYPE, "application/json");
+    final String bigData = generateData(100000);
+    response.setContent(IOUtils.toInputStream(bigData));
+
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    final BatchResponseWriter writer = new BatchResponseSerializer().createWriter(output, BOUNDARY);
+    writer.write(new ODataResponsePart(response, false));
+    final String written = new String(output.toByteArray(), CS_ISO_8859_1);
+    assertFalse(written.contains(HttpHeader.CONTENT_LENGTH));
+    assertTrue(written.endsWith("Content-Type: application/json" + CRLF + CRLF + bigData + CRLF));
+  }
+
+  @Test
+  public void testODataContentWithLength() throws Exception {
+    ODataResponse response = new ODataResponse();
+    response.setStatusCode(HttpStatusCode.OK.getStatusCode());
+    response.setODataContent(new WriteThroughContent(new WriteThroughContent.ContentWriter() {
+      @Override
+      public void write(final OutputStream outputStream) throws IOException {
+        outputStream.write("Walter Winter".getBytes(CS_ISO_8859_1));
+        outputStream.close();
+      }
+    }, null));
+
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+    final BatchResponseWriter writer = new BatchResponseSerializer().createWriter(output, BOUNDARY);
+    writer.write(new ODataResponsePart(response, false));
+    writer.close();
+    final String written = new String(output.toByteArray(), CS_ISO_8859_1);
+    assertTrue(written.endsWith("Content-Length: 13" + CRLF + CRLF + "Walter Winter" + CRLF
+        + "--" + BOUNDARY + "--" + CRLF));
+  }
+
   /**
    * Generates a string with given length containing random upper case characters ([A-Z]).
    * @param len length of the generated string
@@ -0,0 +1,76 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.uri;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class CursorStoreImplTest {
+
+  @Test
+  public void putAndGet() {
+    final CursorStoreImpl<String> store = new CursorStoreImpl<String>(10, 1, TimeUnit.MINUTES);
+    final String first = store.put("first");
+    final String second = store.put("second");
+    assertFalse(first.equals(second));
+    assertEquals("first", store.get(first));
+    assertEquals("first", store.get(first));
+    assertEquals("second", store.get(second));
+    assertNull(store.get("unknown"));
+    assertEquals(2, store.size());
+
+    store.clear();
+    assertNull(store.get(first));
+    assertEquals(0, store.size());
+  }
+
+  @Test
+  public void removeOldestIfFull() {
+    final CursorStoreImpl<Integer> store = new CursorStoreImpl<Integer>(2, 1, TimeUnit.MINUTES);
+    final String first = store.put(1);
+    final String second = store.put(2);
+    store.get(first);
+    final String third = store.put(3);
+    assertNull(store.get(first));
+    assertEquals(Integer.valueOf(2), store.get(second));
+    assertEquals(Integer.valueOf(3), store.get(third));
+    assertEquals(2, store.size());
+  }
+
+  @Test
+  public void removeExpired() throws Exception {
+    final CursorStoreImpl<String> store = new CursorStoreImpl<String>(10, 1, TimeUnit.NANOSECONDS);
+    final String token = store.put("expired");
+    Thread.sleep(1);
+    assertNull(store.get(token));
+    store.put("expired, too");
+    Thread.sleep(1);
+    assertEquals(0, store.size());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void invalidSize() {
+    new CursorStoreImpl<String>(0, 1, TimeUnit.MINUTES);
+  }
+}
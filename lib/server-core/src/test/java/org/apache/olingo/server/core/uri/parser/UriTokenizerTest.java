@@ -108,6 +108,23 @@ public class UriTokenizerTest {
     assertTrue(tokenizer.next(TokenKind.EOF));
   }
 
+  @Test
+  public void tokenBoundaries() {
+    UriTokenizer tokenizer = new UriTokenizer("name eq null");
+    assertTrue(tokenizer.next(TokenKind.ODataIdentifier));
+    assertEquals(0, tokenizer.getTokenStart());
+    assertEquals(4, tokenizer.getTokenEnd());
+    assertTrue(tokenizer.isText("name"));
+    assertFalse(tokenizer.isText("nam"));
+    assertFalse(tokenizer.isText("names"));
+    assertTrue(tokenizer.next(TokenKind.EqualsOperator));
+    assertEquals(4, tokenizer.getTokenStart());
+    assertEquals(8, tokenizer.getTokenEnd());
+    assertTrue(tokenizer.next(TokenKind.NULL));
+    assertTrue(tokenizer.isText("null"));
+    assertEquals("null", tokenizer.getText());
+  }
+
   @Test
   public void systemQueryOptions() {
     UriTokenizer tokenizer = new UriTokenizer("$expand=*;$filter=true;$levels=max;$orderby=false");
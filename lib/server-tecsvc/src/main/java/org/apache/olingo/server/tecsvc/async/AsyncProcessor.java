@@ -98,7 +98,15 @@ public class AsyncProcessor<T extends Processor> {
       }
       replaceInvokeParameter(processRequest);
       replaceInvokeParameter(processResponse);
-      return invokeMethod.invoke(wrappedInstance, invokeParameters);
+      final Object result = invokeMethod.invoke(wrappedInstance, invokeParameters);
+      // Deferred content, e.g., of a batch response, is processed while it is written,
+      // so it is written here to complete the processing in the background.
+      if (processResponse.getContent() == null && processResponse.getODataContent() != null) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+        processResponse.getODataContent().write(buffer);
+        processResponse.setContent(new ByteArrayInputStream(buffer.toByteArray()));
+      }
+      return result;
     }
 
     <P> void replaceInvokeParameter(P replacement) {
@@ -36,6 +36,7 @@ import org.apache.olingo.commons.api.data.ComplexValue;
 import org.apache.olingo.commons.api.data.Entity;
 import org.apache.olingo.commons.api.data.EntityCollection;
 import org.apache.olingo.commons.api.data.Link;
+import org.apache.olingo.commons.api.data.PrimitiveProperty;
 import org.apache.olingo.commons.api.data.Property;
 import org.apache.olingo.commons.api.data.ValueType;
 import org.apache.olingo.commons.api.edm.Edm;
@@ -1201,6 +1202,16 @@ public class DataCreator {
   }
 
   protected static Property createPrimitive(final String name, final Object value) {
+    // Values which the serializers can write without boxing are kept unboxed.
+    if (value instanceof Boolean) {
+      return new PrimitiveProperty(null, name, ((Boolean) value).booleanValue());
+    } else if (value instanceof Integer) {
+      return new PrimitiveProperty(null, name, ((Integer) value).intValue());
+    } else if (value instanceof Long) {
+      return new PrimitiveProperty(null, name, ((Long) value).longValue());
+    } else if (value instanceof Double) {
+      return new PrimitiveProperty(null, name, ((Double) value).doubleValue());
+    }
     return new Property(null, name, ValueType.PRIMITIVE, value);
   }
 
@@ -73,6 +73,8 @@ public class DataProvider {
   private AtomicLong KEY_STRING = new AtomicLong(0);
 
   private Map<String, EntityCollection> data;
+  private final Map<String, KeyIndex> keyIndexes = new HashMap<String, KeyIndex>();
+  private final Map<String, SearchIndex> searchIndexes = new HashMap<String, SearchIndex>();
   private final OData odata;
   private final Edm edm;
 
@@ -93,7 +95,28 @@ public class DataProvider {
 
   public Entity read(final EdmEntitySet edmEntitySet, final List<UriParameter> keys) throws DataProviderException {
     final EntityCollection entitySet = readAll(edmEntitySet);
-    return entitySet == null ? null : read(edmEntitySet.getEntityType(), entitySet, keys);
+    if (entitySet.getEntities().isEmpty()) {
+      return null;
+    }
+    final KeyIndex keyIndex = getKeyIndex(edmEntitySet);
+    List<String> key = new ArrayList<String>(keys.size());
+    try {
+      for (final EdmProperty keyProperty : keyIndex.getKeyProperties()) {
+        final UriParameter keyParameter = findKey(keyProperty.getName(), keys);
+        if (keyParameter == null) {
+          return read(edmEntitySet.getEntityType(), entitySet, keys);
+        }
+        key.add(KeyIndex.toLiteral(keyProperty, getKeyValue(keyProperty, keyParameter, null)));
+      }
+    } catch (final EdmPrimitiveTypeException e) {
+      throw new DataProviderException("Wrong key!", HttpStatusCode.BAD_REQUEST, e);
+    }
+    try {
+      return keyIndex.get(key);
+    } catch (final EdmPrimitiveTypeException e) {
+      // The data can not be indexed; search them sequentially.
+      return read(edmEntitySet.getEntityType(), entitySet, keys);
+    }
   }
 
   public Entity read(final EdmEntityType edmEntityType, final EntityCollection entitySet,
@@ -103,16 +126,8 @@ public class DataProvider {
         boolean found = true;
         for (final UriParameter key : keys) {
           final EdmProperty property = (EdmProperty) edmEntityType.getProperty(key.getName());
-          final EdmPrimitiveType type = (EdmPrimitiveType) property.getType();
           final Object value = entity.getProperty(key.getName()).getValue();
-          if (key.getExpression() != null && !(key.getExpression() instanceof Literal)) {
-            throw new DataProviderException("Expression in key value is not supported yet!",
-                HttpStatusCode.NOT_IMPLEMENTED);
-          }
-          final String text = key.getAlias() == null ? key.getText() : ((Literal) key.getExpression()).getText();
-          final Object keyValue = type.valueOfString(type.fromUriLiteral(text),
-              property.isNullable(), property.getMaxLength(), property.getPrecision(), property.getScale(),
-              property.isUnicode(),
+          final Object keyValue = getKeyValue(property, key,
               Calendar.class.isAssignableFrom(value.getClass()) ? Calendar.class : value.getClass());
           if (!value.equals(keyValue)) {
             found = false;
@@ -129,9 +144,102 @@ public class DataProvider {
     }
   }
 
+  /**
+   * Gets the literal representation of the key of an entity of the entity set,
+   * e.g., to read the entity again later with {@link #readByKey(EdmEntitySet, List)}.
+   */
+  public List<String> getKey(final EdmEntitySet edmEntitySet, final Entity entity) throws DataProviderException {
+    try {
+      return getKeyIndex(edmEntitySet).getKey(entity);
+    } catch (final EdmPrimitiveTypeException e) {
+      throw new DataProviderException("Wrong key!", HttpStatusCode.INTERNAL_SERVER_ERROR, e);
+    }
+  }
+
+  /**
+   * Reads the entity with the given key.
+   * @param key the literal representation of the key as returned by {@link #getKey(EdmEntitySet, Entity)}
+   * @return the entity or <code>null</code> if it does not exist (anymore)
+   */
+  public Entity readByKey(final EdmEntitySet edmEntitySet, final List<String> key) throws DataProviderException {
+    try {
+      return getKeyIndex(edmEntitySet).get(key);
+    } catch (final EdmPrimitiveTypeException e) {
+      throw new DataProviderException("Wrong key!", HttpStatusCode.INTERNAL_SERVER_ERROR, e);
+    }
+  }
+
+  private UriParameter findKey(final String name, final List<UriParameter> keys) {
+    for (final UriParameter key : keys) {
+      if (name.equals(key.getName())) {
+        return key;
+      }
+    }
+    return null;
+  }
+
+  /**
+   * Converts the value of a key predicate.
+   * @param property the key property
+   * @param key the key predicate
+   * @param returnType the class of the result or <code>null</code> for the default type of the property type
+   */
+  private Object getKeyValue(final EdmProperty property, final UriParameter key, final Class<?> returnType)
+      throws DataProviderException, EdmPrimitiveTypeException {
+    if (key.getExpression() != null && !(key.getExpression() instanceof Literal)) {
+      throw new DataProviderException("Expression in key value is not supported yet!",
+          HttpStatusCode.NOT_IMPLEMENTED);
+    }
+    final EdmPrimitiveType type = (EdmPrimitiveType) property.getType();
+    final String text = key.getAlias() == null ? key.getText() : ((Literal) key.getExpression()).getText();
+    return type.valueOfString(type.fromUriLiteral(text),
+        property.isNullable(), property.getMaxLength(), property.getPrecision(), property.getScale(),
+        property.isUnicode(),
+        returnType == null ? type.getDefaultType() : returnType);
+  }
+
+  private KeyIndex getKeyIndex(final EdmEntitySet edmEntitySet) throws DataProviderException {
+    final EntityCollection entitySet = readAll(edmEntitySet);
+    synchronized (keyIndexes) {
+      KeyIndex keyIndex = keyIndexes.get(edmEntitySet.getName());
+      if (keyIndex == null || keyIndex.getEntityCollection() != entitySet) {
+        keyIndex = new KeyIndex(edmEntitySet.getEntityType(), entitySet);
+        keyIndexes.put(edmEntitySet.getName(), keyIndex);
+      }
+      return keyIndex;
+    }
+  }
+
+  /** Returns the inverted index for <code>$search</code> on all entities of the entity set. */
+  public SearchIndex getSearchIndex(final EdmEntitySet edmEntitySet) throws DataProviderException {
+    final EntityCollection entitySet = readAll(edmEntitySet);
+    synchronized (searchIndexes) {
+      SearchIndex searchIndex = searchIndexes.get(edmEntitySet.getName());
+      if (searchIndex == null || searchIndex.getEntityCollection() != entitySet) {
+        searchIndex = new SearchIndex(entitySet);
+        searchIndexes.put(edmEntitySet.getName(), searchIndex);
+      }
+      return searchIndex;
+    }
+  }
+
+  /** Drops all search indexes after a change of property values outside of a known entity set. */
+  private void invalidateSearchIndexes() {
+    synchronized (searchIndexes) {
+      searchIndexes.clear();
+    }
+  }
+
   public void delete(final EdmEntitySet edmEntitySet, final Entity entity) throws DataProviderException {
     deleteLinksTo(entity);
-    readAll(edmEntitySet).getEntities().remove(entity);
+    if (readAll(edmEntitySet).getEntities().remove(entity)) {
+      getSearchIndex(edmEntitySet).remove(entity);
+      try {
+        getKeyIndex(edmEntitySet).remove(entity);
+      } catch (final EdmPrimitiveTypeException e) {
+        // The index will be rebuilt on its next use.
+      }
+    }
   }
 
   public void deleteLinksTo(final Entity to) throws DataProviderException {
@@ -160,7 +268,8 @@ public class DataProvider {
     final EdmEntityType edmEntityType = edmEntitySet.getEntityType();
     EntityCollection entitySet = readAll(edmEntitySet);
     final List<Entity> entities = entitySet.getEntities();
-    final Map<String, Object> newKey = findFreeComposedKey(entities, edmEntityType);
+    final KeyIndex keyIndex = getKeyIndex(edmEntitySet);
+    final Map<String, Object> newKey = findFreeComposedKey(keyIndex, edmEntityType);
     Entity newEntity = new Entity();
     newEntity.setType(edmEntityType.getFullQualifiedName().getFullQualifiedNameAsString());
     for (final String keyName : edmEntityType.getKeyPredicateNames()) {
@@ -174,16 +283,23 @@ public class DataProvider {
       throw new DataProviderException("Unable to set entity ID!", HttpStatusCode.INTERNAL_SERVER_ERROR, e);
     }
     entities.add(newEntity);
+    getSearchIndex(edmEntitySet).add(newEntity);
+    try {
+      keyIndex.add(newEntity);
+    } catch (final EdmPrimitiveTypeException e) {
+      // The index will be rebuilt on its next use.
+    }
 
     return newEntity;
   }
 
-  private Map<String, Object> findFreeComposedKey(final List<Entity> entities, final EdmEntityType entityType)
+  private Map<String, Object> findFreeComposedKey(final KeyIndex keyIndex, final EdmEntityType entityType)
       throws DataProviderException {
     // Weak key construction
     final HashMap<String, Object> keys = new HashMap<String, Object>();
     List<String> keyPredicateNames = entityType.getKeyPredicateNames();
-    for (final String keyName : keyPredicateNames) {
+    for (int keyPosition = 0; keyPosition < keyPredicateNames.size(); keyPosition++) {
+      final String keyName = keyPredicateNames.get(keyPosition);
       EdmType type = entityType.getProperty(keyName).getType();
       FullQualifiedName typeName = type.getFullQualifiedName();
       if (type instanceof EdmTypeDefinition) {
@@ -194,27 +310,27 @@ public class DataProvider {
       if (EdmPrimitiveTypeKind.Int16.getFullQualifiedName().equals(typeName)) {
         newValue = (short) KEY_INT_16.incrementAndGet();
 
-        while (!isFree(newValue, keyName, entities)) {
+        while (!isFree(newValue, keyPosition, keyIndex)) {
           newValue = (short) KEY_INT_16.incrementAndGet();
         }
       } else if (EdmPrimitiveTypeKind.Int32.getFullQualifiedName().equals(typeName)) {
         newValue = KEY_INT_32.incrementAndGet();
 
-        while (!isFree(newValue, keyName, entities)) {
+        while (!isFree(newValue, keyPosition, keyIndex)) {
           newValue = KEY_INT_32.incrementAndGet();
         }
       } else if (EdmPrimitiveTypeKind.Int64.getFullQualifiedName().equals(typeName)) {
         // Integer keys
         newValue = KEY_INT_64.incrementAndGet();
 
-        while (!isFree(newValue, keyName, entities)) {
+        while (!isFree(newValue, keyPosition, keyIndex)) {
           newValue = KEY_INT_64.incrementAndGet();
         }
       } else if (EdmPrimitiveTypeKind.String.getFullQualifiedName().equals(typeName)) {
         // String keys
         newValue = String.valueOf(KEY_STRING.incrementAndGet());
 
-        while (!isFree(newValue, keyName, entities)) {
+        while (!isFree(newValue, keyPosition, keyIndex)) {
           newValue = String.valueOf(KEY_STRING.incrementAndGet());
         }
       } else if (type instanceof EdmEnumType) {
@@ -233,14 +349,13 @@ public class DataProvider {
     return keys;
   }
 
-  private boolean isFree(final Object value, final String keyPropertyName, final List<Entity> entities) {
-    for (final Entity entity : entities) {
-      if (value != null && value.equals(entity.getProperty(keyPropertyName).getValue())) {
-        return false;
-      }
+  private boolean isFree(final Object value, final int keyPosition, final KeyIndex keyIndex)
+      throws DataProviderException {
+    try {
+      return keyIndex.isFree(keyPosition, value);
+    } catch (final EdmPrimitiveTypeException e) {
+      throw new DataProviderException("Unable to determine free key!", HttpStatusCode.INTERNAL_SERVER_ERROR, e);
     }
-
-    return true;
   }
 
   private void createProperties(final EdmStructuredType type, final List<Property> properties)
@@ -286,7 +401,7 @@ public class DataProvider {
     // Update Properties
     for (final String propertyName : entityType.getPropertyNames()) {
       if (!keyNames.contains(propertyName)) {
-        updateProperty(entityType.getStructuralProperty(propertyName),
+        changeProperty(entityType.getStructuralProperty(propertyName),
             entity.getProperty(propertyName),
             changedEntity.getProperty(propertyName),
             patch);
@@ -310,6 +425,7 @@ public class DataProvider {
 
     // Update the ETag if present.
     updateETag(entity);
+    getSearchIndex(edmEntitySet).update(entity);
   }
 
   public void updateETag(Entity entity) {
@@ -433,9 +549,16 @@ public class DataProvider {
     }
   }
 
-  @SuppressWarnings("unchecked")
   public void updateProperty(final EdmProperty edmProperty, Property property, final Property newProperty,
       final boolean patch) throws DataProviderException {
+    changeProperty(edmProperty, property, newProperty, patch);
+    // The entity set of the property is not known, so all search indexes are rebuilt on their next use.
+    invalidateSearchIndexes();
+  }
+
+  @SuppressWarnings("unchecked")
+  private void changeProperty(final EdmProperty edmProperty, Property property, final Property newProperty,
+      final boolean patch) throws DataProviderException {
     final EdmType type = edmProperty.getType();
     if (edmProperty.isCollection()) {
       // Updating collection properties means replacing all entries with the given ones.
@@ -456,7 +579,7 @@ public class DataProvider {
       for (final String propertyName : ((EdmComplexType) type).getPropertyNames()) {
         final List<Property> newProperties = newProperty == null || newProperty.asComplex() == null ? null :
             newProperty.asComplex().getValue();
-        updateProperty(((EdmComplexType) type).getStructuralProperty(propertyName),
+        changeProperty(((EdmComplexType) type).getStructuralProperty(propertyName),
             findProperty(propertyName, property.asComplex().getValue()),
             newProperties == null ? null : findProperty(propertyName, newProperties),
             patch);
@@ -464,13 +587,14 @@ public class DataProvider {
     } else {
       if (newProperty != null || !patch) {
         final Object value = newProperty == null ? null : newProperty.getValue();
-        updatePropertyValue(property, value);
+        property.setValue(property.getValueType(), value);
       }
     }
   }
 
   public void updatePropertyValue(Property property, final Object value) {
     property.setValue(property.getValueType(), value);
+    invalidateSearchIndexes();
   }
 
   private ComplexValue createComplexValue(final EdmProperty edmProperty, final ComplexValue complexValue,
@@ -487,12 +611,12 @@ public class DataProvider {
       result.getValue().add(newProperty);
 
       if (currentProperty != null) {
-        updateProperty(innerEdmProperty, newProperty, currentProperty, patch);
+        changeProperty(innerEdmProperty, newProperty, currentProperty, patch);
       } else {
         if (innerEdmProperty.isNullable()) {
           // Check complex properties ... may be null is not allowed
           if (edmProperty.getType().getKind() == EdmTypeKind.COMPLEX) {
-            updateProperty(innerEdmProperty, newProperty, null, patch);
+            changeProperty(innerEdmProperty, newProperty, null, patch);
           }
         }
       }
@@ -519,6 +643,7 @@ public class DataProvider {
     entity.addProperty(DataCreator.createPrimitive(MEDIA_PROPERTY_NAME, media));
     entity.setMediaContentType(type);
     entity.setMediaETag("W/\"" + UUID.randomUUID() + "\"");
+    invalidateSearchIndexes();
   }
 
   public EntityCollection readFunctionEntityCollection(final EdmFunction function, final List<UriParameter> parameters,
@@ -0,0 +1,163 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.tecsvc.data;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.edm.EdmEntityType;
+import org.apache.olingo.commons.api.edm.EdmPrimitiveType;
+import org.apache.olingo.commons.api.edm.EdmPrimitiveTypeException;
+import org.apache.olingo.commons.api.edm.EdmProperty;
+
+/**
+ * Hash index on the key properties of the entities of an entity collection.
+ * <p/>
+ * Key values are compared in their literal representation, so the Java class used
+ * to store a value does not matter.
+ * The {@link DataProvider} keeps the index up to date when it creates or deletes entities;
+ * key properties are never changed afterwards.
+ * If entities have been added to or removed from the collection directly,
+ * the index is rebuilt on its next use.
+ */
+class KeyIndex {
+
+  private final EntityCollection entityCollection;
+  private final List<EdmProperty> keyProperties = new ArrayList<EdmProperty>();
+  private final Map<List<String>, Entity> entities = new HashMap<List<String>, Entity>();
+  /** For every key property the number of entities with a given value */
+  private final List<Map<String, Integer>> valueCounts = new ArrayList<Map<String, Integer>>();
+  private int indexedCount;
+
+  KeyIndex(final EdmEntityType entityType, final EntityCollection entityCollection) {
+    this.entityCollection = entityCollection;
+    for (final String keyName : entityType.getKeyPredicateNames()) {
+      keyProperties.add(entityType.getStructuralProperty(keyName));
+      valueCounts.add(new HashMap<String, Integer>());
+    }
+    indexedCount = -1;
+  }
+
+  EntityCollection getEntityCollection() {
+    return entityCollection;
+  }
+
+  List<EdmProperty> getKeyProperties() {
+    return keyProperties;
+  }
+
+  /**
+   * Finds the entity with the given key.
+   * @param key the literal representation of the key values, in the order of the key properties
+   * @return the first entity with the given key or <code>null</code>
+   */
+  synchronized Entity get(final List<String> key) throws EdmPrimitiveTypeException {
+    ensureCurrent();
+    return entities.get(key);
+  }
+
+  /**
+   * Determines whether no entity has the given value for a key property.
+   * @param keyPosition the position of the key property in the list of key properties
+   * @param value the value
+   */
+  synchronized boolean isFree(final int keyPosition, final Object value) throws EdmPrimitiveTypeException {
+    ensureCurrent();
+    return !valueCounts.get(keyPosition).containsKey(toLiteral(keyProperties.get(keyPosition), value));
+  }
+
+  /** Adds an entity that has just been added to the collection. */
+  synchronized void add(final Entity entity) throws EdmPrimitiveTypeException {
+    if (indexedCount >= 0) {
+      put(entity);
+    }
+  }
+
+  /** Removes an entity that has just been removed from the collection. */
+  synchronized void remove(final Entity entity) throws EdmPrimitiveTypeException {
+    if (indexedCount >= 0) {
+      final List<String> key = getKey(entity);
+      if (entities.get(key) == entity) {
+        entities.remove(key);
+      }
+      for (int i = 0; i < key.size(); i++) {
+        final Map<String, Integer> counts = valueCounts.get(i);
+        final Integer count = counts.get(key.get(i));
+        if (count != null && count > 1) {
+          counts.put(key.get(i), count - 1);
+        } else {
+          counts.remove(key.get(i));
+        }
+      }
+      indexedCount--;
+    }
+  }
+
+  private void ensureCurrent() throws EdmPrimitiveTypeException {
+    if (indexedCount != entityCollection.getEntities().size()) {
+      entities.clear();
+      for (final Map<String, Integer> counts : valueCounts) {
+        counts.clear();
+      }
+      indexedCount = 0;
+      try {
+        for (final Entity entity : entityCollection.getEntities()) {
+          put(entity);
+        }
+      } catch (final EdmPrimitiveTypeException e) {
+        indexedCount = -1;
+        throw e;
+      }
+    }
+  }
+
+  private void put(final Entity entity) throws EdmPrimitiveTypeException {
+    final List<String> key = getKey(entity);
+    if (!entities.containsKey(key)) {
+      entities.put(key, entity);
+    }
+    for (int i = 0; i < key.size(); i++) {
+      final Integer count = valueCounts.get(i).get(key.get(i));
+      valueCounts.get(i).put(key.get(i), count == null ? 1 : count + 1);
+    }
+    indexedCount++;
+  }
+
+  List<String> getKey(final Entity entity) throws EdmPrimitiveTypeException {
+    List<String> key = new ArrayList<String>(keyProperties.size());
+    for (final EdmProperty keyProperty : keyProperties) {
+      final Property property = entity.getProperty(keyProperty.getName());
+      key.add(toLiteral(keyProperty, property == null ? null : property.getValue()));
+    }
+    return key;
+  }
+
+  /**
+   * Converts a key value into its literal representation.
+   * Facets are not checked; they have been checked when the value was set.
+   */
+  static String toLiteral(final EdmProperty keyProperty, final Object value) throws EdmPrimitiveTypeException {
+    return ((EdmPrimitiveType) keyProperty.getType()).valueToString(value, null, null, null, null, null);
+  }
+}
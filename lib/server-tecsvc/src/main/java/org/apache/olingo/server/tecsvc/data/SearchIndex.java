@@ -0,0 +1,357 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.tecsvc.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.apache.olingo.commons.api.data.ComplexValue;
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchBinary;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchBinaryOperatorKind;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchExpression;
+
+/**
+ * Inverted index for <code>$search</code> on the entities of an entity collection.
+ * <p/>
+ * A search term matches an entity if the text of one of its primitive values contains the term.
+ * The index maps every substring of three characters (trigram) of these texts to the sorted positions
+ * of the entities having it. The candidates for a term are the intersection of the position lists
+ * of its trigrams; they are verified against the texts because the trigrams may stem from different places.
+ * <code>AND</code>, <code>OR</code>, and <code>NOT</code> are evaluated as intersection, union,
+ * and complement of the sorted positions.
+ * <p/>
+ * The {@link DataProvider} keeps the index up to date when it creates, updates, or deletes entities.
+ * If entities have been added to or removed from the collection directly,
+ * the index is rebuilt on its next use.
+ */
+public class SearchIndex {
+
+  private static final int GRAM_LENGTH = 3;
+  private static final int[] NONE = new int[0];
+
+  private final EntityCollection entityCollection;
+  /** The indexed entities by position; removed entities leave a <code>null</code> gap. */
+  private final List<Entity> entities = new ArrayList<Entity>();
+  private final List<String[]> texts = new ArrayList<String[]>();
+  private final Map<Entity, Integer> positions = new IdentityHashMap<Entity, Integer>();
+  private final Map<String, Postings> postings = new HashMap<String, Postings>();
+  private int indexedCount;
+
+  SearchIndex(final EntityCollection entityCollection) {
+    this.entityCollection = entityCollection;
+    indexedCount = -1;
+  }
+
+  EntityCollection getEntityCollection() {
+    return entityCollection;
+  }
+
+  /**
+   * Finds the entities matching a search expression.
+   * @return the matching entities, compared by identity
+   */
+  public synchronized Set<Entity> search(final SearchExpression expression) throws ODataApplicationException {
+    ensureCurrent();
+    Set<Entity> result = Collections.newSetFromMap(new IdentityHashMap<Entity, Boolean>());
+    for (final int position : evaluate(expression)) {
+      result.add(entities.get(position));
+    }
+    return result;
+  }
+
+  /** Adds an entity that has just been added to the collection. */
+  synchronized void add(final Entity entity) {
+    if (indexedCount >= 0) {
+      put(entity);
+    }
+  }
+
+  /** Indexes the current property values of an entity of the collection. */
+  synchronized void update(final Entity entity) {
+    if (indexedCount >= 0 && positions.containsKey(entity)) {
+      remove(entity);
+      put(entity);
+    }
+  }
+
+  /** Removes an entity that has just been removed from the collection. */
+  synchronized void remove(final Entity entity) {
+    if (indexedCount >= 0) {
+      final Integer position = positions.remove(entity);
+      if (position != null) {
+        entities.set(position, null);
+        texts.set(position, null);
+        indexedCount--;
+      }
+    }
+  }
+
+  private void ensureCurrent() {
+    // Positions of removed entities stay in the posting lists, so the index is compacted if most of them are gaps.
+    if (indexedCount != entityCollection.getEntities().size() || entities.size() > 2 * indexedCount + 16) {
+      entities.clear();
+      texts.clear();
+      positions.clear();
+      postings.clear();
+      indexedCount = 0;
+      for (final Entity entity : entityCollection.getEntities()) {
+        put(entity);
+      }
+    }
+  }
+
+  private void put(final Entity entity) {
+    final int position = entities.size();
+    final String[] entityTexts = getTexts(entity);
+    entities.add(entity);
+    texts.add(entityTexts);
+    positions.put(entity, position);
+    for (final String text : entityTexts) {
+      for (int index = 0; index + GRAM_LENGTH <= text.length(); index++) {
+        final String gram = text.substring(index, index + GRAM_LENGTH);
+        Postings gramPostings = postings.get(gram);
+        if (gramPostings == null) {
+          gramPostings = new Postings();
+          postings.put(gram, gramPostings);
+        }
+        gramPostings.add(position);
+      }
+    }
+    indexedCount++;
+  }
+
+  private int[] evaluate(final SearchExpression expression) throws ODataApplicationException {
+    if (expression.isSearchTerm()) {
+      return find(expression.asSearchTerm().getSearchTerm());
+    } else if (expression.isSearchUnary()) {
+      return complement(evaluate(expression.asSearchUnary().getOperand()));
+    } else if (expression.isSearchBinary()) {
+      final SearchBinary binary = expression.asSearchBinary();
+      final int[] left = evaluate(binary.getLeftOperand());
+      if (binary.getOperator() == SearchBinaryOperatorKind.AND) {
+        return left.length == 0 ? left : intersect(left, evaluate(binary.getRightOperand()));
+      } else if (binary.getOperator() == SearchBinaryOperatorKind.OR) {
+        return union(left, evaluate(binary.getRightOperand()));
+      } else {
+        throw new ODataApplicationException("Found unknown SearchBinaryOperatorKind: " + binary.getOperator(),
+            HttpStatusCode.INTERNAL_SERVER_ERROR.getStatusCode(), Locale.ROOT);
+      }
+    }
+    throw new ODataApplicationException("Found unknown SearchExpression: " + expression,
+        HttpStatusCode.INTERNAL_SERVER_ERROR.getStatusCode(), Locale.ROOT);
+  }
+
+  /** Finds the positions of the entities with a text containing the term. */
+  private int[] find(final String term) {
+    int[] candidates = null;
+    if (term.length() >= GRAM_LENGTH) {
+      Set<String> grams = new LinkedHashSet<String>();
+      for (int index = 0; index + GRAM_LENGTH <= term.length(); index++) {
+        grams.add(term.substring(index, index + GRAM_LENGTH));
+      }
+      for (final String gram : grams) {
+        final Postings gramPostings = postings.get(gram);
+        if (gramPostings == null) {
+          return NONE;
+        }
+        candidates = candidates == null ? gramPostings.toArray() : intersect(candidates, gramPostings.toArray());
+        if (candidates.length == 0) {
+          return NONE;
+        }
+      }
+    } else {
+      candidates = all();
+    }
+
+    int[] result = new int[candidates.length];
+    int size = 0;
+    for (final int position : candidates) {
+      if (entities.get(position) != null && contains(texts.get(position), term)) {
+        result[size++] = position;
+      }
+    }
+    return size == result.length ? result : Arrays.copyOf(result, size);
+  }
+
+  private int[] all() {
+    int[] result = new int[indexedCount];
+    int size = 0;
+    for (int position = 0; position < entities.size(); position++) {
+      if (entities.get(position) != null) {
+        result[size++] = position;
+      }
+    }
+    return result;
+  }
+
+  private int[] complement(final int[] positions) {
+    final int[] all = all();
+    int[] result = new int[all.length];
+    int size = 0;
+    int index = 0;
+    for (final int position : all) {
+      while (index < positions.length && positions[index] < position) {
+        index++;
+      }
+      if (index >= positions.length || positions[index] != position) {
+        result[size++] = position;
+      }
+    }
+    return Arrays.copyOf(result, size);
+  }
+
+  private static int[] intersect(final int[] first, final int[] second) {
+    int[] result = new int[Math.min(first.length, second.length)];
+    int size = 0;
+    int i = 0;
+    int j = 0;
+    while (i < first.length && j < second.length) {
+      if (first[i] < second[j]) {
+        i++;
+      } else if (first[i] > second[j]) {
+        j++;
+      } else {
+        result[size++] = first[i];
+        i++;
+        j++;
+      }
+    }
+    return size == result.length ? result : Arrays.copyOf(result, size);
+  }
+
+  private static int[] union(final int[] first, final int[] second) {
+    int[] result = new int[first.length + second.length];
+    int size = 0;
+    int i = 0;
+    int j = 0;
+    while (i < first.length || j < second.length) {
+      if (j >= second.length || i < first.length && first[i] < second[j]) {
+        result[size++] = first[i++];
+      } else if (i >= first.length || second[j] < first[i]) {
+        result[size++] = second[j++];
+      } else {
+        result[size++] = first[i];
+        i++;
+        j++;
+      }
+    }
+    return size == result.length ? result : Arrays.copyOf(result, size);
+  }
+
+  /** Determines whether one of the texts contains the term. */
+  public static boolean contains(final String[] texts, final String term) {
+    for (final String text : texts) {
+      if (text.contains(term)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /** Returns the texts of all primitive values of an entity, including those in complex and collection values. */
+  public static String[] getTexts(final Entity entity) {
+    List<String> result = new ArrayList<String>();
+    for (final Property property : entity.getProperties()) {
+      addTexts(property, result);
+    }
+    return result.toArray(new String[result.size()]);
+  }
+
+  private static void addTexts(final Property property, final List<String> result) {
+    if (property.isNull()) {
+      return;
+    } else if (property.isPrimitive()) {
+      if (property.isCollection()) {
+        for (final Object primitive : property.asCollection()) {
+          addText(primitive, result);
+        }
+      } else {
+        addText(property.asPrimitive(), result);
+      }
+    } else if (property.isComplex()) {
+      if (property.isCollection()) {
+        for (final Object member : property.asCollection()) {
+          for (final Property innerProperty : ((ComplexValue) member).getValue()) {
+            addTexts(innerProperty, result);
+          }
+        }
+      } else {
+        for (final Property innerProperty : property.asComplex().getValue()) {
+          addTexts(innerProperty, result);
+        }
+      }
+    }
+  }
+
+  private static void addText(final Object primitive, final List<String> result) {
+    final String text = primitive == null ? null : asString(primitive);
+    if (text != null) {
+      result.add(text);
+    }
+  }
+
+  private static String asString(final Object primitive) {
+    // TODO: improve 'string' conversion; maybe consider only String properties
+    if (primitive instanceof String) {
+      return (String) primitive;
+    } else if (primitive instanceof Calendar) {
+      return DatatypeConverter.printDateTime((Calendar) primitive);
+    } else if (primitive instanceof byte[]) {
+      return DatatypeConverter.printBase64Binary((byte[]) primitive);
+    } else {
+      return primitive.toString();
+    }
+  }
+
+  /** Growable sorted array of entity positions. */
+  private static class Postings {
+    private int[] positions = new int[4];
+    private int size;
+
+    void add(final int position) {
+      if (size > 0 && positions[size - 1] == position) {
+        return;
+      }
+      if (size == positions.length) {
+        positions = Arrays.copyOf(positions, size * 2);
+      }
+      positions[size++] = position;
+    }
+
+    int[] toArray() {
+      return Arrays.copyOf(positions, size);
+    }
+  }
+}
@@ -18,8 +18,8 @@
  */
 package org.apache.olingo.server.tecsvc.processor;
 
+import java.net.URI;
 import java.util.Collections;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
 
@@ -72,13 +72,10 @@ import org.apache.olingo.server.tecsvc.async.TechnicalAsyncService;
 import org.apache.olingo.server.tecsvc.data.DataProvider;
 import org.apache.olingo.server.tecsvc.data.RequestValidator;
 import org.apache.olingo.server.tecsvc.processor.queryoptions.ExpandSystemQueryOptionHandler;
-import org.apache.olingo.server.tecsvc.processor.queryoptions.options.CountHandler;
-import org.apache.olingo.server.tecsvc.processor.queryoptions.options.FilterHandler;
-import org.apache.olingo.server.tecsvc.processor.queryoptions.options.OrderByHandler;
-import org.apache.olingo.server.tecsvc.processor.queryoptions.options.SearchHandler;
+import org.apache.olingo.server.tecsvc.processor.queryoptions.options.ApplyHandler;
+import org.apache.olingo.server.tecsvc.processor.queryoptions.options.EntityPipeline;
 import org.apache.olingo.server.tecsvc.processor.queryoptions.options.ServerSidePagingHandler;
-import org.apache.olingo.server.tecsvc.processor.queryoptions.options.SkipHandler;
-import org.apache.olingo.server.tecsvc.processor.queryoptions.options.TopHandler;
+import org.apache.olingo.server.tecsvc.processor.queryoptions.options.SystemQueryOptionsRuntimeException;
 import org.apache.olingo.server.tecsvc.provider.ContainerProvider;
 
 /**
@@ -95,7 +92,7 @@ public class TechnicalEntityProcessor extends TechnicalProcessor
   @Override
   public void readEntityCollection(final ODataRequest request, final ODataResponse response, final UriInfo uriInfo,
       final ContentType requestedContentType) throws ODataApplicationException, ODataLibraryException {
-    validateOptions(uriInfo.asUriInfoResource());
+    validateOptions(uriInfo.asUriInfoResource(), true);
 
     readEntityCollection(request, response, uriInfo, requestedContentType, false);
   }
@@ -106,12 +103,10 @@ public class TechnicalEntityProcessor extends TechnicalProcessor
     validateOptions(uriInfo.asUriInfoResource());
     getEdmEntitySet(uriInfo); // including checks
     final EntityCollection entitySetInitial = readEntityCollection(uriInfo);
-    EntityCollection entitySet = new EntityCollection();
-
-    entitySet.getEntities().addAll(entitySetInitial.getEntities());
-    FilterHandler.applyFilterSystemQuery(uriInfo.getFilterOption(), entitySet, uriInfo, serviceMetadata.getEdm());
-    response.setContent(odata.createFixedFormatSerializer().count(
-        entitySet.getEntities().size()));
+    final int count = new EntityPipeline(entitySetInitial)
+        .filter(uriInfo.getFilterOption(), uriInfo, serviceMetadata.getEdm())
+        .countEntities();
+    response.setContent(odata.createFixedFormatSerializer().count(count));
     response.setStatusCode(HttpStatusCode.OK.getStatusCode());
     response.setHeader(HttpHeader.CONTENT_TYPE, ContentType.TEXT_PLAIN.toContentTypeString());
   }
@@ -474,50 +469,77 @@ public class TechnicalEntityProcessor extends TechnicalProcessor
     //
 
     final EdmEntitySet edmEntitySet = getEdmEntitySet(uriInfo.asUriInfoResource());
-    final EdmEntityType edmEntityType = edmEntitySet == null ?
+    final EdmEntityType startEntityType = edmEntitySet == null ?
         (EdmEntityType) ((UriResourcePartTyped) uriInfo.getUriResourceParts()
             .get(uriInfo.getUriResourceParts().size() - 1)).getType() :
         edmEntitySet.getEntityType();
+    if (isReference && uriInfo.getApplyOption() != null) {
+      throw new ODataApplicationException("References to aggregated entities are not supported.",
+          HttpStatusCode.NOT_IMPLEMENTED.getStatusCode(), Locale.ROOT);
+    }
 
     EntityCollection entitySetInitial = readEntityCollection(uriInfo);
     if (entitySetInitial == null) {
       entitySetInitial = new EntityCollection();
     }
 
-    // Modifying the original entitySet means modifying the "database", so we have to make a shallow
-    // copy of the entity set (new EntitySet, but exactly the same data).
-    EntityCollection entitySet = new EntityCollection();
-    entitySet.getEntities().addAll(entitySetInitial.getEntities());
-
-    // Apply system query options.
-    SearchHandler.applySearchSystemQueryOption(uriInfo.getSearchOption(), entitySet);
-    FilterHandler.applyFilterSystemQuery(uriInfo.getFilterOption(), entitySet, uriInfo, serviceMetadata.getEdm());
-    CountHandler.applyCountSystemQueryOption(uriInfo.getCountOption(), entitySet);
-    OrderByHandler.applyOrderByOption(uriInfo.getOrderByOption(), entitySet, uriInfo, serviceMetadata.getEdm());
-    SkipHandler.applySkipSystemQueryHandler(uriInfo.getSkipOption(), entitySet);
-    TopHandler.applyTopSystemQueryOption(uriInfo.getTopOption(), entitySet);
-
     final Integer pageSize = odata.createPreferences(request.getHeaders(HttpHeader.PREFER)).getMaxPageSize();
-    final Integer serverPageSize = ServerSidePagingHandler.applyServerSidePaging(uriInfo.getSkipTokenOption(),
-        entitySet,
-        edmEntitySet,
-        request.getRawRequestUri(),
-        pageSize);
+    final ServerSidePagingHandler.Cursor cursor = ServerSidePagingHandler.getCursor(uriInfo.getSkipTokenOption(),
+        edmEntitySet, request.getRawRequestUri());
+    final EdmEntityType edmEntityType;
+    final EntityPipeline entities;
+    final Integer serverPageSize;
+    if (cursor != null && cursor.hasKeys()) {
+      // A following page of a paged result is read by the keys stored with the previous page;
+      // the system query options have been applied to the entities of the cursor already.
+      edmEntityType = cursor.getEntityType();
+      entities = ServerSidePagingHandler.resume(cursor, dataProvider, edmEntitySet, request.getRawRequestUri());
+      serverPageSize = cursor.getPageSize();
+    } else {
+      // Apply system query options.
+      // The entities are read through a pipeline of query options, one after the other.
+      // Only $orderby and $count have to collect them; the original entitySet (the "database")
+      // is never modified.
+      if (uriInfo.getApplyOption() == null) {
+        edmEntityType = startEntityType;
+        entities = new EntityPipeline(entitySetInitial);
+      } else {
+        // Data aggregation comes first and may change the structure of the result.
+        // It works on a shallow copy of the entity set (new EntitySet, but exactly the same data).
+        EntityCollection entitySet = new EntityCollection();
+        entitySet.getEntities().addAll(entitySetInitial.getEntities());
+        edmEntityType = ApplyHandler.applyApplySystemQueryOption(uriInfo.getApplyOption(),
+            entitySet, startEntityType, uriInfo, serviceMetadata.getEdm());
+        entities = new EntityPipeline(entitySet);
+      }
+      // The search index of the entity set can be used as long as the entities are those of the entity set.
+      entities.search(uriInfo.getSearchOption(),
+          uriInfo.getSearchOption() != null && uriInfo.getApplyOption() == null && edmEntitySet != null
+              && entitySetInitial == dataProvider.readAll(edmEntitySet) ?
+              dataProvider.getSearchIndex(edmEntitySet) : null)
+          .filter(uriInfo.getFilterOption(), uriInfo, serviceMetadata.getEdm())
+          .count(uriInfo.getCountOption())
+          .orderBy(uriInfo.getOrderByOption(), uriInfo.getSkipOption(), uriInfo.getTopOption(),
+              uriInfo, serviceMetadata.getEdm())
+          .skip(uriInfo.getSkipOption())
+          .top(uriInfo.getTopOption());
+
+      if (cursor == null) {
+        // Aggregated entities cannot be read again by key.
+        serverPageSize = ServerSidePagingHandler.applyServerSidePaging(entities,
+            edmEntitySet,
+            edmEntityType,
+            uriInfo.getApplyOption() == null ? dataProvider : null,
+            request.getRawRequestUri(),
+            pageSize);
+      } else {
+        ServerSidePagingHandler.resume(cursor, entities, request.getRawRequestUri());
+        serverPageSize = cursor.getPageSize();
+      }
+    }
 
-    // Apply expand system query option
     final ExpandOption expand = uriInfo.getExpandOption();
     final SelectOption select = uriInfo.getSelectOption();
-
-    // Transform the entity graph to a tree. The construction is controlled by the expand tree.
-    // Apply all expand system query options to the tree.
-    // So the expanded navigation properties can be modified for serialization,
-    // without affecting the data stored in the database.
-    final ExpandSystemQueryOptionHandler expandHandler = new ExpandSystemQueryOptionHandler();
-    final EntityCollection entitySetSerialization = expandHandler.transformEntitySetGraphToTree(entitySet,
-        edmEntitySet,
-        expand, null);
-    expandHandler.applyExpandQueryOptions(entitySetSerialization, edmEntitySet, expand, uriInfo,
-        serviceMetadata.getEdm());
     final CountOption countOption = uriInfo.getCountOption();
 
     String id;
@@ -530,21 +552,27 @@ public class TechnicalEntityProcessor extends TechnicalProcessor
 
     if(isReference) {
       final SerializerResult serializerResult =
-          serializeReferenceCollection(entitySetSerialization, edmEntitySet, requestedContentType, countOption);
+          serializeReferenceCollection(transformToTree(entities, edmEntitySet, uriInfo),
+              edmEntitySet, requestedContentType, countOption);
       response.setContent(serializerResult.getContent());
     } else if(isStreaming(edmEntitySet, requestedContentType)) {
       final SerializerStreamResult serializerResult =
           serializeEntityCollectionStreamed(request,
-              entitySetSerialization, edmEntitySet, edmEntityType, requestedContentType,
-              expand, select, countOption, id);
+              entities, edmEntitySet, edmEntityType, requestedContentType,
+              expand, select, countOption, id, uriInfo);
 
       response.setODataContent(serializerResult.getODataContent());
     } else {
       final SerializerResult serializerResult =
           serializeEntityCollection(request,
-              entitySetSerialization, edmEntitySet, edmEntityType, requestedContentType,
+              transformToTree(entities, edmEntitySet, uriInfo), edmEntitySet, edmEntityType, requestedContentType,
               expand, select, countOption, id);
-      response.setContent(serializerResult.getContent());
+      if (serializerResult instanceof SerializerStreamResult) {
+        // The collection is written directly into the response output stream.
+        response.setODataContent(((SerializerStreamResult) serializerResult).getODataContent());
+      } else {
+        response.setContent(serializerResult.getContent());
+      }
     }
 
     //
@@ -556,6 +584,23 @@ public class TechnicalEntityProcessor extends TechnicalProcessor
     }
   }
 
+  /**
+   * Transforms the entity graph to a tree. The construction is controlled by the expand tree.
+   * All expand system query options are applied to the tree.
+   * So the expanded navigation properties can be modified for serialization,
+   * without affecting the data stored in the database.
+   */
+  private EntityCollection transformToTree(final EntityPipeline entities, final EdmEntitySet edmEntitySet,
+      final UriInfo uriInfo) throws ODataApplicationException {
+    final ExpandOption expand = uriInfo.getExpandOption();
+    final ExpandSystemQueryOptionHandler expandHandler = new ExpandSystemQueryOptionHandler();
+    final EntityCollection entitySetSerialization = expandHandler.transformEntitySetGraphToTree(
+        entities.toEntityCollection(), edmEntitySet, expand, null);
+    expandHandler.applyExpandQueryOptions(entitySetSerialization, edmEntitySet, expand, uriInfo,
+        serviceMetadata.getEdm());
+    return entitySetSerialization;
+  }
+
   /**
    * Check is streaming is enabled for this entity set in combination with the given content type.
    * <code>TRUE</code> if the technical scenario supports streaming for this combination,
@@ -575,7 +620,7 @@ public class TechnicalEntityProcessor extends TechnicalProcessor
       final ContentType requestedFormat, final ExpandOption expand, final SelectOption select,
       final CountOption countOption, String id) throws ODataLibraryException {
 
-    return odata.createSerializer(requestedFormat).entityCollection(
+    return odata.createWriteThroughSerializer(requestedFormat).entityCollection(
         serviceMetadata,
         edmEntityType,
         entityCollection,
@@ -588,24 +633,41 @@ public class TechnicalEntityProcessor extends TechnicalProcessor
             .build());
   }
 
-  // serialise as streamed collection
+  // serialise as streamed collection;
+  // each entity is read from the pipeline and transformed to a tree only when it is written
   private SerializerStreamResult serializeEntityCollectionStreamed(final ODataRequest request,
-      final EntityCollection entityCollection, final EdmEntitySet edmEntitySet,
+      final EntityPipeline entities, final EdmEntitySet edmEntitySet,
       final EdmEntityType edmEntityType,
       final ContentType requestedFormat, final ExpandOption expand, final SelectOption select,
-      final CountOption countOption, final String id) throws ODataLibraryException {
+      final CountOption countOption, final String id, final UriInfo uriInfo) throws ODataLibraryException {
 
     EntityIterator streamCollection = new EntityIterator() {
-      Iterator<Entity> entityIterator = entityCollection.iterator();
+      final ExpandSystemQueryOptionHandler expandHandler = new ExpandSystemQueryOptionHandler();
 
       @Override
       public boolean hasNext() {
-        return entityIterator.hasNext();
+        return entities.hasNext();
       }
 
       @Override
       public Entity next() {
-        return addToPrimitiveProperty(entityIterator.next(), "PropertyString", "->streamed");
+        try {
+          final Entity entity = expandHandler.transformEntityGraphToTree(entities.next(), edmEntitySet, expand, null);
+          expandHandler.applyExpandQueryOptions(entity, edmEntitySet, expand, uriInfo, serviceMetadata.getEdm());
+          return addToPrimitiveProperty(entity, "PropertyString", "->streamed");
+        } catch (final ODataApplicationException e) {
+          throw new SystemQueryOptionsRuntimeException(e);
+        }
+      }
+
+      @Override
+      public Integer getCount() {
+        return entities.getCount();
+      }
+
+      @Override
+      public URI getNext() {
+        return entities.getNext();
       }
 
       private Entity addToPrimitiveProperty(Entity entity, String name, Object data) {
@@ -707,8 +769,17 @@ public class TechnicalEntityProcessor extends TechnicalProcessor
     builder = entitySet == null ?
         isSingleEntity ? builder.type(entityType) : builder.asCollection().type(entityType) :
         builder.entitySet(entitySet);
+    String selectList = odata.createUriHelper().buildContextURLSelectList(entityType, expand, select);
+    if (selectList == null && entitySet != null && entityType != entitySet.getEntityType()) {
+      // The result of $apply has other properties than the entity type.
+      StringBuilder properties = new StringBuilder();
+      for (final String propertyName : entityType.getPropertyNames()) {
+        properties.append(properties.length() == 0 ? "" : ",").append(propertyName);
+      }
+      selectList = properties.toString();
+    }
     builder = builder
-        .selectList(odata.createUriHelper().buildContextURLSelectList(entityType, expand, select))
+        .selectList(selectList)
         .suffix(isSingleEntity && entitySet != null ? Suffix.ENTITY : null);
     return builder.build();
   }
@@ -129,8 +129,8 @@ public class ExpandSystemQueryOptionHandler {
       throws ODataApplicationException {
 
     FilterHandler.applyFilterSystemQuery(filterOption, entitySet, uriInfo, edm);
-    OrderByHandler.applyOrderByOption(orderByOption, entitySet, uriInfo, edm);
     CountHandler.applyCountSystemQueryOption(countOption, entitySet);
+    OrderByHandler.applyOrderByOption(orderByOption, skipOption, topOption, entitySet, uriInfo, edm);
     SkipHandler.applySkipSystemQueryHandler(skipOption, entitySet);
     TopHandler.applyTopSystemQueryOption(topOption, entitySet);
 
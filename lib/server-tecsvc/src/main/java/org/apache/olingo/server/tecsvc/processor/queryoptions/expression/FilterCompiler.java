@@ -0,0 +1,524 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.tecsvc.processor.queryoptions.expression;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.edm.Edm;
+import org.apache.olingo.commons.api.edm.EdmEnumType;
+import org.apache.olingo.commons.api.edm.EdmPrimitiveType;
+import org.apache.olingo.commons.api.edm.EdmPrimitiveTypeKind;
+import org.apache.olingo.commons.api.edm.EdmProperty;
+import org.apache.olingo.commons.api.edm.EdmType;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.OData;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.uri.UriInfoResource;
+import org.apache.olingo.server.api.uri.UriResource;
+import org.apache.olingo.server.api.uri.UriResourceProperty;
+import org.apache.olingo.server.api.uri.queryoption.expression.BinaryOperatorKind;
+import org.apache.olingo.server.api.uri.queryoption.expression.Expression;
+import org.apache.olingo.server.api.uri.queryoption.expression.ExpressionVisitException;
+import org.apache.olingo.server.api.uri.queryoption.expression.ExpressionVisitor;
+import org.apache.olingo.server.api.uri.queryoption.expression.Literal;
+import org.apache.olingo.server.api.uri.queryoption.expression.Member;
+import org.apache.olingo.server.api.uri.queryoption.expression.MethodKind;
+import org.apache.olingo.server.api.uri.queryoption.expression.UnaryOperatorKind;
+import org.apache.olingo.server.tecsvc.processor.queryoptions.expression.operand.TypedOperand;
+import org.apache.olingo.server.tecsvc.processor.queryoptions.expression.operand.UntypedOperand;
+import org.apache.olingo.server.tecsvc.processor.queryoptions.expression.operand.VisitorOperand;
+
+/**
+ * Compiles a filter expression into an {@link EntityPredicate}.
+ * <p/>
+ * The expression tree is visited only once per request instead of once per entity.
+ * Literals determine their type only once, and property paths are resolved in advance.
+ * Comparisons of a primitive property with an integer or string constant work directly
+ * on the property values; all other operations are evaluated with the operators
+ * of the {@link ExpressionVisitorImpl}.
+ * Both operands of <code>and</code> and <code>or</code> are always evaluated, so that errors are reported
+ * exactly as by the {@link ExpressionVisitorImpl}.
+ */
+public class FilterCompiler implements ExpressionVisitor<FilterCompiler.Node> {
+
+  private static final OData oData = OData.newInstance();
+  private static final EdmPrimitiveType primBoolean = oData.createPrimitiveTypeInstance(EdmPrimitiveTypeKind.Boolean);
+  private static final EdmPrimitiveType primString = oData.createPrimitiveTypeInstance(EdmPrimitiveTypeKind.String);
+  private static final Set<EdmPrimitiveType> integerTypes = new HashSet<EdmPrimitiveType>(Arrays.asList(
+      oData.createPrimitiveTypeInstance(EdmPrimitiveTypeKind.SByte),
+      oData.createPrimitiveTypeInstance(EdmPrimitiveTypeKind.Byte),
+      oData.createPrimitiveTypeInstance(EdmPrimitiveTypeKind.Int16),
+      oData.createPrimitiveTypeInstance(EdmPrimitiveTypeKind.Int32),
+      oData.createPrimitiveTypeInstance(EdmPrimitiveTypeKind.Int64)));
+
+  private final UriInfoResource uriInfo;
+  private final Edm edm;
+  /**
+   * Operators, method calls, and enumeration literals do not depend on the entity, so one instance
+   * serves all entities; it must not be used for anything else.
+   */
+  private final ExpressionVisitorImpl operators;
+
+  private FilterCompiler(final UriInfoResource uriInfo, final Edm edm) {
+    this.uriInfo = uriInfo;
+    this.edm = edm;
+    operators = new ExpressionVisitorImpl(null, uriInfo, edm);
+  }
+
+  /**
+   * Compiles the given filter expression.
+   * @param expression the filter expression
+   * @param uriInfo the URI info of the request, used for aliases and function calls
+   * @param edm the entity data model
+   * @return the predicate that can be evaluated for any number of entities
+   */
+  public static EntityPredicate compile(final Expression expression, final UriInfoResource uriInfo, final Edm edm)
+      throws ExpressionVisitException, ODataApplicationException {
+    final Node root = expression.accept(new FilterCompiler(uriInfo, edm));
+    return new EntityPredicate() {
+      @Override
+      public boolean matches(final Entity entity) throws ExpressionVisitException, ODataApplicationException {
+        Boolean result;
+        if (root instanceof Condition) {
+          result = ((Condition) root).test(entity);
+        } else {
+          final TypedOperand typedOperand = root.evaluate(entity).asTypedOperand();
+          if (typedOperand.is(primBoolean)) {
+            result = typedOperand.getTypedValue(Boolean.class);
+          } else {
+            throw new ODataApplicationException(
+                "Invalid filter expression. Filter expressions must return a value of type Edm.Boolean",
+                HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ROOT);
+          }
+        }
+        return !Boolean.FALSE.equals(result);
+      }
+    };
+  }
+
+  @Override
+  public Node visitBinaryOperator(final BinaryOperatorKind operator, final Node left, final Node right)
+      throws ExpressionVisitException, ODataApplicationException {
+    switch (operator) {
+    case AND:
+    case OR:
+      return left instanceof Condition && right instanceof Condition ?
+          new Junction(operator == BinaryOperatorKind.AND, (Condition) left, (Condition) right) :
+          new BinaryOperation(operator, left, right);
+    case EQ:
+    case NE:
+    case GE:
+    case GT:
+    case LE:
+    case LT:
+      final Comparison comparison = new Comparison(operator, left, right);
+      if (left instanceof PropertyPath && right instanceof Constant) {
+        return optimize(comparison, (PropertyPath) left, (Constant) right, false);
+      } else if (left instanceof Constant && right instanceof PropertyPath) {
+        return optimize(comparison, (PropertyPath) right, (Constant) left, true);
+      } else {
+        return comparison;
+      }
+    case HAS:
+      return new Comparison(operator, left, right);
+    default:
+      return new BinaryOperation(operator, left, right);
+    }
+  }
+
+  @Override
+  public Node visitUnaryOperator(final UnaryOperatorKind operator, final Node operand)
+      throws ExpressionVisitException, ODataApplicationException {
+    return operator == UnaryOperatorKind.NOT && operand instanceof Condition ?
+        new Negation((Condition) operand) :
+        new UnaryOperation(operator, operand);
+  }
+
+  @Override
+  public Node visitMethodCall(final MethodKind methodCall, final List<Node> parameters)
+      throws ExpressionVisitException, ODataApplicationException {
+    return new MethodCall(methodCall, parameters);
+  }
+
+  @Override
+  public Node visitLambdaExpression(final String lambdaFunction, final String lambdaVariable,
+      final Expression expression) throws ExpressionVisitException, ODataApplicationException {
+    return new NotImplemented();
+  }
+
+  @Override
+  public Node visitLiteral(final Literal literal) throws ExpressionVisitException, ODataApplicationException {
+    return new Constant(new LiteralOperand(literal.getText()));
+  }
+
+  @Override
+  public Node visitMember(final Member member) throws ExpressionVisitException, ODataApplicationException {
+    final List<UriResource> uriResourceParts = member.getResourcePath().getUriResourceParts();
+    EdmProperty[] path = new EdmProperty[uriResourceParts.size()];
+    for (int i = 0; i < path.length; i++) {
+      if (uriResourceParts.get(i) instanceof UriResourceProperty) {
+        path[i] = ((UriResourceProperty) uriResourceParts.get(i)).getProperty();
+      } else {
+        // Function calls and anything else are left to the expression visitor.
+        return new Node() {
+          @Override
+          VisitorOperand evaluate(final Entity entity) throws ExpressionVisitException, ODataApplicationException {
+            return new ExpressionVisitorImpl(entity, uriInfo, edm).visitMember(member);
+          }
+        };
+      }
+    }
+    return new PropertyPath(path);
+  }
+
+  @Override
+  public Node visitAlias(final String aliasName) throws ExpressionVisitException, ODataApplicationException {
+    return new Constant(new LiteralOperand(uriInfo.getValueForAlias(aliasName)));
+  }
+
+  @Override
+  public Node visitTypeLiteral(final EdmType type) throws ExpressionVisitException, ODataApplicationException {
+    return new NotImplemented();
+  }
+
+  @Override
+  public Node visitLambdaReference(final String variableName)
+      throws ExpressionVisitException, ODataApplicationException {
+    return new NotImplemented();
+  }
+
+  @Override
+  public Node visitEnum(final EdmEnumType type, final List<String> enumValues)
+      throws ExpressionVisitException, ODataApplicationException {
+    try {
+      return new Constant(operators.visitEnum(type, enumValues));
+    } catch (final ODataApplicationException e) {
+      // The error will be reported when the enumeration is evaluated.
+      return new Node() {
+        @Override
+        VisitorOperand evaluate(final Entity entity) throws ExpressionVisitException, ODataApplicationException {
+          return operators.visitEnum(type, enumValues);
+        }
+      };
+    }
+  }
+
+  /**
+   * Replaces the comparison of a single primitive property with a constant by a comparison
+   * of the property values with the constant converted in advance, if the types allow it.
+   */
+  private Node optimize(final Comparison comparison, final PropertyPath property, final Constant constant,
+      final boolean constantFirst) {
+    if (property.path.length != 1 || property.path[0].isCollection()) {
+      return comparison;
+    }
+    final TypedOperand typedConstant;
+    try {
+      typedConstant = constant.operand.asTypedOperand();
+    } catch (final ODataApplicationException e) {
+      // The error will be reported when the comparison is evaluated.
+      return comparison;
+    }
+    if (typedConstant.isNull()) {
+      return comparison;
+    }
+
+    final EdmType propertyType = property.path[0].getType();
+    Object value = null;
+    if (integerTypes.contains(propertyType) && integerTypes.contains(typedConstant.getType())
+        && typedConstant.getValue() instanceof BigInteger
+        && ((BigInteger) typedConstant.getValue()).bitLength() < Long.SIZE) {
+      value = ((BigInteger) typedConstant.getValue()).longValue();
+    } else if (primString.equals(propertyType) && typedConstant.is(primString)
+        && typedConstant.getValue() instanceof String) {
+      value = typedConstant.getValue();
+    }
+    return value == null ?
+        comparison :
+        new ConstantComparison(comparison, property.path[0].getName(), value, constantFirst);
+  }
+
+  /** Compiled part of an expression. */
+  abstract static class Node {
+    abstract VisitorOperand evaluate(Entity entity) throws ExpressionVisitException, ODataApplicationException;
+  }
+
+  /** Compiled part of an expression with a result of type Edm.Boolean. */
+  private abstract static class Condition extends Node {
+
+    /** Returns the result of the condition or <code>null</code> if it is unknown. */
+    abstract Boolean test(Entity entity) throws ExpressionVisitException, ODataApplicationException;
+
+    @Override
+    VisitorOperand evaluate(final Entity entity) throws ExpressionVisitException, ODataApplicationException {
+      return new TypedOperand(test(entity), primBoolean);
+    }
+  }
+
+  private static class Constant extends Node {
+    private final VisitorOperand operand;
+
+    private Constant(final VisitorOperand operand) {
+      this.operand = operand;
+    }
+
+    @Override
+    VisitorOperand evaluate(final Entity entity) {
+      return operand;
+    }
+  }
+
+  /**
+   * Lambda expressions and type literals are not supported, as by the {@link ExpressionVisitorImpl}.
+   * As there, the error is reported when the expression is evaluated for an entity.
+   */
+  private static class NotImplemented extends Node {
+    @Override
+    VisitorOperand evaluate(final Entity entity) throws ODataApplicationException {
+      throw new ODataApplicationException("Not implemented", HttpStatusCode.NOT_IMPLEMENTED.getStatusCode(),
+          Locale.ROOT);
+    }
+  }
+
+  /** Literal that remembers its conversions since it is used for every entity. */
+  private static class LiteralOperand extends UntypedOperand {
+    private TypedOperand typedOperand;
+    private EdmPrimitiveType castType;
+    private TypedOperand castOperand;
+
+    private LiteralOperand(final String literal) {
+      super(literal);
+    }
+
+    @Override
+    public TypedOperand asTypedOperand() throws ODataApplicationException {
+      if (typedOperand == null) {
+        typedOperand = super.asTypedOperand();
+      }
+      return typedOperand;
+    }
+
+    @Override
+    public TypedOperand asTypedOperand(final EdmPrimitiveType type) throws ODataApplicationException {
+      if (type != castType) {
+        castOperand = super.asTypedOperand(type);
+        castType = type;
+      }
+      return castOperand;
+    }
+  }
+
+  /** Path of properties, following complex properties in the same way as the {@link ExpressionVisitorImpl}. */
+  private static class PropertyPath extends Node {
+    private final EdmProperty[] path;
+
+    private PropertyPath(final EdmProperty[] path) {
+      this.path = path;
+    }
+
+    @Override
+    VisitorOperand evaluate(final Entity entity) {
+      EdmProperty currentEdmProperty = path[0];
+      Property currentProperty = entity.getProperty(currentEdmProperty.getName());
+      for (int i = 1; i < path.length; i++) {
+        if (currentProperty.isComplex()) {
+          currentEdmProperty = path[i];
+          for (final Property innerProperty : currentProperty.asComplex().getValue()) {
+            if (innerProperty.getName().equals(currentEdmProperty.getName())) {
+              currentProperty = innerProperty;
+              break;
+            }
+          }
+        }
+      }
+      return new TypedOperand(currentProperty.getValue(), currentEdmProperty.getType(), currentEdmProperty);
+    }
+  }
+
+  private class BinaryOperation extends Node {
+    protected final BinaryOperatorKind operator;
+    private final Node left;
+    private final Node right;
+
+    private BinaryOperation(final BinaryOperatorKind operator, final Node left, final Node right) {
+      this.operator = operator;
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    VisitorOperand evaluate(final Entity entity) throws ExpressionVisitException, ODataApplicationException {
+      return operators.visitBinaryOperator(operator, left.evaluate(entity), right.evaluate(entity));
+    }
+  }
+
+  private class Comparison extends Condition {
+    private final BinaryOperation operation;
+
+    private Comparison(final BinaryOperatorKind operator, final Node left, final Node right) {
+      operation = new BinaryOperation(operator, left, right);
+    }
+
+    @Override
+    Boolean test(final Entity entity) throws ExpressionVisitException, ODataApplicationException {
+      return (Boolean) operation.evaluate(entity).getValue();
+    }
+  }
+
+  private static class ConstantComparison extends Condition {
+    private final Comparison comparison;
+    private final String propertyName;
+    private final Object constant;
+    private final boolean constantFirst;
+
+    private ConstantComparison(final Comparison comparison, final String propertyName, final Object constant,
+        final boolean constantFirst) {
+      this.comparison = comparison;
+      this.propertyName = propertyName;
+      this.constant = constant;
+      this.constantFirst = constantFirst;
+    }
+
+    @Override
+    Boolean test(final Entity entity) throws ExpressionVisitException, ODataApplicationException {
+      final Property property = entity.getProperty(propertyName);
+      if (property == null) {
+        return comparison.test(entity);
+      }
+      final Object value = property.getValue();
+      final BinaryOperatorKind operator = comparison.operation.operator;
+      if (value == null) {
+        return operator == BinaryOperatorKind.NE;
+      }
+
+      int result;
+      if (constant instanceof Long
+          && (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte)) {
+        final long left = constantFirst ? (Long) constant : ((Number) value).longValue();
+        final long right = constantFirst ? ((Number) value).longValue() : (Long) constant;
+        result = left < right ? -1 : left == right ? 0 : 1;
+      } else if (constant instanceof String && value instanceof String) {
+        result = constantFirst ?
+            ((String) constant).compareTo((String) value) :
+            ((String) value).compareTo((String) constant);
+      } else {
+        return comparison.test(entity);
+      }
+
+      switch (operator) {
+      case EQ:
+        return result == 0;
+      case NE:
+        return result != 0;
+      case GE:
+        return result >= 0;
+      case GT:
+        return result > 0;
+      case LE:
+        return result <= 0;
+      case LT:
+        return result < 0;
+      default:
+        return comparison.test(entity);
+      }
+    }
+  }
+
+  /** Conjunction or disjunction with the three-valued logic of the BinaryOperator. */
+  private static class Junction extends Condition {
+    private final boolean conjunction;
+    private final Condition left;
+    private final Condition right;
+
+    private Junction(final boolean conjunction, final Condition left, final Condition right) {
+      this.conjunction = conjunction;
+      this.left = left;
+      this.right = right;
+    }
+
+    @Override
+    Boolean test(final Entity entity) throws ExpressionVisitException, ODataApplicationException {
+      // false for a conjunction and true for a disjunction determine the result;
+      // the right operand is evaluated anyway to report its errors
+      final Boolean decisive = !conjunction;
+      final Boolean leftResult = left.test(entity);
+      final Boolean rightResult = right.test(entity);
+      if (decisive.equals(leftResult) || decisive.equals(rightResult)) {
+        return decisive;
+      }
+      return leftResult == null || rightResult == null ? null : conjunction;
+    }
+  }
+
+  private static class Negation extends Condition {
+    private final Condition operand;
+
+    private Negation(final Condition operand) {
+      this.operand = operand;
+    }
+
+    @Override
+    Boolean test(final Entity entity) throws ExpressionVisitException, ODataApplicationException {
+      final Boolean result = operand.test(entity);
+      return result == null ? null : !result;
+    }
+  }
+
+  private class UnaryOperation extends Node {
+    private final UnaryOperatorKind operator;
+    private final Node operand;
+
+    private UnaryOperation(final UnaryOperatorKind operator, final Node operand) {
+      this.operator = operator;
+      this.operand = operand;
+    }
+
+    @Override
+    VisitorOperand evaluate(final Entity entity) throws ExpressionVisitException, ODataApplicationException {
+      return operators.visitUnaryOperator(operator, operand.evaluate(entity));
+    }
+  }
+
+  private class MethodCall extends Node {
+    private final MethodKind method;
+    private final List<Node> parameters;
+
+    private MethodCall(final MethodKind method, final List<Node> parameters) {
+      this.method = method;
+      this.parameters = parameters;
+    }
+
+    @Override
+    VisitorOperand evaluate(final Entity entity) throws ExpressionVisitException, ODataApplicationException {
+      List<VisitorOperand> values = new ArrayList<VisitorOperand>(parameters.size());
+      for (final Node parameter : parameters) {
+        values.add(parameter.evaluate(entity));
+      }
+      return operators.visitMethodCall(method, values);
+    }
+  }
+}
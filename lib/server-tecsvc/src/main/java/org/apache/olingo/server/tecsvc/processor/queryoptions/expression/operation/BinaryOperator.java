@@ -191,8 +191,9 @@ public class BinaryOperator {
       }
     } 
 
+    // Only the sign of the comparison result is defined.
     for (int expectedValue : expect) {
-      if (expectedValue == result) {
+      if (expectedValue == Integer.signum(result)) {
         return true;
       }
     }
@@ -0,0 +1,177 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.tecsvc.processor.queryoptions.options;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.math.MathContext;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.olingo.server.api.uri.queryoption.apply.AggregateExpression.StandardMethod;
+
+/**
+ * Accumulates the values of one aggregate expression for one group.
+ * <p/>
+ * Integer and floating-point values are summed up in primitive fields;
+ * only decimal values and sums exceeding the range of <code>long</code>
+ * use {@link BigDecimal} arithmetic.
+ * <code>null</code> values are ignored by all aggregation methods.
+ */
+abstract class Accumulator {
+
+  abstract void add(Object value);
+
+  abstract Object getResult();
+
+  /** Creates a new accumulator for a standard aggregation method or for <code>$count</code> if the method is null. */
+  static Accumulator create(final StandardMethod method) {
+    if (method == null) {
+      return new Count();
+    }
+    switch (method) {
+    case SUM:
+      return new Sum();
+    case AVERAGE:
+      return new Average();
+    case MIN:
+      return new Extremum(false);
+    case MAX:
+      return new Extremum(true);
+    case COUNT_DISTINCT:
+      return new CountDistinct();
+    default:
+      throw new IllegalArgumentException("Unknown aggregation method " + method);
+    }
+  }
+
+  /** Counts all entities of the group, also those with <code>null</code> values. */
+  static class Count extends Accumulator {
+    private long count;
+
+    @Override
+    void add(final Object value) {
+      count++;
+    }
+
+    @Override
+    Object getResult() {
+      return BigDecimal.valueOf(count);
+    }
+  }
+
+  static class Sum extends Accumulator {
+    private long longSum;
+    private double doubleSum;
+    private boolean hasDouble;
+    private BigDecimal decimalSum;
+    protected long count;
+
+    @Override
+    void add(final Object value) {
+      if (value == null) {
+        return;
+      }
+      count++;
+      if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+        final long summand = ((Number) value).longValue();
+        final long result = longSum + summand;
+        if (((longSum ^ result) & (summand ^ result)) < 0) {
+          // Overflow; the sum so far continues as decimal.
+          decimalSum = addDecimal(BigDecimal.valueOf(longSum));
+          longSum = summand;
+        } else {
+          longSum = result;
+        }
+      } else if (value instanceof Double || value instanceof Float) {
+        doubleSum += ((Number) value).doubleValue();
+        hasDouble = true;
+      } else if (value instanceof BigDecimal) {
+        decimalSum = addDecimal((BigDecimal) value);
+      } else if (value instanceof BigInteger) {
+        decimalSum = addDecimal(new BigDecimal((BigInteger) value));
+      } else {
+        decimalSum = addDecimal(new BigDecimal(value.toString()));
+      }
+    }
+
+    private BigDecimal addDecimal(final BigDecimal summand) {
+      return decimalSum == null ? summand : decimalSum.add(summand);
+    }
+
+    @Override
+    Object getResult() {
+      BigDecimal result = BigDecimal.valueOf(longSum);
+      if (hasDouble) {
+        result = result.add(BigDecimal.valueOf(doubleSum));
+      }
+      return decimalSum == null ? result : result.add(decimalSum);
+    }
+  }
+
+  static class Average extends Sum {
+    @Override
+    Object getResult() {
+      return count == 0 ? null :
+          ((BigDecimal) super.getResult()).divide(BigDecimal.valueOf(count), MathContext.DECIMAL64);
+    }
+  }
+
+  /** Determines the minimum or maximum; all values of one expression have the same type. */
+  static class Extremum extends Accumulator {
+    private final boolean isMaximum;
+    private Comparable<Object> result;
+
+    Extremum(final boolean isMaximum) {
+      this.isMaximum = isMaximum;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    void add(final Object value) {
+      if (value != null) {
+        final Comparable<Object> comparable = (Comparable<Object>) value;
+        if (result == null || (isMaximum ? comparable.compareTo(result) > 0 : comparable.compareTo(result) < 0)) {
+          result = comparable;
+        }
+      }
+    }
+
+    @Override
+    Object getResult() {
+      return result;
+    }
+  }
+
+  static class CountDistinct extends Accumulator {
+    private final Set<Object> values = new HashSet<Object>();
+
+    @Override
+    void add(final Object value) {
+      if (value != null) {
+        values.add(value);
+      }
+    }
+
+    @Override
+    Object getResult() {
+      return BigDecimal.valueOf(values.size());
+    }
+  }
+}
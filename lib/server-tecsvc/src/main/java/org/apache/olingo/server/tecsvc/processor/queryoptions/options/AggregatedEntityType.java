@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.tecsvc.processor.queryoptions.options;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.olingo.commons.api.edm.EdmAnnotation;
+import org.apache.olingo.commons.api.edm.EdmElement;
+import org.apache.olingo.commons.api.edm.EdmEntityType;
+import org.apache.olingo.commons.api.edm.EdmKeyPropertyRef;
+import org.apache.olingo.commons.api.edm.EdmNavigationProperty;
+import org.apache.olingo.commons.api.edm.EdmProperty;
+import org.apache.olingo.commons.api.edm.EdmTerm;
+import org.apache.olingo.commons.api.edm.EdmType;
+import org.apache.olingo.commons.api.edm.FullQualifiedName;
+import org.apache.olingo.commons.api.edm.constants.EdmTypeKind;
+
+/**
+ * The entity type of the result of <code>$apply</code>, used for serialization.
+ * <p/>
+ * It has the structural properties of the result in their output order.
+ * Aggregated results no longer represent single entities, so they have
+ * neither keys nor navigation properties.
+ */
+class AggregatedEntityType implements EdmEntityType {
+
+  private final EdmEntityType startType;
+  private final Map<String, EdmProperty> properties;
+  private final List<String> propertyNames;
+  private final boolean isAggregated;
+
+  AggregatedEntityType(final EdmEntityType startType, final Map<String, EdmProperty> properties,
+      final boolean isAggregated) {
+    this.startType = startType;
+    this.properties = properties;
+    propertyNames = Collections.unmodifiableList(new ArrayList<String>(properties.keySet()));
+    this.isAggregated = isAggregated;
+  }
+
+  @Override
+  public EdmElement getProperty(final String name) {
+    final EdmProperty property = properties.get(name);
+    return property == null ? getNavigationProperty(name) : property;
+  }
+
+  @Override
+  public List<String> getPropertyNames() {
+    return propertyNames;
+  }
+
+  @Override
+  public EdmProperty getStructuralProperty(final String name) {
+    return properties.get(name);
+  }
+
+  @Override
+  public EdmNavigationProperty getNavigationProperty(final String name) {
+    return isAggregated ? null : startType.getNavigationProperty(name);
+  }
+
+  @Override
+  public List<String> getNavigationPropertyNames() {
+    return isAggregated ? Collections.<String> emptyList() : startType.getNavigationPropertyNames();
+  }
+
+  @Override
+  public List<String> getKeyPredicateNames() {
+    return isAggregated ? Collections.<String> emptyList() : startType.getKeyPredicateNames();
+  }
+
+  @Override
+  public List<EdmKeyPropertyRef> getKeyPropertyRefs() {
+    return isAggregated ? Collections.<EdmKeyPropertyRef> emptyList() : startType.getKeyPropertyRefs();
+  }
+
+  @Override
+  public EdmKeyPropertyRef getKeyPropertyRef(final String keyPredicateName) {
+    return isAggregated ? null : startType.getKeyPropertyRef(keyPredicateName);
+  }
+
+  @Override
+  public boolean hasStream() {
+    return !isAggregated && startType.hasStream();
+  }
+
+  @Override
+  public EdmEntityType getBaseType() {
+    return startType.getBaseType();
+  }
+
+  @Override
+  public String getNamespace() {
+    return startType.getNamespace();
+  }
+
+  @Override
+  public String getName() {
+    return startType.getName();
+  }
+
+  @Override
+  public FullQualifiedName getFullQualifiedName() {
+    return startType.getFullQualifiedName();
+  }
+
+  @Override
+  public EdmTypeKind getKind() {
+    return startType.getKind();
+  }
+
+  @Override
+  public EdmAnnotation getAnnotation(final EdmTerm term, final String qualifier) {
+    return startType.getAnnotation(term, qualifier);
+  }
+
+  @Override
+  public List<EdmAnnotation> getAnnotations() {
+    return startType.getAnnotations();
+  }
+
+  @Override
+  public boolean compatibleTo(final EdmType targetType) {
+    return startType.compatibleTo(targetType);
+  }
+
+  @Override
+  public boolean isOpenType() {
+    return startType.isOpenType();
+  }
+
+  @Override
+  public boolean isAbstract() {
+    return startType.isAbstract();
+  }
+}
@@ -0,0 +1,568 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.tecsvc.processor.queryoptions.options;
+
+import java.math.BigDecimal;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.data.ValueType;
+import org.apache.olingo.commons.api.edm.Edm;
+import org.apache.olingo.commons.api.edm.EdmEntityType;
+import org.apache.olingo.commons.api.edm.EdmPrimitiveType;
+import org.apache.olingo.commons.api.edm.EdmPrimitiveTypeKind;
+import org.apache.olingo.commons.api.edm.EdmProperty;
+import org.apache.olingo.commons.api.edm.EdmType;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.OData;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.uri.UriInfoResource;
+import org.apache.olingo.server.api.uri.UriResource;
+import org.apache.olingo.server.api.uri.UriResourceCount;
+import org.apache.olingo.server.api.uri.UriResourceProperty;
+import org.apache.olingo.server.api.uri.queryoption.ApplyItem;
+import org.apache.olingo.server.api.uri.queryoption.ApplyOption;
+import org.apache.olingo.server.api.uri.queryoption.apply.Aggregate;
+import org.apache.olingo.server.api.uri.queryoption.apply.AggregateExpression;
+import org.apache.olingo.server.api.uri.queryoption.apply.AggregateExpression.StandardMethod;
+import org.apache.olingo.server.api.uri.queryoption.apply.BottomTop;
+import org.apache.olingo.server.api.uri.queryoption.apply.Compute;
+import org.apache.olingo.server.api.uri.queryoption.apply.ComputeExpression;
+import org.apache.olingo.server.api.uri.queryoption.apply.Filter;
+import org.apache.olingo.server.api.uri.queryoption.apply.GroupBy;
+import org.apache.olingo.server.api.uri.queryoption.apply.GroupByItem;
+import org.apache.olingo.server.api.uri.queryoption.expression.Expression;
+import org.apache.olingo.server.api.uri.queryoption.expression.ExpressionVisitException;
+import org.apache.olingo.server.api.uri.queryoption.expression.Member;
+import org.apache.olingo.server.tecsvc.processor.queryoptions.expression.EntityPredicate;
+import org.apache.olingo.server.tecsvc.processor.queryoptions.expression.ExpressionVisitorImpl;
+import org.apache.olingo.server.tecsvc.processor.queryoptions.expression.FilterCompiler;
+import org.apache.olingo.server.tecsvc.processor.queryoptions.expression.operand.TypedOperand;
+
+/**
+ * Executes the transformations of the system query option <code>$apply</code>.
+ * <p/>
+ * Supported are <code>identity</code>, <code>filter</code>, <code>compute</code>,
+ * <code>aggregate</code> with the standard aggregation methods and <code>$count</code>,
+ * <code>groupby</code> with primitive grouping properties, <code>topcount</code>, and <code>bottomcount</code>.
+ * <p/>
+ * Grouping uses a hash table from the values of the grouping properties to the group.
+ * If the group is only aggregated, the table holds the {@link Accumulator}s of the group,
+ * and the entities are aggregated in a single pass without collecting them.
+ * The entities of the data provider are never modified; computed properties are added to copies.
+ */
+public class ApplyHandler {
+
+  private static final OData oData = OData.newInstance();
+  private static final EdmPrimitiveType primDecimal = oData.createPrimitiveTypeInstance(EdmPrimitiveTypeKind.Decimal);
+  private static final EdmPrimitiveType primString = oData.createPrimitiveTypeInstance(EdmPrimitiveTypeKind.String);
+  private static final Set<EdmPrimitiveType> numericTypes = new HashSet<EdmPrimitiveType>(Arrays.asList(
+      oData.createPrimitiveTypeInstance(EdmPrimitiveTypeKind.SByte),
+      oData.createPrimitiveTypeInstance(EdmPrimitiveTypeKind.Byte),
+      oData.createPrimitiveTypeInstance(EdmPrimitiveTypeKind.Int16),
+      oData.createPrimitiveTypeInstance(EdmPrimitiveTypeKind.Int32),
+      oData.createPrimitiveTypeInstance(EdmPrimitiveTypeKind.Int64),
+      oData.createPrimitiveTypeInstance(EdmPrimitiveTypeKind.Single),
+      oData.createPrimitiveTypeInstance(EdmPrimitiveTypeKind.Double),
+      primDecimal));
+
+  private final UriInfoResource uriInfo;
+  private final Edm edm;
+  private boolean isAggregated;
+
+  private ApplyHandler(final UriInfoResource uriInfo, final Edm edm) {
+    this.uriInfo = uriInfo;
+    this.edm = edm;
+  }
+
+  /**
+   * Replaces the entities of the collection with the result of the transformations.
+   * @return the entity type of the result, or the given entity type if the structure has not changed
+   */
+  public static EdmEntityType applyApplySystemQueryOption(final ApplyOption applyOption,
+      final EntityCollection entitySet, final EdmEntityType entityType, final UriInfoResource uriInfo,
+      final Edm edm) throws ODataApplicationException {
+
+    if (applyOption == null) {
+      return entityType;
+    }
+
+    Map<String, EdmProperty> structure = new LinkedHashMap<String, EdmProperty>();
+    for (final String name : entityType.getPropertyNames()) {
+      structure.put(name, entityType.getStructuralProperty(name));
+    }
+
+    final ApplyHandler handler = new ApplyHandler(uriInfo, edm);
+    final List<Entity> result;
+    try {
+      result = handler.apply(applyOption.getApplyItems(), entitySet.getEntities(), structure);
+    } catch (final ExpressionVisitException e) {
+      throw new ODataApplicationException("Exception in apply evaluation",
+          HttpStatusCode.INTERNAL_SERVER_ERROR.getStatusCode(), Locale.ROOT, e);
+    }
+    if (handler.isAggregated && uriInfo.getExpandOption() != null) {
+      throw new ODataApplicationException("Expand is not supported for aggregated results.",
+          HttpStatusCode.NOT_IMPLEMENTED.getStatusCode(), Locale.ROOT);
+    }
+
+    if (result != entitySet.getEntities()) {
+      entitySet.getEntities().clear();
+      entitySet.getEntities().addAll(result);
+    }
+    return handler.isAggregated || structure.size() != entityType.getPropertyNames().size() ?
+        new AggregatedEntityType(entityType, structure, handler.isAggregated) :
+        entityType;
+  }
+
+  /**
+   * Applies the transformations in sequence.
+   * @param structure the structural properties of the input, updated to the structure of the result
+   */
+  private List<Entity> apply(final List<ApplyItem> items, final List<Entity> entities,
+      final Map<String, EdmProperty> structure) throws ODataApplicationException, ExpressionVisitException {
+    List<Entity> result = entities;
+    for (final ApplyItem item : items) {
+      switch (item.getKind()) {
+      case IDENTITY:
+        break;
+      case FILTER:
+        result = filter(((Filter) item).getFilterOption().getExpression(), result);
+        break;
+      case COMPUTE:
+        result = compute(((Compute) item).getExpressions(), result, structure);
+        break;
+      case AGGREGATE:
+        result = aggregate(((Aggregate) item).getExpressions(), result, structure);
+        break;
+      case GROUP_BY:
+        result = groupBy((GroupBy) item, result, structure);
+        break;
+      case BOTTOM_TOP:
+        result = bottomTop((BottomTop) item, result);
+        break;
+      default:
+        throw notImplemented("The transformation " + item.getKind() + " is not supported.");
+      }
+    }
+    return result;
+  }
+
+  private List<Entity> filter(final Expression expression, final List<Entity> entities)
+      throws ODataApplicationException, ExpressionVisitException {
+    final EntityPredicate predicate = FilterCompiler.compile(expression, uriInfo, edm);
+    List<Entity> result = new ArrayList<Entity>();
+    for (final Entity entity : entities) {
+      if (predicate.matches(entity)) {
+        result.add(entity);
+      }
+    }
+    return result;
+  }
+
+  private List<Entity> compute(final List<ComputeExpression> expressions, final List<Entity> entities,
+      final Map<String, EdmProperty> structure) throws ODataApplicationException, ExpressionVisitException {
+    ValueReader[] readers = new ValueReader[expressions.size()];
+    for (int index = 0; index < readers.length; index++) {
+      readers[index] = createReader(expressions.get(index).getExpression());
+    }
+
+    List<Entity> result = new ArrayList<Entity>(entities.size());
+    for (final Entity entity : entities) {
+      Entity copy = new Entity();
+      copy.setId(entity.getId());
+      copy.setType(entity.getType());
+      copy.setETag(entity.getETag());
+      copy.getProperties().addAll(entity.getProperties());
+      copy.getNavigationLinks().addAll(entity.getNavigationLinks());
+      copy.getNavigationBindings().addAll(entity.getNavigationBindings());
+      for (int index = 0; index < readers.length; index++) {
+        final Object value = readers[index].read(entity);
+        copy.getProperties().add(createProperty(expressions.get(index).getAlias(), readers[index].getType(), value));
+      }
+      result.add(copy);
+    }
+
+    for (int index = 0; index < readers.length; index++) {
+      final String alias = expressions.get(index).getAlias();
+      structure.put(alias, new AggregatedProperty(alias, readers[index].getType()));
+    }
+    return result;
+  }
+
+  private List<Entity> aggregate(final List<AggregateExpression> expressions, final List<Entity> entities,
+      final Map<String, EdmProperty> structure) throws ODataApplicationException, ExpressionVisitException {
+    final Aggregation aggregation = new Aggregation(expressions);
+    final Accumulator[] accumulators = aggregation.createAccumulators();
+    for (final Entity entity : entities) {
+      aggregation.add(accumulators, entity);
+    }
+    Entity entity = new Entity();
+    aggregation.addResults(accumulators, entity);
+
+    structure.clear();
+    aggregation.addProperties(structure);
+    isAggregated = true;
+    List<Entity> result = new ArrayList<Entity>(1);
+    result.add(entity);
+    return result;
+  }
+
+  private List<Entity> groupBy(final GroupBy groupBy, final List<Entity> entities,
+      final Map<String, EdmProperty> structure) throws ODataApplicationException, ExpressionVisitException {
+    final List<EdmProperty> grouping = getGroupingProperties(groupBy.getGroupByItems(), structure);
+    final List<ApplyItem> items = groupBy.getApplyOption() == null ?
+        Collections.<ApplyItem> emptyList() :
+        groupBy.getApplyOption().getApplyItems();
+    Map<String, EdmProperty> resultStructure = new LinkedHashMap<String, EdmProperty>();
+    for (final EdmProperty property : grouping) {
+      resultStructure.put(property.getName(), property);
+    }
+    List<Entity> result = new ArrayList<Entity>();
+
+    if (items.isEmpty() || items.size() == 1 && items.get(0).getKind() == ApplyItem.Kind.AGGREGATE) {
+      final Aggregation aggregation = new Aggregation(items.isEmpty() ?
+          Collections.<AggregateExpression> emptyList() :
+          ((Aggregate) items.get(0)).getExpressions());
+      Map<List<Object>, Accumulator[]> groups = new LinkedHashMap<List<Object>, Accumulator[]>();
+      for (final Entity entity : entities) {
+        final List<Object> key = getGroupKey(entity, grouping);
+        Accumulator[] accumulators = groups.get(key);
+        if (accumulators == null) {
+          accumulators = aggregation.createAccumulators();
+          groups.put(key, accumulators);
+        }
+        aggregation.add(accumulators, entity);
+      }
+      for (final Map.Entry<List<Object>, Accumulator[]> group : groups.entrySet()) {
+        Entity entity = createGroupEntity(grouping, group.getKey());
+        aggregation.addResults(group.getValue(), entity);
+        result.add(entity);
+      }
+      aggregation.addProperties(resultStructure);
+
+    } else {
+      Map<List<Object>, List<Entity>> groups = new LinkedHashMap<List<Object>, List<Entity>>();
+      for (final Entity entity : entities) {
+        final List<Object> key = getGroupKey(entity, grouping);
+        List<Entity> groupEntities = groups.get(key);
+        if (groupEntities == null) {
+          groupEntities = new ArrayList<Entity>();
+          groups.put(key, groupEntities);
+        }
+        groupEntities.add(entity);
+      }
+      Map<String, EdmProperty> groupStructure = null;
+      for (final Map.Entry<List<Object>, List<Entity>> group : groups.entrySet()) {
+        groupStructure = new LinkedHashMap<String, EdmProperty>(structure);
+        for (final Entity groupResult : apply(items, group.getValue(), groupStructure)) {
+          Entity entity = createGroupEntity(grouping, group.getKey());
+          for (final Property property : groupResult.getProperties()) {
+            if (!resultStructure.containsKey(property.getName())) {
+              entity.getProperties().add(property);
+            }
+          }
+          result.add(entity);
+        }
+      }
+      if (groupStructure != null) {
+        for (final Map.Entry<String, EdmProperty> entry : groupStructure.entrySet()) {
+          if (!resultStructure.containsKey(entry.getKey())) {
+            resultStructure.put(entry.getKey(), entry.getValue());
+          }
+        }
+      }
+    }
+
+    structure.clear();
+    structure.putAll(resultStructure);
+    isAggregated = true;
+    return result;
+  }
+
+  private List<EdmProperty> getGroupingProperties(final List<GroupByItem> items,
+      final Map<String, EdmProperty> structure) throws ODataApplicationException {
+    List<EdmProperty> properties = new ArrayList<EdmProperty>();
+    for (final GroupByItem item : items) {
+      final List<UriResource> path = item.getPath();
+      if (item.isRollupAll() || item.getRollup() != null && !item.getRollup().isEmpty()
+          || path.size() != 1 || !(path.get(0) instanceof UriResourceProperty)
+          || !((UriResourceProperty) path.get(0)).getProperty().isPrimitive()) {
+        throw notImplemented("Only grouping by primitive properties is supported.");
+      }
+      final EdmProperty property = ((UriResourceProperty) path.get(0)).getProperty();
+      properties.add(structure.containsKey(property.getName()) ? structure.get(property.getName()) : property);
+    }
+    return properties;
+  }
+
+  private List<Object> getGroupKey(final Entity entity, final List<EdmProperty> grouping) {
+    Object[] values = new Object[grouping.size()];
+    for (int index = 0; index < values.length; index++) {
+      final Property property = entity.getProperty(grouping.get(index).getName());
+      values[index] = property == null ? null : property.getValue();
+    }
+    return Arrays.asList(values);
+  }
+
+  private Entity createGroupEntity(final List<EdmProperty> grouping, final List<Object> key) {
+    Entity entity = new Entity();
+    for (int index = 0; index < key.size(); index++) {
+      final EdmProperty property = grouping.get(index);
+      entity.getProperties().add(createProperty(property.getName(), property.getType(), key.get(index)));
+    }
+    return entity;
+  }
+
+  private List<Entity> bottomTop(final BottomTop bottomTop, final List<Entity> entities)
+      throws ODataApplicationException, ExpressionVisitException {
+    final boolean isTop = bottomTop.getMethod() == BottomTop.Method.TOP_COUNT;
+    if (!isTop && bottomTop.getMethod() != BottomTop.Method.BOTTOM_COUNT) {
+      throw notImplemented("The transformation " + bottomTop.getMethod() + " is not supported.");
+    }
+    final Object number = bottomTop.getNumber().accept(new ExpressionVisitorImpl(null, uriInfo, edm))
+        .asTypedOperand().getValue();
+    if (!(number instanceof Number) || ((Number) number).intValue() < 0) {
+      throw new ODataApplicationException("The number of entities must be a non-negative integer.",
+          HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ROOT);
+    }
+
+    final ValueReader reader = createReader(bottomTop.getValue());
+    checkNumeric(reader, bottomTop.getMethod().toString());
+    List<Map.Entry<BigDecimal, Entity>> ranking = new ArrayList<Map.Entry<BigDecimal, Entity>>(entities.size());
+    for (final Entity entity : entities) {
+      ranking.add(new AbstractMap.SimpleImmutableEntry<BigDecimal, Entity>(
+          toDecimal(reader.read(entity), bottomTop.getMethod().toString()),
+          entity));
+    }
+    // The sort is stable, so entities with equal values keep their order; null values come last.
+    Collections.sort(ranking, new Comparator<Map.Entry<BigDecimal, Entity>>() {
+      @Override
+      public int compare(final Map.Entry<BigDecimal, Entity> first, final Map.Entry<BigDecimal, Entity> second) {
+        if (first.getKey() == null || second.getKey() == null) {
+          return first.getKey() == null ? second.getKey() == null ? 0 : 1 : -1;
+        }
+        return isTop ? second.getKey().compareTo(first.getKey()) : first.getKey().compareTo(second.getKey());
+      }
+    });
+
+    final int count = Math.min(((Number) number).intValue(), ranking.size());
+    List<Entity> result = new ArrayList<Entity>(count);
+    for (int index = 0; index < count; index++) {
+      result.add(ranking.get(index).getValue());
+    }
+    return result;
+  }
+
+  private Property createProperty(final String name, final EdmType type, final Object value) {
+    return new Property(type == null ? null : type.getFullQualifiedName().getFullQualifiedNameAsString(),
+        name, ValueType.PRIMITIVE, value);
+  }
+
+  /** Checks that the values of the reader are numbers, as far as their type is known in advance. */
+  private static void checkNumeric(final ValueReader reader, final String method) throws ODataApplicationException {
+    if (reader instanceof PropertyReader && !numericTypes.contains(reader.getType())) {
+      throw notNumeric(method);
+    }
+  }
+
+  /** Converts a value that must be a number into a decimal value. */
+  private static BigDecimal toDecimal(final Object value, final String method) throws ODataApplicationException {
+    if (value == null || value instanceof BigDecimal) {
+      return (BigDecimal) value;
+    } else if (value instanceof Number) {
+      try {
+        return new BigDecimal(value.toString());
+      } catch (final NumberFormatException e) {
+        // not a finite number
+      }
+    }
+    throw notNumeric(method);
+  }
+
+  private static ODataApplicationException notNumeric(final String method) {
+    return new ODataApplicationException("The values of " + method + " must be finite numbers.",
+        HttpStatusCode.BAD_REQUEST.getStatusCode(), Locale.ROOT);
+  }
+
+  private ODataApplicationException notImplemented(final String message) {
+    return new ODataApplicationException(message, HttpStatusCode.NOT_IMPLEMENTED.getStatusCode(), Locale.ROOT);
+  }
+
+  /**
+   * Creates a reader for the value of an expression.
+   * Primitive properties are read directly from the entity;
+   * all other expressions are evaluated with the {@link ExpressionVisitorImpl}.
+   */
+  private ValueReader createReader(final Expression expression) {
+    if (expression instanceof Member) {
+      final List<UriResource> parts = ((Member) expression).getResourcePath().getUriResourceParts();
+      if (parts.size() == 1 && parts.get(0) instanceof UriResourceProperty) {
+        final EdmProperty property = ((UriResourceProperty) parts.get(0)).getProperty();
+        if (property.isPrimitive() && !property.isCollection()) {
+          return new PropertyReader(property);
+        }
+      }
+    }
+    return new ExpressionReader(expression);
+  }
+
+  private abstract static class ValueReader {
+    abstract Object read(Entity entity) throws ODataApplicationException, ExpressionVisitException;
+
+    /** Returns the type of the values read so far. */
+    abstract EdmType getType();
+  }
+
+  private static class PropertyReader extends ValueReader {
+    private final EdmProperty property;
+
+    PropertyReader(final EdmProperty property) {
+      this.property = property;
+    }
+
+    @Override
+    Object read(final Entity entity) {
+      final Property value = entity.getProperty(property.getName());
+      return value == null ? null : value.getValue();
+    }
+
+    @Override
+    EdmType getType() {
+      return property.getType();
+    }
+  }
+
+  private class ExpressionReader extends ValueReader {
+    private final Expression expression;
+    private EdmType type;
+
+    ExpressionReader(final Expression expression) {
+      this.expression = expression;
+    }
+
+    @Override
+    Object read(final Entity entity) throws ODataApplicationException, ExpressionVisitException {
+      final TypedOperand operand = expression.accept(new ExpressionVisitorImpl(entity, uriInfo, edm))
+          .asTypedOperand();
+      if (operand.isNull()) {
+        return null;
+      }
+      if (type == null) {
+        type = operand.getType();
+      }
+      return operand.getValue();
+    }
+
+    @Override
+    EdmType getType() {
+      // Without any non-null value, the type cannot be determined; it is irrelevant for null values, though.
+      return type == null ? primString : type;
+    }
+  }
+
+  /** The aggregate expressions of an <code>aggregate</code> transformation. */
+  private class Aggregation {
+    private final List<AggregateExpression> expressions;
+    /** The readers of the aggregated values; <code>null</code> for <code>$count</code>. */
+    private final ValueReader[] readers;
+
+    Aggregation(final List<AggregateExpression> expressions) throws ODataApplicationException {
+      this.expressions = expressions;
+      readers = new ValueReader[expressions.size()];
+      for (int index = 0; index < readers.length; index++) {
+        final AggregateExpression expression = expressions.get(index);
+        if (expression.getInlineAggregateExpression() != null || expression.getCustomMethod() != null
+            || expression.getFrom() != null && !expression.getFrom().isEmpty() || expression.getAlias() == null) {
+          throw notImplemented("Only standard aggregation methods and $count are supported.");
+        }
+        if (expression.getExpression() == null) {
+          final List<UriResource> path = expression.getPath();
+          if (path.size() != 1 || !(path.get(0) instanceof UriResourceCount)) {
+            throw notImplemented("Custom aggregates are not supported.");
+          }
+        } else {
+          readers[index] = createReader(expression.getExpression());
+          if (isNumeric(expression.getStandardMethod())) {
+            checkNumeric(readers[index], expression.getStandardMethod().toString());
+          }
+        }
+      }
+    }
+
+    /** Sum and average need numbers. */
+    private boolean isNumeric(final StandardMethod method) {
+      return method == StandardMethod.SUM || method == StandardMethod.AVERAGE;
+    }
+
+    Accumulator[] createAccumulators() {
+      Accumulator[] accumulators = new Accumulator[readers.length];
+      for (int index = 0; index < readers.length; index++) {
+        accumulators[index] = Accumulator.create(readers[index] == null ? null :
+            expressions.get(index).getStandardMethod());
+      }
+      return accumulators;
+    }
+
+    void add(final Accumulator[] accumulators, final Entity entity)
+        throws ODataApplicationException, ExpressionVisitException {
+      for (int index = 0; index < readers.length; index++) {
+        final Object value = readers[index] == null ? null : readers[index].read(entity);
+        final StandardMethod method = expressions.get(index).getStandardMethod();
+        if (value != null && isNumeric(method) && !(value instanceof Number)) {
+          throw notNumeric(method.toString());
+        }
+        accumulators[index].add(value);
+      }
+    }
+
+    void addResults(final Accumulator[] accumulators, final Entity entity) {
+      for (int index = 0; index < readers.length; index++) {
+        entity.getProperties().add(
+            createProperty(expressions.get(index).getAlias(), getType(index), accumulators[index].getResult()));
+      }
+    }
+
+    void addProperties(final Map<String, EdmProperty> structure) {
+      for (int index = 0; index < readers.length; index++) {
+        final String alias = expressions.get(index).getAlias();
+        structure.put(alias, new AggregatedProperty(alias, getType(index)));
+      }
+    }
+
+    /** Minimum and maximum have the type of the aggregated values, all other aggregation methods Edm.Decimal. */
+    private EdmType getType(final int index) {
+      final StandardMethod method = expressions.get(index).getStandardMethod();
+      return readers[index] != null && (method == StandardMethod.MIN || method == StandardMethod.MAX) ?
+          readers[index].getType() :
+          primDecimal;
+    }
+  }
+}
@@ -0,0 +1,375 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.tecsvc.processor.queryoptions.options;
+
+import java.net.URI;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.EntityIterator;
+import org.apache.olingo.commons.api.edm.Edm;
+import org.apache.olingo.commons.api.ex.ODataException;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.uri.UriInfoResource;
+import org.apache.olingo.server.api.uri.queryoption.CountOption;
+import org.apache.olingo.server.api.uri.queryoption.FilterOption;
+import org.apache.olingo.server.api.uri.queryoption.OrderByOption;
+import org.apache.olingo.server.api.uri.queryoption.SearchOption;
+import org.apache.olingo.server.api.uri.queryoption.SkipOption;
+import org.apache.olingo.server.api.uri.queryoption.TopOption;
+import org.apache.olingo.server.api.uri.queryoption.expression.ExpressionVisitException;
+import org.apache.olingo.server.api.uri.queryoption.search.SearchExpression;
+import org.apache.olingo.server.tecsvc.data.SearchIndex;
+import org.apache.olingo.server.tecsvc.processor.queryoptions.expression.EntityPredicate;
+import org.apache.olingo.server.tecsvc.processor.queryoptions.expression.FilterCompiler;
+
+/**
+ * Applies system query options lazily to a sequence of entities.
+ * <p/>
+ * Each option wraps the current sequence in a further stage; entities are only read from the source
+ * when they are requested from the pipeline, so they can be written one after the other
+ * without keeping them in memory. Only <code>$orderby</code> and <code>$count</code> need all entities
+ * and therefore collect the remaining entities into a list.
+ * The source is never modified.
+ * <p/>
+ * Errors while evaluating the options for single entities are reported as
+ * {@link SystemQueryOptionsRuntimeException} during iteration; the methods collecting entities
+ * throw the nested {@link ODataApplicationException} instead.
+ */
+public class EntityPipeline extends EntityIterator {
+
+  private Iterator<Entity> entities;
+  private EntityCollection collected;
+  private Integer count;
+  private URI nextLink;
+
+  public EntityPipeline(final Iterator<Entity> source) {
+    entities = source;
+  }
+
+  public EntityPipeline(final EntityCollection source) {
+    this(source.getEntities().iterator());
+  }
+
+  @Override
+  public boolean hasNext() {
+    return entities.hasNext();
+  }
+
+  @Override
+  public Entity next() {
+    return entities.next();
+  }
+
+  /** Returns the count set by {@link #count(CountOption)}, or <code>null</code> if no count has been requested. */
+  @Override
+  public Integer getCount() {
+    return count;
+  }
+
+  /**
+   * Returns the next link set by server-side paging.
+   * It is known only after all entities of the current page have been read.
+   */
+  @Override
+  public URI getNext() {
+    return nextLink;
+  }
+
+  @Override
+  public URI getDeltaLink() {
+    return null;
+  }
+
+  public EntityPipeline search(final SearchOption searchOption, final SearchIndex searchIndex)
+      throws ODataApplicationException {
+    if (searchOption != null) {
+      final SearchExpression expression = searchOption.getSearchExpression();
+      final Set<Entity> matches = searchIndex == null ? null : searchIndex.search(expression);
+      entities = new Stage(entities) {
+        @Override
+        protected boolean accept(final Entity entity) throws ODataException {
+          return matches == null ?
+              SearchHandler.isTrue(expression, SearchIndex.getTexts(entity)) :
+              matches.contains(entity);
+        }
+      };
+      collected = null;
+    }
+    return this;
+  }
+
+  public EntityPipeline filter(final FilterOption filterOption, final UriInfoResource uriInfo, final Edm edm)
+      throws ODataApplicationException {
+    if (filterOption != null) {
+      final EntityPredicate predicate;
+      try {
+        predicate = FilterCompiler.compile(filterOption.getExpression(), uriInfo, edm);
+      } catch (final ExpressionVisitException e) {
+        throw new ODataApplicationException("Exception in filter evaluation",
+            HttpStatusCode.INTERNAL_SERVER_ERROR.getStatusCode(), Locale.ROOT);
+      }
+      entities = new Stage(entities) {
+        @Override
+        protected boolean accept(final Entity entity) throws ODataException {
+          return predicate.matches(entity);
+        }
+      };
+      collected = null;
+    }
+    return this;
+  }
+
+  /** Counts the remaining entities; this collects them. */
+  public EntityPipeline count(final CountOption countOption) throws ODataApplicationException {
+    if (countOption != null && countOption.getValue()) {
+      count = collect().getEntities().size();
+    }
+    return this;
+  }
+
+  /** Sets a count determined before, e.g., for an earlier page of a paged result. */
+  public EntityPipeline withCount(final Integer count) {
+    this.count = count;
+    return this;
+  }
+
+  /** Sets a next link determined before, e.g., for a page read from the cursor of a paged result. */
+  public EntityPipeline withNext(final URI nextLink) {
+    this.nextLink = nextLink;
+    return this;
+  }
+
+  /**
+   * Sorts the remaining entities; this collects them.
+   * The skip and top options are used to keep only the entities needed for them
+   * but they still have to be applied afterwards.
+   * @see OrderByHandler#applyOrderByOption(OrderByOption, SkipOption, TopOption, EntityCollection,
+   *      UriInfoResource, Edm)
+   */
+  public EntityPipeline orderBy(final OrderByOption orderByOption, final SkipOption skipOption,
+      final TopOption topOption, final UriInfoResource uriInfo, final Edm edm) throws ODataApplicationException {
+    if (orderByOption != null) {
+      final EntityCollection entityCollection = collect();
+      OrderByHandler.applyOrderByOption(orderByOption, skipOption, topOption, entityCollection, uriInfo, edm);
+      entities = entityCollection.getEntities().iterator();
+    }
+    return this;
+  }
+
+  public EntityPipeline skip(final SkipOption skipOption) throws ODataApplicationException {
+    if (skipOption != null) {
+      if (skipOption.getValue() >= 0) {
+        skip(skipOption.getValue());
+      } else {
+        throw new ODataApplicationException("Skip value must be positive", HttpStatusCode.BAD_REQUEST.getStatusCode(),
+            Locale.ROOT);
+      }
+    }
+    return this;
+  }
+
+  public EntityPipeline top(final TopOption topOption) throws ODataApplicationException {
+    if (topOption != null) {
+      if (topOption.getValue() >= 0) {
+        top(topOption.getValue(), null);
+      } else {
+        throw new ODataApplicationException("Top value must be positive", HttpStatusCode.BAD_REQUEST.getStatusCode(),
+            Locale.ROOT);
+      }
+    }
+    return this;
+  }
+
+  /**
+   * Restricts the entities to one page.
+   * The entities before the page are skipped immediately, so that a page behind the last entity
+   * can be detected before anything is written.
+   * @param itemsToSkip the number of entities before the page
+   * @param pageSize    the maximum number of entities in the page
+   * @param link        the next link to be set if there are entities after the page
+   * @return <code>false</code> if there are less than <code>itemsToSkip</code> entities,
+   *         <code>true</code> otherwise
+   */
+  public boolean page(final int itemsToSkip, final int pageSize, final URI link)
+      throws ODataApplicationException {
+    int skipped = 0;
+    try {
+      while (skipped < itemsToSkip && entities.hasNext()) {
+        entities.next();
+        skipped++;
+      }
+    } catch (final SystemQueryOptionsRuntimeException e) {
+      throw unwrap(e);
+    }
+    top(pageSize, link);
+    return skipped == itemsToSkip;
+  }
+
+  /**
+   * Collects the remaining entities into a list, e.g., to keep their keys as cursor for server-side paging;
+   * they are read again from that list, which must not be modified.
+   */
+  public List<Entity> snapshot() throws ODataApplicationException {
+    return collect().getEntities();
+  }
+
+  /** Counts the remaining entities without keeping them. */
+  public int countEntities() throws ODataApplicationException {
+    int size = 0;
+    try {
+      while (entities.hasNext()) {
+        entities.next();
+        size++;
+      }
+    } catch (final SystemQueryOptionsRuntimeException e) {
+      throw unwrap(e);
+    }
+    return size;
+  }
+
+  /** Collects the remaining entities, together with count and next link, into an entity collection. */
+  public EntityCollection toEntityCollection() throws ODataApplicationException {
+    final EntityCollection entityCollection = new EntityCollection();
+    try {
+      while (entities.hasNext()) {
+        entityCollection.getEntities().add(entities.next());
+      }
+    } catch (final SystemQueryOptionsRuntimeException e) {
+      throw unwrap(e);
+    }
+    entityCollection.setCount(count);
+    entityCollection.setNext(nextLink);
+    return entityCollection;
+  }
+
+  /** Collects the remaining entities; they are read again from the returned collection. */
+  private EntityCollection collect() throws ODataApplicationException {
+    if (collected == null) {
+      collected = toEntityCollection();
+      entities = collected.getEntities().iterator();
+    }
+    return collected;
+  }
+
+  private void skip(final int n) {
+    final Iterator<Entity> source = entities;
+    entities = new Stage(source) {
+      private int skipped = 0;
+
+      @Override
+      protected boolean accept(final Entity entity) {
+        return skipped++ >= n;
+      }
+    };
+    collected = null;
+  }
+
+  private void top(final int n, final URI link) {
+    final Iterator<Entity> source = entities;
+    entities = new Iterator<Entity>() {
+      private int returned = 0;
+
+      @Override
+      public boolean hasNext() {
+        if (returned < n) {
+          return source.hasNext();
+        }
+        // Look at the next entity only to decide whether there are more of them.
+        if (link != null && nextLink == null && source.hasNext()) {
+          nextLink = link;
+        }
+        return false;
+      }
+
+      @Override
+      public Entity next() {
+        if (!hasNext()) {
+          throw new NoSuchElementException();
+        }
+        returned++;
+        return source.next();
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    };
+    collected = null;
+  }
+
+  private static ODataApplicationException unwrap(final SystemQueryOptionsRuntimeException e) {
+    if (e.getCause() instanceof ODataApplicationException) {
+      // Throw the nested exception, to send the correct HTTP status code in the HTTP response
+      return (ODataApplicationException) e.getCause();
+    } else {
+      return new ODataApplicationException("Exception in filter evaluation",
+          HttpStatusCode.INTERNAL_SERVER_ERROR.getStatusCode(), Locale.ROOT);
+    }
+  }
+
+  /** Lets only the entities of its source pass that are accepted. */
+  private abstract static class Stage implements Iterator<Entity> {
+    private final Iterator<Entity> source;
+    private Entity nextEntity;
+
+    protected Stage(final Iterator<Entity> source) {
+      this.source = source;
+    }
+
+    protected abstract boolean accept(Entity entity) throws ODataException;
+
+    @Override
+    public boolean hasNext() {
+      while (nextEntity == null && source.hasNext()) {
+        final Entity entity = source.next();
+        try {
+          if (accept(entity)) {
+            nextEntity = entity;
+          }
+        } catch (final ODataException e) {
+          throw new SystemQueryOptionsRuntimeException(e);
+        }
+      }
+      return nextEntity != null;
+    }
+
+    @Override
+    public Entity next() {
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      final Entity entity = nextEntity;
+      nextEntity = null;
+      return entity;
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
@@ -18,9 +18,12 @@
  */
 package org.apache.olingo.server.tecsvc.processor.queryoptions.options;
 
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.List;
 import java.util.Locale;
+import java.util.PriorityQueue;
 
 import org.apache.olingo.commons.api.data.Entity;
 import org.apache.olingo.commons.api.data.EntityCollection;
@@ -30,6 +33,8 @@ import org.apache.olingo.server.api.ODataApplicationException;
 import org.apache.olingo.server.api.uri.UriInfoResource;
 import org.apache.olingo.server.api.uri.queryoption.OrderByItem;
 import org.apache.olingo.server.api.uri.queryoption.OrderByOption;
+import org.apache.olingo.server.api.uri.queryoption.SkipOption;
+import org.apache.olingo.server.api.uri.queryoption.TopOption;
 import org.apache.olingo.server.api.uri.queryoption.expression.ExpressionVisitException;
 import org.apache.olingo.server.tecsvc.processor.queryoptions.expression.ExpressionVisitorImpl;
 import org.apache.olingo.server.tecsvc.processor.queryoptions.expression.operand.TypedOperand;
@@ -37,13 +42,25 @@ import org.apache.olingo.server.tecsvc.processor.queryoptions.expression.operand
 public class OrderByHandler {
   public static void applyOrderByOption(final OrderByOption orderByOption, final EntityCollection entitySet,
       final UriInfoResource uriInfo, final Edm edm) throws ODataApplicationException {
+    applyOrderByOption(orderByOption, null, null, entitySet, uriInfo, edm);
+  }
+
+  /**
+   * Sorts the entities according to the orderby option.
+   * If a top option is given, only the entities that remain after applying the skip and top options
+   * are kept; they are determined with a bounded heap instead of sorting all entities.
+   * The skip and top options themselves still have to be applied afterwards.
+   */
+  public static void applyOrderByOption(final OrderByOption orderByOption, final SkipOption skipOption,
+      final TopOption topOption, final EntityCollection entitySet, final UriInfoResource uriInfo, final Edm edm)
+      throws ODataApplicationException {
 
     if (orderByOption == null) {
       return;
     }
 
     try {
-      applyOrderByOptionInternal(orderByOption, entitySet, uriInfo, edm);
+      applyOrderByOptionInternal(orderByOption, getLimit(skipOption, topOption), entitySet, uriInfo, edm);
     } catch (SystemQueryOptionsRuntimeException e) {
       if (e.getCause() instanceof ODataApplicationException) {
         // Throw the nested exception, to send the correct HTTP status code in the HTTP response
@@ -55,51 +72,129 @@ public class OrderByHandler {
     }
   }
 
-  private static void applyOrderByOptionInternal(final OrderByOption orderByOption, final EntityCollection entitySet,
-      final UriInfoResource uriInfo, final Edm edm) throws ODataApplicationException {
-    Collections.sort(entitySet.getEntities(), new Comparator<Entity>() {
-      @Override
-      @SuppressWarnings("unchecked")
-      public int compare(final Entity e1, final Entity e2) {
-        // Evaluate the first order option for both entities.
-        // If and only if the result of the previous order option is equal to 0
-        // evaluate the next order option until all options are evaluated or they are not equal.
-        int result = 0;
-
-        for (int i = 0; i < orderByOption.getOrders().size() && result == 0; i++) {
-          try {
-            final OrderByItem item = orderByOption.getOrders().get(i);
-            final TypedOperand op1 =
-                item.getExpression().accept(new ExpressionVisitorImpl(e1, uriInfo, edm)).asTypedOperand();
-            final TypedOperand op2 =
-                item.getExpression().accept(new ExpressionVisitorImpl(e2, uriInfo, edm)).asTypedOperand();
-
-            if (op1.isNull() || op2.isNull()) {
-              if (op1.isNull() && op2.isNull()) {
-                result = 0; // null is equals to null
-              } else {
-                result = op1.isNull() ? -1 : 1;
-              }
-            } else {
-              Object o1 = op1.getValue();
-              Object o2 = op2.getValue();
-
-              if (o1.getClass() == o2.getClass() && o1 instanceof Comparable) {
-                result = ((Comparable<Object>) o1).compareTo(o2);
-              } else {
-                result = 0;
-              }
-            }
-
-            result = item.isDescending() ? result * -1 : result;
-          } catch (ODataApplicationException e) {
-            throw new SystemQueryOptionsRuntimeException(e);
-          } catch (ExpressionVisitException e) {
-            throw new SystemQueryOptionsRuntimeException(e);
+  /** Returns the number of entities needed for skip and top, or -1 if all entities are needed. */
+  private static long getLimit(final SkipOption skipOption, final TopOption topOption) {
+    if (topOption == null || topOption.getValue() < 0 || skipOption != null && skipOption.getValue() < 0) {
+      // Invalid values are reported by the SkipHandler and the TopHandler.
+      return -1;
+    }
+    return (long) topOption.getValue() + (skipOption == null ? 0 : skipOption.getValue());
+  }
+
+  private static void applyOrderByOptionInternal(final OrderByOption orderByOption, final long limit,
+      final EntityCollection entitySet, final UriInfoResource uriInfo, final Edm edm) {
+    final List<Entity> entities = entitySet.getEntities();
+    List<SortKey> keys = new ArrayList<SortKey>(entities.size());
+    for (final Entity entity : entities) {
+      keys.add(new SortKey(entity, keys.size(), orderByOption.getOrders().size()));
+    }
+    final SortKeyComparator comparator = new SortKeyComparator(orderByOption.getOrders(), uriInfo, edm);
+
+    if (limit >= 0 && limit < keys.size()) {
+      keys = selectFirst(keys, (int) limit, comparator);
+    }
+    Collections.sort(keys, comparator);
+
+    entities.clear();
+    for (final SortKey key : keys) {
+      entities.add(key.entity);
+    }
+  }
+
+  /** Selects the first <code>limit</code> keys in sort order, in O(n log limit). */
+  private static List<SortKey> selectFirst(final List<SortKey> keys, final int limit,
+      final SortKeyComparator comparator) {
+    if (limit == 0) {
+      return new ArrayList<SortKey>();
+    }
+    // The head of the queue is the last of the keys selected so far.
+    final PriorityQueue<SortKey> queue = new PriorityQueue<SortKey>(limit, Collections.reverseOrder(comparator));
+    for (final SortKey key : keys) {
+      if (queue.size() < limit) {
+        queue.add(key);
+      } else if (comparator.compare(key, queue.peek()) < 0) {
+        queue.poll();
+        queue.add(key);
+      }
+    }
+    return new ArrayList<SortKey>(queue);
+  }
+
+  /**
+   * Entity together with its position and the values of its orderby expressions.
+   * The values are evaluated only when they are needed for the first time.
+   */
+  private static class SortKey {
+    private final Entity entity;
+    private final int position;
+    private final TypedOperand[] values;
+
+    private SortKey(final Entity entity, final int position, final int size) {
+      this.entity = entity;
+      this.position = position;
+      values = new TypedOperand[size];
+    }
+  }
+
+  private static class SortKeyComparator implements Comparator<SortKey> {
+    private final List<OrderByItem> items;
+    private final UriInfoResource uriInfo;
+    private final Edm edm;
+
+    private SortKeyComparator(final List<OrderByItem> items, final UriInfoResource uriInfo, final Edm edm) {
+      this.items = items;
+      this.uriInfo = uriInfo;
+      this.edm = edm;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int compare(final SortKey k1, final SortKey k2) {
+      // Evaluate the first order option for both entities.
+      // If and only if the result of the previous order option is equal to 0
+      // evaluate the next order option until all options are evaluated or they are not equal.
+      int result = 0;
+
+      for (int i = 0; i < items.size() && result == 0; i++) {
+        final TypedOperand op1 = getValue(k1, i);
+        final TypedOperand op2 = getValue(k2, i);
+
+        if (op1.isNull() || op2.isNull()) {
+          if (op1.isNull() && op2.isNull()) {
+            result = 0; // null is equals to null
+          } else {
+            result = op1.isNull() ? -1 : 1;
+          }
+        } else {
+          Object o1 = op1.getValue();
+          Object o2 = op2.getValue();
+
+          if (o1.getClass() == o2.getClass() && o1 instanceof Comparable) {
+            result = ((Comparable<Object>) o1).compareTo(o2);
+          } else {
+            result = 0;
           }
         }
-        return result;
+
+        result = items.get(i).isDescending() ? result * -1 : result;
       }
-    });
+
+      // Entities with equal values keep their order.
+      return result == 0 ? (k1.position < k2.position ? -1 : k1.position == k2.position ? 0 : 1) : result;
+    }
+
+    private TypedOperand getValue(final SortKey key, final int index) {
+      if (key.values[index] == null) {
+        try {
+          key.values[index] = items.get(index).getExpression()
+              .accept(new ExpressionVisitorImpl(key.entity, uriInfo, edm)).asTypedOperand();
+        } catch (ODataApplicationException e) {
+          throw new SystemQueryOptionsRuntimeException(e);
+        } catch (ExpressionVisitException e) {
+          throw new SystemQueryOptionsRuntimeException(e);
+        }
+      }
+      return key.values[index];
+    }
   }
 }
@@ -20,120 +20,239 @@ package org.apache.olingo.server.tecsvc.processor.queryoptions.options;
 
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.TimeUnit;
 
-import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.Entity;
 import org.apache.olingo.commons.api.edm.EdmEntitySet;
+import org.apache.olingo.commons.api.edm.EdmEntityType;
 import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.OData;
 import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.uri.CursorStore;
 import org.apache.olingo.server.api.uri.queryoption.SkipTokenOption;
 import org.apache.olingo.server.api.uri.queryoption.SystemQueryOptionKind;
+import org.apache.olingo.server.tecsvc.data.DataProvider;
 
 public class ServerSidePagingHandler {
   private static final int MAX_PAGE_SIZE = 10;
   private static final String ES_SERVER_SIDE_PAGING = "ESServerSidePaging";
+  private static final int MAX_CURSORS = 1000;
+  private static final long CURSOR_TIME_TO_LIVE = 10;
+  private static final String SKIPTOKEN_PREFIX = SystemQueryOptionKind.SKIPTOKEN.toString() + '=';
+  private static final String ENCODED_SKIPTOKEN_PREFIX = SKIPTOKEN_PREFIX.replace("$", "%24");
+
+  private static final CursorStore<Cursor> CURSORS =
+      OData.newInstance().createCursorStore(MAX_CURSORS, CURSOR_TIME_TO_LIVE, TimeUnit.MINUTES);
+
+  /**
+   * <p>Position of the next page of a paged result.</p>
+   * <p>For entities of the entity set, only the keys of the entities of the following pages are kept;
+   * their entities are read again by key from the data provider, without evaluating the request again
+   * and skipping the entities of all previous pages. Entities that have been deleted in the meantime
+   * are left out.
+   * Aggregated entities cannot be read again; for them the request has to be evaluated again
+   * and the entities of the previous pages have to be skipped.</p>
+   * <p>The cursor belongs to the request with the system query options it has been created for;
+   * they are kept as hash code.</p>
+   */
+  public static final class Cursor {
+    private final String entitySetName;
+    private final EdmEntityType entityType;
+    private final int queryOptionsHash;
+    private final List<List<String>> keys;
+    private final int size;
+    private final Integer count;
+    private final int position;
+    private final int pageSize;
+
+    private Cursor(final String entitySetName, final EdmEntityType entityType, final int queryOptionsHash,
+        final List<List<String>> keys, final int size, final Integer count, final int position,
+        final int pageSize) {
+      this.entitySetName = entitySetName;
+      this.entityType = entityType;
+      this.queryOptionsHash = queryOptionsHash;
+      this.keys = keys;
+      this.size = size;
+      this.count = count;
+      this.position = position;
+      this.pageSize = pageSize;
+    }
+
+    /** Returns the type of the entities, which could be different from the type of the entity set. */
+    public EdmEntityType getEntityType() {
+      return entityType;
+    }
+
+    public int getPageSize() {
+      return pageSize;
+    }
+
+    /**
+     * Determines whether the entities of the page can be read by key,
+     * see {@link ServerSidePagingHandler#resume(Cursor, DataProvider, EdmEntitySet, String)};
+     * otherwise the request has to be evaluated again,
+     * see {@link ServerSidePagingHandler#resume(Cursor, EntityPipeline, String)}.
+     */
+    public boolean hasKeys() {
+      return keys != null;
+    }
+  }
+
+  /**
+   * Gets the cursor of the page requested with the skiptoken.
+   * @param skipTokenOption the current skiptoken option (from a previous response's next link)
+   * @param edmEntitySet    the EDM entity set to decide whether paging must be done
+   * @param rawRequestUri   the request URI, whose system query options must be those of the previous response
+   * @return the cursor, or <code>null</code> if there is no skiptoken or no paging is done
+   * @throws ODataApplicationException if the skiptoken is unknown or has expired
+   *                                   or the system query options have been changed
+   */
+  public static Cursor getCursor(final SkipTokenOption skipTokenOption, final EdmEntitySet edmEntitySet,
+      final String rawRequestUri) throws ODataApplicationException {
+    if (skipTokenOption == null || edmEntitySet == null || !shouldApplyServerSidePaging(edmEntitySet)) {
+      return null;
+    }
+    final Cursor cursor = CURSORS.get(skipTokenOption.getValue());
+    if (cursor == null || !cursor.entitySetName.equals(edmEntitySet.getName())
+        || cursor.queryOptionsHash != getQueryOptions(rawRequestUri).hashCode()) {
+      throw new ODataApplicationException("Invalid skip token", HttpStatusCode.BAD_REQUEST.getStatusCode(),
+          Locale.ROOT);
+    }
+    return cursor;
+  }
 
   /**
-   * <p>Applies server-side paging to the given entity collection.</p>
-   * <p>The next link is constructed and set in the data. It must support client-specified
-   * page sizes. Therefore, the format <code>page*pageSize</code> (with a literal asterisk)
-   * has been chosen for the skiptoken.</p> 
-   * @param skipTokenOption   the current skiptoken option (from a previous response's next link)
-   * @param entityCollection  the data
+   * <p>Applies server-side paging to the given entity pipeline.</p>
+   * <p>The keys of the entities of the following pages are kept as cursor;
+   * the next link is constructed with the token of that cursor as skiptoken
+   * and set in the pipeline when the entities of the first page have been read.
+   * Client-specified page sizes are supported; the page size is kept in the cursor.</p>
+   * @param entityPipeline    the data
    * @param edmEntitySet      the EDM entity set to decide whether paging must be done
+   * @param edmEntityType     the type of the entities
+   * @param dataProvider      the data provider to read the keys of the entities, or <code>null</code>
+   *                          if the entities are not entities of the entity set, e.g., aggregated entities
    * @param rawRequestUri     the request URI (used to construct the next link)
    * @param preferredPageSize the client's preference for page size
    * @return the chosen page size (or <code>null</code> if no paging has been done);
    *         could be used in the Preference-Applied HTTP header
    * @throws ODataApplicationException
    */
-  public static Integer applyServerSidePaging(final SkipTokenOption skipTokenOption, EntityCollection entityCollection,
-      final EdmEntitySet edmEntitySet, final String rawRequestUri, final Integer preferredPageSize)
-      throws ODataApplicationException {
+  public static Integer applyServerSidePaging(final EntityPipeline entityPipeline, final EdmEntitySet edmEntitySet,
+      final EdmEntityType edmEntityType, final DataProvider dataProvider, final String rawRequestUri,
+      final Integer preferredPageSize) throws ODataApplicationException {
 
     if (edmEntitySet != null && shouldApplyServerSidePaging(edmEntitySet)) {
-      final int pageSize = getPageSize(getPageSize(skipTokenOption), preferredPageSize);
-      final int page = getPage(skipTokenOption);
-      final int itemsToSkip = pageSize * page;
-
-      if (itemsToSkip <= entityCollection.getEntities().size()) {
-        SkipHandler.popAtMost(entityCollection, itemsToSkip);
-        final int remainingItems = entityCollection.getEntities().size();
-        TopHandler.reduceToSize(entityCollection, pageSize);
-
-        // Determine if a new next Link has to be provided.
-        if (remainingItems > pageSize) {
-          entityCollection.setNext(createNextLink(rawRequestUri, page + 1, pageSize));
+      final int pageSize = getPageSize(preferredPageSize);
+      final List<Entity> entities = entityPipeline.snapshot();
+      List<List<String>> keys = null;
+      if (dataProvider != null && entities.size() > pageSize) {
+        keys = new ArrayList<List<String>>(entities.size() - pageSize);
+        for (final Entity entity : entities.subList(pageSize, entities.size())) {
+          keys.add(dataProvider.getKey(edmEntitySet, entity));
         }
-      } else {
-        throw new ODataApplicationException("Nothing found.", HttpStatusCode.NOT_FOUND.getStatusCode(), Locale.ROOT);
       }
+      final Cursor cursor = new Cursor(edmEntitySet.getName(), edmEntityType,
+          getQueryOptions(rawRequestUri).hashCode(), keys, entities.size(), entityPipeline.getCount(),
+          0, pageSize);
+      entityPipeline.page(0, pageSize, createNextLink(cursor, rawRequestUri));
       return pageSize;
     }
     return null;
   }
 
-  private static URI createNextLink(final String rawRequestUri, final int page, final int pageSize)
+  /**
+   * Continues a paged result with the page of the given cursor, reading its entities by key.
+   * @param cursor        the cursor from {@link #getCursor(SkipTokenOption, EdmEntitySet, String)}
+   * @param dataProvider  the data provider
+   * @param edmEntitySet  the EDM entity set
+   * @param rawRequestUri the request URI (used to construct the next link)
+   * @return the entities of the page, together with the count and the next link of the paged result
+   * @throws ODataApplicationException
+   */
+  public static EntityPipeline resume(final Cursor cursor, final DataProvider dataProvider,
+      final EdmEntitySet edmEntitySet, final String rawRequestUri) throws ODataApplicationException {
+    // The keys start with the second page.
+    final int start = cursor.position - cursor.pageSize;
+    final List<Entity> entities = new ArrayList<Entity>(cursor.pageSize);
+    final int end = Math.min(start + cursor.pageSize, cursor.keys.size());
+    for (final List<String> key : cursor.keys.subList(start, end)) {
+      final Entity entity = dataProvider.readByKey(edmEntitySet, key);
+      if (entity != null) {
+        entities.add(entity);
+      }
+    }
+    return new EntityPipeline(entities.iterator())
+        .withCount(cursor.count)
+        .withNext(createNextLink(cursor, rawRequestUri));
+  }
+
+  /**
+   * Continues a paged result with the page of the given cursor, skipping the entities of the previous pages.
+   * @param cursor         the cursor from {@link #getCursor(SkipTokenOption, EdmEntitySet, String)}
+   * @param entityPipeline the data, with all system query options applied again
+   * @param rawRequestUri  the request URI (used to construct the next link)
+   * @throws ODataApplicationException
+   */
+  public static void resume(final Cursor cursor, final EntityPipeline entityPipeline, final String rawRequestUri)
       throws ODataApplicationException {
-    // Remove a maybe existing skiptoken, making sure that the query part is not empty.
-    String nextlink = rawRequestUri.contains("?") ?
-        rawRequestUri.replaceAll("(\\$|%24)skiptoken=.+&?", "").replaceAll("(\\?|&)$", "") :
-        rawRequestUri;
+    entityPipeline.page(cursor.position, cursor.pageSize, createNextLink(cursor, rawRequestUri));
+  }
 
-    // Add a question mark or an ampersand, depending on the current query part.
-    nextlink += nextlink.contains("?") ? '&' : '?';
+  /** Stores the cursor of the page after the given one and returns the link to it, if there is such a page. */
+  private static URI createNextLink(final Cursor cursor, final String rawRequestUri)
+      throws ODataApplicationException {
+    final int nextPosition = cursor.position + cursor.pageSize;
+    if (nextPosition >= cursor.size) {
+      return null;
+    }
+    final String token = CURSORS.put(new Cursor(cursor.entitySetName, cursor.entityType, cursor.queryOptionsHash,
+        cursor.keys, cursor.size, cursor.count, nextPosition, cursor.pageSize));
 
-    // Append the new skiptoken.
-    nextlink += SystemQueryOptionKind.SKIPTOKEN.toString().replace("$", "%24")  // poor man's percent encoding
-        + '='
-        + page + "%2A" + pageSize;  // "%2A" is a percent-encoded asterisk
+    // Keep all query options except a maybe existing skiptoken.
+    final int queryStart = rawRequestUri.indexOf('?');
+    final StringBuilder nextLink = new StringBuilder(rawRequestUri.length() + ENCODED_SKIPTOKEN_PREFIX.length()
+        + token.length() + 1);
+    nextLink.append(rawRequestUri, 0, queryStart < 0 ? rawRequestUri.length() : queryStart);
+    char separator = '?';
+    for (final String option : getQueryOptions(rawRequestUri)) {
+      nextLink.append(separator).append(option);
+      separator = '&';
+    }
+    nextLink.append(separator).append(ENCODED_SKIPTOKEN_PREFIX).append(token);
 
     try {
-      return new URI(nextlink);
+      return new URI(nextLink.toString());
     } catch (final URISyntaxException e) {
       throw new ODataApplicationException("Exception while constructing next link",
           HttpStatusCode.INTERNAL_SERVER_ERROR.getStatusCode(), Locale.ROOT, e);
     }
   }
 
-  private static boolean shouldApplyServerSidePaging(final EdmEntitySet edmEntitySet) {
-    return ES_SERVER_SIDE_PAGING.equals(edmEntitySet.getName());
-  }
-
-  private static int getPageSize(final int skipTokenPageSize, final Integer preferredPageSize) {
-    return skipTokenPageSize > 0 ? skipTokenPageSize :
-        preferredPageSize == null || preferredPageSize >= MAX_PAGE_SIZE ?
-            MAX_PAGE_SIZE :
-            preferredPageSize;
-  }
-
-  private static int getPageSize(final SkipTokenOption skipTokenOption) throws ODataApplicationException {
-    if (skipTokenOption != null && skipTokenOption.getValue().length() >= 3
-        && skipTokenOption.getValue().contains("*")) {
-      final String value = skipTokenOption.getValue();
-      try {
-        return Integer.parseInt(value.substring(value.indexOf('*') + 1));
-      } catch (final NumberFormatException e) {
-        throw new ODataApplicationException("Invalid skip token", HttpStatusCode.BAD_REQUEST.getStatusCode(),
-            Locale.ROOT, e);
+  /** Returns the query options of the request URI except a maybe existing skiptoken, in their original order. */
+  private static List<String> getQueryOptions(final String rawRequestUri) {
+    final int queryStart = rawRequestUri.indexOf('?');
+    if (queryStart < 0) {
+      return Collections.emptyList();
+    }
+    List<String> options = new ArrayList<String>();
+    for (final String option : rawRequestUri.substring(queryStart + 1).split("&")) {
+      if (!option.isEmpty() && !option.startsWith(SKIPTOKEN_PREFIX) && !option.startsWith(ENCODED_SKIPTOKEN_PREFIX)) {
+        options.add(option);
       }
-    } else {
-      return 0;
     }
+    return options;
   }
 
-  private static int getPage(final SkipTokenOption skipTokenOption) throws ODataApplicationException {
-    if (skipTokenOption != null && skipTokenOption.getValue().length() >= 3
-        && skipTokenOption.getValue().contains("*")) {
-      final String value = skipTokenOption.getValue();
-      try {
-        return Integer.parseInt(value.substring(0, value.indexOf('*')));
-      } catch (final NumberFormatException e) {
-        throw new ODataApplicationException("Invalid skip token", HttpStatusCode.BAD_REQUEST.getStatusCode(),
-            Locale.ROOT, e);
-      }
-    } else {
-      return 0;
-    }
+  private static boolean shouldApplyServerSidePaging(final EdmEntitySet edmEntitySet) {
+    return ES_SERVER_SIDE_PAGING.equals(edmEntitySet.getName());
+  }
+
+  private static int getPageSize(final Integer preferredPageSize) {
+    return preferredPageSize == null || preferredPageSize >= MAX_PAGE_SIZE ? MAX_PAGE_SIZE : preferredPageSize;
   }
 }
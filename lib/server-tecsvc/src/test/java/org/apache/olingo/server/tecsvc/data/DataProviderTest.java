@@ -174,6 +174,42 @@ public class DataProviderTest {
     Assert.assertEquals("x/y", entity.getMediaContentType());
   }
 
+  @Test
+  public void keyLookupFollowsChanges() throws Exception {
+    final DataProvider dataProvider = new DataProvider(oData, edm);
+    final List<UriParameter> key = Arrays.asList(mockParameter("PropertyInt16", "5"));
+    Assert.assertNull(dataProvider.read(esMedia, key));
+
+    final Entity created = dataProvider.create(esMedia);
+    Assert.assertEquals((short) 5, created.getProperty("PropertyInt16").getValue());
+    Assert.assertSame(created, dataProvider.read(esMedia, key));
+    Assert.assertEquals((short) 6, dataProvider.create(esMedia).getProperty("PropertyInt16").getValue());
+
+    dataProvider.delete(esMedia, created);
+    Assert.assertNull(dataProvider.read(esMedia, key));
+
+    // Entities added to the collection directly are found as well.
+    dataProvider.readAll(esMedia).getEntities().add(created);
+    Assert.assertSame(created, dataProvider.read(esMedia, key));
+
+    // Updates do not change keys.
+    dataProvider.update("http://localhost/", esMedia, created, new Entity(), true, false);
+    Assert.assertSame(created, dataProvider.read(esMedia, key));
+  }
+
+  @Test
+  public void compositeKeyLookup() throws Exception {
+    final DataProvider dataProvider = new DataProvider(oData, edm);
+    final EdmEntitySet esTwoKeyNav = entityContainer.getEntitySet("ESTwoKeyNav");
+    final Entity entity = dataProvider.readAll(esTwoKeyNav).getEntities().get(1);
+    Assert.assertSame(entity, dataProvider.read(esTwoKeyNav, Arrays.asList(
+        mockParameter("PropertyString", "'2'"),
+        mockParameter("PropertyInt16", "1"))));
+    Assert.assertNull(dataProvider.read(esTwoKeyNav, Arrays.asList(
+        mockParameter("PropertyInt16", "1"),
+        mockParameter("PropertyString", "'3'"))));
+  }
+
   private static UriParameter mockParameter(final String name, final String text) {
     UriParameter parameter = Mockito.mock(UriParameter.class);
     Mockito.when(parameter.getName()).thenReturn(name);
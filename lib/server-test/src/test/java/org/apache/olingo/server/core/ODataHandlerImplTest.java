@@ -19,9 +19,13 @@
 package org.apache.olingo.server.core;
 
 import static org.hamcrest.CoreMatchers.containsString;
+import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.not;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
@@ -29,8 +33,14 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.verifyZeroInteractions;
 
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.olingo.commons.api.edm.FullQualifiedName;
@@ -149,6 +159,32 @@ public class ODataHandlerImplTest {
         containsString("<edmx:Edmx Version=\"4.0\""));
   }
 
+  @Test
+  public void metadataNotModified() throws Exception {
+    final String eTag = dispatch(HttpMethod.GET, "$metadata", null).getHeader(HttpHeader.ETAG);
+    assertNotNull(eTag);
+    assertEquals(eTag, dispatch(HttpMethod.GET, "$metadata", null).getHeader(HttpHeader.ETAG));
+    assertThat(eTag, not(containsString("W/")));
+
+    final ODataResponse response = dispatch(HttpMethod.GET, "$metadata", null,
+        HttpHeader.IF_NONE_MATCH, eTag, null);
+    assertEquals(HttpStatusCode.NOT_MODIFIED.getStatusCode(), response.getStatusCode());
+    assertNull(response.getContent());
+    assertEquals(HttpStatusCode.OK.getStatusCode(), dispatch(HttpMethod.GET, "$metadata", null,
+        HttpHeader.IF_NONE_MATCH, "\"other\"", null).getStatusCode());
+  }
+
+  @Test
+  public void serviceDocumentNotModified() throws Exception {
+    final String eTag = dispatch(HttpMethod.GET, "/", null).getHeader(HttpHeader.ETAG);
+    assertNotNull(eTag);
+    assertThat(eTag, not(equalTo(dispatch(HttpMethod.GET, "$metadata", null).getHeader(HttpHeader.ETAG))));
+
+    final ODataResponse response = dispatch(HttpMethod.GET, "/", null, HttpHeader.IF_NONE_MATCH, eTag, null);
+    assertEquals(HttpStatusCode.NOT_MODIFIED.getStatusCode(), response.getStatusCode());
+    assertNull(response.getContent());
+  }
+
   @Test
   public void maxVersionNone() {
     final ODataResponse response = dispatch(HttpMethod.GET, "$metadata", null);
@@ -299,6 +335,89 @@ public class ODataHandlerImplTest {
     assertEquals(HttpStatusCode.INTERNAL_SERVER_ERROR.getStatusCode(), response.getStatusCode());
   }
 
+  @Test
+  public void sharedHandlerKeepsRequestStateInContext() throws Exception {
+    final OData odata = OData.newInstance();
+    final ODataHandlerImpl handler = new ODataHandlerImpl(odata,
+        odata.createServiceMetadata(new EdmTechProvider(), Collections.<EdmxReference> emptyList()),
+        new ServerCoreDebugger(odata));
+    final ExecutorService executor = Executors.newFixedThreadPool(4);
+    try {
+      List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+      for (int index = 0; index < 200; index++) {
+        final boolean valid = index % 2 == 0;
+        results.add(executor.submit(new Callable<Boolean>() {
+          @Override
+          public Boolean call() {
+            ODataRequest request = new ODataRequest();
+            request.setMethod(HttpMethod.GET);
+            request.setRawODataPath(valid ? "$metadata" : "Unknown");
+            final ODataRequestContext context = new ODataRequestContext(new ServerCoreDebugger(odata));
+            final ODataResponse response = handler.process(request, context);
+            return valid ?
+                response.getStatusCode() == HttpStatusCode.OK.getStatusCode()
+                    && context.getUriInfo() != null && context.getLastThrownException() == null :
+                response.getStatusCode() == HttpStatusCode.NOT_FOUND.getStatusCode()
+                    && context.getUriInfo() == null && context.getLastThrownException() != null;
+          }
+        }));
+      }
+      for (final Future<Boolean> result : results) {
+        assertTrue(result.get());
+      }
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void respondAsync() throws Exception {
+    final OData odata = OData.newInstance();
+    final ODataHandlerImpl handler = new ODataHandlerImpl(odata,
+        odata.createServiceMetadata(new EdmTechProvider(), Collections.<EdmxReference> emptyList()),
+        new ServerCoreDebugger(odata));
+    final ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      handler.register(odata.createAsyncSupport(executor));
+      ODataRequest request = new ODataRequest();
+      request.setMethod(HttpMethod.GET);
+      request.setRawBaseUri(BASE_URI);
+      request.setRawODataPath("$metadata");
+      request.addHeader(HttpHeader.PREFER, "respond-async");
+      ODataResponse response = handler.process(request);
+      assertEquals(HttpStatusCode.ACCEPTED.getStatusCode(), response.getStatusCode());
+      assertEquals("respond-async", response.getHeader(HttpHeader.PREFERENCE_APPLIED));
+      final String monitor = response.getHeader(HttpHeader.LOCATION);
+      assertTrue(monitor.startsWith(BASE_URI + "/$async/"));
+
+      request = new ODataRequest();
+      request.setMethod(HttpMethod.GET);
+      request.setRawBaseUri(BASE_URI);
+      request.setRawODataPath(monitor.substring(BASE_URI.length()));
+      do {
+        response = handler.process(request);
+      } while (response.getStatusCode() == HttpStatusCode.ACCEPTED.getStatusCode());
+      assertEquals(HttpStatusCode.SEE_OTHER.getStatusCode(), response.getStatusCode());
+      assertEquals(monitor + "/result", response.getHeader(HttpHeader.LOCATION));
+
+      request.setRawODataPath(response.getHeader(HttpHeader.LOCATION).substring(BASE_URI.length()));
+      response = handler.process(request);
+      assertEquals(HttpStatusCode.OK.getStatusCode(), response.getStatusCode());
+      assertEquals(ContentType.APPLICATION_HTTP.toContentTypeString(), response.getHeader(HttpHeader.CONTENT_TYPE));
+      final String result = IOUtils.toString(response.getContent());
+      assertTrue(result.startsWith("HTTP/1.1 200 OK\r\n"));
+      assertTrue(result.contains("<edmx:Edmx"));
+
+      request.setMethod(HttpMethod.DELETE);
+      request.setRawODataPath(monitor.substring(BASE_URI.length()));
+      assertEquals(HttpStatusCode.NO_CONTENT.getStatusCode(), handler.process(request).getStatusCode());
+      request.setMethod(HttpMethod.GET);
+      assertEquals(HttpStatusCode.NOT_FOUND.getStatusCode(), handler.process(request).getStatusCode());
+    } finally {
+      executor.shutdown();
+    }
+  }
+
   @Test
   public void dispatchBatch() throws Exception {
     final String uri = "$batch";
@@ -35,6 +35,7 @@ import java.util.Date;
 import java.util.List;
 
 import org.apache.olingo.commons.api.Constants;
+import org.apache.olingo.commons.api.data.CompactEntity;
 import org.apache.olingo.commons.api.data.ComplexValue;
 import org.apache.olingo.commons.api.data.Entity;
 import org.apache.olingo.commons.api.data.Link;
@@ -69,6 +70,20 @@ public class ODataJsonDeserializerEntityTest extends AbstractODataDeserializerTe
     assertEquals(0, properties.size());
   }
 
+  @Test
+  public void compactEntitiesOnlyOnRequest() throws Exception {
+    final String entityString = "{\"PropertyString\":\"First\",\"PropertyInt16\":1}";
+    final Entity entity = deserialize(entityString, "ETAllPrim");
+    assertFalse(entity instanceof CompactEntity);
+
+    final Entity compactEntity = new ODataJsonDeserializer(ContentType.JSON, metadata, true)
+        .entity(new ByteArrayInputStream(entityString.getBytes()),
+            edm.getEntityType(new FullQualifiedName(NAMESPACE, "ETAllPrim")))
+        .getEntity();
+    assertTrue(compactEntity instanceof CompactEntity);
+    assertEquals("First", compactEntity.getProperty("PropertyString").getValue());
+  }
+
   @Test
   public void simpleEntityETAllPrim() throws Exception {
     String entityString =
@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.deserializer.json;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.Link;
+import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.edm.EdmEntityType;
+import org.apache.olingo.commons.api.edm.FullQualifiedName;
+import org.apache.olingo.commons.api.format.ContentType;
+import org.apache.olingo.server.api.OData;
+import org.apache.olingo.server.api.deserializer.DeserializerException;
+import org.apache.olingo.server.api.deserializer.ODataDeserializer;
+import org.apache.olingo.server.core.deserializer.AbstractODataDeserializerTest;
+import org.junit.Test;
+
+public class ODataJsonStreamDeserializerTest extends AbstractODataDeserializerTest {
+
+  private static final EdmEntityType ET_ALL_PRIM =
+      edm.getEntityType(new FullQualifiedName(NAMESPACE, "ETAllPrim"));
+  private static final EdmEntityType ET_TWO_PRIM =
+      edm.getEntityType(new FullQualifiedName(NAMESPACE, "ETTwoPrim"));
+
+  @Test
+  public void createdByFactory() throws Exception {
+    assertTrue(OData.newInstance().createStreamingDeserializer(ContentType.JSON, metadata)
+        instanceof ODataJsonStreamDeserializer);
+  }
+
+  @Test
+  public void deepInsertSameAsTreeDeserializer() throws Exception {
+    for (final String file : new String[] {
+        "EntityESAllPrimExpandedNavPropertyETTwoPrimOne.json",
+        "EntityESAllPrimExpandedNavPropertyETTwoPrimManyWithODataAnnotations.json" }) {
+      final Entity expected = OData.newInstance().createDeserializer(ContentType.JSON, metadata)
+          .entity(getFileAsStream(file), ET_ALL_PRIM).getEntity();
+      final Entity actual = createDeserializer().entity(getFileAsStream(file), ET_ALL_PRIM).getEntity();
+      assertEntityEquals(expected, actual);
+    }
+  }
+
+  @Test
+  public void entityCollectionSameAsTreeDeserializer() throws Exception {
+    final EntityCollection expected = OData.newInstance().createDeserializer(ContentType.JSON, metadata)
+        .entityCollection(getFileAsStream("ESAllPrim.json"), ET_ALL_PRIM).getEntityCollection();
+    final EntityCollection actual = createDeserializer()
+        .entityCollection(getFileAsStream("ESAllPrim.json"), ET_ALL_PRIM).getEntityCollection();
+    assertEquals(expected.getEntities().size(), actual.getEntities().size());
+    for (int index = 0; index < expected.getEntities().size(); index++) {
+      assertEntityEquals(expected.getEntities().get(index), actual.getEntities().get(index));
+    }
+  }
+
+  @Test
+  public void derivedTypeAnnotatedAfterProperties() throws Exception {
+    final Entity entity = createDeserializer().entity(toStream("{"
+        + "\"AdditionalPropertyString_5\":\"derived\","
+        + "\"PropertyString\":\"base\","
+        + "\"PropertyInt16\":42,"
+        + "\"@odata.type\":\"#olingo.odata.test1.ETBase\"}"), ET_TWO_PRIM).getEntity();
+    assertEquals("olingo.odata.test1.ETBase", entity.getType());
+    assertEquals(3, entity.getProperties().size());
+    assertEquals("PropertyInt16", entity.getProperties().get(0).getName());
+    assertEquals("PropertyString", entity.getProperties().get(1).getName());
+    assertEquals("derived", entity.getProperty("AdditionalPropertyString_5").getValue());
+  }
+
+  @Test
+  public void unknownPropertyAfterTypeAnnotation() throws Exception {
+    expectException("{\"@odata.type\":\"#olingo.odata.test1.ETTwoPrim\",\"PropertyInt16\":42,\"Unknown\":1}",
+        DeserializerException.MessageKeys.UNKNOWN_CONTENT);
+  }
+
+  @Test
+  public void unknownPropertyWithoutTypeAnnotation() throws Exception {
+    expectException("{\"Unknown\":{\"a\":[1,2]},\"PropertyInt16\":42}",
+        DeserializerException.MessageKeys.UNKNOWN_CONTENT);
+  }
+
+  @Test
+  public void duplicatePropertyInBufferedField() throws Exception {
+    expectException("{\"Unknown\":{\"a\":1,\"a\":2},\"PropertyInt16\":42}",
+        DeserializerException.MessageKeys.DUPLICATE_PROPERTY);
+  }
+
+  @Test
+  public void truncatedInput() throws Exception {
+    expectException("{\"PropertyInt16\":42,\"PropertyString\":",
+        DeserializerException.MessageKeys.JSON_SYNTAX_EXCEPTION);
+  }
+
+  @Test
+  public void numberNotationSameAsTreeDeserializer() throws Exception {
+    final String content = "{\"PropertyInt16\":1,\"PropertyDecimal\":1.5E2,\"PropertyDouble\":1e10}";
+    final Entity expected = OData.newInstance().createDeserializer(ContentType.JSON, metadata)
+        .entity(toStream(content), ET_ALL_PRIM).getEntity();
+    final Entity actual = createDeserializer().entity(toStream(content), ET_ALL_PRIM).getEntity();
+    assertEntityEquals(expected, actual);
+  }
+
+  @Test
+  public void trailingContent() throws Exception {
+    // Both deserializers reject content after the top-level object.
+    for (final ODataDeserializer deserializer : new ODataDeserializer[] {
+        createDeserializer(), OData.newInstance().createDeserializer(ContentType.JSON, metadata) }) {
+      try {
+        deserializer.entity(toStream("{\"PropertyInt16\":42}{\"PropertyInt16\":43}"), ET_TWO_PRIM);
+        fail("Expected exception not thrown.");
+      } catch (final DeserializerException e) {
+        assertEquals(DeserializerException.MessageKeys.JSON_SYNTAX_EXCEPTION, e.getMessageKey());
+      }
+      try {
+        deserializer.entityCollection(toStream("{\"value\":[{\"PropertyInt16\":42}]} 1"), ET_TWO_PRIM);
+        fail("Expected exception not thrown.");
+      } catch (final DeserializerException e) {
+        assertEquals(DeserializerException.MessageKeys.JSON_SYNTAX_EXCEPTION, e.getMessageKey());
+      }
+    }
+  }
+
+  @Test
+  public void inputIsClosed() throws Exception {
+    final boolean[] closed = new boolean[1];
+    final InputStream stream = new FilterInputStream(toStream("{\"PropertyInt16\":42}")) {
+      @Override
+      public void close() throws IOException {
+        closed[0] = true;
+        super.close();
+      }
+    };
+    createDeserializer().entity(stream, ET_TWO_PRIM);
+    assertTrue(closed[0]);
+  }
+
+  private void assertEntityEquals(final Entity expected, final Entity actual) {
+    assertEquals(expected.getType(), actual.getType());
+    assertEquals(expected.getProperties().size(), actual.getProperties().size());
+    for (int index = 0; index < expected.getProperties().size(); index++) {
+      final Property expectedProperty = expected.getProperties().get(index);
+      final Property actualProperty = actual.getProperties().get(index);
+      assertEquals(expectedProperty.getName(), actualProperty.getName());
+      assertEquals(expectedProperty.getType(), actualProperty.getType());
+      if (expectedProperty.getValue() instanceof byte[]) {
+        assertArrayEquals((byte[]) expectedProperty.getValue(), (byte[]) actualProperty.getValue());
+      } else {
+        assertEquals(expectedProperty.getValue(), actualProperty.getValue());
+      }
+    }
+    assertEquals(expected.getNavigationBindings(), actual.getNavigationBindings());
+    assertEquals(expected.getNavigationLinks().size(), actual.getNavigationLinks().size());
+    for (final Link expectedLink : expected.getNavigationLinks()) {
+      final Link actualLink = actual.getNavigationLink(expectedLink.getTitle());
+      assertEquals(expectedLink.getType(), actualLink.getType());
+      if (expectedLink.getInlineEntity() != null) {
+        assertEntityEquals(expectedLink.getInlineEntity(), actualLink.getInlineEntity());
+      }
+      if (expectedLink.getInlineEntitySet() != null) {
+        assertEquals(expectedLink.getInlineEntitySet().getEntities().size(),
+            actualLink.getInlineEntitySet().getEntities().size());
+        for (int index = 0; index < expectedLink.getInlineEntitySet().getEntities().size(); index++) {
+          assertEntityEquals(expectedLink.getInlineEntitySet().getEntities().get(index),
+              actualLink.getInlineEntitySet().getEntities().get(index));
+        }
+      }
+    }
+  }
+
+  private ODataDeserializer createDeserializer() throws DeserializerException {
+    return OData.newInstance().createStreamingDeserializer(ContentType.JSON, metadata);
+  }
+
+  private InputStream toStream(final String content) {
+    return new ByteArrayInputStream(content.getBytes());
+  }
+
+  private void expectException(final String entityString, final DeserializerException.MessageKeys messageKey)
+      throws Exception {
+    try {
+      createDeserializer().entity(toStream(entityString), ET_TWO_PRIM);
+      fail("Expected exception not thrown.");
+    } catch (final DeserializerException e) {
+      assertEquals(messageKey, e.getMessageKey());
+    }
+  }
+}
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.serializer.json;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.olingo.commons.api.data.CompactEntity;
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.data.ValueType;
+import org.apache.olingo.commons.api.edm.EdmEntitySet;
+import org.apache.olingo.commons.api.edm.EdmEntityType;
+import org.apache.olingo.commons.api.edmx.EdmxReference;
+import org.apache.olingo.server.api.ServiceMetadata;
+import org.apache.olingo.server.api.uri.queryoption.SelectOption;
+import org.apache.olingo.server.core.ServiceMetadataImpl;
+import org.apache.olingo.server.core.serializer.ExpandSelectMock;
+import org.apache.olingo.server.tecsvc.provider.EdmTechProvider;
+import org.junit.Assert;
+import org.junit.Test;
+
+public class JsonSerializationPlanTest {
+  private static final ServiceMetadata metadata = new ServiceMetadataImpl(
+      new EdmTechProvider(), Collections.<EdmxReference> emptyList(), null);
+  private static final EdmEntitySet entitySet = metadata.getEdm().getEntityContainer().getEntitySet("ESAllPrim");
+  private static final EdmEntityType entityType = entitySet.getEntityType();
+
+  @Test
+  public void planIsSharedPerShape() throws Exception {
+    final JsonSerializationPlan plan = JsonSerializationPlan.get(metadata, entityType, null, null);
+    Assert.assertSame(plan, JsonSerializationPlan.get(metadata, entityType, null, null));
+
+    final JsonSerializationPlan selectPlan = JsonSerializationPlan.get(metadata, entityType, select("PropertyInt16"),
+        null);
+    Assert.assertNotSame(plan, selectPlan);
+    Assert.assertEquals(1, selectPlan.getProperties().size());
+    Assert.assertSame(selectPlan, JsonSerializationPlan.get(metadata, entityType, select("PropertyInt16"), null));
+    Assert.assertNotSame(selectPlan,
+        JsonSerializationPlan.get(metadata, entityType, select("PropertyString"), null));
+  }
+
+  @Test
+  public void planIsNotSharedBetweenServices() throws Exception {
+    final ServiceMetadata otherMetadata = new ServiceMetadataImpl(
+        new EdmTechProvider(), Collections.<EdmxReference> emptyList(), null);
+    final EdmEntityType otherType =
+        otherMetadata.getEdm().getEntityContainer().getEntitySet("ESAllPrim").getEntityType();
+    Assert.assertNotSame(JsonSerializationPlan.get(metadata, entityType, null, null),
+        JsonSerializationPlan.get(otherMetadata, otherType, null, null));
+  }
+
+  private SelectOption select(final String propertyName) {
+    return ExpandSelectMock.mockSelectOption(Arrays.asList(ExpandSelectMock.mockSelectItem(entitySet, propertyName)));
+  }
+
+  @Test
+  public void propertiesInTypeOrder() throws Exception {
+    final JsonSerializationPlan plan = JsonSerializationPlan.get(metadata, entityType, null, null);
+    Assert.assertEquals(entityType.getPropertyNames().size(), plan.getProperties().size());
+    for (int index = 0; index < plan.getProperties().size(); index++) {
+      Assert.assertEquals(entityType.getPropertyNames().get(index), plan.getProperties().get(index).getName());
+      Assert.assertEquals(entityType.getPropertyNames().get(index),
+          plan.getProperties().get(index).getFieldName().getValue());
+    }
+    Assert.assertTrue(plan.getNavigationProperties().isEmpty());
+    Assert.assertTrue(plan.areKeyPredicateNamesSelected());
+  }
+
+  @Test
+  public void resolveUnorderedAndMissingProperties() throws Exception {
+    final JsonSerializationPlan plan = JsonSerializationPlan.get(metadata, entityType, null, null);
+    final List<String> names = entityType.getPropertyNames();
+    List<Property> values = new ArrayList<Property>();
+    values.add(new Property(null, names.get(2), ValueType.PRIMITIVE, null));
+    values.add(new Property(null, names.get(0), ValueType.PRIMITIVE, null));
+    values.add(new Property(null, names.get(1), ValueType.PRIMITIVE, null));
+
+    final Property[] resolved = plan.resolve(values);
+    Assert.assertEquals(names.size(), resolved.length);
+    Assert.assertSame(values.get(1), resolved[0]);
+    Assert.assertSame(values.get(2), resolved[1]);
+    Assert.assertSame(values.get(0), resolved[2]);
+    Assert.assertNull(resolved[3]);
+  }
+
+  @Test
+  public void resolveCompactEntity() throws Exception {
+    final JsonSerializationPlan plan = JsonSerializationPlan.get(metadata, entityType, null, null);
+    final List<String> names = entityType.getPropertyNames();
+    Entity entity = new CompactEntity(entityType);
+    final Property second = new Property(null, names.get(1), ValueType.PRIMITIVE, null);
+    final Property first = new Property(null, names.get(0), ValueType.PRIMITIVE, null);
+    entity.addProperty(second).addProperty(first);
+
+    final Property[] resolved = plan.resolve(entity);
+    Assert.assertEquals(names.size(), resolved.length);
+    Assert.assertSame(first, resolved[0]);
+    Assert.assertSame(second, resolved[1]);
+    Assert.assertNull(resolved[2]);
+  }
+
+  @Test
+  public void resolveEmptyList() throws Exception {
+    final Property[] resolved = JsonSerializationPlan.get(metadata, entityType, null, null)
+        .resolve(Collections.<Property> emptyList());
+    for (final Property property : resolved) {
+      Assert.assertNull(property);
+    }
+  }
+}
@@ -35,6 +35,7 @@ import org.apache.olingo.commons.api.data.ContextURL.Suffix;
 import org.apache.olingo.commons.api.data.Entity;
 import org.apache.olingo.commons.api.data.EntityCollection;
 import org.apache.olingo.commons.api.data.EntityIterator;
+import org.apache.olingo.commons.api.data.PrimitiveProperty;
 import org.apache.olingo.commons.api.data.Property;
 import org.apache.olingo.commons.api.data.ValueType;
 import org.apache.olingo.commons.api.edm.EdmComplexType;
@@ -44,6 +45,7 @@ import org.apache.olingo.commons.api.edm.EdmEntityType;
 import org.apache.olingo.commons.api.edm.EdmPrimitiveType;
 import org.apache.olingo.commons.api.edm.EdmProperty;
 import org.apache.olingo.commons.api.edmx.EdmxReference;
+import org.apache.olingo.commons.api.ex.ODataRuntimeException;
 import org.apache.olingo.commons.api.format.ContentType;
 import org.apache.olingo.server.api.OData;
 import org.apache.olingo.server.api.ODataContent;
@@ -59,6 +61,7 @@ import org.apache.olingo.server.api.serializer.ReferenceCollectionSerializerOpti
 import org.apache.olingo.server.api.serializer.ReferenceSerializerOptions;
 import org.apache.olingo.server.api.serializer.SerializerException;
 import org.apache.olingo.server.api.serializer.SerializerResult;
+import org.apache.olingo.server.api.serializer.SerializerStreamResult;
 import org.apache.olingo.server.api.uri.UriHelper;
 import org.apache.olingo.server.api.uri.queryoption.CountOption;
 import org.apache.olingo.server.api.uri.queryoption.ExpandItem;
@@ -119,6 +122,39 @@ public class ODataJsonSerializerTest {
     Assert.assertEquals(expectedResult, resultString);
   }
 
+  @Test
+  public void entityWithUnboxedValues() throws Exception {
+    final EdmEntitySet edmEntitySet = entityContainer.getEntitySet("ESAllPrim");
+    final Entity entity = data.readAll(edmEntitySet).getEntities().get(0);
+    // The technical service already keeps these values unboxed.
+    Assert.assertTrue(entity.getProperty("PropertyInt32") instanceof PrimitiveProperty);
+    Assert.assertFalse(entity.getProperty("PropertyInt32").isNull());
+    // The boxed value is created only once.
+    Assert.assertSame(entity.getProperty("PropertyInt32").getValue(), entity.getProperty("PropertyInt32").getValue());
+    Entity unboxed = new Entity();
+    for (final Property property : entity.getProperties()) {
+      final String name = property.getName();
+      unboxed.addProperty(
+          name.equals("PropertyBoolean") ?
+              new PrimitiveProperty(property.getType(), name, ((Boolean) property.getValue()).booleanValue()) :
+          name.equals("PropertyInt32") ?
+              new PrimitiveProperty(property.getType(), name, ((Number) property.getValue()).intValue()) :
+          name.equals("PropertyInt64") ?
+              new PrimitiveProperty(property.getType(), name, ((Number) property.getValue()).longValue()) :
+          name.equals("PropertyDouble") ?
+              new PrimitiveProperty(property.getType(), name, ((Number) property.getValue()).doubleValue()) :
+          property);
+    }
+    for (final ODataSerializer candidate : Arrays.asList(serializer, serializerIEEECompatible)) {
+      final EntitySerializerOptions options = EntitySerializerOptions.with()
+          .contextURL(ContextURL.with().entitySet(edmEntitySet).suffix(Suffix.ENTITY).build())
+          .build();
+      Assert.assertEquals(
+          IOUtils.toString(candidate.entity(metadata, edmEntitySet.getEntityType(), entity, options).getContent()),
+          IOUtils.toString(candidate.entity(metadata, edmEntitySet.getEntityType(), unboxed, options).getContent()));
+    }
+  }
+
   @Test
   public void entityAllPrimAllNull() throws Exception {
     final EdmEntitySet edmEntitySet = entityContainer.getEntitySet("ESAllPrim");
@@ -288,6 +324,94 @@ public class ODataJsonSerializerTest {
     Assert.assertEquals(resultString, "ERROR: MISSING_PROPERTY");
   }
 
+  @Test
+  public void entityWriteThrough() throws Exception {
+    final EdmEntitySet edmEntitySet = entityContainer.getEntitySet("ESAllPrim");
+    final Entity entity = data.readAll(edmEntitySet).getEntities().get(0);
+    final EntitySerializerOptions options = EntitySerializerOptions.with()
+        .contextURL(ContextURL.with().entitySet(edmEntitySet).suffix(Suffix.ENTITY).build())
+        .build();
+    final String expectedResult = IOUtils.toString(
+        serializer.entity(metadata, edmEntitySet.getEntityType(), entity, options).getContent());
+    Assert.assertFalse(serializer.entity(metadata, edmEntitySet.getEntityType(), entity, options)
+        instanceof SerializerStreamResult);
+
+    final SerializerResult result = new ODataJsonSerializer(ContentType.JSON, true)
+        .entity(metadata, edmEntitySet.getEntityType(), entity, options);
+    Assert.assertTrue(result instanceof SerializerStreamResult);
+    ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    ((SerializerStreamResult) result).getODataContent().write(bout);
+    Assert.assertEquals(expectedResult, new String(bout.toByteArray(), "UTF-8"));
+    Assert.assertEquals(expectedResult, IOUtils.toString(result.getContent()));
+  }
+
+  @Test
+  public void entityCollectionWriteThroughWithError() throws Exception {
+    final EdmEntitySet edmEntitySet = entityContainer.getEntitySet("ESAllPrim");
+    final EntityCollection entitySet = new EntityCollection();
+    entitySet.getEntities().add(new Entity());
+
+    ODataContentWriteErrorCallback errorCallback = new ODataContentWriteErrorCallback() {
+      @Override
+      public void handleError(ODataContentWriteErrorContext context, WritableByteChannel channel) {
+        try {
+          String toChannel = "ERROR: " + context.getODataLibraryException().getMessageKey().getKey();
+          channel.write(ByteBuffer.wrap(toChannel.getBytes("UTF-8")));
+        } catch (IOException e) {
+          throw new RuntimeException("Error in error.");
+        }
+      }
+    };
+
+    // The error does not occur before the content is written.
+    ODataContent result = ((SerializerStreamResult) new ODataJsonSerializer(ContentType.JSON, true).entityCollection(
+        metadata, edmEntitySet.getEntityType(), entitySet,
+        EntityCollectionSerializerOptions.with()
+            .writeContentErrorCallback(errorCallback)
+            .contextURL(ContextURL.with().entitySet(edmEntitySet).build())
+            .build())).getODataContent();
+    ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    result.write(bout);
+    Assert.assertEquals("ERROR: MISSING_PROPERTY", new String(bout.toByteArray(), "UTF-8"));
+  }
+
+  @Test
+  public void entityWriteThroughWithError() throws Exception {
+    final EdmEntitySet edmEntitySet = entityContainer.getEntitySet("ESAllPrim");
+    ODataContentWriteErrorCallback errorCallback = new ODataContentWriteErrorCallback() {
+      @Override
+      public void handleError(ODataContentWriteErrorContext context, WritableByteChannel channel) {
+        try {
+          String toChannel = "ERROR: " + context.getODataLibraryException().getMessageKey().getKey();
+          channel.write(ByteBuffer.wrap(toChannel.getBytes("UTF-8")));
+        } catch (IOException e) {
+          throw new RuntimeException("Error in error.");
+        }
+      }
+    };
+    final ContextURL contextURL = ContextURL.with().entitySet(edmEntitySet).suffix(Suffix.ENTITY).build();
+    final ODataJsonSerializer writeThroughSerializer = new ODataJsonSerializer(ContentType.JSON, true);
+
+    ODataContent result = ((SerializerStreamResult) writeThroughSerializer.entity(
+        metadata, edmEntitySet.getEntityType(), new Entity(),
+        EntitySerializerOptions.with().contextURL(contextURL).writeContentErrorCallback(errorCallback).build()))
+        .getODataContent();
+    ByteArrayOutputStream bout = new ByteArrayOutputStream();
+    result.write(bout);
+    Assert.assertEquals("ERROR: MISSING_PROPERTY", new String(bout.toByteArray(), "UTF-8"));
+
+    // Without a callback the error is thrown from the write method.
+    result = ((SerializerStreamResult) writeThroughSerializer.entity(
+        metadata, edmEntitySet.getEntityType(), new Entity(),
+        EntitySerializerOptions.with().contextURL(contextURL).build())).getODataContent();
+    try {
+      result.write(new ByteArrayOutputStream());
+      Assert.fail("Expected exception not thrown!");
+    } catch (final ODataRuntimeException e) {
+      Assert.assertEquals(SerializerException.MessageKeys.MISSING_PROPERTY,
+          ((SerializerException) e.getCause()).getMessageKey());
+    }
+  }
 
   @Test
   public void entityCollAllPrim() throws Exception {
@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.core.uri;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.util.Collections;
+
+import org.apache.olingo.commons.api.edm.Edm;
+import org.apache.olingo.commons.api.edmx.EdmxReference;
+import org.apache.olingo.commons.api.http.HttpMethod;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.OData;
+import org.apache.olingo.server.api.ODataRequest;
+import org.apache.olingo.server.api.ODataResponse;
+import org.apache.olingo.server.api.ServiceMetadata;
+import org.apache.olingo.server.api.uri.UriInfo;
+import org.apache.olingo.server.api.uri.UriInfoCache;
+import org.apache.olingo.server.api.uri.UriInfoKind;
+import org.apache.olingo.server.core.ODataHandlerImpl;
+import org.apache.olingo.server.core.ODataRequestContext;
+import org.apache.olingo.server.core.debug.ServerCoreDebugger;
+import org.apache.olingo.server.tecsvc.provider.EdmTechProvider;
+import org.junit.Test;
+
+public class UriInfoCacheImplTest {
+
+  private static final OData odata = OData.newInstance();
+  private static final ServiceMetadata metadata = odata.createServiceMetadata(
+      new EdmTechProvider(), Collections.<EdmxReference> emptyList());
+
+  @Test
+  public void handlerReusesParsedUri() throws Exception {
+    final UriInfoCache cache = odata.createUriInfoCache(10);
+    final ODataHandlerImpl handler = createHandler(cache);
+
+    ODataRequestContext context = createContext();
+    assertEquals(HttpStatusCode.OK.getStatusCode(), process(handler, context, HttpMethod.GET, null));
+    final UriInfo uriInfo = context.getUriInfo();
+    assertEquals(HttpStatusCode.OK.getStatusCode(), process(createHandler(cache), HttpMethod.GET, null));
+
+    assertEquals(1, cache.size());
+    assertEquals(1, cache.getHitCount());
+    assertEquals(1, cache.getMissCount());
+
+    context = createContext();
+    assertEquals(HttpStatusCode.OK.getStatusCode(), process(handler, context, HttpMethod.GET, null));
+    assertSame(uriInfo, context.getUriInfo());
+    context = createContext();
+    assertEquals(HttpStatusCode.OK.getStatusCode(), process(handler, context, HttpMethod.GET, "$format=xml"));
+    assertNotSame(uriInfo, context.getUriInfo());
+    assertEquals(2, cache.size());
+  }
+
+  @Test
+  public void invalidRequestsAreNotCached() throws Exception {
+    final UriInfoCache cache = odata.createUriInfoCache(10);
+    final ODataHandlerImpl handler = createHandler(cache);
+
+    assertEquals(HttpStatusCode.BAD_REQUEST.getStatusCode(), process(handler, HttpMethod.GET, "$filter=true"));
+    assertEquals(HttpStatusCode.BAD_REQUEST.getStatusCode(), process(handler, HttpMethod.GET, "$top=-1"));
+    assertEquals(0, cache.size());
+    assertEquals(2, cache.getMissCount());
+  }
+
+  @Test
+  public void leastRecentlyUsedEntryIsEvicted() throws Exception {
+    final UriInfoCacheImpl cache = new UriInfoCacheImpl(2);
+    final Edm edm = metadata.getEdm();
+    final UriInfo first = new UriInfoImpl();
+    final UriInfo second = new UriInfoImpl();
+    final UriInfo cached = cache.put(edm, HttpMethod.GET, "/ESAllPrim", null, first);
+    cache.put(edm, HttpMethod.GET, "/ESTwoPrim", null, second);
+    assertSame(cached, cache.get(edm, HttpMethod.GET, "/ESAllPrim", null));
+
+    cache.put(edm, HttpMethod.GET, "/ESMixPrimCollComp", null, new UriInfoImpl());
+    assertEquals(2, cache.size());
+    assertSame(cached, cache.get(edm, HttpMethod.GET, "/ESAllPrim", null));
+    assertNull(cache.get(edm, HttpMethod.GET, "/ESTwoPrim", null));
+    assertNull(cache.get(edm, HttpMethod.DELETE, "/ESAllPrim", null));
+  }
+
+  @Test
+  public void cachedUriInfoIsReadOnly() throws Exception {
+    final UriInfoCacheImpl cache = new UriInfoCacheImpl(10);
+    final Edm edm = metadata.getEdm();
+    final UriInfoImpl uriInfo = new UriInfoImpl().setKind(UriInfoKind.resource).setFragment("fragment");
+    final UriInfo cached = cache.put(edm, HttpMethod.GET, "/ESAllPrim", null, uriInfo);
+    assertFalse(cached instanceof UriInfoImpl);
+    assertEquals(UriInfoKind.resource, cached.getKind());
+    assertEquals("fragment", cached.getFragment());
+    assertSame(cached, cached.asUriInfoResource());
+    assertSame(cached, cache.get(edm, HttpMethod.GET, "/ESAllPrim", null));
+  }
+
+  @Test
+  public void changedMetadataInvalidateEntries() throws Exception {
+    final UriInfoCacheImpl cache = new UriInfoCacheImpl(10);
+    final Edm edm = metadata.getEdm();
+    cache.put(edm, HttpMethod.GET, "/ESAllPrim", null, new UriInfoImpl());
+
+    final Edm otherEdm = odata.createServiceMetadata(new EdmTechProvider(), Collections.<EdmxReference> emptyList())
+        .getEdm();
+    assertNull(cache.get(otherEdm, HttpMethod.GET, "/ESAllPrim", null));
+    cache.put(otherEdm, HttpMethod.GET, "/ESTwoPrim", null, new UriInfoImpl());
+    assertEquals(1, cache.size());
+    assertNull(cache.get(edm, HttpMethod.GET, "/ESTwoPrim", null));
+  }
+
+  private ODataHandlerImpl createHandler(final UriInfoCache cache) {
+    ODataHandlerImpl handler = new ODataHandlerImpl(odata, metadata, new ServerCoreDebugger(odata));
+    handler.register(cache);
+    return handler;
+  }
+
+  private ODataRequestContext createContext() {
+    return new ODataRequestContext(new ServerCoreDebugger(odata));
+  }
+
+  private int process(final ODataHandlerImpl handler, final HttpMethod method, final String query) {
+    return process(handler, createContext(), method, query);
+  }
+
+  private int process(final ODataHandlerImpl handler, final ODataRequestContext context,
+      final HttpMethod method, final String query) {
+    ODataRequest request = new ODataRequest();
+    request.setMethod(method);
+    request.setRawBaseUri("http://localhost/odata");
+    request.setRawODataPath("$metadata");
+    request.setRawQueryPath(query);
+    final ODataResponse response = handler.process(request, context);
+    return response.getStatusCode();
+  }
+}
@@ -0,0 +1,187 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.tecsvc.processor.queryoptions.expression;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Collections;
+
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.edm.Edm;
+import org.apache.olingo.commons.api.edm.EdmPrimitiveTypeKind;
+import org.apache.olingo.commons.api.edm.FullQualifiedName;
+import org.apache.olingo.commons.api.edmx.EdmxReference;
+import org.apache.olingo.server.api.OData;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.uri.UriInfo;
+import org.apache.olingo.server.api.uri.queryoption.expression.Expression;
+import org.apache.olingo.server.core.uri.parser.Parser;
+import org.apache.olingo.server.core.uri.queryoption.expression.EnumerationImpl;
+import org.apache.olingo.server.core.uri.queryoption.expression.LambdaRefImpl;
+import org.apache.olingo.server.core.uri.queryoption.expression.TypeLiteralImpl;
+import org.apache.olingo.server.tecsvc.data.DataProvider;
+import org.apache.olingo.server.tecsvc.processor.queryoptions.expression.operand.TypedOperand;
+import org.apache.olingo.server.tecsvc.provider.EdmTechProvider;
+import org.junit.Test;
+
+public class FilterCompilerTest {
+
+  private static final OData odata = OData.newInstance();
+  private static final Edm edm = odata.createServiceMetadata(
+      new EdmTechProvider(), Collections.<EdmxReference> emptyList()).getEdm();
+  private static final DataProvider data = new DataProvider(odata, edm);
+
+  @Test
+  public void comparisonsWithConstants() throws Exception {
+    assertSameResult("ESAllPrim", "PropertyInt16 eq 32767");
+    assertSameResult("ESAllPrim", "32767 eq PropertyInt16");
+    assertSameResult("ESAllPrim", "PropertyInt16 ne 0");
+    assertSameResult("ESAllPrim", "PropertyInt32 lt 0");
+    assertSameResult("ESAllPrim", "0 lt PropertyInt32");
+    assertSameResult("ESAllPrim", "PropertyInt64 ge -9223372036854775808");
+    assertSameResult("ESAllPrim", "PropertyInt64 gt 9223372036854775806");
+    assertSameResult("ESAllPrim", "PropertyByte le 255");
+    assertSameResult("ESAllPrim", "PropertySByte le 1.5");
+    assertSameResult("ESAllPrim", "PropertyString eq 'First Resource - positive values'");
+    assertSameResult("ESAllPrim", "PropertyString gt 'First'");
+    assertSameResult("ESAllPrim", "'Second' ge PropertyString");
+    assertSameResult("ESAllPrim", "PropertyString eq null");
+    assertSameResult("ESTwoKeyNav", "PropertyInt16 eq null");
+    assertSameResult("ESTwoKeyNav", "PropertyString ne null");
+    assertSameResult("ESAllPrim", "PropertyDouble le -179000");
+  }
+
+  @Test
+  public void logicalOperators() throws Exception {
+    assertSameResult("ESTwoKeyNav", "PropertyString eq '2' and PropertyInt16 eq 1");
+    assertSameResult("ESTwoKeyNav", "PropertyString eq '2' or PropertyInt16 eq 1");
+    assertSameResult("ESTwoKeyNav", "not (PropertyInt16 eq 1)");
+    assertSameResult("ESTwoKeyNav", "PropertyComp/PropertyComp/PropertyBoolean eq not null");
+    assertSameResult("ESAllPrim", "PropertyBoolean and PropertyInt16 gt 0");
+    assertSameResult("ESAllPrim", "not PropertyBoolean or PropertyInt16 eq null");
+  }
+
+  @Test
+  public void operationsAndMethods() throws Exception {
+    assertSameResult("ESTwoKeyNav", "PropertyInt16 add 1 eq (1 sub 3) div 2 mul 3 add 7");
+    assertSameResult("ESTwoKeyNav", "PropertyComp/PropertyComp/PropertyInt16 eq 0 add -(5 add null)");
+    assertSameResult("ESTwoKeyNav", "substring(PropertyComp/PropertyComp/PropertyString,6) eq 'Value'");
+    assertSameResult("ESAllPrim", "substring(PropertyString,length('First') add 1,8) eq ('Resource')");
+    assertSameResult("ESAllPrim", "contains(PropertyString,concat(toupper('f'),'irst'))");
+    assertSameResult("ESAllPrim", "year(PropertyDate) eq 2015");
+    assertSameResult("ESAllPrim", "PropertyDateTimeOffset eq 2012-12-03T07:16:19Z add duration'PT4S'");
+    assertSameResult("ESMixEnumDefCollComp", "PropertyEnumString eq olingo.odata.test1.ENString'String2'");
+    assertSameResult("ESAllPrim", "'Tes' lt 'Test'");
+    assertSameResult("ESAllPrim", "null eq null");
+  }
+
+  @Test
+  public void nullsAndMixedTypes() throws Exception {
+    assertSameResult("ESAllPrim", "PropertyDecimal add PropertyInt16 eq 1");
+    assertSameResult("ESAllPrim", "PropertyDate sub PropertyDuration eq null");
+    assertSameResult("ESAllPrim", "PropertyInt64 eq PropertyInt16 or PropertySingle gt PropertyDouble");
+  }
+
+  @Test
+  public void errorInRightOperandIsReported() throws Exception {
+    final EntityPredicate predicate = compile("ESAllPrim", "PropertyInt16 eq 0 and PropertyInt16 div 0 eq 1");
+    final Entity entity = data.readAll(edm.getEntityContainer().getEntitySet("ESAllPrim")).getEntities().get(0);
+    try {
+      predicate.matches(entity);
+      fail("Expected exception not thrown.");
+    } catch (final ArithmeticException e) {
+      // The expression visitor reports the division by zero in the same way.
+    }
+  }
+
+  @Test
+  public void stringComparisonUsesSign() throws Exception {
+    final Entity entity = data.readAll(edm.getEntityContainer().getEntitySet("ESAllPrim")).getEntities().get(0);
+    assertTrue(compile("ESAllPrim", "PropertyString gt 'A'").matches(entity));
+    assertTrue(compile("ESAllPrim", "'A' lt PropertyString").matches(entity));
+    assertFalse(compile("ESAllPrim", "PropertyString le 'A'").matches(entity));
+    assertSameResult("ESAllPrim", "PropertyString ge 'A'");
+    assertSameResult("ESAllPrim", "PropertyString lt 'Z'");
+  }
+
+  @Test
+  public void literalIsTypedOnlyOnce() throws Exception {
+    final EntityPredicate predicate = compile("ESAllPrim", "PropertyString eq 'First Resource - positive values'");
+    final Entity entity = data.readAll(edm.getEntityContainer().getEntitySet("ESAllPrim")).getEntities().get(0);
+    assertTrue(predicate.matches(entity));
+    assertTrue(predicate.matches(entity));
+    assertFalse(compile("ESAllPrim", "PropertyString ne 'First Resource - positive values'").matches(entity));
+  }
+
+  @Test
+  public void unsupportedExpressionsAreReportedOnEvaluation() throws Exception {
+    final Entity entity = data.readAll(edm.getEntityContainer().getEntitySet("ESAllPrim")).getEntities().get(0);
+    assertErrorOnEvaluation(new EnumerationImpl(
+        edm.getEnumType(new FullQualifiedName("olingo.odata.test1", "ENString")),
+        Collections.singletonList("Invalid")), entity, 400);
+    assertErrorOnEvaluation(new TypeLiteralImpl(odata.createPrimitiveTypeInstance(EdmPrimitiveTypeKind.String)),
+        entity, 501);
+    assertErrorOnEvaluation(new LambdaRefImpl("x"), entity, 501);
+  }
+
+  private void assertErrorOnEvaluation(final Expression expression, final Entity entity, final int statusCode)
+      throws Exception {
+    final EntityPredicate predicate = FilterCompiler.compile(expression, null, edm);
+    try {
+      predicate.matches(entity);
+      fail("Expected exception not thrown.");
+    } catch (final ODataApplicationException e) {
+      assertEquals(statusCode, e.getStatusCode());
+    }
+  }
+
+  private EntityPredicate compile(final String entitySet, final String filter) throws Exception {
+    final UriInfo uriInfo = new Parser(edm, odata).parseUri(entitySet, "$filter=" + filter, null);
+    return FilterCompiler.compile(uriInfo.getFilterOption().getExpression(), uriInfo, edm);
+  }
+
+  /** Compares the compiled filter with the result of the expression visitor for every entity. */
+  private void assertSameResult(final String entitySet, final String filter) throws Exception {
+    final UriInfo uriInfo = new Parser(edm, odata).parseUri(entitySet, "$filter=" + filter, null);
+    final EntityPredicate predicate =
+        FilterCompiler.compile(uriInfo.getFilterOption().getExpression(), uriInfo, edm);
+    for (final Entity entity : data.readAll(edm.getEntityContainer().getEntitySet(entitySet)).getEntities()) {
+      String expected;
+      try {
+        final TypedOperand operand = uriInfo.getFilterOption().getExpression()
+            .accept(new ExpressionVisitorImpl(entity, uriInfo, edm)).asTypedOperand();
+        expected = operand.getType().getName().equals("Boolean") ?
+            String.valueOf(!Boolean.FALSE.equals(operand.getValue())) :
+            "error 400";
+      } catch (final ODataApplicationException e) {
+        expected = "error " + e.getStatusCode();
+      }
+      String actual;
+      try {
+        actual = String.valueOf(predicate.matches(entity));
+      } catch (final ODataApplicationException e) {
+        actual = "error " + e.getStatusCode();
+      }
+      assertEquals(filter, expected, actual);
+    }
+  }
+}
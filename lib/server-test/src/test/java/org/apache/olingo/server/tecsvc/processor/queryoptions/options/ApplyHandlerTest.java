@@ -0,0 +1,242 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.tecsvc.processor.queryoptions.options;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.data.ValueType;
+import org.apache.olingo.commons.api.edm.Edm;
+import org.apache.olingo.commons.api.edm.EdmEntityType;
+import org.apache.olingo.commons.api.edmx.EdmxReference;
+import org.apache.olingo.commons.api.format.ContentType;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.OData;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.ServiceMetadata;
+import org.apache.olingo.server.api.serializer.EntityCollectionSerializerOptions;
+import org.apache.olingo.server.api.uri.UriInfo;
+import org.apache.olingo.server.core.uri.parser.Parser;
+import org.apache.olingo.server.tecsvc.data.DataProvider;
+import org.apache.olingo.server.tecsvc.provider.EdmTechProvider;
+import org.junit.Test;
+
+public class ApplyHandlerTest {
+
+  private static final OData odata = OData.newInstance();
+  private static final ServiceMetadata metadata = odata.createServiceMetadata(
+      new EdmTechProvider(), Collections.<EdmxReference> emptyList());
+  private static final Edm edm = metadata.getEdm();
+  private static final DataProvider data = new DataProvider(odata, edm);
+
+  @Test
+  public void aggregate() throws Exception {
+    final EntityCollection result = apply("ESTwoPrim", "aggregate(PropertyInt16 with sum as Sum,"
+        + "PropertyInt16 with min as Min,PropertyInt16 with max as Max,PropertyInt16 with average as Average,"
+        + "PropertyString with countdistinct as Distinct,$count as Count)");
+    assertEquals(1, result.getEntities().size());
+    final Entity entity = result.getEntities().get(0);
+    assertEquals(6, entity.getProperties().size());
+    assertEquals(new BigDecimal(32766 - 365 - 32766 + 32767), entity.getProperty("Sum").getValue());
+    assertEquals((short) -32766, entity.getProperty("Min").getValue());
+    assertEquals(Short.MAX_VALUE, entity.getProperty("Max").getValue());
+    assertEquals(0, new BigDecimal("8100.5").compareTo((BigDecimal) entity.getProperty("Average").getValue()));
+    assertEquals(new BigDecimal(3), entity.getProperty("Distinct").getValue());
+    assertEquals(new BigDecimal(4), entity.getProperty("Count").getValue());
+    assertEquals("Edm.Decimal", entity.getProperty("Sum").getType());
+    assertEquals("Edm.Int16", entity.getProperty("Min").getType());
+  }
+
+  @Test
+  public void sumBeyondLongRange() throws Exception {
+    BigDecimal expected = BigDecimal.ZERO;
+    for (final Entity entity : readAll("ESAllPrim")) {
+      expected = expected.add(new BigDecimal(entity.getProperty("PropertyInt64").getValue().toString()));
+    }
+    final Entity entity = apply("ESAllPrim", "aggregate(PropertyInt64 with sum as Sum)").getEntities().get(0);
+    assertEquals(expected, entity.getProperty("Sum").getValue());
+  }
+
+  @Test
+  public void groupByWithAggregate() throws Exception {
+    Map<Object, Integer> expected = new HashMap<Object, Integer>();
+    for (final Entity entity : readAll("ESAllPrim")) {
+      final Object key = entity.getProperty("PropertyBoolean").getValue();
+      expected.put(key, expected.containsKey(key) ? expected.get(key) + 1 : 1);
+    }
+
+    final EntityCollection result = apply("ESAllPrim",
+        "groupby((PropertyBoolean),aggregate($count as Count,PropertyInt16 with max as Max))");
+    assertEquals(expected.size(), result.getEntities().size());
+    for (final Entity entity : result.getEntities()) {
+      assertEquals(Arrays.asList("PropertyBoolean", "Count", "Max"), getNames(entity));
+      assertEquals(new BigDecimal(expected.get(entity.getProperty("PropertyBoolean").getValue())),
+          entity.getProperty("Count").getValue());
+    }
+  }
+
+  @Test
+  public void groupByWithoutAndWithOtherTransformations() throws Exception {
+    EntityCollection result = apply("ESTwoPrim", "groupby((PropertyString))");
+    assertEquals(4, result.getEntities().size());
+    assertEquals(Collections.singletonList("PropertyString"), getNames(result.getEntities().get(0)));
+
+    result = apply("ESTwoPrim", "groupby((PropertyString),filter(PropertyInt16 gt 0)/topcount(1,PropertyInt16))");
+    assertEquals(2, result.getEntities().size());
+    assertEquals("Test String1", result.getEntities().get(0).getProperty("PropertyString").getValue());
+    assertEquals((short) 32766, result.getEntities().get(0).getProperty("PropertyInt16").getValue());
+    assertEquals("Test String4", result.getEntities().get(1).getProperty("PropertyString").getValue());
+  }
+
+  @Test
+  public void filterAndCompute() throws Exception {
+    final List<Entity> all = readAll("ESTwoPrim");
+    final int propertyCount = all.get(0).getProperties().size();
+    final EntityCollection result = apply("ESTwoPrim",
+        "filter(PropertyInt16 lt 0)/compute(PropertyInt16 add 1 as Next)");
+    assertEquals(2, result.getEntities().size());
+    for (final Entity entity : result.getEntities()) {
+      assertEquals(((Number) entity.getProperty("PropertyInt16").getValue()).intValue() + 1,
+          ((Number) entity.getProperty("Next").getValue()).intValue());
+    }
+    // The data of the data provider is not changed.
+    assertEquals(propertyCount, all.get(1).getProperties().size());
+    assertNull(all.get(1).getProperty("Next"));
+  }
+
+  @Test
+  public void topAndBottomCount() throws Exception {
+    EntityCollection result = apply("ESTwoPrim", "topcount(2,PropertyInt16)");
+    assertEquals(2, result.getEntities().size());
+    assertEquals(Short.MAX_VALUE, result.getEntities().get(0).getProperty("PropertyInt16").getValue());
+    assertEquals((short) 32766, result.getEntities().get(1).getProperty("PropertyInt16").getValue());
+
+    result = apply("ESTwoPrim", "bottomcount(5,PropertyInt16)");
+    assertEquals(4, result.getEntities().size());
+    assertEquals((short) -32766, result.getEntities().get(0).getProperty("PropertyInt16").getValue());
+  }
+
+  @Test
+  public void nonNumericValues() throws Exception {
+    assertBadRequest("ESTwoPrim", "aggregate(PropertyString with sum as Sum)");
+
+    // The parser checks the type of the ranking value, but not whether the values are finite.
+    final UriInfo uriInfo = parse("ESAllPrim", "topcount(1,PropertyDouble)");
+    EntityCollection entitySet = new EntityCollection();
+    entitySet.getEntities().add(new Entity().addProperty(
+        new Property(null, "PropertyDouble", ValueType.PRIMITIVE, Double.NaN)));
+    try {
+      ApplyHandler.applyApplySystemQueryOption(uriInfo.getApplyOption(), entitySet,
+          edm.getEntityContainer().getEntitySet("ESAllPrim").getEntityType(), uriInfo, edm);
+      fail("Expected exception not thrown.");
+    } catch (final ODataApplicationException e) {
+      assertEquals(HttpStatusCode.BAD_REQUEST.getStatusCode(), e.getStatusCode());
+    }
+  }
+
+  @Test
+  public void resultTypeAndSerialization() throws Exception {
+    final UriInfo uriInfo = parse("ESTwoPrim", "groupby((PropertyString),aggregate(PropertyInt16 with sum as Sum))");
+    final EdmEntityType entityType = edm.getEntityContainer().getEntitySet("ESTwoPrim").getEntityType();
+    EntityCollection entitySet = new EntityCollection();
+    entitySet.getEntities().addAll(readAll("ESTwoPrim"));
+    final EdmEntityType resultType = ApplyHandler.applyApplySystemQueryOption(uriInfo.getApplyOption(),
+        entitySet, entityType, uriInfo, edm);
+    assertNotSame(entityType, resultType);
+    assertEquals(Arrays.asList("PropertyString", "Sum"), resultType.getPropertyNames());
+    assertTrue(resultType.getKeyPredicateNames().isEmpty());
+    assertTrue(resultType.getNavigationPropertyNames().isEmpty());
+
+    final InputStream stream = odata.createSerializer(ContentType.JSON_NO_METADATA).entityCollection(
+        metadata, resultType, entitySet, EntityCollectionSerializerOptions.with().build()).getContent();
+    final String json = new Scanner(stream, "UTF-8").useDelimiter("\\A").next();
+    assertTrue(json, json.contains("{\"PropertyString\":\"Test String1\",\"Sum\":32766}"));
+    assertTrue(json, json.contains("{\"PropertyString\":null,\"Sum\":-32766}"));
+
+    final UriInfo filterOnly = parse("ESTwoPrim", "filter(PropertyInt16 gt 0)");
+    assertSame(entityType, ApplyHandler.applyApplySystemQueryOption(filterOnly.getApplyOption(),
+        new EntityCollection(), entityType, filterOnly, edm));
+  }
+
+  @Test
+  public void unsupportedTransformations() throws Exception {
+    for (final String apply : new String[] {
+        "concat(identity,identity)",
+        "groupby((rollup(PropertyString,PropertyInt16)))",
+        "toppercent(50,PropertyInt16)" }) {
+      try {
+        apply("ESTwoPrim", apply);
+        fail("Expected exception not thrown for " + apply);
+      } catch (final ODataApplicationException e) {
+        assertEquals(apply, HttpStatusCode.NOT_IMPLEMENTED.getStatusCode(), e.getStatusCode());
+      }
+    }
+  }
+
+  private EntityCollection apply(final String entitySetName, final String apply) throws Exception {
+    final UriInfo uriInfo = parse(entitySetName, apply);
+    EntityCollection entitySet = new EntityCollection();
+    entitySet.getEntities().addAll(readAll(entitySetName));
+    ApplyHandler.applyApplySystemQueryOption(uriInfo.getApplyOption(), entitySet,
+        edm.getEntityContainer().getEntitySet(entitySetName).getEntityType(), uriInfo, edm);
+    return entitySet;
+  }
+
+  private void assertBadRequest(final String entitySetName, final String apply) throws Exception {
+    try {
+      apply(entitySetName, apply);
+      fail("Expected exception not thrown.");
+    } catch (final ODataApplicationException e) {
+      assertEquals(HttpStatusCode.BAD_REQUEST.getStatusCode(), e.getStatusCode());
+    }
+  }
+
+  private UriInfo parse(final String entitySetName, final String apply) throws Exception {
+    return new Parser(edm, odata).parseUri(entitySetName, "$apply=" + apply, null);
+  }
+
+  private List<Entity> readAll(final String entitySetName) throws Exception {
+    return data.readAll(edm.getEntityContainer().getEntitySet(entitySetName)).getEntities();
+  }
+
+  private List<String> getNames(final Entity entity) {
+    List<String> names = new ArrayList<String>();
+    for (final Property property : entity.getProperties()) {
+      names.add(property.getName());
+    }
+    return names;
+  }
+}
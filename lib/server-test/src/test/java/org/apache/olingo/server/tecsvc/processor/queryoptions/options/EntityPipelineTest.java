@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.tecsvc.processor.queryoptions.options;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.edm.Edm;
+import org.apache.olingo.commons.api.edmx.EdmxReference;
+import org.apache.olingo.server.api.OData;
+import org.apache.olingo.server.api.uri.UriInfo;
+import org.apache.olingo.server.core.uri.parser.Parser;
+import org.apache.olingo.server.tecsvc.data.DataProvider;
+import org.apache.olingo.server.tecsvc.provider.EdmTechProvider;
+import org.junit.Test;
+
+public class EntityPipelineTest {
+
+  private static final OData odata = OData.newInstance();
+  private static final Edm edm = odata.createServiceMetadata(
+      new EdmTechProvider(), Collections.<EdmxReference> emptyList()).getEdm();
+
+  @Test
+  public void sameAsHandlers() throws Exception {
+    final EntityCollection entities = readEntities();
+    for (final String query : new String[] {
+        "$filter=PropertyInt16 gt 100",
+        "$filter=PropertyInt16 le 20&$skip=3&$top=5",
+        "$filter=PropertyInt16 le 20&$orderby=PropertyInt16 desc&$skip=3&$top=5&$count=true",
+        "$search=\"Number:1\"&$filter=PropertyInt16 lt 200&$count=true&$top=4",
+        "$orderby=PropertyString&$skip=500",
+        "$skip=600&$top=0" }) {
+      final UriInfo uriInfo = parse(query);
+      EntityCollection expected = new EntityCollection();
+      expected.getEntities().addAll(entities.getEntities());
+      SearchHandler.applySearchSystemQueryOption(uriInfo.getSearchOption(), expected);
+      FilterHandler.applyFilterSystemQuery(uriInfo.getFilterOption(), expected, uriInfo, edm);
+      CountHandler.applyCountSystemQueryOption(uriInfo.getCountOption(), expected);
+      OrderByHandler.applyOrderByOption(uriInfo.getOrderByOption(), expected, uriInfo, edm);
+      SkipHandler.applySkipSystemQueryHandler(uriInfo.getSkipOption(), expected);
+      TopHandler.applyTopSystemQueryOption(uriInfo.getTopOption(), expected);
+
+      final EntityCollection actual = createPipeline(entities.getEntities().iterator(), uriInfo)
+          .toEntityCollection();
+      assertEquals(query, expected.getCount(), actual.getCount());
+      assertEquals(query, expected.getEntities(), actual.getEntities());
+    }
+    assertEquals(503, entities.getEntities().size());
+  }
+
+  @Test
+  public void readsOnlyNeededEntities() throws Exception {
+    final EntityCollection entities = readEntities();
+    final CountingIterator source = new CountingIterator(entities.getEntities().iterator());
+    final EntityPipeline pipeline = createPipeline(source, parse("$filter=PropertyInt16 gt 10&$skip=2&$top=3"));
+    assertEquals(0, source.count);
+    List<Object> keys = new ArrayList<Object>();
+    while (pipeline.hasNext()) {
+      keys.add(pipeline.next().getProperty("PropertyInt16").getValue());
+    }
+    assertEquals("[13, 14, 15]", keys.toString());
+    assertEquals(15, source.count);
+    assertNull(pipeline.getCount());
+    assertNull(pipeline.getNext());
+  }
+
+  @Test
+  public void countCollectsEntities() throws Exception {
+    final EntityCollection entities = readEntities();
+    final CountingIterator source = new CountingIterator(entities.getEntities().iterator());
+    final EntityPipeline pipeline = createPipeline(source, parse("$filter=PropertyInt16 gt 500&$count=true"));
+    assertEquals(503, source.count);
+    assertEquals(Integer.valueOf(3), pipeline.getCount());
+  }
+
+  @Test
+  public void page() throws Exception {
+    final EntityCollection entities = readEntities();
+    final URI nextLink = URI.create("next");
+    EntityPipeline pipeline = new EntityPipeline(entities);
+    assertTrue(pipeline.page(500, 3, nextLink));
+    assertNull(pipeline.getNext());
+    assertEquals(3, pipeline.countEntities());
+    assertNull(pipeline.getNext());
+
+    pipeline = new EntityPipeline(entities);
+    assertTrue(pipeline.page(490, 10, nextLink));
+    assertEquals(10, pipeline.countEntities());
+    assertEquals(nextLink, pipeline.getNext());
+
+    pipeline = new EntityPipeline(entities);
+    assertTrue(pipeline.page(503, 10, nextLink));
+    assertFalse(pipeline.hasNext());
+    assertFalse(new EntityPipeline(entities).page(504, 10, nextLink));
+  }
+
+  private EntityCollection readEntities() throws Exception {
+    return new DataProvider(odata, edm).readAll(edm.getEntityContainer().getEntitySet("ESServerSidePaging"));
+  }
+
+  private UriInfo parse(final String query) throws Exception {
+    return new Parser(edm, odata).parseUri("ESServerSidePaging", query, null);
+  }
+
+  private EntityPipeline createPipeline(final Iterator<Entity> source, final UriInfo uriInfo) throws Exception {
+    return new EntityPipeline(source)
+        .search(uriInfo.getSearchOption(), null)
+        .filter(uriInfo.getFilterOption(), uriInfo, edm)
+        .count(uriInfo.getCountOption())
+        .orderBy(uriInfo.getOrderByOption(), uriInfo.getSkipOption(), uriInfo.getTopOption(), uriInfo, edm)
+        .skip(uriInfo.getSkipOption())
+        .top(uriInfo.getTopOption());
+  }
+
+  private static class CountingIterator implements Iterator<Entity> {
+    private final Iterator<Entity> source;
+    private int count = 0;
+
+    public CountingIterator(final Iterator<Entity> source) {
+      this.source = source;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return source.hasNext();
+    }
+
+    @Override
+    public Entity next() {
+      count++;
+      return source.next();
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
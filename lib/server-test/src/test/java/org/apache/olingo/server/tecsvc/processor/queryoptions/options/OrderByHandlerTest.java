@@ -0,0 +1,99 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.tecsvc.processor.queryoptions.options;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.edm.Edm;
+import org.apache.olingo.commons.api.edmx.EdmxReference;
+import org.apache.olingo.server.api.OData;
+import org.apache.olingo.server.api.uri.UriInfo;
+import org.apache.olingo.server.core.uri.parser.Parser;
+import org.apache.olingo.server.tecsvc.data.DataProvider;
+import org.apache.olingo.server.tecsvc.provider.EdmTechProvider;
+import org.junit.Test;
+
+public class OrderByHandlerTest {
+
+  private static final OData odata = OData.newInstance();
+  private static final Edm edm = odata.createServiceMetadata(
+      new EdmTechProvider(), Collections.<EdmxReference> emptyList()).getEdm();
+  private static final DataProvider data = new DataProvider(odata, edm);
+
+  @Test
+  public void topAfterOrderBy() throws Exception {
+    for (final String top : new String[] { "0", "1", "2", "5", "20" }) {
+      assertSameAsFullSort("ESKeyNav", "$orderby=PropertyInt16 desc&$top=" + top);
+      assertSameAsFullSort("ESKeyNav", "$orderby=PropertyString&$top=" + top);
+      assertSameAsFullSort("ESAllPrim", "$orderby=PropertyDate,PropertyInt16 desc&$top=" + top);
+    }
+  }
+
+  @Test
+  public void skipAndTopAfterOrderBy() throws Exception {
+    for (final String skip : new String[] { "0", "1", "3", "20" }) {
+      assertSameAsFullSort("ESKeyNav", "$orderby=PropertyInt16 desc&$skip=" + skip + "&$top=2");
+      assertSameAsFullSort("ESTwoKeyNav", "$orderby=PropertyString desc,PropertyInt16&$skip=" + skip + "&$top=1");
+      assertSameAsFullSort("ESAllPrim", "$orderby=PropertyBoolean&$skip=" + skip + "&$top=1");
+    }
+  }
+
+  @Test
+  public void equalValuesKeepTheirOrder() throws Exception {
+    assertSameAsFullSort("ESAllPrim", "$orderby=PropertyBoolean&$top=2");
+    assertSameAsFullSort("ESTwoKeyNav", "$orderby=PropertyComp/PropertyInt16&$top=3");
+  }
+
+  private void assertSameAsFullSort(final String entitySetName, final String query) throws Exception {
+    final UriInfo uriInfo = new Parser(edm, odata).parseUri(entitySetName, query, null);
+    final List<Entity> all = data.readAll(edm.getEntityContainer().getEntitySet(entitySetName)).getEntities();
+
+    EntityCollection expected = new EntityCollection();
+    expected.getEntities().addAll(all);
+    OrderByHandler.applyOrderByOption(uriInfo.getOrderByOption(), expected, uriInfo, edm);
+    SkipHandler.applySkipSystemQueryHandler(uriInfo.getSkipOption(), expected);
+    TopHandler.applyTopSystemQueryOption(uriInfo.getTopOption(), expected);
+
+    EntityCollection actual = new EntityCollection();
+    actual.getEntities().addAll(all);
+    OrderByHandler.applyOrderByOption(uriInfo.getOrderByOption(), uriInfo.getSkipOption(), uriInfo.getTopOption(),
+        actual, uriInfo, edm);
+    assertEquals(query, Math.min(all.size(),
+        uriInfo.getTopOption().getValue() + (uriInfo.getSkipOption() == null ? 0 : uriInfo.getSkipOption().getValue())),
+        actual.getEntities().size());
+    SkipHandler.applySkipSystemQueryHandler(uriInfo.getSkipOption(), actual);
+    TopHandler.applyTopSystemQueryOption(uriInfo.getTopOption(), actual);
+
+    assertEquals(query, identities(expected.getEntities()), identities(actual.getEntities()));
+  }
+
+  private List<Integer> identities(final List<Entity> entities) {
+    List<Integer> result = new ArrayList<Integer>();
+    for (final Entity entity : entities) {
+      result.add(System.identityHashCode(entity));
+    }
+    return result;
+  }
+}
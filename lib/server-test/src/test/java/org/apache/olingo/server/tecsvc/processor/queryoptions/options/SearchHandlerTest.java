@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.tecsvc.processor.queryoptions.options;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.data.EntityCollection;
+import org.apache.olingo.commons.api.data.Property;
+import org.apache.olingo.commons.api.data.ValueType;
+import org.apache.olingo.commons.api.edm.Edm;
+import org.apache.olingo.commons.api.edm.EdmEntitySet;
+import org.apache.olingo.commons.api.edmx.EdmxReference;
+import org.apache.olingo.server.api.OData;
+import org.apache.olingo.server.api.uri.UriInfo;
+import org.apache.olingo.server.api.uri.queryoption.SearchOption;
+import org.apache.olingo.server.core.uri.parser.Parser;
+import org.apache.olingo.server.tecsvc.data.DataProvider;
+import org.apache.olingo.server.tecsvc.provider.EdmTechProvider;
+import org.junit.Test;
+
+public class SearchHandlerTest {
+
+  private static final OData odata = OData.newInstance();
+  private static final Edm edm = odata.createServiceMetadata(
+      new EdmTechProvider(), Collections.<EdmxReference> emptyList()).getEdm();
+
+  @Test
+  public void indexSameAsScan() throws Exception {
+    final DataProvider data = new DataProvider(odata, edm);
+    for (final String search : new String[] {
+        "\"Number:\" AND NOT \"106\"", "\"Number:50\"", "\"Number:1\" OR \"Number:2\"", "NOT \"1\"", "\"4\"",
+        "xyz",
+        "\"er:\" AND NOT \"5\" AND NOT \"7\"" }) {
+      assertSameAsScan(data, "ESServerSidePaging", search);
+    }
+    for (final String search : new String[] { "Second", "Second AND positive", "Second OR positive",
+        "NOT Resource", "\"2012-12-03\"", "\"3\"" }) {
+      assertSameAsScan(data, "ESAllPrim", search);
+    }
+    assertSameAsScan(data, "ESCompCollComp", "NOT \"Test\"");
+  }
+
+  @Test
+  public void entityLevelOperators() throws Exception {
+    final DataProvider data = new DataProvider(odata, edm);
+    // The terms are in different properties of the same entity.
+    assertEquals(1, search(data, "ESTwoPrim", "\"32766\" AND \"String1\"", true).size());
+    assertEquals(1, search(data, "ESTwoPrim", "\"32766\" AND \"String1\"", false).size());
+    assertEquals(502, search(data, "ESServerSidePaging", "NOT \"Number:106\"", true).size());
+  }
+
+  @Test
+  public void indexFollowsChanges() throws Exception {
+    final DataProvider data = new DataProvider(odata, edm);
+    final EdmEntitySet entitySet = edm.getEntityContainer().getEntitySet("ESTwoPrim");
+    assertEquals(0, search(data, "ESTwoPrim", "Changed", true).size());
+
+    final Entity created = data.create(entitySet);
+    data.updatePropertyValue(created.getProperty("PropertyString"), "Changed once");
+    assertEquals(1, search(data, "ESTwoPrim", "Changed", true).size());
+
+    final Entity existing = data.readAll(entitySet).getEntities().get(0);
+    Entity changes = new Entity();
+    changes.addProperty(new Property(null, "PropertyString", ValueType.PRIMITIVE, "Changed twice"));
+    data.update(null, entitySet, existing, changes, true, false);
+    assertEquals(2, search(data, "ESTwoPrim", "Changed", true).size());
+    assertEquals(1, search(data, "ESTwoPrim", "twice", true).size());
+
+    data.delete(entitySet, created);
+    final List<Entity> result = search(data, "ESTwoPrim", "Changed", true);
+    assertEquals(1, result.size());
+    assertSame(existing, result.get(0));
+    assertSameAsScan(data, "ESTwoPrim", "NOT Changed");
+  }
+
+  private void assertSameAsScan(final DataProvider data, final String entitySetName, final String search)
+      throws Exception {
+    assertEquals(search, identities(search(data, entitySetName, search, false)),
+        identities(search(data, entitySetName, search, true)));
+  }
+
+  private List<Entity> search(final DataProvider data, final String entitySetName, final String search,
+      final boolean indexed) throws Exception {
+    final UriInfo uriInfo = new Parser(edm, odata).parseUri(entitySetName, "$search=" + search, null);
+    final SearchOption searchOption = uriInfo.getSearchOption();
+    final EdmEntitySet entitySet = edm.getEntityContainer().getEntitySet(entitySetName);
+    EntityCollection entities = new EntityCollection();
+    entities.getEntities().addAll(data.readAll(entitySet).getEntities());
+    SearchHandler.applySearchSystemQueryOption(searchOption, entities,
+        indexed ? data.getSearchIndex(entitySet) : null);
+    return entities.getEntities();
+  }
+
+  private List<Integer> identities(final List<Entity> entities) {
+    List<Integer> result = new ArrayList<Integer>();
+    for (final Entity entity : entities) {
+      result.add(System.identityHashCode(entity));
+    }
+    return result;
+  }
+}
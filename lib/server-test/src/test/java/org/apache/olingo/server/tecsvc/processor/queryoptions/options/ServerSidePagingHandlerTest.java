@@ -0,0 +1,185 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ * 
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * 
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.olingo.server.tecsvc.processor.queryoptions.options;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.olingo.commons.api.data.Entity;
+import org.apache.olingo.commons.api.edm.Edm;
+import org.apache.olingo.commons.api.edm.EdmEntitySet;
+import org.apache.olingo.commons.api.edmx.EdmxReference;
+import org.apache.olingo.commons.api.http.HttpStatusCode;
+import org.apache.olingo.server.api.OData;
+import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.uri.UriInfo;
+import org.apache.olingo.server.core.uri.parser.Parser;
+import org.apache.olingo.server.tecsvc.data.DataProvider;
+import org.apache.olingo.server.tecsvc.provider.EdmTechProvider;
+import org.junit.Test;
+
+public class ServerSidePagingHandlerTest {
+
+  private static final OData odata = OData.newInstance();
+  private static final Edm edm = odata.createServiceMetadata(
+      new EdmTechProvider(), Collections.<EdmxReference> emptyList()).getEdm();
+  private static final EdmEntitySet ES_SERVER_SIDE_PAGING =
+      edm.getEntityContainer().getEntitySet("ESServerSidePaging");
+  private static final String BASE_URI = "http://localhost/odata/ESServerSidePaging";
+
+  @Test
+  public void pageThroughCursors() throws Exception {
+    final DataProvider dataProvider = new DataProvider(odata, edm);
+    final List<Entity> expected = dataProvider.readAll(ES_SERVER_SIDE_PAGING).getEntities();
+    String query = "$count=true&$filter=PropertyInt16%20gt%203";
+    UriInfo uriInfo = parse(query);
+    assertNull(ServerSidePagingHandler.getCursor(uriInfo.getSkipTokenOption(), ES_SERVER_SIDE_PAGING,
+        BASE_URI + '?' + query));
+    EntityPipeline pipeline = createPipeline(expected, uriInfo);
+    assertEquals(Integer.valueOf(10), ServerSidePagingHandler.applyServerSidePaging(pipeline,
+        ES_SERVER_SIDE_PAGING, ES_SERVER_SIDE_PAGING.getEntityType(), dataProvider, BASE_URI + '?' + query, null));
+
+    List<Entity> actual = new ArrayList<Entity>();
+    int pages = 1;
+    while (true) {
+      assertEquals(Integer.valueOf(500), pipeline.getCount());
+      while (pipeline.hasNext()) {
+        actual.add(pipeline.next());
+      }
+      final URI nextLink = pipeline.getNext();
+      if (nextLink == null) {
+        break;
+      }
+      assertTrue(nextLink.toString().startsWith(
+          BASE_URI + "?$count=true&$filter=PropertyInt16%20gt%203&%24skiptoken="));
+      query = nextLink.getRawQuery();
+      final ServerSidePagingHandler.Cursor cursor = ServerSidePagingHandler.getCursor(
+          parse(query).getSkipTokenOption(), ES_SERVER_SIDE_PAGING, BASE_URI + '?' + query);
+      assertNotNull(cursor);
+      assertTrue(cursor.hasKeys());
+      assertEquals(10, cursor.getPageSize());
+      pipeline = ServerSidePagingHandler.resume(cursor, dataProvider, ES_SERVER_SIDE_PAGING, BASE_URI + '?' + query);
+      pages++;
+    }
+    assertEquals(50, pages);
+    assertEquals(expected.subList(3, expected.size()), actual);
+  }
+
+  @Test
+  public void clientPageSize() throws Exception {
+    final DataProvider dataProvider = new DataProvider(odata, edm);
+    final List<Entity> entities = dataProvider.readAll(ES_SERVER_SIDE_PAGING).getEntities();
+    final EntityPipeline pipeline = createPipeline(entities, parse(null));
+    assertEquals(Integer.valueOf(7), ServerSidePagingHandler.applyServerSidePaging(pipeline,
+        ES_SERVER_SIDE_PAGING, ES_SERVER_SIDE_PAGING.getEntityType(), dataProvider, BASE_URI, 7));
+    assertEquals(7, pipeline.countEntities());
+    final URI nextLink = pipeline.getNext();
+    assertTrue(nextLink.toString().startsWith(BASE_URI + "?%24skiptoken="));
+
+    final ServerSidePagingHandler.Cursor cursor = ServerSidePagingHandler.getCursor(
+        parse(nextLink.getRawQuery()).getSkipTokenOption(), ES_SERVER_SIDE_PAGING, nextLink.toString());
+    assertEquals(7, cursor.getPageSize());
+    final EntityPipeline nextPage =
+        ServerSidePagingHandler.resume(cursor, dataProvider, ES_SERVER_SIDE_PAGING, nextLink.toString());
+    assertEquals(entities.get(7), nextPage.next());
+  }
+
+  @Test
+  public void deletedEntitiesAreLeftOut() throws Exception {
+    final DataProvider dataProvider = new DataProvider(odata, edm);
+    final List<Entity> entities = dataProvider.readAll(ES_SERVER_SIDE_PAGING).getEntities();
+    final EntityPipeline pipeline = createPipeline(entities, parse(null));
+    ServerSidePagingHandler.applyServerSidePaging(pipeline,
+        ES_SERVER_SIDE_PAGING, ES_SERVER_SIDE_PAGING.getEntityType(), dataProvider, BASE_URI, null);
+    assertEquals(10, pipeline.countEntities());
+    final URI nextLink = pipeline.getNext();
+    final Entity deleted = entities.get(10);
+    final Entity next = entities.get(11);
+    dataProvider.delete(ES_SERVER_SIDE_PAGING, deleted);
+
+    final ServerSidePagingHandler.Cursor cursor = ServerSidePagingHandler.getCursor(
+        parse(nextLink.getRawQuery()).getSkipTokenOption(), ES_SERVER_SIDE_PAGING, nextLink.toString());
+    final EntityPipeline nextPage =
+        ServerSidePagingHandler.resume(cursor, dataProvider, ES_SERVER_SIDE_PAGING, nextLink.toString());
+    assertEquals(next, nextPage.next());
+    assertEquals(8, nextPage.countEntities());
+    assertNotNull(nextPage.getNext());
+  }
+
+  @Test
+  public void changedQueryOptions() throws Exception {
+    final DataProvider dataProvider = new DataProvider(odata, edm);
+    final String query = "$filter=PropertyInt16%20gt%203";
+    final EntityPipeline pipeline =
+        createPipeline(dataProvider.readAll(ES_SERVER_SIDE_PAGING).getEntities(), parse(query));
+    ServerSidePagingHandler.applyServerSidePaging(pipeline, ES_SERVER_SIDE_PAGING,
+        ES_SERVER_SIDE_PAGING.getEntityType(), dataProvider, BASE_URI + '?' + query, null);
+    pipeline.countEntities();
+    final String changedQuery = pipeline.getNext().getRawQuery().replace("gt%203", "gt%205");
+    try {
+      ServerSidePagingHandler.getCursor(parse(changedQuery).getSkipTokenOption(), ES_SERVER_SIDE_PAGING,
+          BASE_URI + '?' + changedQuery);
+      fail("Expected exception not thrown.");
+    } catch (final ODataApplicationException e) {
+      assertEquals(HttpStatusCode.BAD_REQUEST.getStatusCode(), e.getStatusCode());
+    }
+  }
+
+  @Test
+  public void noPagingForOtherEntitySets() throws Exception {
+    final EdmEntitySet entitySet = edm.getEntityContainer().getEntitySet("ESAllPrim");
+    final EntityPipeline pipeline = new EntityPipeline(new DataProvider(odata, edm).readAll(entitySet));
+    assertNull(ServerSidePagingHandler.applyServerSidePaging(pipeline, entitySet, entitySet.getEntityType(),
+        null, BASE_URI, 1));
+    assertNull(ServerSidePagingHandler.getCursor(
+        new Parser(edm, odata).parseUri("ESAllPrim", "$skiptoken=unknown", null).getSkipTokenOption(), entitySet,
+        BASE_URI + "?$skiptoken=unknown"));
+    assertTrue(pipeline.countEntities() > 1);
+    assertNull(pipeline.getNext());
+  }
+
+  @Test
+  public void unknownSkipToken() throws Exception {
+    try {
+      ServerSidePagingHandler.getCursor(parse("$skiptoken=1%2A10").getSkipTokenOption(), ES_SERVER_SIDE_PAGING,
+          BASE_URI + "?$skiptoken=1%2A10");
+      fail("Expected exception not thrown.");
+    } catch (final ODataApplicationException e) {
+      assertEquals(HttpStatusCode.BAD_REQUEST.getStatusCode(), e.getStatusCode());
+    }
+  }
+
+  private UriInfo parse(final String query) throws Exception {
+    return new Parser(edm, odata).parseUri("ESServerSidePaging", query, null);
+  }
+
+  private EntityPipeline createPipeline(final List<Entity> entities, final UriInfo uriInfo) throws Exception {
+    return new EntityPipeline(entities.iterator())
+        .filter(uriInfo.getFilterOption(), uriInfo, edm)
+        .count(uriInfo.getCountOption());
+  }
+}
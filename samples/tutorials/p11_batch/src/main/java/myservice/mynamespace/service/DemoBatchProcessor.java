@@ -18,7 +18,6 @@
  */
 package myservice.mynamespace.service;
 
-import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
@@ -28,13 +27,16 @@ import org.apache.olingo.commons.api.http.HttpHeader;
 import org.apache.olingo.commons.api.http.HttpStatusCode;
 import org.apache.olingo.server.api.OData;
 import org.apache.olingo.server.api.ODataApplicationException;
+import org.apache.olingo.server.api.ODataContent;
 import org.apache.olingo.server.api.ODataLibraryException;
 import org.apache.olingo.server.api.ODataRequest;
 import org.apache.olingo.server.api.ODataResponse;
 import org.apache.olingo.server.api.ServiceMetadata;
 import org.apache.olingo.server.api.batch.BatchFacade;
+import org.apache.olingo.server.api.batch.StreamingBatchFacade;
 import org.apache.olingo.server.api.deserializer.batch.BatchOptions;
-import org.apache.olingo.server.api.deserializer.batch.BatchRequestPart;
+import org.apache.olingo.server.api.deserializer.batch.BatchRequestPartIterator;
+import org.apache.olingo.server.api.deserializer.batch.IncrementalBatchDeserializer;
 import org.apache.olingo.server.api.deserializer.batch.ODataResponsePart;
 import org.apache.olingo.server.api.processor.BatchProcessor;
 
@@ -112,25 +114,23 @@ public class DemoBatchProcessor implements BatchProcessor {
                                                     .rawServiceResolutionUri(request.getRawServiceResolutionUri())
                                                     .build();
     
-    // 3. Deserialize the batch request
-    final List<BatchRequestPart> requestParts = odata.createFixedFormatDeserializer()
-                                                     .parseBatchRequest(request.getBody(), boundary, options);
+    // 3. Deserialize the batch request; the parts are read one after the other while they are executed
+    //    (the deserializer and the facade provided by the library support incremental processing)
+    final BatchRequestPartIterator requestParts =
+        ((IncrementalBatchDeserializer) odata.createFixedFormatDeserializer())
+        .parseBatchRequestIncrementally(request.getBody(), boundary, options);
     
-    // 4. Execute the batch request parts
-    final List<ODataResponsePart> responseParts = new ArrayList<ODataResponsePart>();
-    for (final BatchRequestPart part : requestParts) {
-      responseParts.add(facade.handleBatchRequest(part));
-    }
-
-    // 5. Serialize the response content
-    final InputStream responseContent = odata.createFixedFormatSerializer().batchResponse(responseParts, boundary);
-    
-    // 6. Create a new boundary for the response
+    // 4. Create a new boundary for the response
     final String responseBoundary = "batch_" + UUID.randomUUID().toString();
 
-    // 7. Setup response
+    // 5. Execute the batch request parts while the response is sent; the response to each part
+    //    is written as soon as it is available. All parts are executed, even after an error.
+    final ODataContent responseContent =
+        ((StreamingBatchFacade) facade).handleBatchRequests(requestParts, true, responseBoundary);
+
+    // 6. Setup response
     response.setHeader(HttpHeader.CONTENT_TYPE, ContentType.MULTIPART_MIXED + ";boundary=" + responseBoundary);
-    response.setContent(responseContent);
+    response.setODataContent(responseContent);
     response.setStatusCode(HttpStatusCode.ACCEPTED.getStatusCode());
   }
   